@@ -42,6 +42,7 @@ OBFUSCATION_MAP = dict(reversed(x.split()) for x in """
     a   Tessellator.addVertex
     a   Tessellator.draw
     a   Tessellator.instance
+    a   Tessellator.setColorRGBA_F
     b   Tessellator.startDrawing
     asr Timer
     c   Timer.renderPartialTicks
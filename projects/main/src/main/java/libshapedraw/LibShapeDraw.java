@@ -1,13 +1,21 @@
 package libshapedraw;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import libshapedraw.event.LSDEventListener;
 import libshapedraw.internal.LSDController;
 import libshapedraw.internal.LSDInternalException;
+import libshapedraw.internal.LSDSlotMap;
+import libshapedraw.internal.LSDSpatialIndex;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeShape;
 
 /**
  * Main entry point for the LibShapeDraw API.
@@ -25,12 +33,20 @@ import libshapedraw.shape.Shape;
 public class LibShapeDraw {
     private final Set<Shape> shapes;
     private final Set<Shape> shapesReadonly;
+    private final LSDSlotMap<Shape> handleShapes;
     private final Set<LSDEventListener> eventListeners;
     private final Set<LSDEventListener> eventListenersReadonly;
     private final String instanceId;
     private final String ownerId;
     private boolean visible = true;
     private boolean visibleWhenHidingGui = false;
+    private boolean batchRendering = false;
+    private boolean deferredXrayPass = false;
+    private boolean parallelGeometry = false;
+    private volatile boolean commandQueueing = false;
+    private boolean frustumCulling = false;
+    private double maxRenderDistance = Double.POSITIVE_INFINITY;
+    private LSDSpatialIndex spatialIndex;
 
     /**
      * Create a new API instance, automatically registering it with the
@@ -50,6 +66,7 @@ public class LibShapeDraw {
         }
         shapes = new LinkedHashSet<Shape>();
         shapesReadonly = Collections.unmodifiableSet(shapes);
+        handleShapes = new LSDSlotMap<Shape>();
         eventListeners = new LinkedHashSet<LSDEventListener>();
         eventListenersReadonly = Collections.unmodifiableSet(eventListeners);
         instanceId = LSDController.getInstance().registerApiInstance(this, ownerId);
@@ -63,9 +80,16 @@ public class LibShapeDraw {
      * Normally there's no need to ever do this. It generally makes more sense
      * to call setVisible(false) or clearShapes() to temporarily shut things
      * down.
+     * <p>
+     * All Shapes are removed as well, allowing them to free any external
+     * resources such as VBOs.
      */
     public boolean unregister() {
-        return LSDController.getInstance().unregisterApiInstance(this);
+        if (!LSDController.getInstance().unregisterApiInstance(this)) {
+            return false;
+        }
+        clearShapes();
+        return true;
     }
 
     /** @deprecated use {@link ApiInfo} */
@@ -177,9 +201,345 @@ public class LibShapeDraw {
         return this;
     }
 
+    /**
+     * Whether this API instance's shapes are merged into as few OpenGL draw
+     * calls as possible. Defaults to false.
+     * 
+     * @see #setBatchRendering
+     */
+    public boolean isBatchRendering() {
+        return batchRendering;
+    }
+
+    /**
+     * Whether this API instance's shapes are merged into as few OpenGL draw
+     * calls as possible. Defaults to false.
+     * <p>
+     * If set to true, the line segments of all WireframeShapes sharing an
+     * identical line style are collected and drawn together, once per line
+     * style rather than once per shape. This is a big win when rendering
+     * hundreds or thousands of shapes.
+     * <p>
+     * Shapes with ShapeTransforms, shapes that override onPreRender or
+     * onPostRender, and shapes that aren't {@link WireframeShape#isBatchable
+     * batchable} are still rendered individually, after the batched shapes.
+     * In other words, the render order of shapes is no longer guaranteed to
+     * match the order they were added in.
+     */
+    public LibShapeDraw setBatchRendering(boolean batchRendering) {
+        this.batchRendering = batchRendering;
+        return this;
+    }
+
+    /**
+     * Whether the secondary (xray) pass of this API instance's shapes is
+     * rendered after every other shape's main pass. Defaults to false.
+     * 
+     * @see #setDeferredXrayPass
+     */
+    public boolean isDeferredXrayPass() {
+        return deferredXrayPass;
+    }
+
+    /**
+     * Whether the secondary (xray) pass of this API instance's shapes is
+     * rendered after every other shape's main pass. Defaults to false.
+     * <p>
+     * Normally each shape that is visible through terrain is rendered twice
+     * in a row, switching the OpenGL depth function back and forth. If set to
+     * true, the main passes of all shapes are rendered first and the
+     * secondary passes of all shapes (across all API instances using this
+     * setting) are rendered at the end of the frame, so the depth function
+     * only has to change once. This is a big win when rendering hundreds or
+     * thousands of shapes that are visible through terrain.
+     * <p>
+     * Shapes that don't split their rendering into separate passes (e.g.,
+     * custom Shapes that only override renderShape) are rendered normally.
+     */
+    public LibShapeDraw setDeferredXrayPass(boolean deferredXrayPass) {
+        this.deferredXrayPass = deferredXrayPass;
+        return this;
+    }
+
+    /**
+     * Whether out-of-date vertex caches of this API instance's visible shapes
+     * are rebuilt on worker threads. Defaults to false.
+     * 
+     * @see #setParallelGeometry
+     */
+    public boolean isParallelGeometry() {
+        return parallelGeometry;
+    }
+
+    /**
+     * Whether out-of-date vertex caches of this API instance's visible shapes
+     * are rebuilt on worker threads. Defaults to false.
+     * <p>
+     * If set to true, each frame the visible WireframeShapes with the
+     * {@link WireframeShape#setVertexCacheEnabled vertex cache} enabled whose
+     * geometry changed are handed to a pool of worker threads before any of
+     * them are rendered, so the render thread only has to replay the finished
+     * vertices. A shape that no worker has started on by the time it's
+     * rendered is built on the render thread as usual. This is a big win for
+     * thousands of procedurally generated shapes that change now and then.
+     * <p>
+     * While a shape is being built, its renderLines method runs on a worker
+     * thread, concurrently with the rendering of other shapes. Custom shapes
+     * whose renderLines touches state shared with other shapes shouldn't
+     * enable the vertex cache in API instances using this setting.
+     */
+    public LibShapeDraw setParallelGeometry(boolean parallelGeometry) {
+        this.parallelGeometry = parallelGeometry;
+        return this;
+    }
+
+    /**
+     * Whether changes to this API instance's shapes made from other threads
+     * are queued and applied by the main Minecraft thread. Defaults to false.
+     * 
+     * @see #setCommandQueueing
+     */
+    public boolean isCommandQueueing() {
+        return commandQueueing;
+    }
+
+    /**
+     * Whether changes to this API instance's shapes made from other threads
+     * are queued and applied by the main Minecraft thread. Defaults to false.
+     * <p>
+     * If set to true, addShape, removeShape, and clearShapes can be called
+     * from any thread. Calls from the main Minecraft thread take effect
+     * immediately as usual. Calls from any other thread are added to a
+     * lock-free queue and return immediately; the queued changes are applied
+     * in order at the start of the next frame or game tick, whichever comes
+     * first, so the renderer never sees a half-applied change. Until then,
+     * getShapes doesn't reflect them.
+     * <p>
+     * See also {@link Shape#setCommandQueueing} for changes to a shape's
+     * transforms.
+     */
+    public LibShapeDraw setCommandQueueing(boolean commandQueueing) {
+        this.commandQueueing = commandQueueing;
+        return this;
+    }
+
+    /**
+     * Whether this API instance's shapes that are entirely outside of the
+     * player's field of view are skipped. Defaults to false.
+     * 
+     * @see #setFrustumCulling
+     */
+    public boolean isFrustumCulling() {
+        return frustumCulling;
+    }
+
+    /**
+     * Whether this API instance's shapes that are entirely outside of the
+     * player's field of view are skipped. Defaults to false.
+     * <p>
+     * If set to true, each shape's {@link Shape#getBounds bounds} are tested
+     * against the view frustum before rendering it. This is a big win when
+     * many of thousands of shapes are behind the player. Shapes with unknown
+     * bounds are always rendered.
+     * <p>
+     * Custom shapes that draw outside of their bounds, e.g. by translating
+     * in onPreRender, must override computeShapeBounds to match. Subclasses
+     * of built-in shapes that override a rendering method but not
+     * computeShapeBounds are treated as having unknown bounds.
+     */
+    public LibShapeDraw setFrustumCulling(boolean frustumCulling) {
+        this.frustumCulling = frustumCulling;
+        return this;
+    }
+
+    /**
+     * The maximum distance from the player at which this API instance's
+     * shapes are rendered. Defaults to positive infinity, i.e. no limit.
+     * 
+     * @see #setMaxRenderDistance
+     */
+    public double getMaxRenderDistance() {
+        return maxRenderDistance;
+    }
+
+    /**
+     * The maximum distance from the player at which this API instance's
+     * shapes are rendered. Defaults to positive infinity, i.e. no limit.
+     * <p>
+     * The distance is measured to the nearest point of each shape's
+     * {@link Shape#getBounds bounds}. Shapes further away are skipped
+     * entirely. Shapes with unknown bounds are always rendered.
+     * <p>
+     * Individual shapes can also have their own limit.
+     * 
+     * @see Shape#setMaxRenderDistance
+     */
+    public LibShapeDraw setMaxRenderDistance(double maxRenderDistance) {
+        if (!(maxRenderDistance > 0.0)) {
+            throw new IllegalArgumentException("expecting max render distance >0.0, got " + maxRenderDistance);
+        }
+        this.maxRenderDistance = maxRenderDistance;
+        return this;
+    }
+
+    /**
+     * Whether this API instance keeps its shapes in a spatial index. Defaults
+     * to false.
+     * 
+     * @see #setSpatialIndexing
+     */
+    public boolean isSpatialIndexing() {
+        return spatialIndex != null;
+    }
+
+    /**
+     * Whether this API instance keeps its shapes in a spatial index. Defaults
+     * to false.
+     * <p>
+     * If set to true, the shapes are sorted into a uniform grid based on their
+     * {@link Shape#getBounds bounds}. This speeds up {@link #getShapesWithin},
+     * {@link #getShapesNear}, and {@link #raycast}, and, with
+     * {@link #setFrustumCulling frustum culling} enabled, lets the renderer
+     * skip entire grid cells that are out of view instead of checking each
+     * shape.
+     * This is a big win when most of thousands of shapes are out of view.
+     * <p>
+     * Shapes that move are re-indexed once per frame, or immediately by
+     * calling {@link #updateSpatialIndex}.
+     * <p>
+     * Thread safety is not guaranteed. To avoid non-deterministic behavior,
+     * only call this method from the main Minecraft thread.
+     */
+    public LibShapeDraw setSpatialIndexing(boolean spatialIndexing) {
+        if (!spatialIndexing) {
+            spatialIndex = null;
+            LSDController.getInstance().setSpatialIndex(this, null);
+        } else if (spatialIndex == null) {
+            spatialIndex = new LSDSpatialIndex();
+            for (Shape shape : shapes) {
+                spatialIndex.add(shape);
+            }
+            for (Shape shape : handleShapes.asList()) {
+                spatialIndex.add(shape);
+            }
+            LSDController.getInstance().setSpatialIndex(this, spatialIndex);
+        }
+        return this;
+    }
+
+    /**
+     * Re-index any shapes that have moved since the last frame. Only needed
+     * if spatial indexing is enabled and the query methods are called after
+     * moving shapes but before the next frame is rendered.
+     * 
+     * @return the instance (for method chaining)
+     */
+    public LibShapeDraw updateSpatialIndex() {
+        if (spatialIndex != null) {
+            spatialIndex.update();
+        }
+        return this;
+    }
+
+    /**
+     * Find the shapes whose {@link Shape#getBounds bounds} intersect the box.
+     * Shapes with unknown bounds are never included.
+     * <p>
+     * If spatial indexing is disabled, this checks every shape.
+     * 
+     * @return a new list of shapes, in the order they were added.
+     */
+    public List<Shape> getShapesWithin(ReadonlyBoundingBox box) {
+        if (box == null) {
+            throw new IllegalArgumentException("box cannot be null");
+        }
+        List<Shape> result = new ArrayList<Shape>();
+        if (spatialIndex != null) {
+            return spatialIndex.findWithin(box, result);
+        }
+        findWithin(shapes, box, result);
+        findWithin(handleShapes.asList(), box, result);
+        return result;
+    }
+
+    private static void findWithin(Iterable<Shape> candidates, ReadonlyBoundingBox box, List<Shape> result) {
+        for (Shape shape : candidates) {
+            ReadonlyBoundingBox bounds = shape.getBounds();
+            if (bounds != null && bounds.intersects(box)) {
+                result.add(shape);
+            }
+        }
+    }
+
+    /**
+     * Find the shapes whose {@link Shape#getBounds bounds} are at most radius
+     * blocks away from the point. Shapes with unknown bounds are never
+     * included.
+     * <p>
+     * If spatial indexing is disabled, this checks every shape.
+     * 
+     * @return a new list of shapes, in the order they were added.
+     */
+    public List<Shape> getShapesNear(ReadonlyVector3 point, double radius) {
+        if (point == null) {
+            throw new IllegalArgumentException("point cannot be null");
+        }
+        List<Shape> result = new ArrayList<Shape>();
+        if (spatialIndex != null) {
+            return spatialIndex.findNear(point, radius, result);
+        }
+        findNear(shapes, point, radius, result);
+        findNear(handleShapes.asList(), point, radius, result);
+        return result;
+    }
+
+    private static void findNear(Iterable<Shape> candidates, ReadonlyVector3 point, double radius, List<Shape> result) {
+        for (Shape shape : candidates) {
+            ReadonlyBoundingBox bounds = shape.getBounds();
+            if (bounds != null && bounds.getDistance(point) <= radius) {
+                result.add(shape);
+            }
+        }
+    }
+
+    /**
+     * Find the shape whose {@link Shape#getBounds bounds} are hit first by a
+     * ray, e.g. the shape under the player's crosshair. Shapes with unknown
+     * bounds are never hit. If several shapes are hit at the same distance,
+     * the one added first wins.
+     * <p>
+     * If spatial indexing is disabled, this checks every shape.
+     * 
+     * @return the shape, or null if the ray doesn't hit anything.
+     */
+    public Shape raycast(ReadonlyVector3 origin, ReadonlyVector3 direction) {
+        if (origin == null || direction == null) {
+            throw new IllegalArgumentException("origin and direction cannot be null");
+        }
+        if (spatialIndex != null) {
+            return spatialIndex.raycast(origin, direction);
+        }
+        Shape best = null;
+        double bestT = Double.POSITIVE_INFINITY;
+        for (int pass = 0; pass < 2; pass++) {
+            for (Shape shape : pass == 0 ? shapes : handleShapes.asList()) {
+                ReadonlyBoundingBox bounds = shape.getBounds();
+                double t = bounds == null ? -1.0 : bounds.getRayIntersection(origin, direction);
+                if (t >= 0.0 && t < bestT) {
+                    best = shape;
+                    bestT = t;
+                }
+            }
+        }
+        return best;
+    }
+
     /**
      * Get a read-only view of the set of shapes registered to this API
      * instance. To modify this set use addShape, removeShape, and clearShapes.
+     * <p>
+     * Shapes registered by handle are not included; see
+     * {@link #getHandleShapes}.
      */
     public Set<Shape> getShapes() {
         return shapesReadonly;
@@ -188,15 +548,27 @@ public class LibShapeDraw {
     /**
      * Register a Shape to be rendered by this API instance.
      * <p>
-     * Thread safety is not guaranteed. To avoid non-deterministic behavior,
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
      * only call this method from the main Minecraft thread.
      * @return the instance (for method chaining)
      */
-    public LibShapeDraw addShape(Shape shape) {
+    public LibShapeDraw addShape(final Shape shape) {
         if (shape == null) {
             throw new IllegalArgumentException("shape cannot be null");
         }
+        if (commandQueueing && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                addShape(shape);
+            }
+        })) {
+            return this;
+        }
         if (shapes.add(shape)) {
+            if (spatialIndex != null) {
+                spatialIndex.add(shape);
+            }
             shape.onAdd(this);
         }
         return this;
@@ -217,7 +589,8 @@ public class LibShapeDraw {
      * Attempting to remove a shape that is not part of this API instance's
      * shape collection is allowed but won't do anything.
      * <p>
-     * Thread safety is not guaranteed. To avoid non-deterministic behavior,
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
      * only call this method from the main Minecraft thread.
      * <p>
      * See also {@link Shape#setVisible} for an alternate way of preventing a
@@ -227,22 +600,36 @@ public class LibShapeDraw {
      * 
      * @return the instance (for method chaining)
      */
-    public LibShapeDraw removeShape(Shape shape) {
+    public LibShapeDraw removeShape(final Shape shape) {
+        if (commandQueueing && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                removeShape(shape);
+            }
+        })) {
+            return this;
+        }
         if (shapes.remove(shape)) {
+            if (spatialIndex != null) {
+                spatialIndex.remove(shape);
+            }
             shape.onRemove(this);
         }
         return this;
     }
 
     /**
-     * Unregister all Shapes owned by this API instance, no longer rendering
-     * them.
+     * Unregister all Shapes owned by this API instance, including those
+     * registered by handle, no longer rendering them.
      * <p>
      * Any animations affecting the Shapes are <b>not</b> automatically
      * stopped. See {@link #removeShape}'s documentation for more details.
      * <p>
-     * Thread safety is not guaranteed. To avoid non-deterministic behavior,
-     * only call this method from the main Minecraft thread.
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
+     * only call this method from the main Minecraft thread. As with
+     * {@link #clearHandleShapes}, a queued clear keeps shapes added by handle
+     * after the call.
      * <p>
      * See also {@link #setVisible} for an alternate way of preventing all
      * shapes from rendering. Generally, clearShapes should be called if the
@@ -252,8 +639,301 @@ public class LibShapeDraw {
      * @return the instance (for method chaining)
      */
     public LibShapeDraw clearShapes() {
+        if (commandQueueing && LSDController.getInstance().isOffThread()) {
+            // Only clear the handles that exist now: handles reserved by
+            // addHandleShape calls made after this one must survive.
+            final long[] handles = handleShapes.getHandles();
+            if (LSDController.getInstance().queueIfOffThread(new Runnable() {
+                @Override
+                public void run() {
+                    clearShapes(handles);
+                }
+            })) {
+                return this;
+            }
+        }
+        LinkedHashSet<Shape> prev = new LinkedHashSet<Shape>(shapes);
+        shapes.clear();
+        List<Shape> prevHandleShapes = handleShapes.clear();
+        if (spatialIndex != null) {
+            spatialIndex.clear();
+        }
+        for (Shape shape : prev) {
+            shape.onRemove(this);
+        }
+        for (Shape shape : prevHandleShapes) {
+            shape.onRemove(this);
+        }
+        return this;
+    }
+
+    /**
+     * Queued version of clearShapes, only unregistering the handle shapes
+     * whose handles existed when clearShapes was called.
+     */
+    private void clearShapes(long[] handles) {
         LinkedHashSet<Shape> prev = new LinkedHashSet<Shape>(shapes);
         shapes.clear();
+        if (spatialIndex != null) {
+            for (Shape shape : prev) {
+                spatialIndex.remove(shape);
+            }
+        }
+        for (Shape shape : prev) {
+            shape.onRemove(this);
+        }
+        removeHandleShapes(handles);
+    }
+
+    /**
+     * Get a read-only view of the shapes registered to this API instance by
+     * handle. To modify this list use addHandleShape, removeHandleShape, and
+     * clearHandleShapes.
+     * <p>
+     * The shapes are packed into a contiguous array, so this list is cheap to
+     * iterate. Removing a shape moves the last shape into its place, so the
+     * order only matches the order the shapes were added in until a shape is
+     * removed.
+     */
+    public List<Shape> getHandleShapes() {
+        return handleShapes.asList();
+    }
+
+    /**
+     * Register a Shape to be rendered by this API instance, returning a
+     * handle that removes it again in constant time.
+     * <p>
+     * This is an alternative to addShape for mods that add and remove many
+     * short-lived shapes, such as thousands of temporary markers per second.
+     * Unlike addShape, no hashing is involved, but nothing stops the same
+     * shape from being added twice either: each shape should be registered
+     * at most once, either by handle or with addShape.
+     * <p>
+     * Handle shapes are rendered after the shapes in {@link #getShapes}.
+     * <p>
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
+     * only call this method from the main Minecraft thread. If the add is
+     * queued, the handle is reserved right away and can be used at once,
+     * though {@link #getHandleShape} returns null for it until the queued
+     * add is applied. Removing the handle before then cancels the add.
+     * 
+     * @return the shape's handle, which is never 0. The handle stays unique to
+     *         this shape even after the shape is removed.
+     */
+    public long addHandleShape(final Shape shape) {
+        if (shape == null) {
+            throw new IllegalArgumentException("shape cannot be null");
+        }
+        if (!commandQueueing) {
+            long handle = handleShapes.add(shape);
+            handleShapeAdded(shape);
+            return handle;
+        }
+        final long handle = handleShapes.reserve();
+        if (!LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                fillHandleShape(handle, shape);
+            }
+        })) {
+            fillHandleShape(handle, shape);
+        }
+        return handle;
+    }
+
+    /**
+     * Register several Shapes by handle. All of the shapes are registered
+     * before any of their onAdd methods are called.
+     * 
+     * @see #addHandleShape
+     * @return the shapes' handles, in the collection's iteration order.
+     */
+    public long[] addHandleShapes(Collection<? extends Shape> shapes) {
+        for (Shape shape : shapes) {
+            if (shape == null) {
+                throw new IllegalArgumentException("shape cannot be null");
+            }
+        }
+        final long[] handles = new long[shapes.size()];
+        int i = 0;
+        if (!commandQueueing) {
+            for (Shape shape : shapes) {
+                handles[i++] = handleShapes.add(shape);
+                if (spatialIndex != null) {
+                    spatialIndex.add(shape);
+                }
+            }
+            for (Shape shape : shapes) {
+                shape.onAdd(this);
+            }
+            return handles;
+        }
+        // Copy the shapes now: the caller is free to modify the collection
+        // before a queued add is applied.
+        final Shape[] added = shapes.toArray(new Shape[handles.length]);
+        for (; i < handles.length; i++) {
+            handles[i] = handleShapes.reserve();
+        }
+        Runnable command = new Runnable() {
+            @Override
+            public void run() {
+                fillHandleShapes(handles, added);
+            }
+        };
+        if (!LSDController.getInstance().queueIfOffThread(command)) {
+            command.run();
+        }
+        return handles;
+    }
+
+    private void fillHandleShape(long handle, Shape shape) {
+        if (handleShapes.fill(handle, shape)) {
+            handleShapeAdded(shape);
+        }
+    }
+
+    private void fillHandleShapes(long[] handles, Shape[] added) {
+        int count = 0;
+        for (int i = 0; i < handles.length; i++) {
+            if (handleShapes.fill(handles[i], added[i])) {
+                if (spatialIndex != null) {
+                    spatialIndex.add(added[i]);
+                }
+                // Skip over shapes whose add was cancelled.
+                added[count++] = added[i];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            added[i].onAdd(this);
+        }
+    }
+
+    private void handleShapeAdded(Shape shape) {
+        if (spatialIndex != null) {
+            spatialIndex.add(shape);
+        }
+        shape.onAdd(this);
+    }
+
+    /**
+     * @return the Shape registered with the handle, or null if it has been
+     *         removed or its add is still queued.
+     */
+    public Shape getHandleShape(long handle) {
+        return handleShapes.get(handle);
+    }
+
+    /**
+     * Unregister a Shape by the handle returned by addHandleShape, no longer
+     * rendering it. Removing a shape that was already removed is allowed but
+     * won't do anything.
+     * <p>
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
+     * only call this method from the main Minecraft thread.
+     * 
+     * @see #removeShape
+     * @return the removed shape, or null if the handle is no longer valid.
+     *         If the removal is queued, this is the shape the handle refers
+     *         to at the time of the call instead, which is null if its add
+     *         is still queued too.
+     */
+    public Shape removeHandleShape(final long handle) {
+        if (commandQueueing && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                removeHandleShape(handle);
+            }
+        })) {
+            return handleShapes.get(handle);
+        }
+        Shape shape = handleShapes.remove(handle);
+        if (shape != null) {
+            if (spatialIndex != null) {
+                spatialIndex.remove(shape);
+            }
+            shape.onRemove(this);
+        }
+        return shape;
+    }
+
+    /**
+     * Unregister several Shapes by handle. All of the shapes are unregistered
+     * before any of their onRemove methods are called.
+     * 
+     * @see #removeHandleShape
+     * @return the number of shapes removed, not counting handles that were no
+     *         longer valid. If the removal is queued, this is the number of
+     *         handles that are valid at the time of the call instead.
+     */
+    public int removeHandleShapes(long[] handles) {
+        if (commandQueueing) {
+            final long[] copy = handles.clone();
+            if (LSDController.getInstance().queueIfOffThread(new Runnable() {
+                @Override
+                public void run() {
+                    removeHandleShapes(copy);
+                }
+            })) {
+                int count = 0;
+                for (long handle : copy) {
+                    if (handleShapes.contains(handle)) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        }
+        Shape[] removed = new Shape[handles.length];
+        int count = 0;
+        for (long handle : handles) {
+            Shape shape = handleShapes.remove(handle);
+            if (shape != null) {
+                if (spatialIndex != null) {
+                    spatialIndex.remove(shape);
+                }
+                removed[count++] = shape;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            removed[i].onRemove(this);
+        }
+        return count;
+    }
+
+    /**
+     * Unregister all Shapes registered to this API instance by handle,
+     * invalidating every handle. Unlike clearShapes, this doesn't need to
+     * hash the shapes.
+     * <p>
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
+     * only call this method from the main Minecraft thread. A queued clear
+     * only unregisters the shapes whose handles exist at the time of the
+     * call, so shapes added by handle afterwards are kept.
+     * 
+     * @see #clearShapes
+     * @return the instance (for method chaining)
+     */
+    public LibShapeDraw clearHandleShapes() {
+        if (commandQueueing && LSDController.getInstance().isOffThread()) {
+            final long[] handles = handleShapes.getHandles();
+            if (LSDController.getInstance().queueIfOffThread(new Runnable() {
+                @Override
+                public void run() {
+                    removeHandleShapes(handles);
+                }
+            })) {
+                return this;
+            }
+        }
+        List<Shape> prev = handleShapes.clear();
+        if (spatialIndex != null) {
+            for (Shape shape : prev) {
+                spatialIndex.remove(shape);
+            }
+        }
         for (Shape shape : prev) {
             shape.onRemove(this);
         }
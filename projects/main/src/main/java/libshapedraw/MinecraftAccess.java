@@ -1,5 +1,8 @@
 package libshapedraw;
 
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
 import libshapedraw.primitive.ReadonlyVector3;
 
 /**
@@ -26,9 +29,47 @@ public interface MinecraftAccess {
     /** Tessellator.instance.addVertex */
     public MinecraftAccess addVertex(ReadonlyVector3 coords);
 
+    /**
+     * Tessellator.instance.addVertex, once per vertex. Much cheaper than
+     * calling addVertex for each vertex of a large shape.
+     * @param xyz packed x/y/z coordinates
+     * @param offset the array index of the first vertex's x coordinate
+     * @param count the number of vertices to add
+     */
+    public MinecraftAccess addVertices(double[] xyz, int offset, int count);
+
+    /**
+     * Tessellator.instance.addVertex, once per vertex of the packed x/y/z
+     * coordinates between the buffer's position and limit. The buffer's
+     * position is not changed.
+     */
+    public MinecraftAccess addVertices(DoubleBuffer xyz);
+
+    /** @see #addVertices(DoubleBuffer) */
+    public MinecraftAccess addVertices(FloatBuffer xyz);
+
+    /**
+     * Tessellator.instance.setColorRGBA_F. Every vertex added after this in
+     * the current drawing session has this color, rather than the current
+     * OpenGL color. The OpenGL color is undefined once the session is drawn.
+     */
+    public MinecraftAccess setColor(float red, float green, float blue, float alpha);
+
+    /** setColor followed by addVertex. */
+    public MinecraftAccess addVertexWithColor(double x, double y, double z, float red, float green, float blue, float alpha);
+
     /** Tessellator.instance.draw */
     public MinecraftAccess finishDrawing();
 
+    /**
+     * The maximum number of vertices that Tessellator.instance can hold in a
+     * single drawing session. Submitting more than this between startDrawing
+     * and finishDrawing either breaks up line strips or forces the
+     * Tessellator to reallocate its buffer, so large shapes should split
+     * their vertices across multiple drawing sessions.
+     */
+    public int getTessellatorCapacity();
+
     /** RenderHelper.enableStandardItemLighting */
     public MinecraftAccess enableStandardItemLighting();
 
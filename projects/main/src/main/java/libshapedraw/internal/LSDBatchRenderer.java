@@ -0,0 +1,235 @@
+package libshapedraw.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.primitive.ReadonlyColor;
+import libshapedraw.primitive.ReadonlyLineStyle;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeShape;
+import libshapedraw.shape.XrayShape;
+
+/**
+ * Internal class. Merges the line segments of every eligible WireframeShape
+ * that shares an identical line style into a single GL_LINES drawing session
+ * (two if the style has a secondary color).
+ * <p>
+ * Thousands of small shapes would otherwise cost thousands of Tessellator
+ * draws and redundant OpenGL state changes per frame.
+ * <p>
+ * A Shape is eligible if it's a visible WireframeShape with no
+ * ShapeTransforms, doesn't override onPreRender/onPostRender, reports
+ * itself as batchable, and isn't in retained mode. Every other Shape is
+ * rendered normally, in order, after the batched shapes.
+ * <p>
+ * Each batch is itself a Shape, so the controller can render the result of
+ * {@link #batch} the same way it renders any other list of shapes. The
+ * batches remain valid until the next call to batch.
+ */
+public class LSDBatchRenderer {
+    private final LinkedHashMap<StyleKey, Batch> batches = new LinkedHashMap<StyleKey, Batch>();
+    private final ArrayList<Batch> unusedBatches = new ArrayList<Batch>();
+    private final ArrayList<Shape> result = new ArrayList<Shape>();
+    private final ArrayList<Shape> unbatched = new ArrayList<Shape>();
+    private final StyleKey probe = new StyleKey();
+
+    /**
+     * Render all shapes in the collection, batching where possible.
+     */
+    public void render(MinecraftAccess mc, Iterable<Shape> shapes) {
+        for (Shape shape : batch(mc, shapes)) {
+            shape.render(mc);
+        }
+    }
+
+    /**
+     * Record all eligible shapes in the collection into batches.
+     * @return a list of shapes to render in place of the collection: the
+     *         batches followed by the shapes that couldn't be batched.
+     */
+    public List<Shape> batch(MinecraftAccess mc, Iterable<Shape> shapes) {
+        reset();
+        for (Shape shape : shapes) {
+            if (shape == null || !shape.isVisible()) {
+                continue;
+            }
+            if (!isBatchable(shape) || !record(mc, (WireframeShape) shape)) {
+                unbatched.add(shape);
+            }
+        }
+        for (Batch batch : batches.values()) {
+            if (batch.recorder.getVertexCount() > 0) {
+                result.add(batch);
+            }
+        }
+        result.addAll(unbatched);
+        unbatched.clear();
+        return result;
+    }
+
+    /** Release the previous frame's state, keeping the buffers for reuse. */
+    private void reset() {
+        for (Batch batch : batches.values()) {
+            batch.style = null;
+            batch.recorder.clear();
+            unusedBatches.add(batch);
+        }
+        batches.clear();
+        result.clear();
+    }
+
+    /**
+     * @return false if the shape drew something that couldn't be batched, in
+     *         which case none of its vertices were kept.
+     */
+    private boolean record(MinecraftAccess mc, WireframeShape shape) {
+        ReadonlyLineStyle style = shape.getEffectiveLineStyle();
+        // Shapes past their max xray distance go in a batch without one.
+        boolean xray = shape.isVisibleThroughTerrain();
+        Batch batch = batches.get(probe.set(style, xray));
+        boolean isNewBatch = batch == null;
+        if (isNewBatch) {
+            batch = unusedBatches.isEmpty() ? new Batch(mc) : unusedBatches.remove(unusedBatches.size() - 1);
+            batch.recorder.setDelegate(mc);
+            batch.style = style;
+            batch.xray = xray;
+        }
+
+        LSDVertexRecorder recorder = batch.recorder;
+        if (shape.isRelativeToOrigin()) {
+            ReadonlyVector3 origin = shape.getOriginReadonly();
+            recorder.setOffset(origin.getX(), origin.getY(), origin.getZ());
+        } else {
+            recorder.setOffset(0.0, 0.0, 0.0);
+        }
+        int marker = recorder.mark();
+        shape.renderLinesUnstyled(recorder);
+        if (recorder.isFailed()) {
+            recorder.rollback(marker);
+            if (isNewBatch) {
+                unusedBatches.add(batch);
+            }
+            return false;
+        }
+        if (isNewBatch) {
+            batches.put(new StyleKey().set(style, xray), batch);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the shape's vertices can safely be merged with other
+     *         shapes' vertices.
+     */
+    public boolean isBatchable(Shape shape) {
+        if (!(shape instanceof WireframeShape) ||
+                !((WireframeShape) shape).isBatchable() ||
+                ((WireframeShape) shape).isRetainedMode() ||
+                shape.hasTransforms()) {
+            return false;
+        }
+        LSDShapeInfo info = LSDShapeInfo.get(shape.getClass());
+        return info.isWireframeRenderShape() && !info.overridesRenderHooks();
+    }
+
+    /**
+     * All the line segments sharing a single line style, in absolute world
+     * coordinates.
+     */
+    private static class Batch extends Shape implements XrayShape {
+        private final LSDVertexRecorder recorder;
+        private ReadonlyLineStyle style;
+        private boolean xray;
+
+        public Batch(MinecraftAccess mc) {
+            super(Vector3.ZEROS.copy());
+            setRelativeToOrigin(false);
+            recorder = new LSDVertexRecorder(mc);
+        }
+
+        @Override
+        protected void renderShape(MinecraftAccess mc) {
+            renderShapeMain(mc);
+            renderShapeSecondary(mc);
+        }
+
+        @Override
+        protected void renderShapeMain(MinecraftAccess mc) {
+            style.glApply(false);
+            recorder.replay(mc);
+        }
+
+        @Override
+        protected void renderShapeSecondary(MinecraftAccess mc) {
+            if (xray && style.glApply(true)) {
+                recorder.replay(mc);
+            }
+        }
+
+        @Override
+        public ReadonlyColor getMainColorReadonly() {
+            return style.getMainReadonlyColor();
+        }
+
+        @Override
+        public ReadonlyColor getSecondaryColorReadonly() {
+            return style.getSecondaryReadonlyColor();
+        }
+
+        @Override
+        public boolean isVisibleThroughTerrain() {
+            return xray;
+        }
+    }
+
+    /**
+     * A snapshot of the line style properties that affect OpenGL state.
+     * Unlike LineStyle.equals, comparing these is cheap.
+     */
+    private static class StyleKey {
+        private int mainRGBA;
+        private int mainWidth;
+        private int secondaryRGBA;
+        private int secondaryWidth;
+        private boolean hasSecondary;
+
+        public StyleKey set(ReadonlyLineStyle style, boolean xray) {
+            mainRGBA = style.getMainReadonlyColor().getRGBA();
+            mainWidth = Float.floatToIntBits(style.getMainWidth());
+            hasSecondary = xray && style.hasSecondaryColor();
+            if (hasSecondary) {
+                ReadonlyColor secondary = style.getSecondaryReadonlyColor();
+                secondaryRGBA = secondary.getRGBA();
+                secondaryWidth = Float.floatToIntBits(style.getSecondaryWidth());
+            } else {
+                secondaryRGBA = 0;
+                secondaryWidth = 0;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof StyleKey)) {
+                return false;
+            }
+            StyleKey o = (StyleKey) other;
+            return mainRGBA == o.mainRGBA && mainWidth == o.mainWidth &&
+                    hasSecondary == o.hasSecondary &&
+                    secondaryRGBA == o.secondaryRGBA && secondaryWidth == o.secondaryWidth;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = mainRGBA;
+            h = 31*h + mainWidth;
+            h = 31*h + secondaryRGBA;
+            h = 31*h + secondaryWidth;
+            return hasSecondary ? h : ~h;
+        }
+    }
+}
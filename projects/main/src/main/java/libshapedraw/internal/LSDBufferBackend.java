@@ -0,0 +1,29 @@
+package libshapedraw.internal;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Internal interface. The OpenGL calls needed to manage and draw vertex
+ * buffer objects, separated out so that tests can substitute a recording
+ * implementation for the real thing.
+ * 
+ * @see LSDVertexBuffer#setBackend
+ */
+public interface LSDBufferBackend {
+    /** @return true if vertex buffer objects can be used. */
+    public boolean isSupported();
+
+    /** @return the new buffer's name, or 0 if it couldn't be created. */
+    public int createBuffer();
+
+    /**
+     * Replace the buffer's contents with the packed x/y/z coordinates between
+     * the FloatBuffer's position and limit.
+     */
+    public void uploadBuffer(int buffer, FloatBuffer vertices);
+
+    /** Draw the first vertexCount vertices of the buffer. */
+    public void drawBuffer(int buffer, int mode, int vertexCount);
+
+    public void deleteBuffer(int buffer);
+}
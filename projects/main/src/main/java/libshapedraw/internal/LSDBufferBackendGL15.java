@@ -0,0 +1,62 @@
+package libshapedraw.internal;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * Internal class. Vertex buffer objects as provided by OpenGL 1.5.
+ */
+public class LSDBufferBackendGL15 implements LSDBufferBackend {
+    private final IntBuffer names = BufferUtils.createIntBuffer(1);
+    private Boolean supported;
+
+    @Override
+    public boolean isSupported() {
+        if (supported == null) {
+            ContextCapabilities caps = GLContext.getCapabilities();
+            if (caps == null) {
+                // No context yet; check again later.
+                return false;
+            }
+            supported = caps.OpenGL15;
+        }
+        return supported;
+    }
+
+    @Override
+    public int createBuffer() {
+        names.clear();
+        GL15.glGenBuffers(names);
+        return names.get(0);
+    }
+
+    @Override
+    public void uploadBuffer(int buffer, FloatBuffer vertices) {
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffer);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertices, GL15.GL_STATIC_DRAW);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public void drawBuffer(int buffer, int mode, int vertexCount) {
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffer);
+        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glVertexPointer(3, GL11.GL_FLOAT, 0, 0);
+        GL11.glDrawArrays(mode, 0, vertexCount);
+        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        names.clear();
+        names.put(0, buffer);
+        GL15.glDeleteBuffers(names);
+    }
+}
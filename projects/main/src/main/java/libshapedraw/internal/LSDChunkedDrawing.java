@@ -0,0 +1,70 @@
+package libshapedraw.internal;
+
+import libshapedraw.MinecraftAccess;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Internal class. Submit large numbers of vertices to the Tessellator without
+ * exceeding its {@link MinecraftAccess#getTessellatorCapacity capacity},
+ * splitting them into as many drawing sessions as needed.
+ * <p>
+ * GL_LINE_STRIP sessions repeat the previous session's last vertex so the
+ * strip stays continuous. GL_LINES and GL_TRIANGLES sessions always hold
+ * whole line segments and triangles. GL_POINTS can be split anywhere. Any
+ * other mode is drawn in a single session, however large.
+ */
+public class LSDChunkedDrawing {
+    /**
+     * @return the maximum number of vertices to submit in a single drawing
+     *         session of the specified mode, at least 2 (3 for
+     *         GL_TRIANGLES).
+     */
+    public static int getMaxSessionVertices(MinecraftAccess mc, int mode) {
+        int max = mc.getTessellatorCapacity();
+        if (mode == GL11.GL_LINES) {
+            max -= max % 2;
+        } else if (mode == GL11.GL_TRIANGLES) {
+            return Math.max(3, max - max % 3);
+        }
+        return Math.max(2, max);
+    }
+
+    /** @return true if sessions of the specified mode can be split. */
+    public static boolean isSplittable(int mode) {
+        return mode == GL11.GL_LINES || mode == GL11.GL_LINE_STRIP ||
+                mode == GL11.GL_POINTS || mode == GL11.GL_TRIANGLES;
+    }
+
+    /**
+     * Draw the vertices in one or more drawing sessions of the specified
+     * mode.
+     * @param xyz packed x/y/z coordinates
+     * @param offset the array index of the first vertex's x coordinate
+     * @param count the number of vertices to draw
+     */
+    public static void draw(MinecraftAccess mc, int mode, double[] xyz, int offset, int count) {
+        if (count <= 0) {
+            return;
+        }
+        final int max = getMaxSessionVertices(mc, mode);
+        if (count <= max || !isSplittable(mode)) {
+            mc.startDrawing(mode);
+            mc.addVertices(xyz, offset, count);
+            mc.finishDrawing();
+            return;
+        }
+        final int overlap = mode == GL11.GL_LINE_STRIP ? 1 : 0;
+        int first = 0;
+        while (true) {
+            final int n = Math.min(max, count - first);
+            mc.startDrawing(mode);
+            mc.addVertices(xyz, offset + 3*first, n);
+            mc.finishDrawing();
+            if (first + n >= count) {
+                return;
+            }
+            first += n - overlap;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package libshapedraw.internal;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,8 +19,11 @@ import libshapedraw.event.LSDPreRenderEvent;
 import libshapedraw.event.LSDRespawnEvent;
 import libshapedraw.internal.LSDUtil.FileLogger;
 import libshapedraw.internal.LSDUtil.NullLogger;
+import libshapedraw.primitive.ReadonlyBoundingBox;
 import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeShape;
+import libshapedraw.shape.XrayShape;
 
 import org.lwjgl.opengl.GL11;
 
@@ -32,6 +40,16 @@ public class LSDController {
     private LSDUpdateCheck updateCheck;
     private boolean initialized;
     private long lastDump;
+    private final Map<LibShapeDraw, LSDBatchRenderer> batchRenderers;
+    private final Map<LibShapeDraw, LSDSpatialIndex> spatialIndexes;
+    private final ArrayList<Shape> deferredSecondaryPasses;
+    private final ArrayList<Shape> visibleShapes;
+    private final ArrayList<Shape> indexedShapes;
+    private final LSDFrustum frustum;
+    private final ConcurrentLinkedQueue<Runnable> commands;
+    private volatile Thread renderThread;
+    private long shapesEpoch;
+    private boolean frustumCulling;
 
     private LSDController() {
         if (LSDGlobalSettings.isLoggingEnabled()) {
@@ -41,6 +59,13 @@ public class LSDController {
         }
         apiInstances = new LinkedHashSet<LibShapeDraw>();
         topApiInstanceId = 0;
+        batchRenderers = new HashMap<LibShapeDraw, LSDBatchRenderer>();
+        spatialIndexes = new HashMap<LibShapeDraw, LSDSpatialIndex>();
+        deferredSecondaryPasses = new ArrayList<Shape>();
+        visibleShapes = new ArrayList<Shape>();
+        indexedShapes = new ArrayList<Shape>();
+        frustum = new LSDFrustum();
+        commands = new ConcurrentLinkedQueue<Runnable>();
 
         TridentConfig trident = TridentConfig.getInstance();
         trident.addPropertyInterpolator(new ReadonlyColorPropertyInterpolator());
@@ -68,6 +93,44 @@ public class LSDController {
         return getInstance().minecraftAccess;
     }
 
+    /**
+     * @return the view frustum, in world coordinates, as of the start of the
+     *         current (or most recent) render.
+     */
+    public LSDFrustum getFrustum() {
+        return frustum;
+    }
+
+    /**
+     * @return true while rendering the shapes of an API instance with
+     *         {@link LibShapeDraw#setFrustumCulling frustum culling} enabled.
+     *         Shapes that cull parts of themselves, such as InstancedShape,
+     *         only do so while this is true.
+     */
+    public boolean isFrustumCulling() {
+        return frustumCulling;
+    }
+
+    /**
+     * Override the value returned by isFrustumCulling until the next time
+     * the controller renders an API instance's shapes. Only intended for
+     * testing.
+     */
+    public void setFrustumCulling(boolean frustumCulling) {
+        this.frustumCulling = frustumCulling;
+    }
+
+    /**
+     * @return a number that changes at the start of every render and after
+     *         every batch of event listeners, i.e. whenever shapes may have
+     *         been modified. While rendering, shapes can compare it to a
+     *         saved value to tell whether data gathered earlier in the same
+     *         frame, such as while culling, is still current.
+     */
+    public long getShapesEpoch() {
+        return shapesEpoch;
+    }
+
     /**
      * @return true if mod_LibShapeDraw has been instantiated and is linked up
      *         to the controller
@@ -88,10 +151,53 @@ public class LSDController {
             throw new IllegalStateException("multiple initializations of controller");
         }
         this.minecraftAccess = minecraftAccess;
+        renderThread = Thread.currentThread();
         initialized = true;
         log.info(getClass().getName() + " initialized by " + minecraftAccess.getClass().getName());
     }
 
+    /**
+     * Called by API methods that support command queueing. If the current
+     * thread isn't the one Minecraft renders on, queue the command to run
+     * at the start of the next render or game tick instead. Never blocks.
+     * @return true if the command was queued, false if the caller should go
+     *         ahead and apply the change immediately.
+     */
+    public boolean queueIfOffThread(Runnable command) {
+        if (!isOffThread()) {
+            return false;
+        }
+        commands.add(command);
+        return true;
+    }
+
+    /**
+     * @return true if the current thread isn't the one Minecraft renders on,
+     *         i.e. if queueIfOffThread would queue a command. Lets callers
+     *         capture state for a command only when it will be queued.
+     */
+    public boolean isOffThread() {
+        final Thread thread = renderThread;
+        return thread != null && thread != Thread.currentThread();
+    }
+
+    /**
+     * Apply all changes queued by other threads, in the order they were
+     * made. Commands queued while this is running are applied too.
+     */
+    private void runQueuedCommands() {
+        renderThread = Thread.currentThread();
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                // Don't let one bad change hold up the rest.
+                log.log(Level.WARNING, "queued command failed", e);
+            }
+        }
+    }
+
     /**
      * Called by LibShapeDraw's constructor.
      */
@@ -111,12 +217,36 @@ public class LSDController {
      */
     public boolean unregisterApiInstance(LibShapeDraw apiInstance) {
         boolean result = apiInstances.remove(apiInstance);
+        batchRenderers.remove(apiInstance);
+        spatialIndexes.remove(apiInstance);
         if (result) {
             log.info("unregistered API instance " + apiInstance.getInstanceId());
         }
         return result;
     }
 
+    /**
+     * Called by LibShapeDraw when spatial indexing is enabled or disabled.
+     * The API instance keeps the index up to date as shapes are added and
+     * removed; the controller updates it once per frame and uses it to cull.
+     * @param spatialIndex null if spatial indexing is disabled
+     */
+    public void setSpatialIndex(LibShapeDraw apiInstance, LSDSpatialIndex spatialIndex) {
+        if (spatialIndex == null) {
+            spatialIndexes.remove(apiInstance);
+        } else {
+            spatialIndexes.put(apiInstance, spatialIndex);
+        }
+    }
+
+    /**
+     * @return the API instance's spatial index, or null if spatial indexing
+     *         is disabled.
+     */
+    public LSDSpatialIndex getSpatialIndex(LibShapeDraw apiInstance) {
+        return spatialIndexes.get(apiInstance);
+    }
+
     /**
      * Called by mod_LibShapeDraw.
      * Dispatch the respawn event.
@@ -137,12 +267,14 @@ public class LSDController {
 
     /**
      * Called by mod_LibShapeDraw.
+     * Apply queued commands.
      * Periodically dump API state to log if configured to do so.
      * Dispatch gameTick events.
      * Handle update check.
      */
     public void gameTick(ReadonlyVector3 playerCoords) {
         log.finer("gameTick");
+        runQueuedCommands();
 
         // Debug dump.
         if (LSDGlobalSettings.getLoggingDebugDumpInterval() > 0) {
@@ -179,16 +311,21 @@ public class LSDController {
 
     /**
      * Called by mod_LibShapeDraw.
+     * Apply queued commands.
      * Dispatch preRender events.
-     * Render all registered shapes.
+     * Render all registered shapes that are in view.
      */
     public void render(ReadonlyVector3 playerCoords, boolean isGuiHidden) {
         log.finer("render");
+        runQueuedCommands();
+        shapesEpoch++;
 
         // Initialize OpenGL for our rendering.
         int origDepthFunc = GL11.glGetInteger(GL11.GL_DEPTH_FUNC);
         GL11.glPushMatrix();
         GL11.glTranslated(-playerCoords.getX(), -playerCoords.getY(), -playerCoords.getZ());
+        LSDGLState.begin();
+        frustum.update();
 
         // Dispatch prerender event and render.
         for (LibShapeDraw apiInstance : apiInstances) {
@@ -200,20 +337,45 @@ public class LSDController {
                         listener.onPreRender(event);
                     }
                 }
+                // Listeners are free to make arbitrary OpenGL calls.
+                LSDGLState.invalidate();
+                shapesEpoch++;
+            }
+            final LSDSpatialIndex spatialIndex = spatialIndexes.get(apiInstance);
+            if (spatialIndex != null) {
+                // Listeners may well have moved some shapes.
+                minecraftAccess.profilerEndStartSection("index");
+                spatialIndex.update();
             }
             minecraftAccess.profilerEndStartSection("render");
             if (apiInstance.isVisible() && (!isGuiHidden || apiInstance.isVisibleWhenHidingGui())) {
-                for (Shape shape : apiInstance.getShapes()) {
-                    if (shape != null) {
-                        shape.render(minecraftAccess);
+                frustumCulling = apiInstance.isFrustumCulling();
+                Iterable<Shape> shapes = cull(apiInstance, spatialIndex, playerCoords);
+                if (apiInstance.isParallelGeometry()) {
+                    startVertexCacheBuilds(shapes);
+                }
+                if (apiInstance.isBatchRendering()) {
+                    shapes = getBatchRenderer(apiInstance).batch(minecraftAccess, shapes);
+                }
+                if (apiInstance.isDeferredXrayPass()) {
+                    renderMainPasses(shapes);
+                } else {
+                    for (Shape shape : shapes) {
+                        if (shape != null) {
+                            shape.render(minecraftAccess);
+                        }
                     }
                 }
             }
             minecraftAccess.profilerEndSection().profilerEndSection();
         }
+        // Deferred secondary passes can belong to any API instance.
+        frustumCulling = false;
+        renderSecondaryPasses();
 
         // Revert OpenGL settings so we don't impact any elements Minecraft has
         // left to render.
+        LSDGLState.end();
         GL11.glPopMatrix();
         GL11.glDepthMask(true);
         GL11.glDepthFunc(origDepthFunc);
@@ -221,6 +383,107 @@ public class LSDController {
         GL11.glDisable(GL11.GL_BLEND);
     }
 
+    /**
+     * Update the render distance of each of the API instance's shapes.
+     * @return the shapes that are visible, at least partially inside the view
+     *         frustum if frustum culling is enabled, and within render
+     *         distance. The list is reused.
+     */
+    private List<Shape> cull(LibShapeDraw apiInstance, LSDSpatialIndex spatialIndex, ReadonlyVector3 playerCoords) {
+        final double maxRenderDistance = apiInstance.getMaxRenderDistance();
+        final boolean frustumCulling = apiInstance.isFrustumCulling();
+        visibleShapes.clear();
+        if (frustumCulling && spatialIndex != null) {
+            indexedShapes.clear();
+            cull(spatialIndex.findInView(frustum, playerCoords, maxRenderDistance, indexedShapes),
+                    playerCoords, maxRenderDistance, true);
+        } else {
+            cull(apiInstance.getShapes(), playerCoords, maxRenderDistance, frustumCulling);
+            cull(apiInstance.getHandleShapes(), playerCoords, maxRenderDistance, frustumCulling);
+        }
+        return visibleShapes;
+    }
+
+    private void cull(Iterable<Shape> candidates, ReadonlyVector3 playerCoords, double maxRenderDistance,
+            boolean frustumCulling) {
+        for (Shape shape : candidates) {
+            if (shape == null || !shape.isVisible()) {
+                continue;
+            }
+            ReadonlyBoundingBox bounds = shape.getBounds();
+            if (frustumCulling && !frustum.isVisible(bounds)) {
+                continue;
+            }
+            double distance = bounds == null ? 0.0 : bounds.getDistance(playerCoords);
+            if (distance > maxRenderDistance || distance > shape.getMaxRenderDistance()) {
+                continue;
+            }
+            shape.setRenderDistance(distance);
+            visibleShapes.add(shape);
+        }
+    }
+
+    /**
+     * Hand the out-of-date vertex caches of the visible shapes to worker
+     * threads, to be picked up as each shape is rendered.
+     */
+    private void startVertexCacheBuilds(Iterable<Shape> shapes) {
+        for (Shape shape : shapes) {
+            if (shape instanceof WireframeShape) {
+                ((WireframeShape) shape).startVertexCacheBuild(minecraftAccess);
+            }
+        }
+    }
+
+    private LSDBatchRenderer getBatchRenderer(LibShapeDraw apiInstance) {
+        LSDBatchRenderer batchRenderer = batchRenderers.get(apiInstance);
+        if (batchRenderer == null) {
+            batchRenderer = new LSDBatchRenderer();
+            batchRenderers.put(apiInstance, batchRenderer);
+        }
+        return batchRenderer;
+    }
+
+    /**
+     * Render the main pass of each shape with the depth function pinned,
+     * queuing up the secondary passes for later.
+     */
+    private void renderMainPasses(Iterable<Shape> shapes) {
+        LSDGLState.pinDepthFunc(GL11.GL_LEQUAL);
+        for (Shape shape : shapes) {
+            if (shape == null || !shape.isVisible()) {
+                continue;
+            }
+            if (LSDShapeInfo.get(shape.getClass()).hasSplitRenderPasses()) {
+                shape.renderMainPass(minecraftAccess);
+                if (!(shape instanceof XrayShape) || ((XrayShape) shape).isVisibleThroughTerrain()) {
+                    deferredSecondaryPasses.add(shape);
+                }
+            } else {
+                // The shape is going to set the depth function however it
+                // likes.
+                LSDGLState.unpinDepthFunc();
+                shape.render(minecraftAccess);
+                LSDGLState.pinDepthFunc(GL11.GL_LEQUAL);
+            }
+        }
+        LSDGLState.unpinDepthFunc();
+    }
+
+    private void renderSecondaryPasses() {
+        if (deferredSecondaryPasses.isEmpty()) {
+            return;
+        }
+        minecraftAccess.profilerStartSection("xray");
+        LSDGLState.pinDepthFunc(GL11.GL_GREATER);
+        for (Shape shape : deferredSecondaryPasses) {
+            shape.renderSecondaryPass(minecraftAccess);
+        }
+        LSDGLState.unpinDepthFunc();
+        deferredSecondaryPasses.clear();
+        minecraftAccess.profilerEndSection();
+    }
+
     /**
      * Log all the things.
      */
@@ -242,6 +505,21 @@ public class LSDController {
             line.append(INDENT).append(INDENT).append("visibleWhenHidingGui=");
             line.append(apiInstance.isVisibleWhenHidingGui()).append('\n');
 
+            line.append(INDENT).append(INDENT).append("batchRendering=");
+            line.append(apiInstance.isBatchRendering()).append('\n');
+
+            line.append(INDENT).append(INDENT).append("deferredXrayPass=");
+            line.append(apiInstance.isDeferredXrayPass()).append('\n');
+
+            line.append(INDENT).append(INDENT).append("parallelGeometry=");
+            line.append(apiInstance.isParallelGeometry()).append('\n');
+
+            line.append(INDENT).append(INDENT).append("maxRenderDistance=");
+            line.append(apiInstance.getMaxRenderDistance()).append('\n');
+
+            line.append(INDENT).append(INDENT).append("spatialIndexing=");
+            line.append(apiInstance.isSpatialIndexing()).append('\n');
+
             line.append(INDENT).append(INDENT).append("shapes=");
             if (apiInstance.getShapes().size() == 0) {
                 line.append("0\n");
@@ -252,6 +530,9 @@ public class LSDController {
                 }
             }
 
+            line.append(INDENT).append(INDENT).append("handleShapes=");
+            line.append(apiInstance.getHandleShapes().size()).append('\n');
+
             line.append(INDENT).append(INDENT).append("eventListeners=");
             if (apiInstance.getEventListeners().size() == 0) {
                 line.append("0\n");
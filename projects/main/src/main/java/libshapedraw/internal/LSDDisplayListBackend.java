@@ -0,0 +1,25 @@
+package libshapedraw.internal;
+
+/**
+ * Internal interface. The OpenGL calls needed to compile and draw display
+ * lists, separated out so that tests can substitute a recording
+ * implementation for the real thing.
+ * 
+ * @see LSDMeshCache#setBackend
+ */
+public interface LSDDisplayListBackend {
+    /**
+     * Create a new display list and start compiling the OpenGL calls that
+     * follow into it.
+     * @return the new list's name, or 0 if it couldn't be created.
+     */
+    public int beginList();
+
+    /** Finish compiling the list started by beginList. */
+    public void endList();
+
+    /** Draw the list, scaled along each axis. */
+    public void drawList(int list, double scaleX, double scaleY, double scaleZ);
+
+    public void deleteList(int list);
+}
@@ -0,0 +1,35 @@
+package libshapedraw.internal;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Internal class. Display lists as provided by OpenGL 1.1.
+ */
+public class LSDDisplayListBackendGL11 implements LSDDisplayListBackend {
+    @Override
+    public int beginList() {
+        final int list = GL11.glGenLists(1);
+        if (list != 0) {
+            GL11.glNewList(list, GL11.GL_COMPILE);
+        }
+        return list;
+    }
+
+    @Override
+    public void endList() {
+        GL11.glEndList();
+    }
+
+    @Override
+    public void drawList(int list, double scaleX, double scaleY, double scaleZ) {
+        GL11.glPushMatrix();
+        GL11.glScaled(scaleX, scaleY, scaleZ);
+        GL11.glCallList(list);
+        GL11.glPopMatrix();
+    }
+
+    @Override
+    public void deleteList(int list) {
+        GL11.glDeleteLists(list, 1);
+    }
+}
@@ -0,0 +1,23 @@
+package libshapedraw.internal;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Internal interface. The OpenGL calls needed to draw indexed geometry from
+ * client-side vertex arrays, separated out so that tests can substitute a
+ * recording implementation for the real thing.
+ * 
+ * @see LSDIndexedMesh#setBackend
+ */
+public interface LSDElementBackend {
+    /** @return true if glDrawElements can be used. */
+    public boolean isSupported();
+
+    /**
+     * Draw the vertices referenced by the indices between the IntBuffer's
+     * position and limit.
+     * @param vertices packed x/y/z coordinates
+     */
+    public void drawElements(int mode, FloatBuffer vertices, IntBuffer indices);
+}
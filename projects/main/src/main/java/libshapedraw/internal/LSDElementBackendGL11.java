@@ -0,0 +1,26 @@
+package libshapedraw.internal;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * Internal class. Client-side vertex arrays as provided by OpenGL 1.1.
+ */
+public class LSDElementBackendGL11 implements LSDElementBackend {
+    @Override
+    public boolean isSupported() {
+        // No context, e.g. while shutting down: use the Tessellator instead.
+        return GLContext.getCapabilities() != null;
+    }
+
+    @Override
+    public void drawElements(int mode, FloatBuffer vertices, IntBuffer indices) {
+        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glVertexPointer(3, 0, vertices);
+        GL11.glDrawElements(mode, indices);
+        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+    }
+}
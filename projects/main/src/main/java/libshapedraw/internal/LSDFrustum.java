@@ -0,0 +1,108 @@
+package libshapedraw.internal;
+
+import java.nio.FloatBuffer;
+
+import libshapedraw.primitive.ReadonlyBoundingBox;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Internal class. The six clipping planes of the camera's view frustum, in
+ * world coordinates, extracted from the current OpenGL modelview and
+ * projection matrices.
+ * <p>
+ * This is the same technique Minecraft's own ClippingHelper uses to cull
+ * chunks and entities.
+ */
+public class LSDFrustum {
+    private final FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+    private final float[] modelview = new float[16];
+    private final float[] projection = new float[16];
+    private final double[][] planes = new double[6][4];
+    private boolean valid;
+
+    /**
+     * Read the current matrices from OpenGL. The modelview matrix should
+     * already include the translation to world coordinates.
+     */
+    public LSDFrustum update() {
+        buffer.clear();
+        GL11.glGetFloat(GL11.GL_MODELVIEW_MATRIX, buffer);
+        buffer.get(modelview);
+        buffer.clear();
+        GL11.glGetFloat(GL11.GL_PROJECTION_MATRIX, buffer);
+        buffer.get(projection);
+        return update(modelview, projection);
+    }
+
+    /**
+     * Set the frustum from column-major 4x4 matrices, the same layout OpenGL
+     * uses.
+     */
+    public LSDFrustum update(float[] modelview, float[] projection) {
+        double[] clip = new double[16];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                clip[i*4 + j] =
+                        modelview[i*4    ]*projection[     j] +
+                        modelview[i*4 + 1]*projection[ 4 + j] +
+                        modelview[i*4 + 2]*projection[ 8 + j] +
+                        modelview[i*4 + 3]*projection[12 + j];
+            }
+        }
+        setPlane(0, clip, 0, -1.0); // right
+        setPlane(1, clip, 0,  1.0); // left
+        setPlane(2, clip, 1,  1.0); // bottom
+        setPlane(3, clip, 1, -1.0); // top
+        setPlane(4, clip, 2, -1.0); // far
+        setPlane(5, clip, 2,  1.0); // near
+
+        // If the matrices are garbage (e.g., no OpenGL context) don't cull
+        // anything.
+        valid = false;
+        for (double[] plane : planes) {
+            if (plane[0] != 0.0 || plane[1] != 0.0 || plane[2] != 0.0) {
+                valid = true;
+                break;
+            }
+        }
+        return this;
+    }
+
+    private void setPlane(int index, double[] clip, int column, double sign) {
+        double[] plane = planes[index];
+        plane[0] = clip[ 3] + sign*clip[     column];
+        plane[1] = clip[ 7] + sign*clip[ 4 + column];
+        plane[2] = clip[11] + sign*clip[ 8 + column];
+        plane[3] = clip[15] + sign*clip[12 + column];
+    }
+
+    /** @return false if the matrices were unusable, disabling culling. */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return true if any part of the box is potentially visible.
+     *         Null boxes (unknown bounds) are always visible.
+     */
+    public boolean isVisible(ReadonlyBoundingBox box) {
+        if (box == null || !valid) {
+            return true;
+        }
+        if (box.isEmpty()) {
+            return false;
+        }
+        for (double[] plane : planes) {
+            // Test the corner furthest along the plane's normal.
+            double x = plane[0] > 0.0 ? box.getMaxX() : box.getMinX();
+            double y = plane[1] > 0.0 ? box.getMaxY() : box.getMinY();
+            double z = plane[2] > 0.0 ? box.getMaxZ() : box.getMinZ();
+            if (plane[0]*x + plane[1]*y + plane[2]*z + plane[3] < 0.0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,243 @@
+package libshapedraw.internal;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Internal class. Funnels the OpenGL state changes made by the built-in Shapes
+ * and primitives, shadowing the current state so that redundant calls can be
+ * dropped.
+ * <p>
+ * Shape.glContextStandardSetup alone issues around ten state changes for
+ * every shape, and LineStyle.glApply adds more, even though consecutive
+ * shapes usually share the exact same state.
+ * <p>
+ * The shadow state is only trusted between {@link #begin} and {@link #end},
+ * i.e. while LSDController is rendering. Outside of that (e.g. a Shape being
+ * rendered manually), every call is passed straight through to OpenGL. Any
+ * code that may have changed the OpenGL state without going through this
+ * class (event listeners, custom Shapes, custom ShapeTransforms) must be
+ * followed by a call to {@link #invalidate}.
+ * <p>
+ * The depth function can also be pinned for an entire render pass: when the
+ * controller renders every shape's main pass followed by every shape's
+ * secondary (xray) pass, the depth function only has to be set once per pass
+ * rather than twice per shape.
+ * <p>
+ * The color can be pinned the same way, tinting everything a shape draws
+ * without modifying the shape, as InstancedShape does for per-instance
+ * colors. Per-vertex colors are unaffected.
+ */
+public class LSDGLState {
+    private static final int UNKNOWN = -1;
+    private static final int[] CAPS = {
+        GL11.GL_BLEND,
+        GL11.GL_TEXTURE_2D,
+        GL11.GL_LIGHTING,
+        GL11.GL_LIGHT0,
+        GL11.GL_LIGHT1,
+        GL11.GL_COLOR_MATERIAL};
+
+    private static boolean active;
+    private static final int[] capEnabled = new int[CAPS.length];
+    private static int blendSrc;
+    private static int blendDst;
+    private static int depthFunc;
+    private static int pinnedDepthFunc = UNKNOWN;
+    private static boolean lineWidthKnown;
+    private static float lineWidth;
+    private static boolean pointSizeKnown;
+    private static float pointSize;
+    private static boolean colorKnown;
+    private static double red, green, blue, alpha;
+    private static boolean colorPinned;
+    private static long countSkipped;
+
+    /**
+     * Start trusting the shadow state. Everything is initially unknown.
+     */
+    public static void begin() {
+        invalidate();
+        active = true;
+    }
+
+    /**
+     * Stop trusting the shadow state, passing all calls straight through.
+     */
+    public static void end() {
+        invalidate();
+        unpinDepthFunc();
+        unpinColor();
+        active = false;
+    }
+
+    /** @return true if between begin and end. */
+    public static boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Forget the shadow state, forcing the next call of each type to reach
+     * OpenGL. Call this after running code that may have changed OpenGL
+     * state directly.
+     */
+    public static void invalidate() {
+        for (int i = 0; i < capEnabled.length; i++) {
+            capEnabled[i] = UNKNOWN;
+        }
+        blendSrc = UNKNOWN;
+        blendDst = UNKNOWN;
+        depthFunc = UNKNOWN;
+        lineWidthKnown = false;
+        pointSizeKnown = false;
+        colorKnown = false;
+    }
+
+    /**
+     * Forget the shadow color only. Call this after drawing vertices with
+     * their own colors, which leaves the OpenGL color undefined.
+     */
+    public static void invalidateColor() {
+        colorKnown = false;
+    }
+
+    /**
+     * @return the number of OpenGL calls that were dropped because they would
+     *         not have changed anything.
+     */
+    public static long getCountSkipped() {
+        return countSkipped;
+    }
+
+    private static int indexOfCap(int cap) {
+        for (int i = 0; i < CAPS.length; i++) {
+            if (CAPS[i] == cap) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static void glEnable(int cap) {
+        setCap(cap, 1);
+    }
+
+    public static void glDisable(int cap) {
+        setCap(cap, 0);
+    }
+
+    private static void setCap(int cap, int enabled) {
+        int i = indexOfCap(cap);
+        if (active && i >= 0 && capEnabled[i] == enabled) {
+            countSkipped++;
+            return;
+        }
+        if (enabled == 1) {
+            GL11.glEnable(cap);
+        } else {
+            GL11.glDisable(cap);
+        }
+        if (i >= 0) {
+            capEnabled[i] = enabled;
+        }
+    }
+
+    public static void glBlendFunc(int sfactor, int dfactor) {
+        if (active && blendSrc == sfactor && blendDst == dfactor) {
+            countSkipped++;
+            return;
+        }
+        GL11.glBlendFunc(sfactor, dfactor);
+        blendSrc = sfactor;
+        blendDst = dfactor;
+    }
+
+    /**
+     * Set the depth function, unless it is currently pinned.
+     */
+    public static void glDepthFunc(int func) {
+        if (pinnedDepthFunc != UNKNOWN || (active && depthFunc == func)) {
+            countSkipped++;
+            return;
+        }
+        GL11.glDepthFunc(func);
+        depthFunc = func;
+    }
+
+    /**
+     * Set the depth function and ignore any further requests to change it
+     * until unpinned.
+     */
+    public static void pinDepthFunc(int func) {
+        pinnedDepthFunc = UNKNOWN;
+        glDepthFunc(func);
+        pinnedDepthFunc = func;
+    }
+
+    /** Allow the depth function to be changed again. */
+    public static void unpinDepthFunc() {
+        pinnedDepthFunc = UNKNOWN;
+    }
+
+    /** @return true if the depth function is currently pinned. */
+    public static boolean isDepthFuncPinned() {
+        return pinnedDepthFunc != UNKNOWN;
+    }
+
+    public static void glLineWidth(float width) {
+        if (active && lineWidthKnown && lineWidth == width) {
+            countSkipped++;
+            return;
+        }
+        GL11.glLineWidth(width);
+        lineWidth = width;
+        lineWidthKnown = true;
+    }
+
+    public static void glPointSize(float size) {
+        if (active && pointSizeKnown && pointSize == size) {
+            countSkipped++;
+            return;
+        }
+        GL11.glPointSize(size);
+        pointSize = size;
+        pointSizeKnown = true;
+    }
+
+    /**
+     * Set the color, unless it is currently pinned.
+     */
+    public static void glColor4d(double red, double green, double blue, double alpha) {
+        if (colorPinned || (active && colorKnown &&
+                LSDGLState.red == red && LSDGLState.green == green &&
+                LSDGLState.blue == blue && LSDGLState.alpha == alpha)) {
+            countSkipped++;
+            return;
+        }
+        GL11.glColor4d(red, green, blue, alpha);
+        LSDGLState.red = red;
+        LSDGLState.green = green;
+        LSDGLState.blue = blue;
+        LSDGLState.alpha = alpha;
+        colorKnown = true;
+    }
+
+    /**
+     * Set the color and ignore any further requests to change it until
+     * unpinned.
+     */
+    public static void pinColor(double red, double green, double blue, double alpha) {
+        colorPinned = false;
+        glColor4d(red, green, blue, alpha);
+        colorPinned = true;
+    }
+
+    /** Allow the color to be changed again. */
+    public static void unpinColor() {
+        colorPinned = false;
+    }
+
+    /** @return true if the color is currently pinned. */
+    public static boolean isColorPinned() {
+        return colorPinned;
+    }
+}
@@ -0,0 +1,90 @@
+package libshapedraw.internal;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Internal class. A Shape's indexed triangles staged in native buffers, drawn
+ * with a single glDrawElements call.
+ * <p>
+ * Vertices are stored as floats relative to the first vertex, which is
+ * applied as a translation when drawing, so that large world coordinates
+ * don't lose precision. The buffers are only rebuilt by {@link #update}.
+ */
+public class LSDIndexedMesh {
+    private static LSDElementBackend backend = new LSDElementBackendGL11();
+
+    private FloatBuffer vertexBuffer;
+    private IntBuffer indexBuffer;
+    private double baseX;
+    private double baseY;
+    private double baseZ;
+
+    public static LSDElementBackend getBackend() {
+        return backend;
+    }
+    /**
+     * Replace the OpenGL calls used by every indexed mesh. Only intended for
+     * testing.
+     */
+    public static void setBackend(LSDElementBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("backend cannot be null");
+        }
+        LSDIndexedMesh.backend = backend;
+    }
+
+    /** @return true if glDrawElements can be used. */
+    public static boolean isSupported() {
+        return backend.isSupported();
+    }
+
+    /**
+     * Replace the staged vertices and indices.
+     * @param vertices packed x/y/z coordinates
+     */
+    public LSDIndexedMesh update(double[] vertices, int vertexCount, int[] indices, int indexCount) {
+        if (vertexBuffer == null || vertexBuffer.capacity() < 3*vertexCount) {
+            vertexBuffer = BufferUtils.createFloatBuffer(Math.max(3*vertexCount, 3*64));
+        }
+        if (indexBuffer == null || indexBuffer.capacity() < indexCount) {
+            indexBuffer = BufferUtils.createIntBuffer(Math.max(indexCount, 3*64));
+        }
+        vertexBuffer.clear();
+        if (vertexCount > 0) {
+            baseX = vertices[0];
+            baseY = vertices[1];
+            baseZ = vertices[2];
+        }
+        for (int i = 0; i < 3*vertexCount; i += 3) {
+            vertexBuffer.put((float) (vertices[i] - baseX));
+            vertexBuffer.put((float) (vertices[i + 1] - baseY));
+            vertexBuffer.put((float) (vertices[i + 2] - baseZ));
+        }
+        vertexBuffer.flip();
+        indexBuffer.clear();
+        indexBuffer.put(indices, 0, indexCount);
+        indexBuffer.flip();
+        return this;
+    }
+
+    /** Draw the staged triangles, if any. */
+    public void draw() {
+        if (indexBuffer == null || !indexBuffer.hasRemaining()) {
+            return;
+        }
+        GL11.glPushMatrix();
+        GL11.glTranslated(baseX, baseY, baseZ);
+        backend.drawElements(GL11.GL_TRIANGLES, vertexBuffer, indexBuffer);
+        GL11.glPopMatrix();
+    }
+
+    /** Free the native buffers. */
+    public void release() {
+        vertexBuffer = null;
+        indexBuffer = null;
+    }
+}
@@ -0,0 +1,130 @@
+package libshapedraw.internal;
+
+import java.util.Arrays;
+
+import libshapedraw.primitive.PackedVector3List;
+
+/**
+ * Internal class. Reduce the number of points in a line strip using the
+ * Douglas-Peucker algorithm: keep the endpoints, then recursively keep the
+ * point farthest from the segment between two kept points until every
+ * dropped point is within the tolerance of the simplified line.
+ * <p>
+ * Implemented with an explicit stack rather than recursion, as paths can
+ * have hundreds of thousands of points.
+ */
+public class LSDLineSimplifier {
+    private int[] stack = new int[64];
+    private boolean[] keep = new boolean[0];
+
+    /**
+     * Append the simplified line strip to result.
+     *
+     * @param coords packed x/y/z coordinates, as in
+     *        {@link PackedVector3List#getCoordinates}
+     * @param count the number of points to read from coords
+     * @param tolerance the maximum distance between a dropped point and the
+     *        simplified line
+     * @return result, for method chaining
+     */
+    public PackedVector3List simplify(double[] coords, int count, double tolerance, PackedVector3List result) {
+        if (count < 0 || 3*count > coords.length) {
+            throw new IllegalArgumentException("invalid point count " + count);
+        }
+        if (!(tolerance >= 0.0)) {
+            throw new IllegalArgumentException("expecting tolerance >=0.0, got " + tolerance);
+        }
+        if (count <= 2) {
+            for (int i = 0; i < 3*count; i += 3) {
+                result.add(coords[i], coords[i + 1], coords[i + 2]);
+            }
+            return result;
+        }
+
+        if (keep.length < count) {
+            keep = new boolean[count];
+        } else {
+            Arrays.fill(keep, 0, count, false);
+        }
+        keep[0] = true;
+        keep[count - 1] = true;
+        final double toleranceSquared = tolerance*tolerance;
+        int top = push(0, 0, count - 1);
+        while (top > 0) {
+            final int last = stack[--top];
+            final int first = stack[--top];
+            int farthest = -1;
+            double farthestSquared = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                final double d = getDistanceSquared(coords, i, first, last);
+                if (d > farthestSquared) {
+                    farthest = i;
+                    farthestSquared = d;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                if (farthest - first > 1) {
+                    top = push(top, first, farthest);
+                }
+                if (last - farthest > 1) {
+                    top = push(top, farthest, last);
+                }
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                kept++;
+            }
+        }
+        result.ensureCapacity(result.size() + kept);
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                result.add(coords[3*i], coords[3*i + 1], coords[3*i + 2]);
+            }
+        }
+        return result;
+    }
+
+    private int push(int top, int first, int last) {
+        if (top + 2 > stack.length) {
+            int[] grown = new int[stack.length*2];
+            System.arraycopy(stack, 0, grown, 0, top);
+            stack = grown;
+        }
+        stack[top++] = first;
+        stack[top++] = last;
+        return top;
+    }
+
+    /**
+     * @return the squared distance from point p to the line segment between
+     *         points a and b.
+     */
+    private static double getDistanceSquared(double[] coords, int p, int a, int b) {
+        final double ax = coords[3*a];
+        final double ay = coords[3*a + 1];
+        final double az = coords[3*a + 2];
+        final double abx = coords[3*b] - ax;
+        final double aby = coords[3*b + 1] - ay;
+        final double abz = coords[3*b + 2] - az;
+        double apx = coords[3*p] - ax;
+        double apy = coords[3*p + 1] - ay;
+        double apz = coords[3*p + 2] - az;
+        final double lengthSquared = abx*abx + aby*aby + abz*abz;
+        if (lengthSquared > 0.0) {
+            double t = (apx*abx + apy*aby + apz*abz) / lengthSquared;
+            if (t > 1.0) {
+                t = 1.0;
+            } else if (t < 0.0) {
+                t = 0.0;
+            }
+            apx -= t*abx;
+            apy -= t*aby;
+            apz -= t*abz;
+        }
+        return apx*apx + apy*apy + apz*apz;
+    }
+}
@@ -0,0 +1,189 @@
+package libshapedraw.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Internal class. Display lists of unit-size GLU quadrics, shared by every
+ * GLUShape with the same proportions, level of detail, and quadric settings.
+ * Each shape draws the shared mesh scaled to its own dimensions, so the
+ * quadric's sin/cos tessellation is computed once rather than every frame.
+ * <p>
+ * The least recently used meshes are deleted once there are more than
+ * {@link #getCapacity} of them. If a display list can't be created, callers
+ * should draw the quadric directly instead.
+ */
+public class LSDMeshCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Identifies a unit-size mesh. Mutable, so that shapes can reuse a single
+     * instance for lookups; the cache stores copies.
+     */
+    public static final class Key {
+        private Class<?> type;
+        private int detail0;
+        private int detail1;
+        private float param0;
+        private float param1;
+        private float param2;
+        private int drawStyle;
+        private int normals;
+        private int orientation;
+        private boolean textureFlag;
+
+        /**
+         * Set the properties specific to the type of quadric.
+         * @return the same key object, modified in-place.
+         */
+        public Key setGeometry(Class<?> type, int detail0, int detail1, float param0, float param1, float param2) {
+            this.type = type;
+            this.detail0 = detail0;
+            this.detail1 = detail1;
+            this.param0 = param0;
+            this.param1 = param1;
+            this.param2 = param2;
+            return this;
+        }
+
+        /**
+         * Set the properties common to every quadric.
+         * @return the same key object, modified in-place.
+         */
+        public Key setQuadric(int drawStyle, int normals, int orientation, boolean textureFlag) {
+            this.drawStyle = drawStyle;
+            this.normals = normals;
+            this.orientation = orientation;
+            this.textureFlag = textureFlag;
+            return this;
+        }
+
+        public Key copy() {
+            return new Key()
+            .setGeometry(type, detail0, detail1, param0, param1, param2)
+            .setQuadric(drawStyle, normals, orientation, textureFlag);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key o = (Key) other;
+            return type == o.type &&
+                    detail0 == o.detail0 &&
+                    detail1 == o.detail1 &&
+                    Float.floatToIntBits(param0) == Float.floatToIntBits(o.param0) &&
+                    Float.floatToIntBits(param1) == Float.floatToIntBits(o.param1) &&
+                    Float.floatToIntBits(param2) == Float.floatToIntBits(o.param2) &&
+                    drawStyle == o.drawStyle &&
+                    normals == o.normals &&
+                    orientation == o.orientation &&
+                    textureFlag == o.textureFlag;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = type == null ? 0 : type.hashCode();
+            h = 31*h + detail0;
+            h = 31*h + detail1;
+            h = 31*h + Float.floatToIntBits(param0);
+            h = 31*h + Float.floatToIntBits(param1);
+            h = 31*h + Float.floatToIntBits(param2);
+            h = 31*h + drawStyle;
+            h = 31*h + normals;
+            h = 31*h + orientation;
+            return 31*h + (textureFlag ? 1 : 0);
+        }
+    }
+
+    private static LSDDisplayListBackend backend = new LSDDisplayListBackendGL11();
+    private static int capacity = DEFAULT_CAPACITY;
+    /** Access-ordered, so the first entry is the least recently used. */
+    private static final LinkedHashMap<Key, Integer> lists = new LinkedHashMap<Key, Integer>(16, 0.75F, true);
+
+    public static LSDDisplayListBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Replace the OpenGL implementation. Every cached mesh is deleted first.
+     */
+    public static void setBackend(LSDDisplayListBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("backend cannot be null");
+        }
+        clear();
+        LSDMeshCache.backend = backend;
+    }
+
+    /** The maximum number of meshes to keep. */
+    public static int getCapacity() {
+        return capacity;
+    }
+
+    public static void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("expecting capacity >=1, got " + capacity);
+        }
+        LSDMeshCache.capacity = capacity;
+        evict();
+    }
+
+    /** The number of meshes currently cached. */
+    public static int size() {
+        return lists.size();
+    }
+
+    /**
+     * @return the display list of the mesh identified by key, or 0 if it
+     *         hasn't been compiled yet.
+     */
+    public static int get(Key key) {
+        final Integer list = lists.get(key);
+        return list == null ? 0 : list;
+    }
+
+    /**
+     * Start compiling a new mesh. Draw the unit-size quadric, then call
+     * {@link #endMesh}.
+     * @return the new display list, or 0 if display lists are unavailable.
+     */
+    public static int beginMesh() {
+        return backend.beginList();
+    }
+
+    /**
+     * Finish compiling the mesh started by {@link #beginMesh} and cache it.
+     */
+    public static void endMesh(Key key, int list) {
+        backend.endList();
+        final Integer prev = lists.put(key.copy(), list);
+        if (prev != null) {
+            backend.deleteList(prev);
+        }
+        evict();
+    }
+
+    /** Draw a cached mesh, scaled along each axis. */
+    public static void draw(int list, double scaleX, double scaleY, double scaleZ) {
+        backend.drawList(list, scaleX, scaleY, scaleZ);
+    }
+
+    private static void evict() {
+        final Iterator<Map.Entry<Key, Integer>> it = lists.entrySet().iterator();
+        while (lists.size() > capacity && it.hasNext()) {
+            backend.deleteList(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    /** Delete every cached mesh. */
+    public static void clear() {
+        for (Integer list : lists.values()) {
+            backend.deleteList(list);
+        }
+        lists.clear();
+    }
+}
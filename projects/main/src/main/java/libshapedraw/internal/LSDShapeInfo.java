@@ -0,0 +1,173 @@
+package libshapedraw.internal;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeShape;
+import libshapedraw.transform.ShapeTransform;
+
+/**
+ * Internal class. Facts about Shape subclasses that the controller needs to
+ * decide how a Shape can be rendered, determined once per class using
+ * reflection.
+ */
+public class LSDShapeInfo {
+    private static final Map<Class<?>, LSDShapeInfo> cache = new HashMap<Class<?>, LSDShapeInfo>();
+
+    private final boolean overridesRenderHooks;
+    private final boolean splitRenderPasses;
+    private final boolean wireframeRenderShape;
+    private final boolean glStateTracked;
+    private final boolean boundsTrusted;
+
+    /**
+     * Methods that decide what a Shape draws. A Shape class that overrides
+     * any of these without also overriding computeShapeBounds may draw
+     * outside of the bounds it inherited.
+     */
+    private static final String[] DRAWING_METHODS = {
+        "renderShape", "renderShapeMain", "renderShapeSecondary",
+        "onPreRender", "onPostRender",
+        "renderLines", "renderGLUQuadric", "renderGLUQuadricUnit",
+    };
+
+    public static LSDShapeInfo get(Class<? extends Shape> shapeClass) {
+        LSDShapeInfo info = cache.get(shapeClass);
+        if (info == null) {
+            info = new LSDShapeInfo(shapeClass);
+            cache.put(shapeClass, info);
+        }
+        return info;
+    }
+
+    private LSDShapeInfo(Class<? extends Shape> shapeClass) {
+        Class<?> renderShape = getDeclaringClass(shapeClass, "renderShape");
+        Class<?> renderShapeMain = getDeclaringClass(shapeClass, "renderShapeMain");
+        Class<?> renderShapeSecondary = getDeclaringClass(shapeClass, "renderShapeSecondary");
+        overridesRenderHooks = getDeclaringClass(shapeClass, "onPreRender") != Shape.class ||
+                getDeclaringClass(shapeClass, "onPostRender") != Shape.class;
+        // If a derived class overrides renderShape but not the per-pass
+        // methods, rendering the passes separately would skip its override.
+        splitRenderPasses = renderShape != null && renderShapeMain != null &&
+                renderShapeSecondary != null && renderShapeSecondary != Shape.class &&
+                renderShape.isAssignableFrom(renderShapeMain) &&
+                renderShape.isAssignableFrom(renderShapeSecondary);
+        wireframeRenderShape = renderShape == WireframeShape.class;
+        glStateTracked = isBuiltIn(shapeClass);
+        boundsTrusted = glStateTracked || isBoundsOverridden(shapeClass);
+    }
+
+    private static boolean isBoundsOverridden(Class<?> shapeClass) {
+        final Class<?> bounds = getDeclaringClassByName(shapeClass, "computeShapeBounds");
+        if (bounds == null) {
+            return false;
+        }
+        for (String methodName : DRAWING_METHODS) {
+            final Class<?> drawing = getDeclaringClassByName(shapeClass, methodName);
+            if (drawing != null && !drawing.isAssignableFrom(bounds)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBuiltIn(Class<?> cls) {
+        return cls.getName().startsWith("libshapedraw.shape.") ||
+                cls.getEnclosingClass() == LSDBatchRenderer.class;
+    }
+
+    /**
+     * @return true if rendering the Shape is guaranteed to only change OpenGL
+     *         state through LSDGLState, i.e. it's a built-in Shape with only
+     *         built-in ShapeTransforms.
+     */
+    public static boolean isGLStateTracked(Shape shape) {
+        if (!get(shape.getClass()).glStateTracked) {
+            return false;
+        }
+        if (shape.hasTransforms()) {
+            for (ShapeTransform t : shape.getTransforms()) {
+                if (t != null && !t.getClass().getName().startsWith("libshapedraw.transform.")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the Shape class's computeShapeBounds can be trusted to
+     *         contain everything it draws: it's a built-in Shape, or every
+     *         method that decides what it draws is overridden no further
+     *         down the class hierarchy than computeShapeBounds.
+     */
+    public boolean isBoundsTrusted() {
+        return boundsTrusted;
+    }
+
+    /**
+     * @return true if the Shape class overrides onPreRender or onPostRender.
+     */
+    public boolean overridesRenderHooks() {
+        return overridesRenderHooks;
+    }
+
+    /**
+     * @return true if the Shape class supports rendering its main and
+     *         secondary passes separately.
+     * @see Shape#renderMainPass
+     */
+    public boolean hasSplitRenderPasses() {
+        return splitRenderPasses;
+    }
+
+    /**
+     * @return true if the Shape class is a WireframeShape that draws using
+     *         WireframeShape's own renderShape method.
+     */
+    public boolean isWireframeRenderShape() {
+        return wireframeRenderShape;
+    }
+
+    /**
+     * Unlike Class.getMethod, this also finds protected methods.
+     * @return null if the method was not found
+     */
+    private static Class<?> getDeclaringClass(Class<?> cls, String methodName) {
+        for (; cls != null; cls = cls.getSuperclass()) {
+            try {
+                return cls.getDeclaredMethod(methodName, MinecraftAccess.class).getDeclaringClass();
+            } catch (NoSuchMethodException e) {
+                // keep looking
+            } catch (SecurityException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Like getDeclaringClass, but matching the method by name only, for
+     * methods that don't take a MinecraftAccess.
+     * @return null if the method was not found
+     */
+    private static Class<?> getDeclaringClassByName(Class<?> cls, String methodName) {
+        for (; cls != null; cls = cls.getSuperclass()) {
+            try {
+                for (Method method : cls.getDeclaredMethods()) {
+                    if (method.getName().equals(methodName) && !method.isBridge() &&
+                            !Modifier.isStatic(method.getModifiers())) {
+                        return cls;
+                    }
+                }
+            } catch (SecurityException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,259 @@
+package libshapedraw.internal;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Internal class. A collection that hands out a long handle for each item
+ * added, supporting constant-time lookup and removal by handle without any
+ * hashing.
+ * <p>
+ * Items are kept densely packed in a single array, so iterating over them is
+ * as fast as iterating over an array. Removing an item moves the last item
+ * into its place, so the iteration order is only the insertion order as long
+ * as nothing is removed.
+ * <p>
+ * A handle combines the index of a slot with the slot's generation, which
+ * changes every time the slot is reused. Handles of removed items never
+ * match an item added later, and are simply ignored. No valid handle is 0.
+ * <p>
+ * Items are compared by handle only: adding the same item twice gives it two
+ * handles.
+ * <p>
+ * A handle can also be reserved first and filled with its item later, so
+ * another thread can be given a handle right away while the item itself is
+ * added by the thread that owns the map. The handle methods are synchronized
+ * for this reason; the dense array methods (size, getAt, asList) are not,
+ * and should only be used by the owning thread.
+ */
+public class LSDSlotMap<T> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_SLOT = -1;
+    /** The slotItems value of a live slot that hasn't been filled yet. */
+    private static final int RESERVED = -2;
+
+    private Object[] items = new Object[INITIAL_CAPACITY];
+    /** The slot of each item. */
+    private int[] itemSlots = new int[INITIAL_CAPACITY];
+    private int size;
+    /** The item index of each live slot; the next free slot of each free slot. */
+    private int[] slotItems = new int[INITIAL_CAPACITY];
+    /** Odd while the slot is live, even while it's free. */
+    private int[] slotGenerations = new int[INITIAL_CAPACITY];
+    private int slotCount;
+    private int freeSlot = NO_SLOT;
+    private final List<T> view = new ReadonlyView();
+
+    private class ReadonlyView extends AbstractList<T> implements RandomAccess {
+        @Override
+        public T get(int index) {
+            return getAt(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /** @return the number of items. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the item at the specified position in the dense array, from 0
+     *         to size()-1.
+     */
+    @SuppressWarnings("unchecked")
+    public T getAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("no item at index " + index);
+        }
+        return (T) items[index];
+    }
+
+    /** @return a read-only live view of the items, in dense array order. */
+    public List<T> asList() {
+        return view;
+    }
+
+    /** @return the new item's handle. */
+    public synchronized long add(T item) {
+        final int slot = allocateSlot();
+        insert(slot, item);
+        return toHandle(slot);
+    }
+
+    /**
+     * Reserve a handle for an item to be added later with {@link #fill}.
+     * Until then the handle is valid, but {@link #get} returns null for it
+     * and the item isn't in the dense array. Removing the handle or clearing
+     * the map cancels the reservation.
+     * @return the reserved handle.
+     */
+    public synchronized long reserve() {
+        final int slot = allocateSlot();
+        slotItems[slot] = RESERVED;
+        return toHandle(slot);
+    }
+
+    /**
+     * Add the item for a handle returned by {@link #reserve}.
+     * @return true if the item was added, false if the reservation was
+     *         cancelled in the meantime.
+     */
+    public synchronized boolean fill(long handle, T item) {
+        final int slot = getLiveSlot(handle);
+        if (slot == NO_SLOT || slotItems[slot] != RESERVED) {
+            return false;
+        }
+        insert(slot, item);
+        return true;
+    }
+
+    /** @return a free slot, now live. */
+    private int allocateSlot() {
+        final int slot;
+        if (freeSlot != NO_SLOT) {
+            slot = freeSlot;
+            freeSlot = slotItems[slot];
+        } else {
+            if (slotCount == slotItems.length) {
+                slotItems = Arrays.copyOf(slotItems, slotCount*2);
+                slotGenerations = Arrays.copyOf(slotGenerations, slotCount*2);
+            }
+            slot = slotCount++;
+        }
+        slotGenerations[slot]++;
+        return slot;
+    }
+
+    /** Append the item to the dense array, owned by the slot. */
+    private void insert(int slot, T item) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size*2);
+            itemSlots = Arrays.copyOf(itemSlots, size*2);
+        }
+        slotItems[slot] = size;
+        items[size] = item;
+        itemSlots[size] = slot;
+        size++;
+    }
+
+    private long toHandle(int slot) {
+        return ((long) slotGenerations[slot] << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    /** @return the slot a handle refers to, or NO_SLOT if it's not live. */
+    private int getLiveSlot(long handle) {
+        final int slot = (int) handle;
+        final int generation = (int) (handle >>> 32);
+        if (slot < 0 || slot >= slotCount || slotGenerations[slot] != generation || (generation & 1) == 0) {
+            return NO_SLOT;
+        }
+        return slot;
+    }
+
+    /**
+     * @return true if the handle refers to an item that's still present, or
+     *         to a reservation that hasn't been cancelled.
+     */
+    public synchronized boolean contains(long handle) {
+        return getLiveSlot(handle) != NO_SLOT;
+    }
+
+    /**
+     * @return the item, or null if the handle isn't valid or its reservation
+     *         hasn't been filled yet.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get(long handle) {
+        final int slot = getLiveSlot(handle);
+        return slot == NO_SLOT || slotItems[slot] == RESERVED ? null : (T) items[slotItems[slot]];
+    }
+
+    /**
+     * @return the removed item, or null if the handle isn't valid. Removing
+     *         an unfilled reservation cancels it and also returns null.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T remove(long handle) {
+        final int slot = getLiveSlot(handle);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        if (slotItems[slot] == RESERVED) {
+            freeSlot(slot);
+            return null;
+        }
+        final int index = slotItems[slot];
+        final T item = (T) items[index];
+        // Fill the gap with the last item.
+        final int last = --size;
+        if (index != last) {
+            items[index] = items[last];
+            itemSlots[index] = itemSlots[last];
+            slotItems[itemSlots[index]] = index;
+        }
+        items[last] = null;
+        freeSlot(slot);
+        return item;
+    }
+
+    private void freeSlot(int slot) {
+        slotGenerations[slot]++;
+        slotItems[slot] = freeSlot;
+        freeSlot = slot;
+    }
+
+    /**
+     * @return the handles of every item and unfilled reservation, so that
+     *         exactly these can be removed later even if more are added in
+     *         the meantime.
+     */
+    public synchronized long[] getHandles() {
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if ((slotGenerations[slot] & 1) != 0) {
+                count++;
+            }
+        }
+        final long[] handles = new long[count];
+        count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if ((slotGenerations[slot] & 1) != 0) {
+                handles[count++] = toHandle(slot);
+            }
+        }
+        return handles;
+    }
+
+    /**
+     * Remove every item, invalidating all handles and cancelling all
+     * reservations. The map keeps its capacity, so filling it up again
+     * doesn't need to regrow it.
+     * @return the removed items, in dense array order. The map doesn't keep
+     *         a reference to the returned list, so it's safe to add items
+     *         while iterating over it.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> clear() {
+        final List<T> removed = Arrays.asList((T[]) Arrays.copyOf(items, size));
+        Arrays.fill(items, 0, size, null);
+        freeSlot = NO_SLOT;
+        // Every slot becomes free; bumping each live generation keeps old
+        // handles from matching.
+        for (int slot = slotCount - 1; slot >= 0; slot--) {
+            if ((slotGenerations[slot] & 1) != 0) {
+                slotGenerations[slot]++;
+            }
+            slotItems[slot] = freeSlot;
+            freeSlot = slot;
+        }
+        size = 0;
+        return removed;
+    }
+}
@@ -0,0 +1,536 @@
+package libshapedraw.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.shape.Shape;
+
+/**
+ * Internal class. A uniform grid over the bounds of a LibShapeDraw API
+ * instance's shapes, answering range queries and ray picks without visiting
+ * every shape.
+ * <p>
+ * Each shape is registered in every grid cell its bounds overlap. Shapes with
+ * unknown bounds, and shapes so large that they would occupy too many cells,
+ * are kept in a separate list that every query checks.
+ * <p>
+ * There is no way to be notified when a shape moves, so {@link #update}
+ * re-reads the bounds of every shape whose geometry version changed, moving
+ * the ones whose bounds changed too. The
+ * controller calls it once per frame; queries in between use the bounds as
+ * of the most recent update.
+ * <p>
+ * Every query returns shapes in the order they were added, which is the same
+ * order they are rendered in.
+ * <p>
+ * Range queries and raycasts only visit the cells along the box or ray, or
+ * every occupied cell if there are fewer of those. {@link #findInView} has no
+ * such shortcut: it tests every occupied cell against the frustum, which is
+ * still far cheaper than testing every shape as long as most cells hold
+ * several shapes.
+ */
+public class LSDSpatialIndex {
+    /** The width of each grid cell, in blocks. */
+    public static final double CELL_SIZE = 16.0;
+    /**
+     * Shapes that would span more cells than this are kept in the separate
+     * list instead.
+     */
+    private static final long MAX_CELLS_PER_SHAPE = 64;
+    private static final int MAX_CELL = 0x3FFFFFFF;
+
+    private final HashMap<Long, Cell> cells = new HashMap<Long, Cell>();
+    private final IdentityHashMap<Shape, Entry> entries = new IdentityHashMap<Shape, Entry>();
+    private final ArrayList<Entry> unindexed = new ArrayList<Entry>();
+    private final ArrayList<Entry> found = new ArrayList<Entry>();
+    private final BoundingBox cellBox = new BoundingBox();
+    private long nextSequence;
+    private int stamp;
+    /**
+     * The range of cells that have been occupied since the last clear. Only
+     * ever grows, so raycasts can skip the grid when the ray misses it.
+     */
+    private boolean hasExtent;
+    private int extentX0, extentY0, extentZ0, extentX1, extentY1, extentZ1;
+    private Entry rayBest;
+    private double rayBestT;
+
+    /** @return the number of shapes in the index. */
+    public int size() {
+        return entries.size();
+    }
+
+    /** @return the number of grid cells that contain at least one shape. */
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    /**
+     * Add a shape to the index using its current bounds. Adding a shape that
+     * is already in the index does nothing.
+     */
+    public LSDSpatialIndex add(Shape shape) {
+        if (shape == null) {
+            throw new IllegalArgumentException("shape cannot be null");
+        }
+        if (!entries.containsKey(shape)) {
+            Entry entry = new Entry(shape, nextSequence++);
+            entry.version = shape.getGeometryVersion();
+            entries.put(shape, entry);
+            place(entry, shape.getBounds());
+        }
+        return this;
+    }
+
+    /** Remove a shape from the index, if present. */
+    public LSDSpatialIndex remove(Shape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry != null) {
+            unplace(entry);
+        }
+        return this;
+    }
+
+    /** Remove all shapes from the index. */
+    public LSDSpatialIndex clear() {
+        entries.clear();
+        cells.clear();
+        unindexed.clear();
+        hasExtent = false;
+        return this;
+    }
+
+    /**
+     * Re-read the bounds of every shape in the index that was modified since
+     * the previous update, moving the ones whose bounds changed.
+     */
+    public LSDSpatialIndex update() {
+        for (Entry entry : entries.values()) {
+            final long version = entry.shape.getGeometryVersion();
+            if (version == entry.version) {
+                continue;
+            }
+            entry.version = version;
+            ReadonlyBoundingBox bounds = entry.shape.getBounds();
+            boolean changed = bounds == null ? entry.hasBounds : !entry.hasBounds || !entry.bounds.equals(bounds);
+            if (changed) {
+                unplace(entry);
+                place(entry, bounds);
+            }
+        }
+        return this;
+    }
+
+    // ====
+    // Queries
+    // ====
+
+    /**
+     * Find all shapes whose bounds intersect the box. Shapes with unknown
+     * bounds are never included.
+     */
+    public List<Shape> findWithin(ReadonlyBoundingBox box, List<Shape> result) {
+        if (box.isEmpty()) {
+            return result;
+        }
+        beginQuery();
+        collectCells(box);
+        int n = 0;
+        for (int i = 0; i < found.size(); i++) {
+            Entry entry = found.get(i);
+            if (entry.hasBounds && entry.bounds.intersects(box)) {
+                found.set(n++, entry);
+            }
+        }
+        return endQuery(n, result);
+    }
+
+    /**
+     * Find all shapes whose bounds are at most radius away from the point.
+     * Shapes with unknown bounds are never included.
+     */
+    public List<Shape> findNear(ReadonlyVector3 point, double radius, List<Shape> result) {
+        beginQuery();
+        collectCells(new BoundingBox(
+                point.getX() - radius, point.getY() - radius, point.getZ() - radius,
+                point.getX() + radius, point.getY() + radius, point.getZ() + radius));
+        int n = 0;
+        for (int i = 0; i < found.size(); i++) {
+            Entry entry = found.get(i);
+            if (entry.hasBounds && entry.bounds.getDistance(point) <= radius) {
+                found.set(n++, entry);
+            }
+        }
+        return endQuery(n, result);
+    }
+
+    /**
+     * Find the shape whose bounds are hit first by a ray. If several shapes
+     * are hit at the same distance, e.g. because the origin is inside all of
+     * them, the one added first wins. Shapes with unknown bounds are never
+     * hit.
+     *
+     * @return the shape, or null if the ray doesn't hit anything.
+     */
+    public Shape raycast(ReadonlyVector3 origin, ReadonlyVector3 direction) {
+        rayBest = null;
+        rayBestT = Double.POSITIVE_INFINITY;
+        stamp++;
+        if (hasExtent) {
+            final double tEnter = cellBox.set(
+                    extentX0*CELL_SIZE, extentY0*CELL_SIZE, extentZ0*CELL_SIZE,
+                    (extentX1 + 1)*CELL_SIZE, (extentY1 + 1)*CELL_SIZE, (extentZ1 + 1)*CELL_SIZE)
+                    .getRayIntersection(origin, direction);
+            final long steps = (extentX1 - (long) extentX0 + 1) + (extentY1 - (long) extentY0 + 1) +
+                    (extentZ1 - (long) extentZ0 + 1);
+            if (tEnter < 0.0) {
+                // The ray misses every cell.
+            } else if (steps > cells.size()) {
+                // Cheaper to check every occupied cell.
+                for (Cell cell : cells.values()) {
+                    double cellT = getCellBox(cell).getRayIntersection(origin, direction);
+                    if (cellT >= 0.0 && cellT <= rayBestT) {
+                        raycastEntries(cell.entries, origin, direction);
+                    }
+                }
+            } else {
+                walkRay(origin, direction, tEnter);
+            }
+        }
+        raycastEntries(unindexed, origin, direction);
+        final Entry best = rayBest;
+        rayBest = null;
+        return best == null ? null : best.shape;
+    }
+
+    /**
+     * Visit the cells the ray passes through in order, starting where it
+     * enters the occupied range and stopping once the cells are further away
+     * than the closest hit so far (3D DDA).
+     */
+    private void walkRay(ReadonlyVector3 origin, ReadonlyVector3 direction, double tEnter) {
+        final double ox = origin.getX();
+        final double oy = origin.getY();
+        final double oz = origin.getZ();
+        final double dx = direction.getX();
+        final double dy = direction.getY();
+        final double dz = direction.getZ();
+        int x = clamp(toCell(ox + dx*tEnter), extentX0, extentX1);
+        int y = clamp(toCell(oy + dy*tEnter), extentY0, extentY1);
+        int z = clamp(toCell(oz + dz*tEnter), extentZ0, extentZ1);
+        final int stepX = dx > 0.0 ? 1 : -1;
+        final int stepY = dy > 0.0 ? 1 : -1;
+        final int stepZ = dz > 0.0 ? 1 : -1;
+        double tMaxX = getCellExit(ox, dx, x);
+        double tMaxY = getCellExit(oy, dy, y);
+        double tMaxZ = getCellExit(oz, dz, z);
+        final double tDeltaX = Math.abs(CELL_SIZE / dx);
+        final double tDeltaY = Math.abs(CELL_SIZE / dy);
+        final double tDeltaZ = Math.abs(CELL_SIZE / dz);
+        double cellT = tEnter;
+        while (cellT <= rayBestT) {
+            final Cell cell = cells.get(key(x, y, z));
+            if (cell != null && cell.is(x, y, z)) {
+                raycastEntries(cell.entries, origin, direction);
+            }
+            if (tMaxX <= tMaxY && tMaxX <= tMaxZ) {
+                cellT = tMaxX;
+                tMaxX += tDeltaX;
+                x += stepX;
+                if (x < extentX0 || x > extentX1) {
+                    break;
+                }
+            } else if (tMaxY <= tMaxZ) {
+                cellT = tMaxY;
+                tMaxY += tDeltaY;
+                y += stepY;
+                if (y < extentY0 || y > extentY1) {
+                    break;
+                }
+            } else {
+                cellT = tMaxZ;
+                tMaxZ += tDeltaZ;
+                z += stepZ;
+                if (z < extentZ0 || z > extentZ1) {
+                    break;
+                }
+            }
+            if (cellT == Double.POSITIVE_INFINITY) {
+                // The ray doesn't move along any axis.
+                break;
+            }
+        }
+    }
+
+    /** @return the ray parameter at which it leaves the cell along one axis. */
+    private static double getCellExit(double origin, double direction, int cell) {
+        if (direction > 0.0) {
+            return ((cell + 1)*CELL_SIZE - origin) / direction;
+        } else if (direction < 0.0) {
+            return (cell*CELL_SIZE - origin) / direction;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private void raycastEntries(List<Entry> candidates, ReadonlyVector3 origin, ReadonlyVector3 direction) {
+        for (Entry entry : candidates) {
+            if (entry.stamp == stamp || !entry.hasBounds) {
+                continue;
+            }
+            entry.stamp = stamp;
+            double t = entry.bounds.getRayIntersection(origin, direction);
+            if (isCloser(t, entry, rayBestT, rayBest)) {
+                rayBest = entry;
+                rayBestT = t;
+            }
+        }
+    }
+
+    private static boolean isCloser(double t, Entry entry, double bestT, Entry best) {
+        return t >= 0.0 && (t < bestT || (t == bestT && entry.sequence < best.sequence));
+    }
+
+    /**
+     * Find every shape that might be visible: all shapes in grid cells that
+     * are at least partially inside the view frustum and within the maximum
+     * distance of the point, plus every shape that isn't in a cell. The
+     * caller is expected to test the individual shapes.
+     */
+    public List<Shape> findInView(LSDFrustum frustum, ReadonlyVector3 point, double maxDistance, List<Shape> result) {
+        beginQuery();
+        for (Cell cell : cells.values()) {
+            getCellBox(cell);
+            if (cellBox.getDistance(point) <= maxDistance && frustum.isVisible(cellBox)) {
+                collectCell(cell);
+            }
+        }
+        found.addAll(unindexed);
+        return endQuery(found.size(), result);
+    }
+
+    private void beginQuery() {
+        stamp++;
+        found.clear();
+    }
+
+    /**
+     * Gather the entries of every cell overlapping the box, plus all
+     * unindexed entries, into found.
+     */
+    private void collectCells(ReadonlyBoundingBox box) {
+        int x0 = toCell(box.getMinX());
+        int y0 = toCell(box.getMinY());
+        int z0 = toCell(box.getMinZ());
+        int x1 = toCell(box.getMaxX());
+        int y1 = toCell(box.getMaxY());
+        int z1 = toCell(box.getMaxZ());
+        long count = (x1 - (long) x0 + 1) * (y1 - (long) y0 + 1) * (z1 - (long) z0 + 1);
+        if (count > cells.size()) {
+            // Cheaper to check every occupied cell.
+            for (Cell cell : cells.values()) {
+                if (getCellBox(cell).intersects(box)) {
+                    collectCell(cell);
+                }
+            }
+        } else {
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    for (int z = z0; z <= z1; z++) {
+                        Cell cell = cells.get(key(x, y, z));
+                        if (cell != null && cell.is(x, y, z)) {
+                            collectCell(cell);
+                        }
+                    }
+                }
+            }
+        }
+        found.addAll(unindexed);
+    }
+
+    private void collectCell(Cell cell) {
+        for (Entry entry : cell.entries) {
+            if (entry.stamp != stamp) {
+                entry.stamp = stamp;
+                found.add(entry);
+            }
+        }
+    }
+
+    /** Sort the first n found entries and output their shapes. */
+    private List<Shape> endQuery(int n, List<Shape> result) {
+        List<Entry> matches = found.subList(0, n);
+        Collections.sort(matches, SEQUENCE_ORDER);
+        for (Entry entry : matches) {
+            result.add(entry.shape);
+        }
+        found.clear();
+        return result;
+    }
+
+    private static final Comparator<Entry> SEQUENCE_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    // ====
+    // Grid maintenance
+    // ====
+
+    /**
+     * Clamped well within int range so that looping over a range of cells
+     * can't overflow.
+     */
+    private static int toCell(double coord) {
+        return (int) Math.max(-MAX_CELL, Math.min(MAX_CELL, Math.floor(coord / CELL_SIZE)));
+    }
+
+    /**
+     * Pack the cell coordinates into a map key. Coordinates outside of
+     * +/-2^20 cells wrap around; Cell.is detects the resulting collisions.
+     */
+    private static Long key(int x, int y, int z) {
+        return Long.valueOf(((x & 0x1FFFFFL) << 42) | ((y & 0x1FFFFFL) << 21) | (z & 0x1FFFFFL));
+    }
+
+    private BoundingBox getCellBox(Cell cell) {
+        return cellBox.set(
+                cell.x*CELL_SIZE, cell.y*CELL_SIZE, cell.z*CELL_SIZE,
+                (cell.x + 1)*CELL_SIZE, (cell.y + 1)*CELL_SIZE, (cell.z + 1)*CELL_SIZE);
+    }
+
+    private void place(Entry entry, ReadonlyBoundingBox bounds) {
+        entry.hasBounds = bounds != null;
+        if (bounds == null) {
+            unindexed.add(entry);
+            return;
+        }
+        entry.bounds.set(bounds);
+        if (bounds.isEmpty()) {
+            // Renders nothing, so it can't be found either.
+            return;
+        }
+        entry.x0 = toCell(bounds.getMinX());
+        entry.y0 = toCell(bounds.getMinY());
+        entry.z0 = toCell(bounds.getMinZ());
+        entry.x1 = toCell(bounds.getMaxX());
+        entry.y1 = toCell(bounds.getMaxY());
+        entry.z1 = toCell(bounds.getMaxZ());
+        long count = (entry.x1 - (long) entry.x0 + 1) * (entry.y1 - (long) entry.y0 + 1) * (entry.z1 - (long) entry.z0 + 1);
+        if (count > MAX_CELLS_PER_SHAPE || hasCollision(entry)) {
+            unindexed.add(entry);
+            return;
+        }
+        if (!hasExtent) {
+            hasExtent = true;
+            extentX0 = entry.x0;
+            extentY0 = entry.y0;
+            extentZ0 = entry.z0;
+            extentX1 = entry.x1;
+            extentY1 = entry.y1;
+            extentZ1 = entry.z1;
+        } else {
+            extentX0 = Math.min(extentX0, entry.x0);
+            extentY0 = Math.min(extentY0, entry.y0);
+            extentZ0 = Math.min(extentZ0, entry.z0);
+            extentX1 = Math.max(extentX1, entry.x1);
+            extentY1 = Math.max(extentY1, entry.y1);
+            extentZ1 = Math.max(extentZ1, entry.z1);
+        }
+        for (int x = entry.x0; x <= entry.x1; x++) {
+            for (int y = entry.y0; y <= entry.y1; y++) {
+                for (int z = entry.z0; z <= entry.z1; z++) {
+                    Long key = key(x, y, z);
+                    Cell cell = cells.get(key);
+                    if (cell == null) {
+                        cell = new Cell(x, y, z);
+                        cells.put(key, cell);
+                    }
+                    cell.entries.add(entry);
+                }
+            }
+        }
+        entry.inCells = true;
+    }
+
+    private boolean hasCollision(Entry entry) {
+        for (int x = entry.x0; x <= entry.x1; x++) {
+            for (int y = entry.y0; y <= entry.y1; y++) {
+                for (int z = entry.z0; z <= entry.z1; z++) {
+                    Cell cell = cells.get(key(x, y, z));
+                    if (cell != null && !cell.is(x, y, z)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void unplace(Entry entry) {
+        if (!entry.inCells) {
+            unindexed.remove(entry);
+            return;
+        }
+        for (int x = entry.x0; x <= entry.x1; x++) {
+            for (int y = entry.y0; y <= entry.y1; y++) {
+                for (int z = entry.z0; z <= entry.z1; z++) {
+                    Long key = key(x, y, z);
+                    Cell cell = cells.get(key);
+                    cell.entries.remove(entry);
+                    if (cell.entries.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+        entry.inCells = false;
+    }
+
+    private static class Cell {
+        private final int x;
+        private final int y;
+        private final int z;
+        private final ArrayList<Entry> entries = new ArrayList<Entry>(4);
+
+        public Cell(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        public boolean is(int x, int y, int z) {
+            return this.x == x && this.y == y && this.z == z;
+        }
+    }
+
+    private static class Entry {
+        private final Shape shape;
+        private final long sequence;
+        /** A copy of the shape's bounds as of the most recent update. */
+        private final BoundingBox bounds = new BoundingBox();
+        private boolean hasBounds;
+        /** The shape's geometry version as of the most recent update. */
+        private long version;
+        private boolean inCells;
+        private int x0, y0, z0, x1, y1, z1;
+        private int stamp;
+
+        public Entry(Shape shape, long sequence) {
+            this.shape = shape;
+            this.sequence = sequence;
+        }
+    }
+}
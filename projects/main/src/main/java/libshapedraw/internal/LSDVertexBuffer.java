@@ -0,0 +1,135 @@
+package libshapedraw.internal;
+
+import java.nio.FloatBuffer;
+
+import libshapedraw.MinecraftAccess;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Internal class. A vertex buffer object holding a Shape's line segments in
+ * video memory, drawn with a single GL_LINES call.
+ * <p>
+ * To fill the buffer, render the Shape's lines to the recorder returned by
+ * {@link #beginUpload}, then call {@link #endUpload}. Vertices are stored as
+ * floats relative to the first vertex, which is applied as a translation when
+ * drawing, so that large world coordinates don't lose precision.
+ * <p>
+ * The buffer must be {@link #release released} when no longer needed.
+ */
+public class LSDVertexBuffer {
+    private static LSDBufferBackend backend = new LSDBufferBackendGL15();
+
+    private LSDVertexRecorder recorder;
+    private FloatBuffer staging;
+    private int buffer;
+    private int vertexCount;
+    private double baseX;
+    private double baseY;
+    private double baseZ;
+
+    public static LSDBufferBackend getBackend() {
+        return backend;
+    }
+    /**
+     * Replace the OpenGL calls used by every vertex buffer. Only intended for
+     * testing. Buffers created by the previous backend should be released
+     * first.
+     */
+    public static void setBackend(LSDBufferBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("backend cannot be null");
+        }
+        LSDVertexBuffer.backend = backend;
+    }
+
+    /** @return true if vertex buffer objects can be used. */
+    public static boolean isSupported() {
+        return backend.isSupported();
+    }
+
+    /** @return true if the buffer currently exists in video memory. */
+    public boolean isAllocated() {
+        return buffer != 0;
+    }
+
+    /** @return the number of vertices uploaded. */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @return an empty recorder to draw the new contents of the buffer to.
+     *         Non-Tessellator calls are passed through to mc.
+     */
+    public LSDVertexRecorder beginUpload(MinecraftAccess mc) {
+        if (recorder == null) {
+            recorder = new LSDVertexRecorder(mc);
+        }
+        return recorder.clear().setDelegate(mc);
+    }
+
+    /**
+     * Upload everything drawn to the recorder since beginUpload, creating the
+     * buffer if needed.
+     * 
+     * @return false if the recorder was given something other than line
+     *         segments or the buffer couldn't be created, in which case the
+     *         buffer's contents are unchanged.
+     */
+    public boolean endUpload() {
+        if (recorder == null || recorder.isFailed()) {
+            return false;
+        }
+        if (buffer == 0) {
+            buffer = backend.createBuffer();
+            if (buffer == 0) {
+                return false;
+            }
+        }
+        final double[] vertices = recorder.getVertices();
+        final int count = recorder.getVertexCount();
+        if (staging == null || staging.capacity() < count*3) {
+            staging = BufferUtils.createFloatBuffer(Math.max(count*3, 3*64));
+        }
+        staging.clear();
+        if (count > 0) {
+            baseX = vertices[0];
+            baseY = vertices[1];
+            baseZ = vertices[2];
+        }
+        for (int i = 0; i < count*3; i += 3) {
+            staging.put((float) (vertices[i] - baseX));
+            staging.put((float) (vertices[i + 1] - baseY));
+            staging.put((float) (vertices[i + 2] - baseZ));
+        }
+        staging.flip();
+        backend.uploadBuffer(buffer, staging);
+        vertexCount = count;
+        recorder.clear();
+        return true;
+    }
+
+    /** Draw the buffer's contents, if any. */
+    public void draw() {
+        if (buffer == 0 || vertexCount == 0) {
+            return;
+        }
+        GL11.glPushMatrix();
+        GL11.glTranslated(baseX, baseY, baseZ);
+        backend.drawBuffer(buffer, GL11.GL_LINES, vertexCount);
+        GL11.glPopMatrix();
+    }
+
+    /** Delete the buffer from video memory, if allocated. */
+    public void release() {
+        if (buffer != 0) {
+            backend.deleteBuffer(buffer);
+            buffer = 0;
+        }
+        vertexCount = 0;
+        recorder = null;
+        staging = null;
+    }
+}
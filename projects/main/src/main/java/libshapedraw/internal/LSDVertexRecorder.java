@@ -0,0 +1,357 @@
+package libshapedraw.internal;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.primitive.ReadonlyVector3;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Internal class. A MinecraftAccess that captures the vertices a Shape emits
+ * instead of passing them to the Tessellator, packing them into a primitive
+ * array. GL_LINE_STRIP and GL_LINE_LOOP drawing sessions are converted to
+ * GL_LINES so that the output of many sessions (and many Shapes) can be
+ * submitted in a single GL_LINES draw.
+ * <p>
+ * Any other drawing mode can't be merged with line segments, and per-vertex
+ * colors aren't recorded. If either is encountered the recorder flags itself
+ * as failed; the caller is expected to {@link #rollback} and render the Shape
+ * normally instead.
+ * <p>
+ * Alternatively, the recorder can {@link #setPreserveSessions preserve} each
+ * drawing session as-is, in any mode, to be replayed exactly as recorded.
+ * <p>
+ * The recorder can also {@link #setPassThrough pass through} everything to
+ * the wrapped MinecraftAccess while recording, drawing and capturing the
+ * vertices at the same time.
+ * <p>
+ * All non-Tessellator methods are passed through to the wrapped
+ * MinecraftAccess.
+ */
+public class LSDVertexRecorder implements MinecraftAccess {
+    private static final int NO_MODE = -1;
+
+    private MinecraftAccess delegate;
+    private double[] vertices = new double[3*64];
+    private int size; // number of doubles used, i.e. 3*vertices
+    private double offsetX;
+    private double offsetY;
+    private double offsetZ;
+    private int mode = NO_MODE;
+    private int sessionVertexCount;
+    private double firstX, firstY, firstZ;
+    private double prevX, prevY, prevZ;
+    private boolean failed;
+    private boolean preserveSessions;
+    private boolean passThrough;
+    private int[] sessions = new int[2*4]; // pairs of mode, vertex count
+    private int sessionsSize; // number of ints used, i.e. 2*sessions
+
+    public LSDVertexRecorder(MinecraftAccess delegate) {
+        setDelegate(delegate);
+    }
+
+    public MinecraftAccess getDelegate() {
+        return delegate;
+    }
+    public LSDVertexRecorder setDelegate(MinecraftAccess delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate cannot be null");
+        }
+        this.delegate = delegate;
+        return this;
+    }
+
+    /** The packed x/y/z coordinates recorded so far. */
+    public double[] getVertices() {
+        return vertices;
+    }
+
+    /** The number of vertices recorded so far. */
+    public int getVertexCount() {
+        return size / 3;
+    }
+
+    /**
+     * @return true if the Shape tried to draw something that can't be
+     *         represented as GL_LINES since the last {@link #mark}.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * If true, record each drawing session's mode and vertices unchanged
+     * rather than converting everything to GL_LINES. Every mode is supported
+     * and replay issues the same sessions that were recorded. Should only be
+     * changed while the recorder is empty.
+     */
+    public LSDVertexRecorder setPreserveSessions(boolean preserveSessions) {
+        this.preserveSessions = preserveSessions;
+        return this;
+    }
+
+    /**
+     * If true, also submit every Tessellator call to the wrapped
+     * MinecraftAccess unchanged, as well as recording it.
+     */
+    public LSDVertexRecorder setPassThrough(boolean passThrough) {
+        this.passThrough = passThrough;
+        return this;
+    }
+
+    /**
+     * Translate every subsequently recorded vertex. Used to flatten a Shape
+     * that is rendered relative to its origin into absolute coordinates.
+     */
+    public LSDVertexRecorder setOffset(double x, double y, double z) {
+        offsetX = x;
+        offsetY = y;
+        offsetZ = z;
+        return this;
+    }
+
+    /** Discard all recorded vertices. */
+    public LSDVertexRecorder clear() {
+        size = 0;
+        sessionsSize = 0;
+        mode = NO_MODE;
+        failed = false;
+        return this;
+    }
+
+    /**
+     * Begin recording a new Shape, clearing the failure flag.
+     * @return a marker that can be passed to {@link #rollback}.
+     */
+    public int mark() {
+        failed = false;
+        mode = NO_MODE;
+        return size;
+    }
+
+    /** Discard everything recorded since the marker was obtained. */
+    public LSDVertexRecorder rollback(int marker) {
+        size = marker;
+        // Drop any preserved sessions that started after the marker.
+        int vertexCount = 0;
+        for (int i = 0; i < sessionsSize; i += 2) {
+            if (vertexCount*3 >= marker) {
+                sessionsSize = i;
+                break;
+            }
+            vertexCount += sessions[i + 1];
+        }
+        mode = NO_MODE;
+        return this;
+    }
+
+    /**
+     * Submit everything recorded as a single GL_LINES drawing session using
+     * the specified MinecraftAccess, or as the original drawing sessions if
+     * preserving sessions.
+     */
+    public LSDVertexRecorder replay(MinecraftAccess mc) {
+        if (preserveSessions) {
+            int i = 0;
+            for (int s = 0; s < sessionsSize; s += 2) {
+                LSDChunkedDrawing.draw(mc, sessions[s], vertices, i, sessions[s + 1]);
+                i += sessions[s + 1]*3;
+            }
+            return this;
+        }
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINES, vertices, 0, size/3);
+        return this;
+    }
+
+    private void append(double x, double y, double z) {
+        if (size + 3 > vertices.length) {
+            double[] grown = new double[vertices.length*2];
+            System.arraycopy(vertices, 0, grown, 0, size);
+            vertices = grown;
+        }
+        vertices[size++] = x;
+        vertices[size++] = y;
+        vertices[size++] = z;
+    }
+
+    // ====
+    // MinecraftAccess implementation
+    // ====
+
+    @Override
+    public MinecraftAccess startDrawing(int mode) {
+        if (passThrough) {
+            delegate.startDrawing(mode);
+        }
+        if (!preserveSessions && mode != GL11.GL_LINES && mode != GL11.GL_LINE_STRIP && mode != GL11.GL_LINE_LOOP) {
+            failed = true;
+        }
+        this.mode = mode;
+        sessionVertexCount = 0;
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertex(double x, double y, double z) {
+        if (passThrough) {
+            delegate.addVertex(x, y, z);
+        }
+        record(x, y, z);
+        return this;
+    }
+
+    private void record(double x, double y, double z) {
+        if (failed || (preserveSessions && mode == NO_MODE)) {
+            return;
+        }
+        x += offsetX;
+        y += offsetY;
+        z += offsetZ;
+        if (preserveSessions || mode == GL11.GL_LINES) {
+            append(x, y, z);
+        } else if (sessionVertexCount == 0) {
+            firstX = x;
+            firstY = y;
+            firstZ = z;
+        } else {
+            append(prevX, prevY, prevZ);
+            append(x, y, z);
+        }
+        prevX = x;
+        prevY = y;
+        prevZ = z;
+        sessionVertexCount++;
+    }
+
+    @Override
+    public MinecraftAccess addVertex(ReadonlyVector3 coords) {
+        return addVertex(coords.getX(), coords.getY(), coords.getZ());
+    }
+
+    @Override
+    public MinecraftAccess addVertices(double[] xyz, int offset, int count) {
+        if (passThrough) {
+            delegate.addVertices(xyz, offset, count);
+        }
+        for (int i = offset, end = offset + count*3; i < end; i += 3) {
+            record(xyz[i], xyz[i + 1], xyz[i + 2]);
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertices(DoubleBuffer xyz) {
+        if (passThrough) {
+            delegate.addVertices(xyz);
+        }
+        for (int i = xyz.position(), end = xyz.limit() - 2; i < end; i += 3) {
+            record(xyz.get(i), xyz.get(i + 1), xyz.get(i + 2));
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertices(FloatBuffer xyz) {
+        if (passThrough) {
+            delegate.addVertices(xyz);
+        }
+        for (int i = xyz.position(), end = xyz.limit() - 2; i < end; i += 3) {
+            record(xyz.get(i), xyz.get(i + 1), xyz.get(i + 2));
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess setColor(float red, float green, float blue, float alpha) {
+        if (passThrough) {
+            delegate.setColor(red, green, blue, alpha);
+        }
+        failed = true;
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertexWithColor(double x, double y, double z, float red, float green, float blue, float alpha) {
+        if (passThrough) {
+            delegate.addVertexWithColor(x, y, z, red, green, blue, alpha);
+        }
+        failed = true;
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess finishDrawing() {
+        if (passThrough) {
+            delegate.finishDrawing();
+        }
+        if (preserveSessions) {
+            if (mode != NO_MODE) {
+                if (sessionsSize + 2 > sessions.length) {
+                    int[] grown = new int[sessions.length*2];
+                    System.arraycopy(sessions, 0, grown, 0, sessionsSize);
+                    sessions = grown;
+                }
+                sessions[sessionsSize++] = mode;
+                sessions[sessionsSize++] = sessionVertexCount;
+            }
+        } else if (!failed) {
+            if (mode == GL11.GL_LINES && sessionVertexCount % 2 != 0) {
+                // A dangling vertex would pair up with the next session's.
+                size -= 3;
+            } else if (mode == GL11.GL_LINE_LOOP && sessionVertexCount > 2) {
+                append(prevX, prevY, prevZ);
+                append(firstX, firstY, firstZ);
+            }
+        }
+        mode = NO_MODE;
+        return this;
+    }
+
+    @Override
+    public int getTessellatorCapacity() {
+        return delegate.getTessellatorCapacity();
+    }
+
+    @Override
+    public MinecraftAccess enableStandardItemLighting() {
+        delegate.enableStandardItemLighting();
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess sendChatMessage(String message) {
+        delegate.sendChatMessage(message);
+        return this;
+    }
+
+    @Override
+    public boolean chatWindowExists() {
+        return delegate.chatWindowExists();
+    }
+
+    @Override
+    public float getPartialTick() {
+        return delegate.getPartialTick();
+    }
+
+    @Override
+    public MinecraftAccess profilerStartSection(String sectionName) {
+        delegate.profilerStartSection(sectionName);
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess profilerEndSection() {
+        delegate.profilerEndSection();
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess profilerEndStartSection(String sectionName) {
+        delegate.profilerEndStartSection(sectionName);
+        return this;
+    }
+}
@@ -0,0 +1,63 @@
+package libshapedraw.internal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Internal class. A shared pool of daemon threads for CPU work that can be
+ * done off the render thread, such as rebuilding shapes' vertex caches.
+ * <p>
+ * The pool is only created when first used, with one thread fewer than the
+ * number of available processors (but at least one), leaving a core for the
+ * render thread.
+ */
+public class LSDWorkerPool {
+    private static ExecutorService executor;
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "LibShapeDraw worker #" + count.incrementAndGet());
+            // Never keep Minecraft from exiting.
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+        }
+        return executor;
+    }
+    /**
+     * Replace the executor that runs submitted tasks. Only intended for
+     * testing. The previous executor is not shut down.
+     */
+    public static synchronized void setExecutor(ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        LSDWorkerPool.executor = executor;
+    }
+
+    /**
+     * Queue a task to run on a worker thread.
+     * <p>
+     * Callers that need the task's result and find it still queued should
+     * do the work themselves rather than waiting on a busy pool. Note that
+     * <code>cancel(false)</code> also succeeds once the task has started
+     * running, so it can't tell whether the task is still queued. Have the
+     * task claim its work first instead, e.g. with an AtomicBoolean.
+     */
+    public static Future<?> submit(Runnable task) {
+        return getExecutor().submit(task);
+    }
+}
@@ -0,0 +1,351 @@
+package libshapedraw.primitive;
+
+/**
+ * An axis-aligned bounding box: the region between a lower and an upper
+ * corner.
+ * <p>
+ * A newly created BoundingBox is empty. Calling include expands the box to
+ * cover points or other boxes.
+ * <p>
+ * All modifiers support method chaining, e.g.
+ * <code>BoundingBox result = new BoundingBox().include(1.0, 2.0, 3.0).include(-1.0, 0.0, 5.0).translate(0.0, 64.0, 0.0);</code>
+ */
+public class BoundingBox implements ReadonlyBoundingBox {
+    private static final long serialVersionUID = 1L;
+
+    private double minX;
+    private double minY;
+    private double minZ;
+    private double maxX;
+    private double maxY;
+    private double maxZ;
+
+    /** Create a new empty box. */
+    public BoundingBox() {
+        setEmpty();
+    }
+
+    /**
+     * Create a new box between the two corners. The coordinates are
+     * normalized, so it doesn't matter which corner is passed first.
+     */
+    public BoundingBox(double x0, double y0, double z0, double x1, double y1, double z1) {
+        set(x0, y0, z0, x1, y1, z1);
+    }
+
+    /**
+     * Create a new box between the two corners. The coordinates are
+     * normalized, so it doesn't matter which corner is passed first.
+     */
+    public BoundingBox(ReadonlyVector3 corner0, ReadonlyVector3 corner1) {
+        set(corner0.getX(), corner0.getY(), corner0.getZ(), corner1.getX(), corner1.getY(), corner1.getZ());
+    }
+
+    public BoundingBox(ReadonlyBoundingBox other) {
+        set(other);
+    }
+
+    @Override
+    public BoundingBox copy() {
+        return new BoundingBox(this);
+    }
+
+    @Override
+    public double getMinX() {
+        return minX;
+    }
+
+    @Override
+    public double getMinY() {
+        return minY;
+    }
+
+    @Override
+    public double getMinZ() {
+        return minZ;
+    }
+
+    @Override
+    public double getMaxX() {
+        return maxX;
+    }
+
+    @Override
+    public double getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public double getMaxZ() {
+        return maxZ;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return minX > maxX || minY > maxY || minZ > maxZ;
+    }
+
+    @Override
+    public Vector3 getCenter() {
+        return new Vector3(
+                minX + (maxX - minX)/2.0,
+                minY + (maxY - minY)/2.0,
+                minZ + (maxZ - minZ)/2.0);
+    }
+
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return x >= minX && x <= maxX &&
+                y >= minY && y <= maxY &&
+                z >= minZ && z <= maxZ;
+    }
+
+    @Override
+    public boolean contains(ReadonlyVector3 point) {
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    @Override
+    public boolean intersects(ReadonlyBoundingBox other) {
+        return other != null &&
+                minX <= other.getMaxX() && maxX >= other.getMinX() &&
+                minY <= other.getMaxY() && maxY >= other.getMinY() &&
+                minZ <= other.getMaxZ() && maxZ >= other.getMinZ();
+    }
+
+    @Override
+    public double getDistance(double x, double y, double z) {
+        if (isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double dx = Math.max(0.0, Math.max(minX - x, x - maxX));
+        double dy = Math.max(0.0, Math.max(minY - y, y - maxY));
+        double dz = Math.max(0.0, Math.max(minZ - z, z - maxZ));
+        return Math.sqrt(dx*dx + dy*dy + dz*dz);
+    }
+
+    @Override
+    public double getDistance(ReadonlyVector3 point) {
+        return getDistance(point.getX(), point.getY(), point.getZ());
+    }
+
+    @Override
+    public double getRayIntersection(ReadonlyVector3 origin, ReadonlyVector3 direction) {
+        if (isEmpty()) {
+            return -1.0;
+        }
+        // Slab method: clip the ray against each pair of axis planes.
+        double[] range = {0.0, Double.POSITIVE_INFINITY};
+        if (!clipRay(range, origin.getX(), direction.getX(), minX, maxX) ||
+                !clipRay(range, origin.getY(), direction.getY(), minY, maxY) ||
+                !clipRay(range, origin.getZ(), direction.getZ(), minZ, maxZ)) {
+            return -1.0;
+        }
+        return range[0];
+    }
+
+    private static boolean clipRay(double[] range, double origin, double direction, double min, double max) {
+        if (direction == 0.0) {
+            return origin >= min && origin <= max;
+        }
+        double t0 = (min - origin) / direction;
+        double t1 = (max - origin) / direction;
+        if (t0 > t1) {
+            double swap = t0;
+            t0 = t1;
+            t1 = swap;
+        }
+        range[0] = Math.max(range[0], t0);
+        range[1] = Math.min(range[1], t1);
+        return range[0] <= range[1];
+    }
+
+    /** @return true if two boxes have exactly equal coordinates. */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ReadonlyBoundingBox)) {
+            return false;
+        }
+        ReadonlyBoundingBox o = (ReadonlyBoundingBox) other;
+        return minX == o.getMinX() && minY == o.getMinY() && minZ == o.getMinZ() &&
+                maxX == o.getMaxX() && maxY == o.getMaxY() && maxZ == o.getMaxZ();
+    }
+
+    @Override
+    public int hashCode() {
+        // Equivalent to java.util.Arrays.hashCode(new double[] {...})
+        // without the extra object allocation.
+        int hash = 1;
+        hash = 31*hash + hashCode(minX);
+        hash = 31*hash + hashCode(minY);
+        hash = 31*hash + hashCode(minZ);
+        hash = 31*hash + hashCode(maxX);
+        hash = 31*hash + hashCode(maxY);
+        hash = 31*hash + hashCode(maxZ);
+        return hash;
+    }
+    private static int hashCode(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[empty]";
+        }
+        return "[(" + minX + "," + minY + "," + minZ + ")(" + maxX + "," + maxY + "," + maxZ + ")]";
+    }
+
+    // ========
+    // Mutators
+    // ========
+
+    /** @return the same box, modified to contain nothing. */
+    public BoundingBox setEmpty() {
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        minZ = Double.POSITIVE_INFINITY;
+        maxX = Double.NEGATIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+        maxZ = Double.NEGATIVE_INFINITY;
+        return this;
+    }
+
+    /**
+     * @return the same box, modified to be between the two corners. The
+     *         coordinates are normalized, so it doesn't matter which corner
+     *         is passed first.
+     */
+    public BoundingBox set(double x0, double y0, double z0, double x1, double y1, double z1) {
+        minX = Math.min(x0, x1);
+        minY = Math.min(y0, y1);
+        minZ = Math.min(z0, z1);
+        maxX = Math.max(x0, x1);
+        maxY = Math.max(y0, y1);
+        maxZ = Math.max(z0, z1);
+        return this;
+    }
+
+    /** @return the same box, modified to match the other box. */
+    public BoundingBox set(ReadonlyBoundingBox other) {
+        minX = other.getMinX();
+        minY = other.getMinY();
+        minZ = other.getMinZ();
+        maxX = other.getMaxX();
+        maxY = other.getMaxY();
+        maxZ = other.getMaxZ();
+        return this;
+    }
+
+    /** @return the same box, expanded as needed to contain the point. */
+    public BoundingBox include(double x, double y, double z) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
+        return this;
+    }
+
+    /** @return the same box, expanded as needed to contain the point. */
+    public BoundingBox include(ReadonlyVector3 point) {
+        return include(point.getX(), point.getY(), point.getZ());
+    }
+
+    /** @return the same box, expanded as needed to contain the other box. */
+    public BoundingBox include(ReadonlyBoundingBox other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        minX = Math.min(minX, other.getMinX());
+        minY = Math.min(minY, other.getMinY());
+        minZ = Math.min(minZ, other.getMinZ());
+        maxX = Math.max(maxX, other.getMaxX());
+        maxY = Math.max(maxY, other.getMaxY());
+        maxZ = Math.max(maxZ, other.getMaxZ());
+        return this;
+    }
+
+    /** @return the same box, grown by the specified amount on every side. */
+    public BoundingBox expand(double amount) {
+        if (!isEmpty()) {
+            minX -= amount;
+            minY -= amount;
+            minZ -= amount;
+            maxX += amount;
+            maxY += amount;
+            maxZ += amount;
+        }
+        return this;
+    }
+
+    /** @return the same box, moved by the specified amount. */
+    public BoundingBox translate(double x, double y, double z) {
+        minX += x;
+        minY += y;
+        minZ += z;
+        maxX += x;
+        maxY += y;
+        maxZ += z;
+        return this;
+    }
+
+    /**
+     * @return the same box, scaled relative to (0,0,0), i.e. the same
+     *         operation as glScale.
+     */
+    public BoundingBox scale(double x, double y, double z) {
+        if (!isEmpty()) {
+            set(minX*x, minY*y, minZ*z, maxX*x, maxY*y, maxZ*z);
+        }
+        return this;
+    }
+
+    /**
+     * @return the same box, expanded to contain itself rotated around an axis
+     *         through (0,0,0), i.e. the same operation as glRotate. Unless
+     *         the angle is a multiple of 90 degrees around a principal axis,
+     *         the result is larger than the rotated contents.
+     */
+    public BoundingBox rotateDegrees(double angleDegrees, double axisX, double axisY, double axisZ) {
+        double length = Math.sqrt(axisX*axisX + axisY*axisY + axisZ*axisZ);
+        if (isEmpty() || length == 0.0) {
+            return this;
+        }
+        // Same rotation matrix as glRotate.
+        double x = axisX / length;
+        double y = axisY / length;
+        double z = axisZ / length;
+        double rad = Math.toRadians(angleDegrees);
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+        double t = 1.0 - c;
+        double m00 = x*x*t + c,   m01 = x*y*t - z*s, m02 = x*z*t + y*s;
+        double m10 = y*x*t + z*s, m11 = y*y*t + c,   m12 = y*z*t - x*s;
+        double m20 = z*x*t - y*s, m21 = z*y*t + x*s, m22 = z*z*t + c;
+
+        // Transform the center and the half-extents separately: the rotated
+        // box's half-extent on each axis is the sum of absolute contributions.
+        double cx = minX + (maxX - minX)/2.0;
+        double cy = minY + (maxY - minY)/2.0;
+        double cz = minZ + (maxZ - minZ)/2.0;
+        double ex = (maxX - minX)/2.0;
+        double ey = (maxY - minY)/2.0;
+        double ez = (maxZ - minZ)/2.0;
+        double ncx = m00*cx + m01*cy + m02*cz;
+        double ncy = m10*cx + m11*cy + m12*cz;
+        double ncz = m20*cx + m21*cy + m22*cz;
+        double nex = Math.abs(m00)*ex + Math.abs(m01)*ey + Math.abs(m02)*ez;
+        double ney = Math.abs(m10)*ex + Math.abs(m11)*ey + Math.abs(m12)*ez;
+        double nez = Math.abs(m20)*ex + Math.abs(m21)*ey + Math.abs(m22)*ez;
+        minX = ncx - nex;
+        minY = ncy - ney;
+        minZ = ncz - nez;
+        maxX = ncx + nex;
+        maxY = ncy + ney;
+        maxZ = ncz + nez;
+        return this;
+    }
+}
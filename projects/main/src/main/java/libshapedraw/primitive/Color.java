@@ -5,10 +5,9 @@ import java.util.HashMap;
 
 import libshapedraw.animation.Animates;
 import libshapedraw.animation.trident.Timeline;
+import libshapedraw.internal.LSDGLState;
 import libshapedraw.internal.LSDInternalReflectionException;
 
-import org.lwjgl.opengl.GL11;
-
 /**
  * Yet another class representing a Red/Green/Blue/Alpha color 4-tuple.
  * <p>
@@ -22,6 +21,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
     private double green;
     private double blue;
     private double alpha;
+    private transient long version;
 
     /** @see Vector3#timeline */
     private transient Timeline timeline;
@@ -91,12 +91,12 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
 
     @Override
     public void glApply() {
-        GL11.glColor4d(red, green, blue, alpha);
+        LSDGLState.glColor4d(red, green, blue, alpha);
     }
 
     @Override
     public void glApply(double alphaScale) {
-        GL11.glColor4d(red, green, blue, clamp(alpha * alphaScale));
+        LSDGLState.glColor4d(red, green, blue, clamp(alpha * alphaScale));
     }
 
     /** @return true if two colors are equal, rounding each component. */
@@ -115,6 +115,17 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
         return String.format("0x%08x", getRGBA());
     }
 
+    /**
+     * A counter that increases every time this color is modified, including by
+     * animation. Comparing it to a previously saved value is a cheap way to
+     * tell whether the color changed in the meantime.
+     * <p>
+     * The counter is not serialized.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     // ========
     // Mutators
     // ========
@@ -125,6 +136,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
      */
     public Color setRed(double red) {
         this.red = clamp(red);
+        version++;
         return this;
     }
 
@@ -134,6 +146,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
      */
     public Color setGreen(double green) {
         this.green = clamp(green);
+        version++;
         return this;
     }
 
@@ -143,6 +156,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
      */
     public Color setBlue(double blue) {
         this.blue = clamp(blue);
+        version++;
         return this;
     }
 
@@ -152,6 +166,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
      */
     public Color setAlpha(double alpha) {
         this.alpha = clamp(alpha);
+        version++;
         return this;
     }
 
@@ -164,6 +179,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
         this.green = clamp(green);
         this.blue = clamp(blue);
         this.alpha = clamp(alpha);
+        version++;
         return this;
     }
 
@@ -176,6 +192,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
         green = clamp(other.getGreen());
         blue = clamp(other.getBlue());
         alpha = clamp(other.getAlpha());
+        version++;
         return this;
     }
 
@@ -188,6 +205,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
         red = clamp(red*factor);
         green = clamp(green*factor);
         blue = clamp(blue*factor);
+        version++;
         return this;
     }
 
@@ -198,6 +216,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
      */
     public Color scaleAlpha(double factor) {
         alpha = clamp(alpha*factor);
+        version++;
         return this;
     }
 
@@ -235,6 +254,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
         green = Math.random();
         blue = Math.random();
         alpha = Math.random();
+        version++;
         return this;
     }
 
@@ -247,6 +267,7 @@ public class Color implements ReadonlyColor, Animates<ReadonlyColor> {
         red = Math.random();
         green = Math.random();
         blue = Math.random();
+        version++;
         return this;
     }
 
@@ -1,5 +1,6 @@
 package libshapedraw.primitive;
 
+import libshapedraw.internal.LSDGLState;
 import libshapedraw.shape.XrayShape;
 
 import org.lwjgl.opengl.GL11;
@@ -20,6 +21,7 @@ public class LineStyle implements ReadonlyLineStyle {
     private float mainWidth;
     private Color secondaryColor;
     private float secondaryWidth;
+    private transient long version;
 
     public LineStyle(Color color, float width, boolean hasSecondaryColor) {
         set(color, width, hasSecondaryColor);
@@ -72,13 +74,13 @@ public class LineStyle implements ReadonlyLineStyle {
             if (secondaryColor == null) {
                 return false;
             }
-            GL11.glDepthFunc(GL11.GL_GREATER);
+            LSDGLState.glDepthFunc(GL11.GL_GREATER);
             secondaryColor.glApply();
-            GL11.glLineWidth(secondaryWidth);
+            LSDGLState.glLineWidth(secondaryWidth);
         } else {
-            GL11.glDepthFunc(GL11.GL_LEQUAL);
+            LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
             mainColor.glApply();
-            GL11.glLineWidth(mainWidth);
+            LSDGLState.glLineWidth(mainWidth);
         }
         return true;
     }
@@ -124,6 +126,18 @@ public class LineStyle implements ReadonlyLineStyle {
         return secondaryColor;
     }
 
+    /**
+     * A counter that increases every time this line style or either of its
+     * colors is modified. Comparing it to a previously saved value is a cheap
+     * way to tell whether the line style changed in the meantime.
+     * <p>
+     * The counter is not serialized.
+     */
+    public long getVersion() {
+        return version + mainColor.getVersion() +
+                (secondaryColor == null ? 0 : secondaryColor.getVersion());
+    }
+
     // ========
     // Mutators
     // ========
@@ -170,6 +184,7 @@ public class LineStyle implements ReadonlyLineStyle {
         if (mainColor == null) {
             throw new IllegalArgumentException("main color cannot be null");
         }
+        version += 1 + (this.mainColor == null ? 0 : this.mainColor.getVersion());
         this.mainColor = mainColor;
         return this;
     }
@@ -183,6 +198,7 @@ public class LineStyle implements ReadonlyLineStyle {
             throw new IllegalArgumentException("line width must be positive");
         }
         this.mainWidth = mainWidth;
+        version++;
         return this;
     }
 
@@ -192,6 +208,7 @@ public class LineStyle implements ReadonlyLineStyle {
      */
     public LineStyle setSecondaryColor(Color secondaryColor) {
         // null allowed
+        version += 1 + (this.secondaryColor == null ? 0 : this.secondaryColor.getVersion());
         this.secondaryColor = secondaryColor;
         return this;
     }
@@ -202,6 +219,7 @@ public class LineStyle implements ReadonlyLineStyle {
      * @return the same line style object, modified in-place.
      */
     public LineStyle setSecondaryColorFromMain() {
+        version += 1 + (secondaryColor == null ? 0 : secondaryColor.getVersion());
         secondaryColor = mainColor.copy().scaleAlpha(XrayShape.SECONDARY_ALPHA);
         return this;
     }
@@ -215,6 +233,7 @@ public class LineStyle implements ReadonlyLineStyle {
             throw new IllegalArgumentException("line width must be positive");
         }
         this.secondaryWidth = secondaryWidth;
+        version++;
         return this;
     }
 }
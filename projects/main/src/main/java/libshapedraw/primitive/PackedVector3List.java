@@ -0,0 +1,288 @@
+package libshapedraw.primitive;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.AbstractCollection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, growable list of (X, Y, Z) coordinates, packed into a single
+ * primitive array rather than stored as individual Vector3 objects.
+ * <p>
+ * A million Vector3s cost tens of megabytes of heap; a million packed points
+ * cost 24 megabytes and no per-point garbage collection overhead. Pass one to
+ * WireframeLines and its coordinates are streamed straight to the
+ * Tessellator.
+ * <p>
+ * To implement Collection, the iterator yields a single reusable vector
+ * (a flyweight) that is updated to the next point on every call to next.
+ * Copy it if you need to keep it around. Modifying it has no effect on the
+ * list; use {@link #set} instead. The toArray methods, which other
+ * collections' copy constructors and addAll use, return a new Vector3 for
+ * each point instead.
+ * <p>
+ * All modifiers that don't implement Collection methods support method
+ * chaining, e.g.
+ * <code>PackedVector3List result = new PackedVector3List().add(1.0, 2.0, 3.0).add(4.0, 5.0, 6.0);</code>
+ */
+public class PackedVector3List extends AbstractCollection<ReadonlyVector3> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] coords;
+    private int size;
+    private transient long version;
+    /** Changed only when points are added or removed. */
+    private transient int modCount;
+
+    /** Create a new empty list. */
+    public PackedVector3List() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new empty list with room for the specified number of points
+     * before having to grow.
+     */
+    public PackedVector3List(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("expecting capacity >=0, got " + initialCapacity);
+        }
+        coords = new double[3*initialCapacity];
+    }
+
+    /** Create a new list containing a copy of each point. */
+    public PackedVector3List(Iterable<? extends ReadonlyVector3> points) {
+        this();
+        for (ReadonlyVector3 point : points) {
+            add(point);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The backing array: the x/y/z coordinates of point i are at indices
+     * 3*i, 3*i+1, and 3*i+2. Only the first 3*size() elements are used.
+     * <p>
+     * The array is replaced when the list grows, so don't hold on to it.
+     */
+    public double[] getCoordinates() {
+        return coords;
+    }
+
+    /**
+     * A counter that increases every time this list is modified. Comparing
+     * it to a previously saved value is a cheap way to tell whether the list
+     * changed in the meantime.
+     * <p>
+     * The counter is not serialized.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+
+    public double getX(int index) {
+        checkIndex(index);
+        return coords[3*index];
+    }
+
+    public double getY(int index) {
+        checkIndex(index);
+        return coords[3*index + 1];
+    }
+
+    public double getZ(int index) {
+        checkIndex(index);
+        return coords[3*index + 2];
+    }
+
+    /**
+     * Copy a point's coordinates into result.
+     * @return result, for method chaining
+     */
+    public Vector3 get(int index, Vector3 result) {
+        checkIndex(index);
+        final int i = 3*index;
+        return result.set(coords[i], coords[i + 1], coords[i + 2]);
+    }
+
+    /**
+     * Yield every point in order using a single reusable vector.
+     * @see PackedVector3List
+     */
+    @Override
+    public Iterator<ReadonlyVector3> iterator() {
+        return new Cursor();
+    }
+
+    /** @return a new Vector3 copy of each point, in order. */
+    @Override
+    public Object[] toArray() {
+        final Object[] result = new Object[size];
+        for (int index = 0; index < size; index++) {
+            result[index] = get(index, new Vector3());
+        }
+        return result;
+    }
+
+    /** @return a new Vector3 copy of each point, in order. */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        final T[] result = a.length >= size ? a :
+            (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+        for (int index = 0; index < size; index++) {
+            result[index] = (T) get(index, new Vector3());
+        }
+        if (result.length > size) {
+            result[size] = null;
+        }
+        return result;
+    }
+
+    // ========
+    // Mutators
+    // ========
+
+    /**
+     * Ensure there is room for the specified number of points without having
+     * to grow.
+     * @return the same list object, modified in-place.
+     */
+    public PackedVector3List ensureCapacity(int capacity) {
+        if (3*capacity > coords.length) {
+            double[] grown = new double[Math.max(3*capacity, coords.length*2)];
+            System.arraycopy(coords, 0, grown, 0, 3*size);
+            coords = grown;
+        }
+        return this;
+    }
+
+    /**
+     * Shrink the backing array to fit the current number of points.
+     * @return the same list object, modified in-place.
+     */
+    public PackedVector3List trimToSize() {
+        if (coords.length > 3*size) {
+            double[] trimmed = new double[3*size];
+            System.arraycopy(coords, 0, trimmed, 0, 3*size);
+            coords = trimmed;
+        }
+        return this;
+    }
+
+    /**
+     * Append a point.
+     * @return the same list object, modified in-place.
+     */
+    public PackedVector3List add(double x, double y, double z) {
+        ensureCapacity(size + 1);
+        final int i = 3*size;
+        coords[i] = x;
+        coords[i + 1] = y;
+        coords[i + 2] = z;
+        size++;
+        version++;
+        modCount++;
+        return this;
+    }
+
+    /** Append a copy of the point, which cannot be null. */
+    @Override
+    public boolean add(ReadonlyVector3 point) {
+        if (point == null) {
+            throw new IllegalArgumentException("point cannot be null");
+        }
+        add(point.getX(), point.getY(), point.getZ());
+        return true;
+    }
+
+    /**
+     * Change a point's coordinates.
+     * @return the same list object, modified in-place.
+     */
+    public PackedVector3List set(int index, double x, double y, double z) {
+        checkIndex(index);
+        final int i = 3*index;
+        coords[i] = x;
+        coords[i + 1] = y;
+        coords[i + 2] = z;
+        version++;
+        return this;
+    }
+
+    /**
+     * Change a point's coordinates.
+     * @return the same list object, modified in-place.
+     */
+    public PackedVector3List set(int index, ReadonlyVector3 point) {
+        return set(index, point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Remove the point at the specified index, shifting later points down.
+     * @return the same list object, modified in-place.
+     */
+    public PackedVector3List removeAt(int index) {
+        checkIndex(index);
+        System.arraycopy(coords, 3*(index + 1), coords, 3*index, 3*(size - index - 1));
+        size--;
+        version++;
+        modCount++;
+        return this;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        version++;
+        modCount++;
+    }
+
+    private class Cursor implements Iterator<ReadonlyVector3> {
+        private final Vector3 flyweight = new Vector3();
+        private int next;
+        private boolean canRemove;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public ReadonlyVector3 next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            final int i = 3*next++;
+            canRemove = true;
+            return flyweight.set(coords[i], coords[i + 1], coords[i + 2]);
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            removeAt(--next);
+            canRemove = false;
+            expectedModCount = modCount;
+        }
+    }
+}
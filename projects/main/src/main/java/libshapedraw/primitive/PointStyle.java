@@ -0,0 +1,241 @@
+package libshapedraw.primitive;
+
+import libshapedraw.internal.LSDGLState;
+import libshapedraw.shape.XrayShape;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Represent a point style: a Color and a floating point size, in pixels.
+ * Optionally, the point style can have a secondary Color/size as well.
+ * This is the point equivalent of a {@link LineStyle}.
+ * <p>
+ * All modifiers support method chaining, e.g.
+ * <code>PointStyle result = new PointStyle(Color.WHITE.copy(), 4.0F, true).setSecondarySize(2.0F);</code>
+ */
+public class PointStyle implements ReadonlyPointStyle {
+    private static final long serialVersionUID = 1L;
+    public static final ReadonlyPointStyle DEFAULT = new PointStyle(
+            Color.MAGENTA.copy().setAlpha(0.8), 3.0F, true);
+
+    private Color mainColor;
+    private float mainSize;
+    private Color secondaryColor;
+    private float secondarySize;
+    private transient long version;
+
+    public PointStyle(Color color, float size, boolean hasSecondaryColor) {
+        set(color, size, hasSecondaryColor);
+    }
+
+    public PointStyle(Color mainColor, float mainSize, Color secondaryColor, float secondarySize) {
+        set(mainColor, mainSize, secondaryColor, secondarySize);
+    }
+
+    public PointStyle(ReadonlyPointStyle other) {
+        setMainColor(other.getMainReadonlyColor().copy());
+        setMainSize(other.getMainSize());
+        setSecondaryColor(other.getSecondaryReadonlyColor() == null ? null : other.getSecondaryReadonlyColor().copy());
+        setSecondarySize(other.getSecondarySize());
+    }
+
+    @Override
+    public PointStyle copy() {
+        return new PointStyle(this);
+    }
+
+    @Override
+    public ReadonlyColor getMainReadonlyColor() {
+        return mainColor;
+    }
+
+    @Override
+    public ReadonlyColor getSecondaryReadonlyColor() {
+        return secondaryColor;
+    }
+
+    @Override
+    public float getMainSize() {
+        return mainSize;
+    }
+
+    @Override
+    public float getSecondarySize() {
+        return secondarySize;
+    }
+
+    @Override
+    public boolean hasSecondaryColor() {
+        return secondaryColor != null;
+    }
+
+    @Override
+    public boolean glApply(boolean useSecondary) {
+        if (useSecondary) {
+            if (secondaryColor == null) {
+                return false;
+            }
+            LSDGLState.glDepthFunc(GL11.GL_GREATER);
+            secondaryColor.glApply();
+            LSDGLState.glPointSize(secondarySize);
+        } else {
+            LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
+            mainColor.glApply();
+            LSDGLState.glPointSize(mainSize);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isAnimating() {
+        return mainColor.isAnimating() ||
+                (secondaryColor != null && secondaryColor.isAnimating());
+    }
+
+    /** @return true if two point styles are equal. */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PointStyle && toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("(");
+        b.append(getMainColor()).append(',').append(getMainSize());
+        if (hasSecondaryColor()) {
+            b.append('|').append(getSecondaryColor()).append(',').append(getSecondarySize());
+        }
+        return b.append(')').toString();
+    }
+
+    // ========
+    // Accessors for mutable properties
+    // ========
+
+    /** @return the main point color, mutable. */
+    public Color getMainColor() {
+        return mainColor;
+    }
+
+    /** @return the secondary point color, mutable. May be null. */
+    public Color getSecondaryColor() {
+        return secondaryColor;
+    }
+
+    /**
+     * A counter that increases every time this point style or either of its
+     * colors is modified.
+     * <p>
+     * The counter is not serialized.
+     *
+     * @see LineStyle#getVersion
+     */
+    public long getVersion() {
+        return version + mainColor.getVersion() +
+                (secondaryColor == null ? 0 : secondaryColor.getVersion());
+    }
+
+    // ========
+    // Mutators
+    // ========
+
+    /**
+     * Convenience method to set mainColor, mainSize, secondaryColor, and
+     * secondarySize at once.
+     * @param color sets mainColor
+     * @param size sets both mainSize and secondarySize
+     * @param hasSecondaryColor if true, secondaryColor will be a
+     *        semi-transparent version of mainColor. If false, secondaryColor
+     *        is null.
+     * @return the same point style object, modified in-place.
+     */
+    public PointStyle set(Color color, float size, boolean hasSecondaryColor) {
+        setMainColor(color);
+        setMainSize(size);
+        if (hasSecondaryColor) {
+            setSecondaryColorFromMain();
+        } else {
+            setSecondaryColor(null);
+        }
+        setSecondarySize(size);
+        return this;
+    }
+
+    /**
+     * Set all components of this point style.
+     * @return the same point style object, modified in-place.
+     */
+    public PointStyle set(Color mainColor, float mainSize, Color secondaryColor, float secondarySize) {
+        setMainColor(mainColor);
+        setMainSize(mainSize);
+        setSecondaryColor(secondaryColor);
+        setSecondarySize(secondarySize);
+        return this;
+    }
+
+    /**
+     * Set the point style's main color, which cannot be null.
+     * @return the same point style object, modified in-place.
+     */
+    public PointStyle setMainColor(Color mainColor) {
+        if (mainColor == null) {
+            throw new IllegalArgumentException("main color cannot be null");
+        }
+        version += 1 + (this.mainColor == null ? 0 : this.mainColor.getVersion());
+        this.mainColor = mainColor;
+        return this;
+    }
+
+    /**
+     * Set the point style's main size.
+     * @return the same point style object, modified in-place.
+     */
+    public PointStyle setMainSize(float mainSize) {
+        if (mainSize < 0) {
+            throw new IllegalArgumentException("point size must be positive");
+        }
+        this.mainSize = mainSize;
+        version++;
+        return this;
+    }
+
+    /**
+     * Set the point style's secondary color, which can be null.
+     * @return the same point style object, modified in-place.
+     */
+    public PointStyle setSecondaryColor(Color secondaryColor) {
+        // null allowed
+        version += 1 + (this.secondaryColor == null ? 0 : this.secondaryColor.getVersion());
+        this.secondaryColor = secondaryColor;
+        return this;
+    }
+
+    /**
+     * Set the point style's secondary color to a semi-transparent version of
+     * the main point color.
+     * @return the same point style object, modified in-place.
+     */
+    public PointStyle setSecondaryColorFromMain() {
+        version += 1 + (secondaryColor == null ? 0 : secondaryColor.getVersion());
+        secondaryColor = mainColor.copy().scaleAlpha(XrayShape.SECONDARY_ALPHA);
+        return this;
+    }
+
+    /**
+     * Set the point style's secondary size.
+     * @return the same point style object, modified in-place.
+     */
+    public PointStyle setSecondarySize(float secondarySize) {
+        if (secondarySize < 0) {
+            throw new IllegalArgumentException("point size must be positive");
+        }
+        this.secondarySize = secondarySize;
+        version++;
+        return this;
+    }
+}
@@ -0,0 +1,82 @@
+package libshapedraw.primitive;
+
+import java.io.Serializable;
+
+/**
+ * Read-only interface for BoundingBox objects, allowing for compile-time
+ * safety.
+ * @see BoundingBox
+ */
+public interface ReadonlyBoundingBox extends Serializable {
+    /**
+     * @return a new deep-copied mutable BoundingBox.
+     *         <p>
+     *         Same concept as Object.clone(), minus the tedious/clunky checked
+     *         exception, CloneNotSupportedException.
+     */
+    public BoundingBox copy();
+
+    /** @return the lower x coordinate. */
+    public double getMinX();
+
+    /** @return the lower y coordinate. */
+    public double getMinY();
+
+    /** @return the lower z coordinate. */
+    public double getMinZ();
+
+    /** @return the upper x coordinate. */
+    public double getMaxX();
+
+    /** @return the upper y coordinate. */
+    public double getMaxY();
+
+    /** @return the upper z coordinate. */
+    public double getMaxZ();
+
+    /**
+     * @return true if the box doesn't contain anything, not even a single
+     *         point.
+     */
+    public boolean isEmpty();
+
+    /** @return a new Vector3 at the center of the box. */
+    public Vector3 getCenter();
+
+    /** @return true if the point is inside or on the edge of the box. */
+    public boolean contains(double x, double y, double z);
+
+    /** @return true if the point is inside or on the edge of the box. */
+    public boolean contains(ReadonlyVector3 point);
+
+    /** @return true if the two boxes overlap or touch. */
+    public boolean intersects(ReadonlyBoundingBox other);
+
+    /**
+     * @return the distance from the point to the nearest point of the box,
+     *         0.0 if the point is inside the box, or positive infinity if the
+     *         box is empty.
+     */
+    public double getDistance(double x, double y, double z);
+
+    /** @see #getDistance(double, double, double) */
+    public double getDistance(ReadonlyVector3 point);
+
+    /**
+     * Intersect a ray with the box.
+     * 
+     * @return the smallest t >= 0.0 such that origin + t*direction is inside
+     *         or on the edge of the box (0.0 if the origin is inside the box),
+     *         or a negative number if the ray misses the box.
+     */
+    public double getRayIntersection(ReadonlyVector3 origin, ReadonlyVector3 direction);
+
+    @Override
+    public boolean equals(Object other);
+
+    @Override
+    public int hashCode();
+
+    @Override
+    public String toString();
+}
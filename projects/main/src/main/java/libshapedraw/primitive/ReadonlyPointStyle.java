@@ -0,0 +1,58 @@
+package libshapedraw.primitive;
+
+import java.io.Serializable;
+
+/**
+ * Read-only interface for PointStyle objects, allowing for compile-time safety.
+ * @see PointStyle
+ */
+public interface ReadonlyPointStyle extends Serializable {
+    /**
+     * @return a new deep-copied mutable PointStyle.
+     *         <p>
+     *         Same concept as Object.clone(), minus the tedious/clunky checked
+     *         exception, CloneNotSupportedException.
+     */
+    public PointStyle copy();
+
+    /** @return a read-only view of the main point color. */
+    public ReadonlyColor getMainReadonlyColor();
+
+    /** @return the main point size. */
+    public float getMainSize();
+
+    /** @return a read-only view of the secondary point color. May be null. */
+    public ReadonlyColor getSecondaryReadonlyColor();
+
+    /**
+     * @return the secondary point size, which is unused if the secondary
+     *         point color is null.
+     */
+    public float getSecondarySize();
+
+    /** @return true if the secondary point color is not null. */
+    public boolean hasSecondaryColor();
+
+    /**
+     * Convenience method that sets the OpenGL state to match this point
+     * style. I.e., call glColor4d, glPointSize, and glDepthFunc.
+     * @return false if the OpenGL state was not set due to the secondary color
+     *         not being set for this point style.
+     */
+    public boolean glApply(boolean useSecondary);
+
+    /**
+     * @return true if either of this point style's colors is being updated by
+     *         an active animation.
+     */
+    public boolean isAnimating();
+
+    @Override
+    public boolean equals(Object other);
+
+    @Override
+    public int hashCode();
+
+    @Override
+    public String toString();
+}
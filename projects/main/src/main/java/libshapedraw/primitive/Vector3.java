@@ -23,6 +23,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
     private double x;
     private double y;
     private double z;
+    private transient long version;
 
     /**
      * It is perhaps a bit wasteful to have a Timeline field on every Vector3
@@ -30,7 +31,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      * even if it is lazily instantiated. However, developer convenience wins
      * over premature optimization.
      * <p>
-     * In any case, java.nio.FloatBuffer is a more appropriate data container
+     * In any case, PackedVector3List is a more appropriate data container
      * for a large number of vertices in a memory-constrained environment.
      */
     private transient Timeline timeline;
@@ -289,6 +290,17 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         GL11.glTranslated(x, y, z);
     }
 
+    /**
+     * A counter that increases every time this vector is modified, including by
+     * animation. Comparing it to a previously saved value is a cheap way to
+     * tell whether the vector changed in the meantime.
+     * <p>
+     * The counter is not serialized.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     // ========
     // Mutators
     // ========
@@ -301,6 +313,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         this.x = x;
         this.y = y;
         this.z = z;
+        version++;
         return this;
     }
 
@@ -312,6 +325,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = other.getX();
         y = other.getY();
         z = other.getZ();
+        version++;
         return this;
     }
 
@@ -321,6 +335,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 setX(double x) {
         this.x = x;
+        version++;
         return this;
     }
 
@@ -330,6 +345,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 setY(double y) {
         this.y = y;
+        version++;
         return this;
     }
 
@@ -339,6 +355,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 setZ(double z) {
         this.z = z;
+        version++;
         return this;
     }
 
@@ -357,6 +374,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         } else {
             z = value;
         }
+        version++;
         return this;
     }
 
@@ -371,6 +389,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         z = y;
         y = x;
         x = tmp;
+        version++;
         return this;
     }
 
@@ -380,6 +399,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 addX(double xAmount) {
         x += xAmount;
+        version++;
         return this;
     }
 
@@ -389,6 +409,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 addY(double yAmount) {
         y += yAmount;
+        version++;
         return this;
     }
 
@@ -398,6 +419,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 addZ(double zAmount) {
         z += zAmount;
+        version++;
         return this;
     }
 
@@ -417,6 +439,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x += xAmount;
         y += yAmount;
         z += zAmount;
+        version++;
         return this;
     }
 
@@ -428,6 +451,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x += other.getX();
         y += other.getY();
         z += other.getZ();
+        version++;
         return this;
     }
 
@@ -440,6 +464,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x -= other.getX();
         y -= other.getY();
         z -= other.getZ();
+        version++;
         return this;
     }
 
@@ -452,6 +477,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = 0.0;
         y = 0.0;
         z = 0.0;
+        version++;
         return this;
     }
 
@@ -463,6 +489,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.random();
         y = Math.random();
         z = Math.random();
+        version++;
         return this;
     }
 
@@ -475,6 +502,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.min(a.getX(), b.getX());
         y = Math.min(a.getY(), b.getY());
         z = Math.min(a.getZ(), b.getZ());
+        version++;
         return this;
     }
 
@@ -487,6 +515,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.max(a.getX(), b.getX());
         y = Math.max(a.getY(), b.getY());
         z = Math.max(a.getZ(), b.getZ());
+        version++;
         return this;
     }
 
@@ -499,6 +528,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.sin(yaw)*Math.cos(pitch);
         y = Math.sin(pitch);
         z = Math.cos(yaw)*Math.cos(pitch);
+        version++;
         return this;
     }
 
@@ -519,6 +549,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x *= factor;
         y *= factor;
         z *= factor;
+        version++;
         return this;
     }
 
@@ -528,6 +559,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 scaleX(double factor) {
         x *= factor;
+        version++;
         return this;
     }
 
@@ -537,6 +569,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 scaleY(double factor) {
         y *= factor;
+        version++;
         return this;
     }
 
@@ -546,6 +579,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 scaleZ(double factor) {
         z *= factor;
+        version++;
         return this;
     }
 
@@ -567,6 +601,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = -x;
         y = -y;
         z = -z;
+        version++;
         return this;
     }
 
@@ -578,6 +613,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.abs(x);
         y = Math.abs(y);
         z = Math.abs(z);
+        version++;
         return this;
     }
 
@@ -589,6 +625,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.min(max, Math.max(min, x));
         y = Math.min(max, Math.max(min, y));
         z = Math.min(max, Math.max(min, z));
+        version++;
         return this;
     }
 
@@ -598,6 +635,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 clampX(double min, double max) {
         x = Math.min(max, Math.max(min, x));
+        version++;
         return this;
     }
 
@@ -607,6 +645,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 clampY(double min, double max) {
         y = Math.min(max, Math.max(min, y));
+        version++;
         return this;
     }
 
@@ -616,6 +655,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
      */
     public Vector3 clampZ(double min, double max) {
         z = Math.min(max, Math.max(min, z));
+        version++;
         return this;
     }
 
@@ -638,6 +678,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = (int) x;
         y = (int) y;
         z = (int) z;
+        version++;
         return this;
     }
 
@@ -651,6 +692,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.floor(x);
         y = Math.floor(y);
         z = Math.floor(z);
+        version++;
         return this;
     }
 
@@ -664,6 +706,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.ceil(x);
         y = Math.ceil(y);
         z = Math.ceil(z);
+        version++;
         return this;
     }
 
@@ -677,6 +720,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = Math.round(x);
         y = Math.round(y);
         z = Math.round(z);
+        version++;
         return this;
     }
 
@@ -689,6 +733,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = x/2.0 + other.getX()/2.0;
         y = y/2.0 + other.getY()/2.0;
         z = z/2.0 + other.getZ()/2.0;
+        version++;
         return this;
     }
 
@@ -702,6 +747,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x = (1.0 - alpha)*x + alpha*other.getX();
         y = (1.0 - alpha)*y + alpha*other.getY();
         z = (1.0 - alpha)*z + alpha*other.getZ();
+        version++;
         return this;
     }
 
@@ -715,6 +761,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         z           = x*other.getY() - y*other.getX();
         x = tmpX;
         y = tmpY;
+        version++;
         return this;
     }
 
@@ -732,6 +779,7 @@ public class Vector3 implements ReadonlyVector3, Animates<ReadonlyVector3>, Seri
         x /= length;
         y /= length;
         z /= length;
+        version++;
         return this;
     }
 
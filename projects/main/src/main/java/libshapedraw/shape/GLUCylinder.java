@@ -1,5 +1,7 @@
 package libshapedraw.shape;
 
+import libshapedraw.internal.LSDMeshCache;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.Vector3;
 
@@ -35,9 +37,30 @@ public class GLUCylinder extends GLUShape {
         setStacks(DEFAULT_STACKS);
     }
 
+    /** The cylinder extends along the z axis, from the base to the top. */
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        float r = Math.max(baseRadius, topRadius);
+        result.set(-r, -r, 0.0, r, r, height);
+        return true;
+    }
+
     @Override
     protected void renderGLUQuadric() {
-        cylinder.draw(getBaseRadius(), getTopRadius(), getHeight(), getSlices(), getStacks());
+        cylinder.draw(getBaseRadius(), getTopRadius(), getHeight(), getDetail(getSlices()), getDetail(getStacks()));
+    }
+
+    /** The unit mesh has a base radius and height of 1. */
+    @Override
+    protected boolean getUnitMesh(LSDMeshCache.Key key, Vector3 scale) {
+        key.setGeometry(GLUCylinder.class, getDetail(getSlices()), getDetail(getStacks()), topRadius/baseRadius, 0.0F, 0.0F);
+        scale.set(baseRadius, baseRadius, height);
+        return true;
+    }
+
+    @Override
+    protected void renderGLUQuadricUnit() {
+        cylinder.draw(1.0F, topRadius/baseRadius, 1.0F, getDetail(getSlices()), getDetail(getStacks()));
     }
 
     public float getBaseRadius() {
@@ -48,6 +71,7 @@ public class GLUCylinder extends GLUShape {
             throw new IllegalArgumentException("expecting base radius >0.0, got " + baseRadius);
         }
         this.baseRadius = baseRadius;
+        bumpShapeVersion();
         return this;
     }
 
@@ -59,6 +83,7 @@ public class GLUCylinder extends GLUShape {
             throw new IllegalArgumentException("expecting top radius >0.0, got " + topRadius);
         }
         this.topRadius = topRadius;
+        bumpShapeVersion();
         return this;
     }
 
@@ -70,6 +95,7 @@ public class GLUCylinder extends GLUShape {
     }
     public GLUCylinder setHeight(float height) {
         this.height = height;
+        bumpShapeVersion();
         return this;
     }
 
@@ -85,6 +111,7 @@ public class GLUCylinder extends GLUShape {
             throw new IllegalArgumentException("expecting slices >=2, got " + slices);
         }
         this.slices = slices;
+        bumpShapeVersion();
         return this;
     }
 
@@ -100,6 +127,7 @@ public class GLUCylinder extends GLUShape {
             throw new IllegalArgumentException("expecting stacks >=2, got " + stacks);
         }
         this.stacks = stacks;
+        bumpShapeVersion();
         return this;
     }
 }
\ No newline at end of file
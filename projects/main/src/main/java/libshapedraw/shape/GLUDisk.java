@@ -1,5 +1,7 @@
 package libshapedraw.shape;
 
+import libshapedraw.internal.LSDMeshCache;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.Vector3;
 
@@ -32,9 +34,29 @@ public class GLUDisk extends GLUShape {
         setLoops(DEFAULT_LOOPS);
     }
 
+    /** The disk lies flat on the z=0 plane. */
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        result.set(-outerRadius, -outerRadius, 0.0, outerRadius, outerRadius, 0.0);
+        return true;
+    }
+
     @Override
     protected void renderGLUQuadric() {
-        disk.draw(getInnerRadius(), getOuterRadius(), getSlices(), getLoops());
+        disk.draw(getInnerRadius(), getOuterRadius(), getDetail(getSlices()), getDetail(getLoops()));
+    }
+
+    /** The unit mesh has an outer radius of 1. */
+    @Override
+    protected boolean getUnitMesh(LSDMeshCache.Key key, Vector3 scale) {
+        key.setGeometry(GLUDisk.class, getDetail(getSlices()), getDetail(getLoops()), innerRadius/outerRadius, 0.0F, 0.0F);
+        scale.set(outerRadius, outerRadius, 1.0);
+        return true;
+    }
+
+    @Override
+    protected void renderGLUQuadricUnit() {
+        disk.draw(innerRadius/outerRadius, 1.0F, getDetail(getSlices()), getDetail(getLoops()));
     }
 
     public float getInnerRadius() {
@@ -45,6 +67,7 @@ public class GLUDisk extends GLUShape {
             throw new IllegalArgumentException("expecting inner radius >=0.0, got " + innerRadius);
         }
         this.innerRadius = innerRadius;
+        bumpShapeVersion();
         return this;
     }
 
@@ -56,6 +79,7 @@ public class GLUDisk extends GLUShape {
             throw new IllegalArgumentException("expecting outer radius >0.0, got " + outerRadius);
         }
         this.outerRadius = outerRadius;
+        bumpShapeVersion();
         return this;
     }
 
@@ -71,6 +95,7 @@ public class GLUDisk extends GLUShape {
             throw new IllegalArgumentException("expecting slices >=2, got " + slices);
         }
         this.slices = slices;
+        bumpShapeVersion();
         return this;
     }
 
@@ -86,6 +111,7 @@ public class GLUDisk extends GLUShape {
             throw new IllegalArgumentException("expecting loops >=2, got " + loops);
         }
         this.loops = loops;
+        bumpShapeVersion();
         return this;
     }
 }
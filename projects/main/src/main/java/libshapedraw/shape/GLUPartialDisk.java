@@ -1,5 +1,7 @@
 package libshapedraw.shape;
 
+import libshapedraw.internal.LSDMeshCache;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.Vector3;
 
@@ -36,9 +38,48 @@ public class GLUPartialDisk extends GLUShape {
         setLoops(DEFAULT_LOOPS);
     }
 
+    /**
+     * The partial disk lies flat on the z=0 plane. For simplicity the bounds
+     * cover the entire disk.
+     */
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        result.set(-outerRadius, -outerRadius, 0.0, outerRadius, outerRadius, 0.0);
+        return true;
+    }
+
     @Override
     protected void renderGLUQuadric() {
-        partialDisk.draw(getInnerRadius(), getOuterRadius(), getSlices(), getLoops(), 0,0);//XXX
+        partialDisk.draw(getInnerRadius(), getOuterRadius(), getDetail(getSlices()), getDetail(getLoops()), getStartAngle(), getSweepAngle());
+    }
+
+    /**
+     * The unit mesh has an outer radius of 1. Angles are normalized the same
+     * way GLU does, so that equivalent partial disks share a mesh.
+     */
+    @Override
+    protected boolean getUnitMesh(LSDMeshCache.Key key, Vector3 scale) {
+        float start = startAngle;
+        float sweep = sweepAngle;
+        if (sweep < -360.0F || sweep > 360.0F) {
+            sweep = 360.0F;
+        }
+        if (sweep < 0.0F) {
+            start += sweep;
+            sweep = -sweep;
+        }
+        start %= 360.0F;
+        if (start < 0.0F) {
+            start += 360.0F;
+        }
+        key.setGeometry(GLUPartialDisk.class, getDetail(getSlices()), getDetail(getLoops()), innerRadius/outerRadius, start, sweep);
+        scale.set(outerRadius, outerRadius, 1.0);
+        return true;
+    }
+
+    @Override
+    protected void renderGLUQuadricUnit() {
+        partialDisk.draw(innerRadius/outerRadius, 1.0F, getDetail(getSlices()), getDetail(getLoops()), getStartAngle(), getSweepAngle());
     }
 
     public float getInnerRadius() {
@@ -49,6 +90,7 @@ public class GLUPartialDisk extends GLUShape {
             throw new IllegalArgumentException("expecting inner radius >=0.0, got " + innerRadius);
         }
         this.innerRadius = innerRadius;
+        bumpShapeVersion();
         return this;
     }
 
@@ -60,6 +102,7 @@ public class GLUPartialDisk extends GLUShape {
             throw new IllegalArgumentException("expecting outer radius >0.0, got " + outerRadius);
         }
         this.outerRadius = outerRadius;
+        bumpShapeVersion();
         return this;
     }
 
@@ -68,6 +111,7 @@ public class GLUPartialDisk extends GLUShape {
     }
     public GLUPartialDisk setStartAngle(float startAngle) {
         this.startAngle = startAngle;
+        bumpShapeVersion();
         return this;
     }
 
@@ -76,6 +120,7 @@ public class GLUPartialDisk extends GLUShape {
     }
     public GLUPartialDisk setSweepAngle(float sweepAngle) {
         this.sweepAngle = sweepAngle;
+        bumpShapeVersion();
         return this;
     }
 
@@ -91,6 +136,7 @@ public class GLUPartialDisk extends GLUShape {
             throw new IllegalArgumentException("expecting slices >=2, got " + slices);
         }
         this.slices = slices;
+        bumpShapeVersion();
         return this;
     }
 
@@ -106,6 +152,7 @@ public class GLUPartialDisk extends GLUShape {
             throw new IllegalArgumentException("expecting loops >=2, got " + loops);
         }
         this.loops = loops;
+        bumpShapeVersion();
         return this;
     }
 }
@@ -1,11 +1,13 @@
 package libshapedraw.shape;
 
 import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDMeshCache;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.LineStyle;
 import libshapedraw.primitive.ReadonlyColor;
 import libshapedraw.primitive.Vector3;
 
+import org.lwjgl.opengl.GL11;
 import org.lwjgl.util.glu.GLU;
 import org.lwjgl.util.glu.Quadric;
 
@@ -22,14 +24,32 @@ import org.lwjgl.util.glu.Quadric;
  * <li>Apply a custom ShapeTransform to enable lighting prior to rendering the
  *     quadric.</li>
  * </ul>
+ * <p>
+ * Quadrics are compiled once at unit size and shared by every GLUShape with
+ * the same proportions, level of detail, and quadric settings; each shape
+ * draws the shared mesh scaled to its own dimensions. If you enable lighting
+ * in a custom ShapeTransform, also enable GL_NORMALIZE, as the scaling
+ * changes the length of the normals. See {@link #setMeshSharing}.
  */
 public abstract class GLUShape extends Shape implements XrayShape {
     public static final int DEFAULT_SLICES = 24;
     public static final int DEFAULT_STACKS = 24;
     public static final int DEFAULT_LOOPS = 6;
+    /** The level of detail is never reduced below this many subdivisions. */
+    public static final int MIN_DETAIL = 4;
 
     private LineStyle lineStyle;
     private Quadric gluQuadric;
+    private double detailDistance;
+    private long modCount;
+    private Quadric versionedQuadric;
+    private int versionedDrawStyle;
+    private int versionedNormals;
+    private int versionedOrientation;
+    private boolean versionedTextureFlag;
+    private boolean meshSharing = true;
+    private LSDMeshCache.Key meshKey;
+    private Vector3 meshScale;
 
     public GLUShape(Vector3 origin, Color mainColor, Color secondaryColor) {
         super(origin);
@@ -38,15 +58,182 @@ public abstract class GLUShape extends Shape implements XrayShape {
 
     @Override
     protected void renderShape(MinecraftAccess mc) {
+        renderShapeMain(mc);
+        renderShapeSecondary(mc);
+    }
+
+    @Override
+    protected void renderShapeMain(MinecraftAccess mc) {
         lineStyle.glApply(false);
-        renderGLUQuadric();
+        renderQuadric();
+    }
+
+    @Override
+    protected void renderShapeSecondary(MinecraftAccess mc) {
         if (lineStyle.glApply(true)) {
-            renderGLUQuadric();
+            renderQuadric();
         }
     }
 
+    private void renderQuadric() {
+        if (meshSharing) {
+            if (meshKey == null) {
+                meshKey = new LSDMeshCache.Key();
+                meshScale = new Vector3();
+            }
+            if (getUnitMesh(meshKey, meshScale)) {
+                final Quadric q = getGLUQuadric();
+                meshKey.setQuadric(q.getDrawStyle(), q.getNormals(), q.getOrientation(), q.getTextureFlag());
+                int list = LSDMeshCache.get(meshKey);
+                if (list == 0) {
+                    list = LSDMeshCache.beginMesh();
+                    if (list != 0) {
+                        renderGLUQuadricUnit();
+                        LSDMeshCache.endMesh(meshKey, list);
+                    }
+                }
+                if (list != 0) {
+                    LSDMeshCache.draw(list, meshScale.getX(), meshScale.getY(), meshScale.getZ());
+                    return;
+                }
+            }
+        }
+        renderGLUQuadric();
+    }
+
+    /** Draw the quadric at its actual size. */
     protected abstract void renderGLUQuadric();
 
+    /**
+     * Describe the quadric as a unit-size mesh and a scale, so that it can be
+     * shared with other shapes. The default implementation returns false.
+     * <p>
+     * The unit-size mesh is drawn by {@link #renderGLUQuadricUnit}.
+     * 
+     * @param key set its geometry (see {@link LSDMeshCache.Key#setGeometry})
+     *        to the shape's type, level of detail, and any proportions that
+     *        scaling can't reproduce.
+     * @param scale set to the scale along each axis that turns the unit-size
+     *        mesh into this shape.
+     * @return false if the quadric can't be shared, in which case
+     *         renderGLUQuadric is used.
+     */
+    protected boolean getUnitMesh(LSDMeshCache.Key key, Vector3 scale) {
+        return false;
+    }
+
+    /**
+     * Draw the unit-size quadric described by getUnitMesh. Only called right
+     * after getUnitMesh returns true.
+     * <p>
+     * The default implementation calls renderGLUQuadric, scaled down by the
+     * scale getUnitMesh set. Derived classes can override this to draw the
+     * unit-size quadric directly instead.
+     */
+    protected void renderGLUQuadricUnit() {
+        GL11.glPushMatrix();
+        GL11.glScaled(1.0/meshScale.getX(), 1.0/meshScale.getY(), 1.0/meshScale.getZ());
+        renderGLUQuadric();
+        GL11.glPopMatrix();
+    }
+
+    /**
+     * Whether this shape draws a shared, precompiled unit-size mesh rather
+     * than tessellating the quadric every frame. Defaults to true.
+     * 
+     * @see #setMeshSharing
+     */
+    public boolean isMeshSharing() {
+        return meshSharing;
+    }
+
+    /**
+     * Whether this shape draws a shared, precompiled unit-size mesh rather
+     * than tessellating the quadric every frame. Defaults to true.
+     * <p>
+     * Disable this if the quadric's settings are changed in the middle of
+     * rendering, e.g. by a custom ShapeTransform.
+     */
+    public GLUShape setMeshSharing(boolean meshSharing) {
+        this.meshSharing = meshSharing;
+        return this;
+    }
+
+    /**
+     * The render distance beyond which the quadric is drawn with fewer
+     * subdivisions. Defaults to 0.0, i.e. always use full detail.
+     * 
+     * @see #setDetailDistance
+     */
+    public double getDetailDistance() {
+        return detailDistance;
+    }
+
+    /**
+     * The render distance beyond which the quadric is drawn with fewer
+     * subdivisions. Defaults to 0.0, i.e. always use full detail.
+     * <p>
+     * Past this distance the number of slices, stacks, and loops is halved,
+     * and halved again each time the distance doubles, down to
+     * {@link #MIN_DETAIL}. E.g., with a detail distance of 25, a 24x24 sphere
+     * 200 blocks away is drawn as 4x4.
+     * 
+     * @see Shape#getRenderDistance
+     */
+    public GLUShape setDetailDistance(double detailDistance) {
+        if (!(detailDistance >= 0.0)) {
+            throw new IllegalArgumentException("expecting detail distance >=0.0, got " + detailDistance);
+        }
+        this.detailDistance = detailDistance;
+        return this;
+    }
+
+    /**
+     * @return the number of subdivisions to actually draw, reduced from the
+     *         specified full detail according to the render distance.
+     */
+    protected int getDetail(int fullDetail) {
+        if (detailDistance <= 0.0) {
+            return fullDetail;
+        }
+        final double renderDistance = getRenderDistance();
+        int detail = fullDetail;
+        for (double d = detailDistance; renderDistance > d && detail > MIN_DETAIL; d *= 2.0) {
+            detail = Math.max(MIN_DETAIL, detail / 2);
+        }
+        return detail;
+    }
+
+    /**
+     * Derived classes should call this every time a property affecting the
+     * quadric's geometry (radius, slices, etc.) changes.
+     * 
+     * @see Shape#getGeometryVersion
+     */
+    protected void bumpShapeVersion() {
+        modCount++;
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        // Quadric doesn't track changes, so compare its settings to the last
+        // call's instead.
+        final Quadric q = getGLUQuadric();
+        if (q != versionedQuadric ||
+                q.getDrawStyle() != versionedDrawStyle ||
+                q.getNormals() != versionedNormals ||
+                q.getOrientation() != versionedOrientation ||
+                q.getTextureFlag() != versionedTextureFlag) {
+            versionedQuadric = q;
+            versionedDrawStyle = q.getDrawStyle();
+            versionedNormals = q.getNormals();
+            versionedOrientation = q.getOrientation();
+            versionedTextureFlag = q.getTextureFlag();
+            modCount++;
+        }
+        return modCount + lineStyle.getVersion();
+    }
+
     @Override
     public Vector3 getOrigin() {
         // changed method modifier from protected to public
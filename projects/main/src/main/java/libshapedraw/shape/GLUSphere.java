@@ -1,5 +1,7 @@
 package libshapedraw.shape;
 
+import libshapedraw.internal.LSDMeshCache;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.Vector3;
 
@@ -29,9 +31,27 @@ public class GLUSphere extends GLUShape {
         setStacks(DEFAULT_STACKS);
     }
 
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        result.set(-radius, -radius, -radius, radius, radius, radius);
+        return true;
+    }
+
     @Override
     protected void renderGLUQuadric() {
-        sphere.draw(getRadius(), getSlices(), getStacks());
+        sphere.draw(getRadius(), getDetail(getSlices()), getDetail(getStacks()));
+    }
+
+    @Override
+    protected boolean getUnitMesh(LSDMeshCache.Key key, Vector3 scale) {
+        key.setGeometry(GLUSphere.class, getDetail(getSlices()), getDetail(getStacks()), 0.0F, 0.0F, 0.0F);
+        scale.set(radius, radius, radius);
+        return true;
+    }
+
+    @Override
+    protected void renderGLUQuadricUnit() {
+        sphere.draw(1.0F, getDetail(getSlices()), getDetail(getStacks()));
     }
 
     public float getRadius() {
@@ -42,6 +62,7 @@ public class GLUSphere extends GLUShape {
             throw new IllegalArgumentException("expecting radius >0.0, got " + radius);
         }
         this.radius = radius;
+        bumpShapeVersion();
         return this;
     }
 
@@ -57,6 +78,7 @@ public class GLUSphere extends GLUShape {
             throw new IllegalArgumentException("expecting slices >=2, got " + slices);
         }
         this.slices = slices;
+        bumpShapeVersion();
         return this;
     }
 
@@ -72,6 +94,7 @@ public class GLUSphere extends GLUShape {
             throw new IllegalArgumentException("expecting stacks >=2, got " + stacks);
         }
         this.stacks = stacks;
+        bumpShapeVersion();
         return this;
     }
 }
@@ -0,0 +1,439 @@
+package libshapedraw.shape;
+
+import java.util.Arrays;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDController;
+import libshapedraw.internal.LSDFrustum;
+import libshapedraw.internal.LSDGLState;
+import libshapedraw.internal.LSDShapeInfo;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Render one template Shape at many positions, e.g. the same marker at
+ * thousands of locations, without a separate Shape object for each.
+ * <p>
+ * Each instance draws the template moved so that the template's origin is at
+ * the instance's position, optionally scaled about that point and tinted a
+ * different color. The positions are stored in a single packed array, like
+ * {@link PointCloud}'s points.
+ * <p>
+ * The template is rendered with a translation per instance, so its geometry
+ * is only computed once: a WireframeShape template has its vertex cache
+ * enabled (unless it's in retained mode), and GLU shapes share precompiled
+ * meshes already. Instances entirely outside the view frustum are skipped
+ * if the API instance has {@link libshapedraw.LibShapeDraw#setFrustumCulling
+ * frustum culling} enabled.
+ * <p>
+ * The template itself should not be added to a LibShapeDraw API instance, or
+ * it will also be rendered at its own position.
+ * <p>
+ * Colors are packed RGBA ints, as returned by {@link Color#getRGBA}. An
+ * instance's color replaces all of the template's colors; the template's
+ * secondary pass, if any, draws it with its alpha scaled by
+ * {@link XrayShape#SECONDARY_ALPHA}. Per-vertex colors, such as
+ * WireframeLinesBlend's, are unaffected.
+ */
+public class InstancedShape extends Shape {
+    /** The color of instances drawn in the template's own colors. */
+    public static final int TEMPLATE_COLOR = 0;
+    private static final float[] UNIT = new float[256];
+    static {
+        for (int i = 0; i < UNIT.length; i++) {
+            UNIT[i] = i / 255.0F;
+        }
+    }
+    private static final int PASS_BOTH = 0;
+    private static final int PASS_MAIN = 1;
+    private static final int PASS_SECONDARY = 2;
+
+    private final Shape template;
+    private double[] coords = new double[3*16];
+    /** null until an instance is given its own scale. */
+    private double[] scales;
+    /** null until an instance is given its own color. */
+    private int[] colors;
+    private int instanceCount;
+    private long instancesModCount;
+    private final BoundingBox cullBox = new BoundingBox();
+    private int renderedInstanceCount;
+
+    public InstancedShape(Shape template) {
+        super(Vector3.ZEROS.copy());
+        if (template == null) {
+            throw new IllegalArgumentException("template cannot be null");
+        }
+        setRelativeToOrigin(false);
+        this.template = template;
+        if (template instanceof WireframeShape && !((WireframeShape) template).isRetainedMode()) {
+            ((WireframeShape) template).setVertexCacheEnabled(true);
+        }
+    }
+
+    /**
+     * The Shape drawn at every instance's position. Changes to it apply to
+     * all instances.
+     */
+    public Shape getTemplate() {
+        return template;
+    }
+
+    /** The number of instances. */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * The number of instances drawn by the most recent main pass, i.e. those
+     * that weren't culled.
+     */
+    public int getRenderedInstanceCount() {
+        return renderedInstanceCount;
+    }
+
+    /**
+     * Make room for at least the specified number of instances without having
+     * to grow the storage again.
+     * @return the instance (for method chaining)
+     */
+    public InstancedShape ensureCapacity(int capacity) {
+        if (3L*capacity > coords.length) {
+            final int newCapacity = (int) Math.min(Integer.MAX_VALUE/3, Math.max(capacity, 2L*coords.length/3));
+            coords = Arrays.copyOf(coords, 3*newCapacity);
+            if (scales != null) {
+                scales = growScales(newCapacity);
+            }
+            if (colors != null) {
+                colors = Arrays.copyOf(colors, newCapacity);
+            }
+        }
+        return this;
+    }
+
+    private double[] growScales(int capacity) {
+        if (scales == null) {
+            double[] grown = new double[capacity];
+            Arrays.fill(grown, 0, instanceCount, 1.0);
+            return grown;
+        }
+        return Arrays.copyOf(scales, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= instanceCount) {
+            throw new IllegalArgumentException("no instance at index " + index);
+        }
+    }
+
+    private static void checkScale(double scale) {
+        if (!(scale > 0.0) || Double.isInfinite(scale)) {
+            throw new IllegalArgumentException("expecting scale >0.0, got " + scale);
+        }
+    }
+
+    /**
+     * Add an instance to the end.
+     * @return the new instance's index.
+     */
+    public int addInstance(double x, double y, double z) {
+        ensureCapacity(instanceCount + 1);
+        final int i = 3*instanceCount;
+        coords[i] = x;
+        coords[i + 1] = y;
+        coords[i + 2] = z;
+        if (scales != null) {
+            scales[instanceCount] = 1.0;
+        }
+        if (colors != null) {
+            colors[instanceCount] = TEMPLATE_COLOR;
+        }
+        instancesModCount++;
+        return instanceCount++;
+    }
+
+    /**
+     * Add a scaled instance with its own color to the end.
+     * @return the new instance's index.
+     */
+    public int addInstance(double x, double y, double z, double scale, int rgba) {
+        checkScale(scale);
+        final int index = addInstance(x, y, z);
+        if (scale != 1.0) {
+            setInstanceScale(index, scale);
+        }
+        if (rgba != TEMPLATE_COLOR) {
+            setInstanceColor(index, rgba);
+        }
+        return index;
+    }
+
+    /** @see #addInstance(double, double, double) */
+    public int addInstance(ReadonlyVector3 position) {
+        return addInstance(position.getX(), position.getY(), position.getZ());
+    }
+
+    /**
+     * Add many instances to the end at once.
+     * @param xyz packed x/y/z coordinates
+     * @param offset the array index of the first instance's x coordinate
+     * @param count the number of instances to add
+     * @return the instance (for method chaining)
+     */
+    public InstancedShape addInstances(double[] xyz, int offset, int count) {
+        if (offset < 0 || count < 0 || offset + 3L*count > xyz.length) {
+            throw new IllegalArgumentException("invalid range " + offset + "+" + count + " for " + xyz.length + " coordinates");
+        }
+        ensureCapacity(instanceCount + count);
+        System.arraycopy(xyz, offset, coords, 3*instanceCount, 3*count);
+        if (scales != null) {
+            Arrays.fill(scales, instanceCount, instanceCount + count, 1.0);
+        }
+        if (colors != null) {
+            Arrays.fill(colors, instanceCount, instanceCount + count, TEMPLATE_COLOR);
+        }
+        instanceCount += count;
+        instancesModCount++;
+        return this;
+    }
+
+    /**
+     * Move an existing instance.
+     * @return the instance (for method chaining)
+     */
+    public InstancedShape setInstance(int index, double x, double y, double z) {
+        checkIndex(index);
+        final int i = 3*index;
+        coords[i] = x;
+        coords[i + 1] = y;
+        coords[i + 2] = z;
+        instancesModCount++;
+        return this;
+    }
+
+    /**
+     * Copy an existing instance's position into result.
+     * @return result, for method chaining
+     */
+    public Vector3 getInstance(int index, Vector3 result) {
+        checkIndex(index);
+        final int i = 3*index;
+        return result.set(coords[i], coords[i + 1], coords[i + 2]);
+    }
+
+    /**
+     * Scale an existing instance about its position. Defaults to 1.0.
+     * @return the instance (for method chaining)
+     */
+    public InstancedShape setInstanceScale(int index, double scale) {
+        checkIndex(index);
+        checkScale(scale);
+        if (scales == null) {
+            scales = growScales(coords.length/3);
+        }
+        scales[index] = scale;
+        instancesModCount++;
+        return this;
+    }
+
+    public double getInstanceScale(int index) {
+        checkIndex(index);
+        return scales == null ? 1.0 : scales[index];
+    }
+
+    /**
+     * Give an existing instance its own color, or {@link #TEMPLATE_COLOR}
+     * to go back to the template's colors.
+     * @return the instance (for method chaining)
+     */
+    public InstancedShape setInstanceColor(int index, int rgba) {
+        checkIndex(index);
+        if (colors == null) {
+            if (rgba == TEMPLATE_COLOR) {
+                return this;
+            }
+            colors = new int[coords.length/3];
+        }
+        colors[index] = rgba;
+        instancesModCount++;
+        return this;
+    }
+
+    /** @return the instance's color, or TEMPLATE_COLOR if it has none. */
+    public int getInstanceColor(int index) {
+        checkIndex(index);
+        return colors == null ? TEMPLATE_COLOR : colors[index];
+    }
+
+    /**
+     * Remove an instance by moving the last instance into its place, so the
+     * last instance's index changes to the removed one's.
+     * @return the instance (for method chaining)
+     */
+    public InstancedShape removeInstance(int index) {
+        checkIndex(index);
+        final int last = instanceCount - 1;
+        if (index != last) {
+            System.arraycopy(coords, 3*last, coords, 3*index, 3);
+            if (scales != null) {
+                scales[index] = scales[last];
+            }
+            if (colors != null) {
+                colors[index] = colors[last];
+            }
+        }
+        instanceCount--;
+        instancesModCount++;
+        return this;
+    }
+
+    /**
+     * Remove every instance, keeping the storage for reuse. Per-instance
+     * scales and colors are forgotten.
+     * @return the instance (for method chaining)
+     */
+    public InstancedShape clearInstances() {
+        instanceCount = 0;
+        scales = null;
+        colors = null;
+        instancesModCount++;
+        return this;
+    }
+
+    /**
+     * Set cullBox to where the template is drawn for an instance.
+     * @return false if the template's bounds are unknown.
+     */
+    private boolean getInstanceBounds(int index, ReadonlyBoundingBox templateBounds, ReadonlyVector3 templateOrigin) {
+        if (templateBounds == null) {
+            return false;
+        }
+        final int i = 3*index;
+        final double s = scales == null ? 1.0 : scales[index];
+        final double ox = templateOrigin.getX();
+        final double oy = templateOrigin.getY();
+        final double oz = templateOrigin.getZ();
+        cullBox.set(
+                coords[i]     + s*(templateBounds.getMinX() - ox),
+                coords[i + 1] + s*(templateBounds.getMinY() - oy),
+                coords[i + 2] + s*(templateBounds.getMinZ() - oz),
+                coords[i]     + s*(templateBounds.getMaxX() - ox),
+                coords[i + 1] + s*(templateBounds.getMaxY() - oy),
+                coords[i + 2] + s*(templateBounds.getMaxZ() - oz));
+        return true;
+    }
+
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        final ReadonlyBoundingBox templateBounds = template.getBounds();
+        final ReadonlyVector3 templateOrigin = template.getOriginReadonly();
+        if (templateBounds == null || templateOrigin == null) {
+            return false;
+        }
+        for (int index = 0; index < instanceCount; index++) {
+            getInstanceBounds(index, templateBounds, templateOrigin);
+            result.include(cullBox);
+        }
+        return true;
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        return instancesModCount + template.getGeometryVersion();
+    }
+
+    @Override
+    protected void renderShape(MinecraftAccess mc) {
+        renderInstances(mc, PASS_BOTH);
+    }
+
+    @Override
+    protected void renderShapeMain(MinecraftAccess mc) {
+        if (LSDShapeInfo.get(template.getClass()).hasSplitRenderPasses()) {
+            renderInstances(mc, PASS_MAIN);
+        } else {
+            // The template is going to set the depth function however it
+            // likes, same as in the controller's main pass.
+            final boolean pinned = LSDGLState.isDepthFuncPinned();
+            LSDGLState.unpinDepthFunc();
+            renderInstances(mc, PASS_BOTH);
+            if (pinned) {
+                LSDGLState.pinDepthFunc(GL11.GL_LEQUAL);
+            }
+        }
+    }
+
+    @Override
+    protected void renderShapeSecondary(MinecraftAccess mc) {
+        if (LSDShapeInfo.get(template.getClass()).hasSplitRenderPasses()) {
+            renderInstances(mc, PASS_SECONDARY);
+        }
+    }
+
+    private void renderInstances(MinecraftAccess mc, int pass) {
+        final ReadonlyVector3 templateOrigin = template.getOriginReadonly();
+        if (!template.isVisible() || templateOrigin == null) {
+            return;
+        }
+        final boolean split = pass == PASS_BOTH && LSDShapeInfo.get(template.getClass()).hasSplitRenderPasses();
+        // The frustum is only current while the controller is rendering, and
+        // is in world coordinates.
+        final LSDController controller = LSDController.getInstance();
+        final LSDFrustum frustum = controller.getFrustum();
+        final boolean cull = LSDGLState.isActive() && controller.isFrustumCulling() &&
+                !hasTransforms() && frustum.isValid();
+        final ReadonlyBoundingBox templateBounds = cull ? template.getBounds() : null;
+        final double ox = templateOrigin.getX();
+        final double oy = templateOrigin.getY();
+        final double oz = templateOrigin.getZ();
+        int rendered = 0;
+        for (int index = 0; index < instanceCount; index++) {
+            if (getInstanceBounds(index, templateBounds, templateOrigin) && !frustum.isVisible(cullBox)) {
+                continue;
+            }
+            rendered++;
+            final int i = 3*index;
+            final double s = scales == null ? 1.0 : scales[index];
+            GL11.glPushMatrix();
+            GL11.glTranslated(coords[i], coords[i + 1], coords[i + 2]);
+            if (s != 1.0) {
+                GL11.glScaled(s, s, s);
+            }
+            GL11.glTranslated(-ox, -oy, -oz);
+            final int rgba = colors == null ? TEMPLATE_COLOR : colors[index];
+            if (split) {
+                renderInstance(mc, PASS_MAIN, rgba);
+                renderInstance(mc, PASS_SECONDARY, rgba);
+            } else {
+                renderInstance(mc, pass, rgba);
+            }
+            GL11.glPopMatrix();
+        }
+        if (pass != PASS_SECONDARY) {
+            renderedInstanceCount = rendered;
+        }
+    }
+
+    private void renderInstance(MinecraftAccess mc, int pass, int rgba) {
+        if (rgba != TEMPLATE_COLOR) {
+            final float alphaScale = pass == PASS_SECONDARY ? (float) XrayShape.SECONDARY_ALPHA : 1.0F;
+            LSDGLState.pinColor(UNIT[rgba >>> 24], UNIT[(rgba >> 16) & 0xff], UNIT[(rgba >> 8) & 0xff],
+                    UNIT[rgba & 0xff]*alphaScale);
+        }
+        if (pass == PASS_MAIN) {
+            template.renderMainPass(mc);
+        } else if (pass == PASS_SECONDARY) {
+            template.renderSecondaryPass(mc);
+        } else {
+            template.render(mc);
+        }
+        if (rgba != TEMPLATE_COLOR) {
+            LSDGLState.unpinColor();
+        }
+    }
+}
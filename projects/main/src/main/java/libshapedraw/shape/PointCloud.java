@@ -0,0 +1,388 @@
+package libshapedraw.shape;
+
+import java.util.Arrays;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDChunkedDrawing;
+import libshapedraw.internal.LSDGLState;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.PointStyle;
+import libshapedraw.primitive.ReadonlyColor;
+import libshapedraw.primitive.ReadonlyPointStyle;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Any number of points, rendered as GL_POINTS: one vertex per point, rather
+ * than the dozens it would take to draw each one as a tiny box.
+ * <p>
+ * The points' coordinates are stored in a single packed array that grows as
+ * points are added. Appending points and overwriting existing ones happen in
+ * place, without copying the rest of the points.
+ * <p>
+ * Every point is drawn using the shape's {@link PointStyle}, unless
+ * per-point colors are in use: once any point is given its own color, every
+ * point is drawn in its own color. Points that were never given a color are
+ * opaque white. The point style still determines the point size and whether
+ * points are visible through terrain; the secondary pass draws each point's
+ * color with its alpha scaled by {@link XrayShape#SECONDARY_ALPHA}.
+ * <p>
+ * Colors are packed RGBA ints, as returned by {@link Color#getRGBA}.
+ */
+public class PointCloud extends Shape implements XrayShape {
+    /** The color of points that were never given one. */
+    public static final int DEFAULT_POINT_COLOR = 0xffffffff;
+    private static final float[] UNIT = new float[256];
+    static {
+        for (int i = 0; i < UNIT.length; i++) {
+            UNIT[i] = i / 255.0F;
+        }
+    }
+
+    private double[] coords;
+    /** null until a point is given its own color. */
+    private int[] colors;
+    private int pointCount;
+    private long pointsModCount;
+    private PointStyle pointStyle;
+    private long pointStyleModCount;
+    private final BoundingBox pointBounds = new BoundingBox();
+    /** If true, points were overwritten since pointBounds was computed. */
+    private boolean pointBoundsStale;
+
+    /**
+     * @param origin the x/y/z coordinates that the points are relative to.
+     */
+    public PointCloud(Vector3 origin) {
+        super(origin);
+        coords = new double[3*16];
+    }
+    /**
+     * Create a point cloud whose points are absolute world x/y/z coordinates.
+     */
+    public PointCloud() {
+        this(Vector3.ZEROS.copy());
+        setRelativeToOrigin(false);
+    }
+
+    /** The number of points. */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /** @return true if any point has been given its own color. */
+    public boolean hasPointColors() {
+        return colors != null;
+    }
+
+    /**
+     * Make room for at least the specified number of points without having to
+     * grow the storage again.
+     * @return the instance (for method chaining)
+     */
+    public PointCloud ensureCapacity(int capacity) {
+        if (3L*capacity > coords.length) {
+            final int newCapacity = (int) Math.min(Integer.MAX_VALUE/3, Math.max(capacity, 2L*coords.length/3));
+            double[] grownCoords = new double[3*newCapacity];
+            System.arraycopy(coords, 0, grownCoords, 0, 3*pointCount);
+            coords = grownCoords;
+            if (colors != null) {
+                colors = growColors(newCapacity);
+            }
+        }
+        return this;
+    }
+
+    private int[] growColors(int capacity) {
+        int[] grown = new int[capacity];
+        if (colors == null) {
+            Arrays.fill(grown, 0, pointCount, DEFAULT_POINT_COLOR);
+        } else {
+            System.arraycopy(colors, 0, grown, 0, pointCount);
+        }
+        return grown;
+    }
+
+    private void checkRange(int index, int count) {
+        if (index < 0 || count < 0 || (long) index + count > pointCount) {
+            throw new IllegalArgumentException("invalid point range " + index + "+" + count +
+                    " for " + pointCount + " points");
+        }
+    }
+
+    /**
+     * Add a point to the end.
+     * @return the new point's index.
+     */
+    public int addPoint(double x, double y, double z) {
+        ensureCapacity(pointCount + 1);
+        final int i = 3*pointCount;
+        coords[i] = x;
+        coords[i + 1] = y;
+        coords[i + 2] = z;
+        if (colors != null) {
+            colors[pointCount] = DEFAULT_POINT_COLOR;
+        }
+        pointBounds.include(x, y, z);
+        pointsModCount++;
+        return pointCount++;
+    }
+
+    /**
+     * Add a point with its own color to the end.
+     * @return the new point's index.
+     */
+    public int addPoint(double x, double y, double z, int rgba) {
+        final int index = addPoint(x, y, z);
+        setPointColor(index, rgba);
+        return index;
+    }
+
+    /** @see #addPoint(double, double, double) */
+    public int addPoint(ReadonlyVector3 point) {
+        return addPoint(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Add many points to the end at once.
+     * @param xyz packed x/y/z coordinates
+     * @param offset the array index of the first point's x coordinate
+     * @param count the number of points to add
+     * @return the instance (for method chaining)
+     */
+    public PointCloud addPoints(double[] xyz, int offset, int count) {
+        if (offset < 0 || count < 0 || offset + 3L*count > xyz.length) {
+            throw new IllegalArgumentException("invalid range " + offset + "+" + count + " for " + xyz.length + " coordinates");
+        }
+        ensureCapacity(pointCount + count);
+        System.arraycopy(xyz, offset, coords, 3*pointCount, 3*count);
+        for (int i = 3*pointCount, end = 3*(pointCount + count); i < end; i += 3) {
+            pointBounds.include(coords[i], coords[i + 1], coords[i + 2]);
+        }
+        if (colors != null) {
+            Arrays.fill(colors, pointCount, pointCount + count, DEFAULT_POINT_COLOR);
+        }
+        pointCount += count;
+        pointsModCount++;
+        return this;
+    }
+
+    /**
+     * Move an existing point.
+     * @return the instance (for method chaining)
+     */
+    public PointCloud setPoint(int index, double x, double y, double z) {
+        checkRange(index, 1);
+        final int i = 3*index;
+        coords[i] = x;
+        coords[i + 1] = y;
+        coords[i + 2] = z;
+        pointBoundsStale = true;
+        pointsModCount++;
+        return this;
+    }
+
+    /**
+     * Overwrite a range of existing points at once.
+     * @param index the first point to overwrite
+     * @param xyz packed x/y/z coordinates
+     * @param offset the array index of the first point's x coordinate
+     * @param count the number of points to overwrite
+     * @return the instance (for method chaining)
+     */
+    public PointCloud setPoints(int index, double[] xyz, int offset, int count) {
+        checkRange(index, count);
+        if (offset < 0 || offset + 3L*count > xyz.length) {
+            throw new IllegalArgumentException("invalid range " + offset + "+" + count + " for " + xyz.length + " coordinates");
+        }
+        System.arraycopy(xyz, offset, coords, 3*index, 3*count);
+        pointBoundsStale = true;
+        pointsModCount++;
+        return this;
+    }
+
+    /**
+     * Copy an existing point's coordinates into result.
+     * @return result, for method chaining
+     */
+    public Vector3 getPoint(int index, Vector3 result) {
+        checkRange(index, 1);
+        final int i = 3*index;
+        return result.set(coords[i], coords[i + 1], coords[i + 2]);
+    }
+
+    /**
+     * Give an existing point its own color. The first call switches the
+     * whole shape to per-point colors.
+     * @return the instance (for method chaining)
+     */
+    public PointCloud setPointColor(int index, int rgba) {
+        checkRange(index, 1);
+        if (colors == null) {
+            colors = growColors(coords.length/3);
+        }
+        colors[index] = rgba;
+        pointsModCount++;
+        return this;
+    }
+
+    /**
+     * Give a range of existing points their own colors at once.
+     * @return the instance (for method chaining)
+     */
+    public PointCloud setPointColors(int index, int[] rgba, int offset, int count) {
+        checkRange(index, count);
+        if (offset < 0 || offset + (long) count > rgba.length) {
+            throw new IllegalArgumentException("invalid range " + offset + "+" + count + " for " + rgba.length + " colors");
+        }
+        if (colors == null) {
+            colors = growColors(coords.length/3);
+        }
+        System.arraycopy(rgba, offset, colors, index, count);
+        pointsModCount++;
+        return this;
+    }
+
+    /**
+     * @return the point's packed RGBA color, or {@link #DEFAULT_POINT_COLOR}
+     *         if it was never given one.
+     */
+    public int getPointColor(int index) {
+        checkRange(index, 1);
+        return colors == null ? DEFAULT_POINT_COLOR : colors[index];
+    }
+
+    /**
+     * Remove every point, keeping the storage for reuse. Per-point colors
+     * are turned off until a point is given a color again.
+     * @return the instance (for method chaining)
+     */
+    public PointCloud clearPoints() {
+        pointCount = 0;
+        colors = null;
+        pointBounds.setEmpty();
+        pointBoundsStale = false;
+        pointsModCount++;
+        return this;
+    }
+
+    public PointStyle getPointStyle() {
+        return pointStyle;
+    }
+
+    /**
+     * @return the point style used to render this shape: getPointStyle() if
+     *         set, otherwise {@link PointStyle#DEFAULT}.
+     */
+    public ReadonlyPointStyle getEffectivePointStyle() {
+        return pointStyle == null ? PointStyle.DEFAULT : pointStyle;
+    }
+
+    public PointCloud setPointStyle(PointStyle pointStyle) {
+        pointStyleModCount += 1 + (this.pointStyle == null ? 0 : this.pointStyle.getVersion());
+        this.pointStyle = pointStyle;
+        return this;
+    }
+
+    /**
+     * Convenience method.
+     * @see PointStyle#set
+     */
+    public PointCloud setPointStyle(Color color, float size, boolean visibleThroughTerrain) {
+        if (pointStyle == null) {
+            pointStyleModCount++;
+            pointStyle = new PointStyle(color, size, visibleThroughTerrain);
+        } else {
+            pointStyle.set(color, size, visibleThroughTerrain);
+        }
+        return this;
+    }
+
+    @Override
+    public ReadonlyColor getMainColorReadonly() {
+        return getEffectivePointStyle().getMainReadonlyColor();
+    }
+
+    @Override
+    public ReadonlyColor getSecondaryColorReadonly() {
+        return getEffectivePointStyle().getSecondaryReadonlyColor();
+    }
+
+    @Override
+    public boolean isVisibleThroughTerrain() {
+        return getEffectivePointStyle().hasSecondaryColor();
+    }
+
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        if (pointBoundsStale) {
+            // Overwritten points may have shrunk the bounds.
+            pointBounds.setEmpty();
+            for (int i = 0, end = 3*pointCount; i < end; i += 3) {
+                pointBounds.include(coords[i], coords[i + 1], coords[i + 2]);
+            }
+            pointBoundsStale = false;
+        }
+        result.set(pointBounds);
+        return true;
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        return pointsModCount + pointStyleModCount +
+                (pointStyle == null ? 0 : pointStyle.getVersion());
+    }
+
+    @Override
+    protected void renderShape(MinecraftAccess mc) {
+        renderShapeMain(mc);
+        renderShapeSecondary(mc);
+    }
+
+    @Override
+    protected void renderShapeMain(MinecraftAccess mc) {
+        getEffectivePointStyle().glApply(false);
+        renderPoints(mc, false);
+    }
+
+    @Override
+    protected void renderShapeSecondary(MinecraftAccess mc) {
+        if (getEffectivePointStyle().glApply(true)) {
+            renderPoints(mc, true);
+        }
+    }
+
+    private void renderPoints(MinecraftAccess mc, boolean isSecondary) {
+        if (colors == null) {
+            LSDChunkedDrawing.draw(mc, GL11.GL_POINTS, coords, 0, pointCount);
+            return;
+        }
+        if (pointCount == 0) {
+            return;
+        }
+        final float alphaScale = isSecondary ? (float) SECONDARY_ALPHA : 1.0F;
+        final int maxSessionVertices = LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_POINTS);
+        int sessionVertices = 0;
+        mc.startDrawing(GL11.GL_POINTS);
+        for (int index = 0; index < pointCount; index++) {
+            if (sessionVertices == maxSessionVertices) {
+                mc.finishDrawing();
+                mc.startDrawing(GL11.GL_POINTS);
+                sessionVertices = 0;
+            }
+            final int rgba = colors[index];
+            final int i = 3*index;
+            mc.addVertexWithColor(coords[i], coords[i + 1], coords[i + 2],
+                    UNIT[rgba >>> 24], UNIT[(rgba >> 16) & 0xff], UNIT[(rgba >> 8) & 0xff],
+                    UNIT[rgba & 0xff]*alphaScale);
+            sessionVertices++;
+        }
+        mc.finishDrawing();
+        // The Tessellator leaves the OpenGL color set to whatever it was
+        // given last.
+        LSDGLState.invalidateColor();
+    }
+}
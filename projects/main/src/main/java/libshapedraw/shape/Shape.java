@@ -3,12 +3,21 @@ package libshapedraw.shape;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 
 import libshapedraw.LibShapeDraw;
 import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDController;
+import libshapedraw.internal.LSDGLState;
+import libshapedraw.internal.LSDShapeInfo;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.ReadonlyBoundingBox;
 import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.primitive.Vector3;
+import libshapedraw.transform.ShapeRotate;
+import libshapedraw.transform.ShapeScale;
 import libshapedraw.transform.ShapeTransform;
+import libshapedraw.transform.ShapeTranslate;
 
 import org.lwjgl.opengl.GL11;
 
@@ -16,11 +25,25 @@ import org.lwjgl.opengl.GL11;
  * Generic base class for a renderable object.
  */
 public abstract class Shape {
+    private static final int PASS_BOTH = 0;
+    private static final int PASS_MAIN = 1;
+    private static final int PASS_SECONDARY = 2;
+
     private boolean visible = true;
     private Vector3 origin;
     private boolean relativeToOrigin = true;
     private List<ShapeTransform> transforms;
     private List<ShapeTransform> transformsReadonly;
+    private BoundingBox bounds;
+    private long boundsVersion;
+    private boolean boundsKnown;
+    private double maxRenderDistance = Double.POSITIVE_INFINITY;
+    private double renderDistance;
+    private long modCount;
+    private long geometryVersion;
+    private long geometryVersionOffset;
+    private boolean geometryVersionUnknown;
+    private volatile boolean commandQueueing;
 
     public Shape(Vector3 origin) {
         setOrigin(origin);
@@ -51,6 +74,7 @@ public abstract class Shape {
         if (origin == null) {
             throw new IllegalArgumentException("origin cannot be null");
         }
+        modCount += 1 + (this.origin == null ? 0 : this.origin.getVersion());
         this.origin = origin;
     }
 
@@ -67,6 +91,9 @@ public abstract class Shape {
     }
     /** @see #isRelativeToOrigin */
     protected void setRelativeToOrigin(boolean relativeToOrigin) {
+        if (this.relativeToOrigin != relativeToOrigin) {
+            modCount++;
+        }
         this.relativeToOrigin = relativeToOrigin;
     }
 
@@ -78,6 +105,14 @@ public abstract class Shape {
         }
     }
 
+    /**
+     * @return true if at least one ShapeTransform is registered to this
+     *         Shape. Unlike getTransforms().isEmpty(), this never allocates.
+     */
+    public boolean hasTransforms() {
+        return transforms != null && !transforms.isEmpty();
+    }
+
     /**
      * Get a read-only view of the list of ShapeTransforms to perform right
      * before rendering this Shape, if any. To modify this list use
@@ -91,17 +126,27 @@ public abstract class Shape {
     /**
      * Register a ShapeTransform to be applied to this Shape.
      * <p>
-     * Thread safety is not guaranteed. To avoid non-deterministic behavior,
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
      * only call this method from the main Minecraft thread.
      * 
      * @return the instance (for method chaining)
      */
-    public Shape addTransform(ShapeTransform transform) {
-        makeTransforms();
+    public Shape addTransform(final ShapeTransform transform) {
         if (transform == null) {
             throw new IllegalArgumentException("transform cannot be null");
         }
+        if (commandQueueing && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                addTransform(transform);
+            }
+        })) {
+            return this;
+        }
+        makeTransforms();
         transforms.add(transform);
+        modCount++;
         return this;
     }
 
@@ -111,31 +156,309 @@ public abstract class Shape {
      * Attempting to remove a transform that is not registered to this shape
      * is allowed but won't do anything.
      * <p>
-     * Thread safety is not guaranteed. To avoid non-deterministic behavior,
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
      * only call this method from the main Minecraft thread.
      * 
      * @return the instance (for method chaining)
      */
-    public Shape removeTransform(ShapeTransform transform) {
+    public Shape removeTransform(final ShapeTransform transform) {
+        if (commandQueueing && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                removeTransform(transform);
+            }
+        })) {
+            return this;
+        }
         makeTransforms();
-        transforms.remove(transform);
+        if (transforms.remove(transform)) {
+            modCount += 1 + Math.max(0, getTransformVersion(transform));
+        }
         return this;
     }
 
     /**
      * Unregister all ShapeTransforms registered to this Shape.
      * <p>
-     * Thread safety is not guaranteed. To avoid non-deterministic behavior,
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled. To avoid non-deterministic behavior,
      * only call this method from the main Minecraft thread.
      * 
      * @return the instance (for method chaining)
      */
     public Shape clearTransforms() {
+        if (commandQueueing && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                clearTransforms();
+            }
+        })) {
+            return this;
+        }
         makeTransforms();
+        for (ShapeTransform t : transforms) {
+            modCount += 1 + Math.max(0, getTransformVersion(t));
+        }
         transforms.clear();
         return this;
     }
 
+    /**
+     * Whether changes to this Shape's transforms made from other threads are
+     * queued and applied by the main Minecraft thread. Defaults to false.
+     * 
+     * @see #setCommandQueueing
+     */
+    public boolean isCommandQueueing() {
+        return commandQueueing;
+    }
+
+    /**
+     * Whether changes to this Shape's transforms made from other threads are
+     * queued and applied by the main Minecraft thread. Defaults to false.
+     * <p>
+     * If set to true, addTransform, removeTransform, and clearTransforms can
+     * be called from any thread, the same way as the shape methods of a
+     * LibShapeDraw API instance with
+     * {@link LibShapeDraw#setCommandQueueing command queueing} enabled.
+     * Changes to a shape and to the API instances it's in are applied in the
+     * order they were made.
+     * 
+     * @return the instance (for method chaining)
+     */
+    public Shape setCommandQueueing(boolean commandQueueing) {
+        this.commandQueueing = commandQueueing;
+        return this;
+    }
+
+    /**
+     * A number that changes every time anything affecting how this Shape
+     * renders is modified: its origin, its ShapeTransforms, and whatever the
+     * Shape type reports in computeShapeVersion (e.g. corners, points, line
+     * style). Comparing it to a previously saved value is a cheap way for
+     * caches to tell whether the Shape changed in the meantime.
+     * <p>
+     * The number never decreases. If any part of the Shape is unable to
+     * report its version, as is the case for Shape types that don't override
+     * computeShapeVersion and for Shapes with custom ShapeTransforms, every
+     * call returns a new number.
+     * <p>
+     * The number is a sum of the versions of the Shape's parts. Whenever a
+     * part is replaced (a new origin, axis, color, or child), the old part's
+     * version is added to a counter of the Shape or style, along with 1.
+     * Otherwise a new part with a lower version than the old one could make
+     * the sum go down, or even return to a value a cache saw earlier.
+     */
+    public long getGeometryVersion() {
+        long v = computeShapeVersion();
+        if (v >= 0) {
+            v += modCount + origin.getVersion();
+            if (transforms != null) {
+                for (ShapeTransform t : transforms) {
+                    long tv = getTransformVersion(t);
+                    if (tv < 0) {
+                        v = -1;
+                        break;
+                    }
+                    v += tv;
+                }
+            }
+        }
+        if (v < 0) {
+            geometryVersionUnknown = true;
+            return ++geometryVersion;
+        }
+        v += geometryVersionOffset;
+        if (v < geometryVersion || (v == geometryVersion && geometryVersionUnknown)) {
+            // Keep going up after a stretch of unknown versions.
+            geometryVersionOffset += geometryVersion + 1 - v;
+            v = geometryVersion + 1;
+        }
+        geometryVersionUnknown = false;
+        geometryVersion = v;
+        return v;
+    }
+
+    /**
+     * @return a number that increases every time the Shape's own geometry is
+     *         modified, not counting its origin and ShapeTransforms; or a
+     *         negative number if unknown. The default implementation always
+     *         returns -1.
+     * @see #getGeometryVersion
+     */
+    protected long computeShapeVersion() {
+        return -1;
+    }
+
+    private static long getTransformVersion(ShapeTransform t) {
+        if (t == null) {
+            return 0;
+        } else if (t instanceof ShapeTranslate) {
+            return ((ShapeTranslate) t).getVersion();
+        } else if (t instanceof ShapeScale) {
+            return ((ShapeScale) t).getVersion();
+        } else if (t instanceof ShapeRotate) {
+            return ((ShapeRotate) t).getVersion();
+        } else {
+            // No way of knowing what a custom ShapeTransform does.
+            return -1;
+        }
+    }
+
+    /**
+     * Get an axis-aligned box, in world coordinates, that contains everything
+     * this Shape renders, taking its origin and ShapeTransforms into account.
+     * <p>
+     * The controller uses this to skip rendering Shapes that are outside of
+     * the player's field of view, if the API instance has
+     * {@link LibShapeDraw#setFrustumCulling frustum culling} enabled, and
+     * Shapes beyond the max render distance.
+     * <p>
+     * The bounds are cached until the {@link #getGeometryVersion geometry
+     * version} changes, so they're only recomputed every time for Shapes
+     * whose version is unknown.
+     * <p>
+     * The returned box is owned by this Shape and is updated whenever the
+     * bounds are recomputed. Copy it if you need to keep it around.
+     * 
+     * @return null if the bounds are unknown, which is the case for Shape
+     *         types that don't override computeShapeBounds and for Shapes
+     *         with custom ShapeTransforms. Such Shapes are never culled.
+     *         Custom subclasses that override any of the rendering methods
+     *         (renderShape, renderLines, onPreRender, etc.) also need to
+     *         override computeShapeBounds, or their inherited bounds are
+     *         not trusted and they're unknown too.
+     */
+    public ReadonlyBoundingBox getBounds() {
+        if (!LSDShapeInfo.get(getClass()).isBoundsTrusted()) {
+            return null;
+        }
+        final long version = getGeometryVersion();
+        if (bounds != null && version == boundsVersion && !geometryVersionUnknown) {
+            return boundsKnown ? bounds : null;
+        }
+        if (bounds == null) {
+            bounds = new BoundingBox();
+        }
+        boundsVersion = version;
+        boundsKnown = computeBounds();
+        return boundsKnown ? bounds : null;
+    }
+
+    /**
+     * Set bounds to the Shape's current bounds.
+     * @return false if the bounds are unknown.
+     */
+    private boolean computeBounds() {
+        if (!computeShapeBounds(bounds.setEmpty())) {
+            return false;
+        }
+        final boolean absolute = !isRelativeToOrigin();
+        if (absolute && transforms == null) {
+            return true;
+        }
+        // Apply the same operations as render, in reverse order.
+        final ReadonlyVector3 origin = getOriginReadonly();
+        if (origin == null) {
+            bounds.setEmpty();
+            return true;
+        }
+        if (absolute) {
+            bounds.translate(-origin.getX(), -origin.getY(), -origin.getZ());
+        }
+        if (transforms != null) {
+            ListIterator<ShapeTransform> it = transforms.listIterator(transforms.size());
+            while (it.hasPrevious()) {
+                ShapeTransform t = it.previous();
+                if (t == null) {
+                    continue;
+                } else if (t instanceof ShapeTranslate) {
+                    ReadonlyVector3 v = ((ShapeTranslate) t).getTranslateXYZ();
+                    bounds.translate(v.getX(), v.getY(), v.getZ());
+                } else if (t instanceof ShapeScale) {
+                    ReadonlyVector3 v = ((ShapeScale) t).getScaleXYZ();
+                    bounds.scale(v.getX(), v.getY(), v.getZ());
+                } else if (t instanceof ShapeRotate) {
+                    ShapeRotate r = (ShapeRotate) t;
+                    ReadonlyVector3 v = r.getAxis();
+                    bounds.rotateDegrees(r.getAngle(), v.getX(), v.getY(), v.getZ());
+                } else {
+                    // No way of knowing what a custom ShapeTransform does.
+                    return false;
+                }
+            }
+        }
+        bounds.translate(origin.getX(), origin.getY(), origin.getZ());
+        return true;
+    }
+
+    /**
+     * Set the result to an axis-aligned box containing every vertex that
+     * renderShape draws, in the same coordinate system: relative to the
+     * origin if isRelativeToOrigin, otherwise absolute world coordinates.
+     * ShapeTransforms should not be taken into account.
+     * <p>
+     * The result is initially empty.
+     * 
+     * @return false if the bounds are unknown. The default implementation
+     *         always returns false.
+     */
+    protected boolean computeShapeBounds(BoundingBox result) {
+        return false;
+    }
+
+    /**
+     * The maximum distance from the player at which this Shape is rendered.
+     * Defaults to positive infinity, i.e. no limit.
+     * 
+     * @see #setMaxRenderDistance
+     */
+    public double getMaxRenderDistance() {
+        return maxRenderDistance;
+    }
+
+    /**
+     * The maximum distance from the player at which this Shape is rendered.
+     * Defaults to positive infinity, i.e. no limit.
+     * <p>
+     * The distance is measured to the nearest point of the Shape's bounds.
+     * Shapes with unknown bounds are always rendered.
+     * 
+     * @see libshapedraw.LibShapeDraw#setMaxRenderDistance
+     * @return the instance (for method chaining)
+     */
+    public Shape setMaxRenderDistance(double maxRenderDistance) {
+        if (!(maxRenderDistance > 0.0)) {
+            throw new IllegalArgumentException("expecting max render distance >0.0, got " + maxRenderDistance);
+        }
+        this.maxRenderDistance = maxRenderDistance;
+        return this;
+    }
+
+    /**
+     * The distance from the player to the nearest point of this Shape's
+     * bounds, as of the most recent frame. 0.0 if the bounds are unknown or
+     * if the Shape has not been rendered by the controller.
+     * <p>
+     * Shapes can use this to reduce their level of detail.
+     */
+    public double getRenderDistance() {
+        return renderDistance;
+    }
+
+    /**
+     * Set by the controller each frame, before rendering the Shape. Mods that
+     * render Shapes manually can set this too.
+     * 
+     * @see #getRenderDistance
+     * @return the instance (for method chaining)
+     */
+    public Shape setRenderDistance(double renderDistance) {
+        this.renderDistance = renderDistance;
+        return this;
+    }
+
     /**
      * Called whenever this Shape is added to a LibShapeDraw API instance's set
      * of shapes to render.
@@ -169,15 +492,16 @@ public abstract class Shape {
      * render the same regardless of what was rendered beforehand.
      */
     public static final void glContextStandardSetup() {
-        GL11.glEnable(GL11.GL_BLEND);
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-        GL11.glDisable(GL11.GL_TEXTURE_2D);
-        GL11.glDisable(GL11.GL_LIGHTING);
-        GL11.glDisable(GL11.GL_LIGHT0);
-        GL11.glDisable(GL11.GL_LIGHT1);
-        GL11.glDisable(GL11.GL_COLOR_MATERIAL);
-        GL11.glDepthFunc(GL11.GL_LEQUAL);
-        GL11.glLineWidth(1.0F);
+        // Redundant calls are dropped when rendering a batch of shapes.
+        LSDGLState.glEnable(GL11.GL_BLEND);
+        LSDGLState.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        LSDGLState.glDisable(GL11.GL_TEXTURE_2D);
+        LSDGLState.glDisable(GL11.GL_LIGHTING);
+        LSDGLState.glDisable(GL11.GL_LIGHT0);
+        LSDGLState.glDisable(GL11.GL_LIGHT1);
+        LSDGLState.glDisable(GL11.GL_COLOR_MATERIAL);
+        LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
+        LSDGLState.glLineWidth(1.0F);
         // Every Shape calls glColord; no need to reset that here.
     }
 
@@ -203,13 +527,48 @@ public abstract class Shape {
      * instance.
      */
     public final void render(MinecraftAccess mc) {
+        render(mc, PASS_BOTH);
+    }
+
+    /**
+     * Render only the main pass of the Shape, if visible, i.e. the portion
+     * that is not visible through terrain.
+     * <p>
+     * Used by the controller to render the main passes of every Shape before
+     * rendering any secondary (xray) passes, minimizing OpenGL state changes.
+     * Only valid for Shapes whose rendering is split between renderShapeMain
+     * and renderShapeSecondary; for any other Shape, use render.
+     * 
+     * @see libshapedraw.LibShapeDraw#setDeferredXrayPass
+     */
+    public final void renderMainPass(MinecraftAccess mc) {
+        render(mc, PASS_MAIN);
+    }
+
+    /**
+     * Render only the secondary pass of the Shape, if visible, i.e. the
+     * portion that is visible through terrain.
+     * 
+     * @see #renderMainPass
+     */
+    public final void renderSecondaryPass(MinecraftAccess mc) {
+        render(mc, PASS_SECONDARY);
+    }
+
+    private void render(MinecraftAccess mc, int pass) {
         if (!isVisible()) {
             return;
         }
+        // Custom Shapes and ShapeTransforms are free to make arbitrary OpenGL
+        // calls, bypassing LSDGLState.
+        final boolean untracked = LSDGLState.isActive() && !LSDShapeInfo.isGLStateTracked(this);
         onPreRender(mc);
         final boolean absolute = !isRelativeToOrigin();
         if (absolute && transforms == null) {
-            renderShape(mc);
+            if (untracked) {
+                LSDGLState.invalidate();
+            }
+            renderShape(mc, pass);
         } else {
             final ReadonlyVector3 origin = getOriginReadonly();
             if (origin == null) {
@@ -227,10 +586,26 @@ public abstract class Shape {
             if (absolute) {
                 GL11.glTranslated(-origin.getX(), -origin.getY(), -origin.getZ());
             }
-            renderShape(mc);
+            if (untracked) {
+                LSDGLState.invalidate();
+            }
+            renderShape(mc, pass);
             GL11.glPopMatrix();
         }
         onPostRender(mc);
+        if (untracked) {
+            LSDGLState.invalidate();
+        }
+    }
+
+    private void renderShape(MinecraftAccess mc, int pass) {
+        if (pass == PASS_MAIN) {
+            renderShapeMain(mc);
+        } else if (pass == PASS_SECONDARY) {
+            renderShapeSecondary(mc);
+        } else {
+            renderShape(mc);
+        }
     }
 
     /**
@@ -239,6 +614,27 @@ public abstract class Shape {
      */
     protected abstract void renderShape(MinecraftAccess mc);
 
+    /**
+     * Render the main pass only. Derived classes that override this should
+     * also override renderShapeSecondary, and renderShape should be
+     * equivalent to calling both.
+     * <p>
+     * The default implementation simply calls renderShape.
+     */
+    protected void renderShapeMain(MinecraftAccess mc) {
+        renderShape(mc);
+    }
+
+    /**
+     * Render the secondary (xray) pass only.
+     * <p>
+     * The default implementation does nothing: renderShapeMain has already
+     * rendered everything.
+     */
+    protected void renderShapeSecondary(MinecraftAccess mc) {
+        // do nothing; derived classes can override as needed.
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder()
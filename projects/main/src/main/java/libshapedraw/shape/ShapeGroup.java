@@ -0,0 +1,249 @@
+package libshapedraw.shape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import libshapedraw.LibShapeDraw;
+import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDController;
+import libshapedraw.internal.LSDGLState;
+import libshapedraw.internal.LSDShapeInfo;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.Vector3;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * A Shape made of other Shapes, rendered, transformed, hidden, and culled as
+ * a unit.
+ * <p>
+ * Children are positioned relative to the group's origin, so moving the
+ * group's origin moves every child. The group's ShapeTransforms are applied
+ * once for the whole group, around its origin, before rendering the
+ * children; each child's own origin and ShapeTransforms still apply on top.
+ * <p>
+ * The controller tests the group's bounds, the union of every child's
+ * bounds, instead of each child's. The union is cached until a child is
+ * added, removed, or modified. Hidden children are still included, so
+ * toggling a child's visibility never invalidates the cache. If any child's
+ * bounds are unknown, so are the group's.
+ * <p>
+ * Children are only rendered through the group: don't also add them to a
+ * LibShapeDraw API instance. They receive the group's onAdd and onRemove
+ * calls, and the group's render distance for choosing their level of
+ * detail.
+ */
+public class ShapeGroup extends Shape {
+    private final ArrayList<Shape> children = new ArrayList<Shape>();
+    private final List<Shape> childrenReadonly = Collections.unmodifiableList(children);
+    /** The API instances this group has been added to. */
+    private final LinkedList<LibShapeDraw> apiInstances = new LinkedList<LibShapeDraw>();
+    private long childrenModCount;
+
+    public ShapeGroup(Vector3 origin) {
+        super(origin);
+    }
+
+    /** Create a group whose children are positioned in world coordinates. */
+    public ShapeGroup() {
+        this(Vector3.ZEROS.copy());
+    }
+
+    @Override
+    public Vector3 getOrigin() {
+        // changed method modifier from protected to public
+        return super.getOrigin();
+    }
+    @Override
+    public void setOrigin(Vector3 origin) {
+        // changed method modifier from protected to public
+        super.setOrigin(origin);
+    }
+
+    /** Get a read-only view of the group's children, in rendering order. */
+    public List<Shape> getChildren() {
+        return childrenReadonly;
+    }
+
+    /** @return the number of children. */
+    public int getChildCount() {
+        return children.size();
+    }
+
+    /**
+     * Add a Shape to the end of this group.
+     * <p>
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled.
+     *
+     * @return the instance (for method chaining)
+     */
+    public ShapeGroup addChild(final Shape child) {
+        if (child == null) {
+            throw new IllegalArgumentException("child cannot be null");
+        }
+        if (child == this || (child instanceof ShapeGroup && ((ShapeGroup) child).isAncestorOf(this))) {
+            throw new IllegalArgumentException("a group cannot contain itself");
+        }
+        if (isCommandQueueing() && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                addChild(child);
+            }
+        })) {
+            return this;
+        }
+        children.add(child);
+        childrenModCount++;
+        for (LibShapeDraw apiInstance : apiInstances) {
+            child.onAdd(apiInstance);
+        }
+        return this;
+    }
+
+    /**
+     * Remove a Shape from this group.
+     * <p>
+     * Attempting to remove a Shape that is not in this group is allowed but
+     * won't do anything.
+     * <p>
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled.
+     *
+     * @return the instance (for method chaining)
+     */
+    public ShapeGroup removeChild(final Shape child) {
+        if (isCommandQueueing() && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                removeChild(child);
+            }
+        })) {
+            return this;
+        }
+        if (children.remove(child)) {
+            childRemoved(child);
+        }
+        return this;
+    }
+
+    /**
+     * Remove every Shape from this group.
+     * <p>
+     * Thread safety is not guaranteed unless {@link #setCommandQueueing
+     * command queueing} is enabled.
+     *
+     * @return the instance (for method chaining)
+     */
+    public ShapeGroup clearChildren() {
+        if (isCommandQueueing() && LSDController.getInstance().queueIfOffThread(new Runnable() {
+            @Override
+            public void run() {
+                clearChildren();
+            }
+        })) {
+            return this;
+        }
+        Shape[] removed = children.toArray(new Shape[children.size()]);
+        children.clear();
+        for (Shape child : removed) {
+            childRemoved(child);
+        }
+        return this;
+    }
+
+    private void childRemoved(Shape child) {
+        childrenModCount += 1 + child.getGeometryVersion();
+        for (LibShapeDraw apiInstance : apiInstances) {
+            child.onRemove(apiInstance);
+        }
+    }
+
+    /** @return true if the shape is in this group or any group within it. */
+    public boolean isAncestorOf(Shape shape) {
+        for (Shape child : children) {
+            if (child == shape || (child instanceof ShapeGroup && ((ShapeGroup) child).isAncestorOf(shape))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onAdd(LibShapeDraw apiInstance) {
+        apiInstances.add(apiInstance);
+        for (Shape child : children) {
+            child.onAdd(apiInstance);
+        }
+    }
+
+    @Override
+    public void onRemove(LibShapeDraw apiInstance) {
+        apiInstances.remove(apiInstance);
+        for (Shape child : children) {
+            child.onRemove(apiInstance);
+        }
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        long v = childrenModCount;
+        for (Shape child : children) {
+            // Children with unknown versions report a new number every time.
+            v += child.getGeometryVersion();
+        }
+        return v;
+    }
+
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        for (Shape child : children) {
+            final ReadonlyBoundingBox bounds = child.getBounds();
+            if (bounds == null) {
+                return false;
+            }
+            result.include(bounds);
+        }
+        return true;
+    }
+
+    @Override
+    protected void renderShape(MinecraftAccess mc) {
+        final double renderDistance = getRenderDistance();
+        for (Shape child : children) {
+            child.setRenderDistance(renderDistance);
+            child.render(mc);
+        }
+    }
+
+    @Override
+    protected void renderShapeMain(MinecraftAccess mc) {
+        final double renderDistance = getRenderDistance();
+        for (Shape child : children) {
+            child.setRenderDistance(renderDistance);
+            if (LSDShapeInfo.get(child.getClass()).hasSplitRenderPasses()) {
+                child.renderMainPass(mc);
+            } else if (LSDGLState.isDepthFuncPinned()) {
+                // Same as the controller's main pass: the child is going to
+                // set the depth function however it likes.
+                LSDGLState.unpinDepthFunc();
+                child.render(mc);
+                LSDGLState.pinDepthFunc(GL11.GL_LEQUAL);
+            } else {
+                child.render(mc);
+            }
+        }
+    }
+
+    @Override
+    protected void renderShapeSecondary(MinecraftAccess mc) {
+        for (Shape child : children) {
+            if (LSDShapeInfo.get(child.getClass()).hasSplitRenderPasses()) {
+                child.renderSecondaryPass(mc);
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package libshapedraw.shape;
+
+import java.util.HashMap;
+
+import libshapedraw.LibShapeDraw;
+import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDChunkedDrawing;
+import libshapedraw.internal.LSDIndexedMesh;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.LineStyle;
+import libshapedraw.primitive.ReadonlyColor;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * A filled surface made of triangles, e.g. an overlay on a region of terrain.
+ * <p>
+ * The triangles share vertices: each triangle is three indexes into a list
+ * of unique vertices. Vertices added by coordinates are welded, i.e. a vertex
+ * that is already in the mesh is reused rather than added again, so a typical
+ * surface stores and submits about a third as many vertices as triangle
+ * corners. See {@link #setWeldTolerance}.
+ * <p>
+ * The mesh is drawn with a single glDrawElements call. If that's unavailable
+ * the triangles are expanded and drawn using the Tessellator instead.
+ * <p>
+ * Like GLU shapes, the triangles are drawn in the main color, and in the
+ * secondary color where they're behind terrain, if set.
+ */
+public class TriangleMesh extends Shape implements XrayShape {
+    private static final int CHUNK_SIZE = 3*3*256;
+
+    /** Identifies a vertex's position, snapped to the weld tolerance. */
+    private static final class WeldKey {
+        private long x;
+        private long y;
+        private long z;
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof WeldKey)) {
+                return false;
+            }
+            WeldKey o = (WeldKey) other;
+            return x == o.x && y == o.y && z == o.z;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = x;
+            h = 31*h + y;
+            h = 31*h + z;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private final LineStyle lineStyle;
+    private double[] vertices = new double[3*16];
+    private int vertexCount;
+    private int[] indices = new int[3*16];
+    private int indexCount;
+    private double weldTolerance;
+    /** Built lazily; null if it has to be rebuilt from the vertices. */
+    private HashMap<WeldKey, Integer> weldMap;
+    private final WeldKey probe = new WeldKey();
+    private long modCount;
+    private LSDIndexedMesh indexedMesh;
+    private long indexedMeshModCount = -1;
+    /** Scratch space for renderTessellated. */
+    private double[] chunk;
+
+    /**
+     * @param origin the x/y/z coordinates that the vertices are relative to.
+     */
+    public TriangleMesh(Vector3 origin, Color mainColor, Color secondaryColor) {
+        super(origin);
+        lineStyle = new LineStyle(mainColor, 1.0F, secondaryColor, 1.0F);
+    }
+    /**
+     * Create a mesh whose vertices are absolute world x/y/z coordinates.
+     */
+    public TriangleMesh(Color mainColor, Color secondaryColor) {
+        this(Vector3.ZEROS.copy(), mainColor, secondaryColor);
+        setRelativeToOrigin(false);
+    }
+
+    /** The number of unique vertices. */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /** The number of triangles. */
+    public int getTriangleCount() {
+        return indexCount/3;
+    }
+
+    /**
+     * The maximum distance between two vertices for them to be welded into
+     * one. Defaults to 0.0, i.e. only identical vertices are welded.
+     *
+     * @see #setWeldTolerance
+     */
+    public double getWeldTolerance() {
+        return weldTolerance;
+    }
+
+    /**
+     * The maximum distance between two vertices for them to be welded into
+     * one. Defaults to 0.0, i.e. only identical vertices are welded.
+     * <p>
+     * When positive, vertex coordinates are snapped to a grid of this size
+     * for comparison, so vertices that are closer than this may occasionally
+     * fall into different grid cells and not be welded. The vertices already
+     * in the mesh are unaffected; only vertices added afterwards are welded
+     * using the new tolerance.
+     */
+    public TriangleMesh setWeldTolerance(double weldTolerance) {
+        if (!(weldTolerance >= 0.0) || Double.isInfinite(weldTolerance)) {
+            throw new IllegalArgumentException("expecting weld tolerance >=0.0, got " + weldTolerance);
+        }
+        if (this.weldTolerance != weldTolerance) {
+            this.weldTolerance = weldTolerance;
+            weldMap = null;
+        }
+        return this;
+    }
+
+    private WeldKey setKey(WeldKey key, double x, double y, double z) {
+        if (weldTolerance > 0.0) {
+            key.x = Math.round(x / weldTolerance);
+            key.y = Math.round(y / weldTolerance);
+            key.z = Math.round(z / weldTolerance);
+        } else {
+            // Adding 0.0 turns -0.0 into 0.0.
+            key.x = Double.doubleToLongBits(x + 0.0);
+            key.y = Double.doubleToLongBits(y + 0.0);
+            key.z = Double.doubleToLongBits(z + 0.0);
+        }
+        return key;
+    }
+
+    private HashMap<WeldKey, Integer> getWeldMap() {
+        if (weldMap == null) {
+            weldMap = new HashMap<WeldKey, Integer>();
+            for (int index = 0; index < vertexCount; index++) {
+                final int i = 3*index;
+                final WeldKey key = setKey(new WeldKey(), vertices[i], vertices[i + 1], vertices[i + 2]);
+                if (!weldMap.containsKey(key)) {
+                    weldMap.put(key, index);
+                }
+            }
+        }
+        return weldMap;
+    }
+
+    /**
+     * Add a vertex, or find the existing vertex it would be welded to.
+     * @return the vertex's index, for {@link #addTriangle(int, int, int)}.
+     */
+    public int addVertex(double x, double y, double z) {
+        final HashMap<WeldKey, Integer> map = getWeldMap();
+        final Integer existing = map.get(setKey(probe, x, y, z));
+        if (existing != null) {
+            return existing;
+        }
+        if (3*vertexCount == vertices.length) {
+            double[] grown = new double[vertices.length*2];
+            System.arraycopy(vertices, 0, grown, 0, 3*vertexCount);
+            vertices = grown;
+        }
+        final int i = 3*vertexCount;
+        vertices[i] = x;
+        vertices[i + 1] = y;
+        vertices[i + 2] = z;
+        map.put(setKey(new WeldKey(), x, y, z), vertexCount);
+        modCount++;
+        return vertexCount++;
+    }
+
+    /** @see #addVertex(double, double, double) */
+    public int addVertex(ReadonlyVector3 vertex) {
+        return addVertex(vertex.getX(), vertex.getY(), vertex.getZ());
+    }
+
+    /**
+     * Move an existing vertex, and every triangle corner using it.
+     * @return the instance (for method chaining)
+     */
+    public TriangleMesh setVertex(int index, double x, double y, double z) {
+        checkVertex(index);
+        final int i = 3*index;
+        vertices[i] = x;
+        vertices[i + 1] = y;
+        vertices[i + 2] = z;
+        weldMap = null;
+        modCount++;
+        return this;
+    }
+
+    /**
+     * Copy an existing vertex's coordinates into result.
+     * @return result, for method chaining
+     */
+    public Vector3 getVertex(int index, Vector3 result) {
+        checkVertex(index);
+        final int i = 3*index;
+        return result.set(vertices[i], vertices[i + 1], vertices[i + 2]);
+    }
+
+    private void checkVertex(int index) {
+        if (index < 0 || index >= vertexCount) {
+            throw new IllegalArgumentException("no vertex at index " + index);
+        }
+    }
+
+    /**
+     * Add a triangle between three existing vertices.
+     * @return the instance (for method chaining)
+     */
+    public TriangleMesh addTriangle(int v0, int v1, int v2) {
+        checkVertex(v0);
+        checkVertex(v1);
+        checkVertex(v2);
+        if (indexCount + 3 > indices.length) {
+            int[] grown = new int[indices.length*2];
+            System.arraycopy(indices, 0, grown, 0, indexCount);
+            indices = grown;
+        }
+        indices[indexCount++] = v0;
+        indices[indexCount++] = v1;
+        indices[indexCount++] = v2;
+        modCount++;
+        return this;
+    }
+
+    /**
+     * Add a triangle, welding its corners to existing vertices.
+     * @return the instance (for method chaining)
+     */
+    public TriangleMesh addTriangle(ReadonlyVector3 corner0, ReadonlyVector3 corner1, ReadonlyVector3 corner2) {
+        return addTriangle(addVertex(corner0), addVertex(corner1), addVertex(corner2));
+    }
+
+    /**
+     * Import unindexed triangles, welding their corners to existing vertices.
+     * @param xyz packed x/y/z coordinates, three corners per triangle
+     * @param offset the array index of the first corner's x coordinate
+     * @param triangleCount the number of triangles to add
+     * @return the instance (for method chaining)
+     */
+    public TriangleMesh addTriangles(double[] xyz, int offset, int triangleCount) {
+        if (offset < 0 || triangleCount < 0 || offset + 9L*triangleCount > xyz.length) {
+            throw new IllegalArgumentException("invalid range " + offset + "+" + triangleCount +
+                    " for " + xyz.length + " coordinates");
+        }
+        for (int i = offset, end = offset + 9*triangleCount; i < end; i += 9) {
+            addTriangle(
+                    addVertex(xyz[i],     xyz[i + 1], xyz[i + 2]),
+                    addVertex(xyz[i + 3], xyz[i + 4], xyz[i + 5]),
+                    addVertex(xyz[i + 6], xyz[i + 7], xyz[i + 8]));
+        }
+        return this;
+    }
+
+    /**
+     * @param corner 0, 1, or 2
+     * @return the index of the vertex at the specified corner of a triangle.
+     */
+    public int getTriangleVertex(int triangle, int corner) {
+        if (triangle < 0 || triangle >= getTriangleCount() || corner < 0 || corner > 2) {
+            throw new IllegalArgumentException("no corner " + corner + " of triangle " + triangle);
+        }
+        return indices[3*triangle + corner];
+    }
+
+    /**
+     * Remove every vertex and triangle, keeping the storage for reuse.
+     * @return the instance (for method chaining)
+     */
+    public TriangleMesh clear() {
+        vertexCount = 0;
+        indexCount = 0;
+        weldMap = null;
+        modCount++;
+        return this;
+    }
+
+    public LineStyle getLineStyle() {
+        return lineStyle;
+    }
+
+    @Override
+    public ReadonlyColor getMainColorReadonly() {
+        return lineStyle.getMainReadonlyColor();
+    }
+
+    @Override
+    public ReadonlyColor getSecondaryColorReadonly() {
+        return lineStyle.getSecondaryReadonlyColor();
+    }
+
+    @Override
+    public boolean isVisibleThroughTerrain() {
+        return lineStyle.hasSecondaryColor();
+    }
+
+    /**
+     * Includes unused vertices, if any.
+     */
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        for (int i = 0; i < 3*vertexCount; i += 3) {
+            result.include(vertices[i], vertices[i + 1], vertices[i + 2]);
+        }
+        return true;
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        return modCount + lineStyle.getVersion();
+    }
+
+    @Override
+    public void onRemove(LibShapeDraw apiInstance) {
+        super.onRemove(apiInstance);
+        // Staged again on the next render if the shape is re-added.
+        if (indexedMesh != null) {
+            indexedMesh.release();
+            indexedMesh = null;
+            indexedMeshModCount = -1;
+        }
+    }
+
+    @Override
+    protected void renderShape(MinecraftAccess mc) {
+        renderShapeMain(mc);
+        renderShapeSecondary(mc);
+    }
+
+    @Override
+    protected void renderShapeMain(MinecraftAccess mc) {
+        lineStyle.glApply(false);
+        renderTriangles(mc);
+    }
+
+    @Override
+    protected void renderShapeSecondary(MinecraftAccess mc) {
+        if (lineStyle.glApply(true)) {
+            renderTriangles(mc);
+        }
+    }
+
+    private void renderTriangles(MinecraftAccess mc) {
+        if (indexCount == 0) {
+            return;
+        }
+        if (!LSDIndexedMesh.isSupported()) {
+            renderTessellated(mc);
+            return;
+        }
+        if (indexedMesh == null) {
+            indexedMesh = new LSDIndexedMesh();
+        }
+        if (indexedMeshModCount != modCount) {
+            indexedMesh.update(vertices, vertexCount, indices, indexCount);
+            indexedMeshModCount = modCount;
+        }
+        indexedMesh.draw();
+    }
+
+    /**
+     * Expand the indexes into separate triangles, submitted to the
+     * Tessellator in chunks rather than one interface call each.
+     */
+    private void renderTessellated(MinecraftAccess mc) {
+        if (this.chunk == null) {
+            this.chunk = new double[CHUNK_SIZE];
+        }
+        final double[] chunk = this.chunk;
+        final int maxSessionVertices = LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_TRIANGLES);
+        int n = 0;
+        int sessionVertices = 0;
+        mc.startDrawing(GL11.GL_TRIANGLES);
+        for (int k = 0; k < indexCount; k++) {
+            if (sessionVertices == maxSessionVertices) {
+                if (n > 0) {
+                    mc.addVertices(chunk, 0, n/3);
+                    n = 0;
+                }
+                mc.finishDrawing();
+                mc.startDrawing(GL11.GL_TRIANGLES);
+                sessionVertices = 0;
+            }
+            final int i = 3*indices[k];
+            chunk[n++] = vertices[i];
+            chunk[n++] = vertices[i + 1];
+            chunk[n++] = vertices[i + 2];
+            sessionVertices++;
+            if (n == chunk.length) {
+                mc.addVertices(chunk, 0, n/3);
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            mc.addVertices(chunk, 0, n/3);
+        }
+        mc.finishDrawing();
+    }
+}
@@ -1,6 +1,7 @@
 package libshapedraw.shape;
 
 import libshapedraw.MinecraftAccess;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.primitive.Vector3;
 
@@ -13,6 +14,8 @@ import org.lwjgl.opengl.GL11;
 public class WireframeCuboid extends WireframeShape {
     private Vector3 lowerCorner;
     private Vector3 upperCorner;
+    private long cornersModCount;
+    private long cachedCornersVersion = -1;
 
     public WireframeCuboid(Vector3 lowerCorner, Vector3 upperCorner) {
         super(Vector3.ZEROS.copy());
@@ -32,6 +35,7 @@ public class WireframeCuboid extends WireframeShape {
         if (lowerCorner == null) {
             throw new IllegalArgumentException("lower corner cannot be null");
         }
+        cornersModCount += 1 + this.lowerCorner.getVersion();
         this.lowerCorner = lowerCorner;
         normalize();
         return this;
@@ -43,6 +47,7 @@ public class WireframeCuboid extends WireframeShape {
         if (upperCorner == null) {
             throw new IllegalArgumentException("upper corner cannot be null");
         }
+        cornersModCount += 1 + this.upperCorner.getVersion();
         this.upperCorner = upperCorner;
         normalize();
         return this;
@@ -71,18 +76,55 @@ public class WireframeCuboid extends WireframeShape {
     @Override
     public ReadonlyVector3 getOriginReadonly() {
         normalize();
-        return getOrigin().set(
-                midpoint(lowerCorner.getX(), upperCorner.getX()),
-                midpoint(lowerCorner.getY(), upperCorner.getY()),
-                midpoint(lowerCorner.getZ(), upperCorner.getZ()));
+        final Vector3 origin = getOrigin();
+        final double x = midpoint(lowerCorner.getX(), upperCorner.getX());
+        final double y = midpoint(lowerCorner.getY(), upperCorner.getY());
+        final double z = midpoint(lowerCorner.getZ(), upperCorner.getZ());
+        // Leave the origin's version alone unless the midpoint moved.
+        if (origin.getX() != x || origin.getY() != y || origin.getZ() != z) {
+            origin.set(x, y, z);
+        }
+        return origin;
     }
     private static double midpoint(double lo, double hi) {
         return lo + (hi - lo)/2.0;
     }
 
     @Override
-    protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
+    protected boolean computeShapeBounds(BoundingBox result) {
+        normalize();
+        result.set(lowerCorner.getX(), lowerCorner.getY(), lowerCorner.getZ(),
+                upperCorner.getX(), upperCorner.getY(), upperCorner.getZ());
+        return true;
+    }
+
+    private long getCornersVersion() {
+        normalize();
+        return cornersModCount + lowerCorner.getVersion() + upperCorner.getVersion();
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        return getCornersVersion() + getLineStyleVersion();
+    }
+
+    @Override
+    protected boolean isVertexCacheStale() {
+        final long version = getCornersVersion();
+        if (version == cachedCornersVersion) {
+            return false;
+        }
+        cachedCornersVersion = version;
+        return true;
+    }
+
+    @Override
+    protected void prepareLines() {
         normalize();
+    }
+
+    @Override
+    protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
 
         // bottom
         mc.startDrawing(GL11.GL_LINE_LOOP);
@@ -0,0 +1,407 @@
+package libshapedraw.shape;
+
+import java.util.ArrayList;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDChunkedDrawing;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.LineStyle;
+import libshapedraw.primitive.ReadonlyLineStyle;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Any number of wireframe boxes, orthogonal to the x/y/z axes, rendered as a
+ * single shape.
+ * <p>
+ * Thousands of WireframeCuboids cost thousands of objects and three draws
+ * each per pass. A WireframeCuboidBatch stores every box's corners in one
+ * packed array and draws all of their edges as a single GL_LINES session per
+ * line style per pass.
+ * <p>
+ * Each box is identified by the index returned by {@link #addBox}, which
+ * stays valid until the box is removed. Adding, updating, and removing boxes
+ * all take constant time; the indexes of removed boxes are reused.
+ * <p>
+ * By default every box uses the shape's line style. Boxes can use other line
+ * styles by index, see {@link #addLineStyle}.
+ */
+public class WireframeCuboidBatch extends WireframeShape {
+    /** A box's style index while its slot is free. */
+    private static final int FREE = -1;
+    private static final int CHUNK_SIZE = 3*24*32;
+
+    /** minX, minY, minZ, maxX, maxY, maxZ for each slot. */
+    private double[] corners;
+    private int[] styleIndexes;
+    /** For free slots, the next free slot; -1 ends the list. */
+    private int[] nextFree;
+    private int firstFree = -1;
+    /** The number of slots ever used, free or not. */
+    private int slotCount;
+    private int boxCount;
+    private final ArrayList<LineStyle> lineStyles = new ArrayList<LineStyle>();
+    private long boxesModCount;
+    private long cachedBoxesModCount = -1;
+    /**
+     * Scratch space for renderBoxes. Owned by this shape rather than shared,
+     * as vertex caches can be built on worker threads.
+     */
+    private double[] chunk;
+
+    /**
+     * @param origin the x/y/z coordinates that the boxes' corners are
+     *        relative to.
+     */
+    public WireframeCuboidBatch(Vector3 origin) {
+        super(origin);
+        corners = new double[6*16];
+        styleIndexes = new int[16];
+        nextFree = new int[16];
+    }
+    /**
+     * Create a batch of boxes whose corners are absolute world x/y/z
+     * coordinates.
+     */
+    public WireframeCuboidBatch() {
+        this(Vector3.ZEROS.copy());
+        setRelativeToOrigin(false);
+    }
+
+    /** The number of boxes in the batch. */
+    public int getBoxCount() {
+        return boxCount;
+    }
+
+    /** @return true if index refers to a box that hasn't been removed. */
+    public boolean containsBox(int index) {
+        return index >= 0 && index < slotCount && styleIndexes[index] != FREE;
+    }
+
+    private void checkBox(int index) {
+        if (!containsBox(index)) {
+            throw new IllegalArgumentException("no box at index " + index);
+        }
+    }
+
+    private void checkLineStyleIndex(int styleIndex) {
+        if (styleIndex < 0 || styleIndex > lineStyles.size()) {
+            throw new IllegalArgumentException("invalid line style index " + styleIndex);
+        }
+    }
+
+    /**
+     * Add a box, given any two opposite corners.
+     * @return the new box's index.
+     */
+    public int addBox(double x0, double y0, double z0, double x1, double y1, double z1) {
+        final int index;
+        if (firstFree >= 0) {
+            index = firstFree;
+            firstFree = nextFree[index];
+        } else {
+            if (slotCount == styleIndexes.length) {
+                grow();
+            }
+            index = slotCount++;
+        }
+        styleIndexes[index] = 0;
+        boxCount++;
+        setBox(index, x0, y0, z0, x1, y1, z1);
+        return index;
+    }
+
+    /**
+     * Add a box, given any two opposite corners.
+     * @return the new box's index.
+     */
+    public int addBox(ReadonlyVector3 corner0, ReadonlyVector3 corner1) {
+        return addBox(corner0.getX(), corner0.getY(), corner0.getZ(), corner1.getX(), corner1.getY(), corner1.getZ());
+    }
+
+    private void grow() {
+        final int capacity = styleIndexes.length*2;
+        double[] grownCorners = new double[6*capacity];
+        System.arraycopy(corners, 0, grownCorners, 0, 6*slotCount);
+        corners = grownCorners;
+        int[] grownStyleIndexes = new int[capacity];
+        System.arraycopy(styleIndexes, 0, grownStyleIndexes, 0, slotCount);
+        styleIndexes = grownStyleIndexes;
+        int[] grownNextFree = new int[capacity];
+        System.arraycopy(nextFree, 0, grownNextFree, 0, slotCount);
+        nextFree = grownNextFree;
+    }
+
+    /**
+     * Move an existing box, given any two opposite corners.
+     * @return the instance (for method chaining)
+     */
+    public WireframeCuboidBatch setBox(int index, double x0, double y0, double z0, double x1, double y1, double z1) {
+        checkBox(index);
+        final int i = 6*index;
+        corners[i]     = Math.min(x0, x1);
+        corners[i + 1] = Math.min(y0, y1);
+        corners[i + 2] = Math.min(z0, z1);
+        corners[i + 3] = Math.max(x0, x1);
+        corners[i + 4] = Math.max(y0, y1);
+        corners[i + 5] = Math.max(z0, z1);
+        boxesModCount++;
+        return this;
+    }
+
+    /**
+     * Copy an existing box's corners into result.
+     * @return result, for method chaining
+     */
+    public BoundingBox getBox(int index, BoundingBox result) {
+        checkBox(index);
+        final int i = 6*index;
+        return result.set(corners[i], corners[i + 1], corners[i + 2], corners[i + 3], corners[i + 4], corners[i + 5]);
+    }
+
+    /**
+     * Remove an existing box. Its index may be reused by a later addBox.
+     * @return the instance (for method chaining)
+     */
+    public WireframeCuboidBatch removeBox(int index) {
+        checkBox(index);
+        styleIndexes[index] = FREE;
+        nextFree[index] = firstFree;
+        firstFree = index;
+        boxCount--;
+        boxesModCount++;
+        return this;
+    }
+
+    /**
+     * Remove every box.
+     * @return the instance (for method chaining)
+     */
+    public WireframeCuboidBatch clearBoxes() {
+        slotCount = 0;
+        boxCount = 0;
+        firstFree = -1;
+        boxesModCount++;
+        return this;
+    }
+
+    /**
+     * Make an additional line style available to this shape's boxes.
+     * Line style 0 is always the shape's own line style.
+     *
+     * @return the index to pass to {@link #setBoxLineStyle}.
+     */
+    public int addLineStyle(LineStyle lineStyle) {
+        if (lineStyle == null) {
+            throw new IllegalArgumentException("line style cannot be null");
+        }
+        lineStyles.add(lineStyle);
+        boxesModCount++;
+        return lineStyles.size();
+    }
+
+    /**
+     * @return the line style at the specified index, where 0 is the shape's
+     *         effective line style.
+     */
+    public ReadonlyLineStyle getLineStyle(int styleIndex) {
+        checkLineStyleIndex(styleIndex);
+        return styleIndex == 0 ? getEffectiveLineStyle() : lineStyles.get(styleIndex - 1);
+    }
+
+    /** The number of additional line styles. */
+    public int getLineStyleCount() {
+        return lineStyles.size();
+    }
+
+    public int getBoxLineStyle(int index) {
+        checkBox(index);
+        return styleIndexes[index];
+    }
+
+    /**
+     * Render an existing box using a line style previously added by
+     * {@link #addLineStyle}, or 0 for the shape's own line style.
+     * @return the instance (for method chaining)
+     */
+    public WireframeCuboidBatch setBoxLineStyle(int index, int styleIndex) {
+        checkBox(index);
+        checkLineStyleIndex(styleIndex);
+        if (styleIndexes[index] != styleIndex) {
+            styleIndexes[index] = styleIndex;
+            boxesModCount++;
+        }
+        return this;
+    }
+
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        for (int index = 0; index < slotCount; index++) {
+            if (styleIndexes[index] != FREE) {
+                final int i = 6*index;
+                result.include(corners[i], corners[i + 1], corners[i + 2]);
+                result.include(corners[i + 3], corners[i + 4], corners[i + 5]);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        long version = boxesModCount + getLineStyleVersion();
+        for (LineStyle lineStyle : lineStyles) {
+            version += lineStyle.getVersion();
+        }
+        return version;
+    }
+
+    @Override
+    protected boolean isVertexCacheStale() {
+        if (cachedBoxesModCount == boxesModCount) {
+            return false;
+        }
+        cachedBoxesModCount = boxesModCount;
+        return true;
+    }
+
+    /**
+     * Boxes with additional line styles are drawn with their own OpenGL
+     * state, so they can only be batched if there are none.
+     */
+    @Override
+    public boolean isBatchable() {
+        return lineStyles.isEmpty();
+    }
+
+    @Override
+    public boolean isVisibleThroughTerrain() {
+        if (super.isVisibleThroughTerrain()) {
+            return true;
+        }
+        if (getRenderDistance() > getMaxXrayDistance()) {
+            return false;
+        }
+        for (LineStyle lineStyle : lineStyles) {
+            if (lineStyle.hasSecondaryColor()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void renderShapeMain(MinecraftAccess mc) {
+        super.renderShapeMain(mc);
+        for (int styleIndex = 1; styleIndex <= lineStyles.size(); styleIndex++) {
+            lineStyles.get(styleIndex - 1).glApply(false);
+            renderBoxes(mc, styleIndex);
+        }
+    }
+
+    @Override
+    protected void renderShapeSecondary(MinecraftAccess mc) {
+        super.renderShapeSecondary(mc);
+        if (getRenderDistance() > getMaxXrayDistance()) {
+            return;
+        }
+        for (int styleIndex = 1; styleIndex <= lineStyles.size(); styleIndex++) {
+            if (lineStyles.get(styleIndex - 1).glApply(true)) {
+                renderBoxes(mc, styleIndex);
+            }
+        }
+    }
+
+    @Override
+    protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
+        renderBoxes(mc, 0);
+    }
+
+    /**
+     * Draw the twelve edges of every box using the specified line style
+     * index, all in a single GL_LINES session unless that would exceed the
+     * Tessellator's capacity.
+     */
+    private void renderBoxes(MinecraftAccess mc, int styleIndex) {
+        if (this.chunk == null) {
+            this.chunk = new double[CHUNK_SIZE];
+        }
+        final double[] chunk = this.chunk;
+        final int maxSessionVertices = LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINES);
+        int n = 0;
+        int sessionVertices = 0;
+        boolean started = false;
+        for (int index = 0; index < slotCount; index++) {
+            if (styleIndexes[index] != styleIndex) {
+                continue;
+            }
+            if (started && sessionVertices + 24 > maxSessionVertices) {
+                // Boxes aren't split across sessions.
+                if (n > 0) {
+                    mc.addVertices(chunk, 0, n/3);
+                    n = 0;
+                }
+                mc.finishDrawing();
+                started = false;
+            }
+            if (!started) {
+                mc.startDrawing(GL11.GL_LINES);
+                started = true;
+                sessionVertices = 0;
+            }
+            sessionVertices += 24;
+            final int i = 6*index;
+            n = addEdges(chunk, n,
+                    corners[i], corners[i + 1], corners[i + 2],
+                    corners[i + 3], corners[i + 4], corners[i + 5]);
+            if (n == chunk.length) {
+                mc.addVertices(chunk, 0, n/3);
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            mc.addVertices(chunk, 0, n/3);
+        }
+        if (started) {
+            mc.finishDrawing();
+        }
+    }
+
+    /**
+     * Write the 24 vertices of a box's twelve edges to dest.
+     * @return the new offset into dest.
+     */
+    private static int addEdges(double[] dest, int n,
+            double x0, double y0, double z0, double x1, double y1, double z1) {
+        // bottom and top
+        for (int face = 0; face < 2; face++) {
+            final double y = face == 0 ? y0 : y1;
+            n = addVertex(dest, n, x0, y, z0);
+            n = addVertex(dest, n, x0, y, z1);
+            n = addVertex(dest, n, x0, y, z1);
+            n = addVertex(dest, n, x1, y, z1);
+            n = addVertex(dest, n, x1, y, z1);
+            n = addVertex(dest, n, x1, y, z0);
+            n = addVertex(dest, n, x1, y, z0);
+            n = addVertex(dest, n, x0, y, z0);
+        }
+        // sides
+        n = addVertex(dest, n, x0, y0, z0);
+        n = addVertex(dest, n, x0, y1, z0);
+        n = addVertex(dest, n, x0, y0, z1);
+        n = addVertex(dest, n, x0, y1, z1);
+        n = addVertex(dest, n, x1, y0, z0);
+        n = addVertex(dest, n, x1, y1, z0);
+        n = addVertex(dest, n, x1, y0, z1);
+        n = addVertex(dest, n, x1, y1, z1);
+        return n;
+    }
+
+    private static int addVertex(double[] dest, int n, double x, double y, double z) {
+        dest[n] = x;
+        dest[n + 1] = y;
+        dest[n + 2] = z;
+        return n + 3;
+    }
+}
@@ -1,6 +1,7 @@
 package libshapedraw.shape;
 
 import libshapedraw.MinecraftAccess;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.Vector3;
 
 import org.lwjgl.opengl.GL11;
@@ -11,6 +12,8 @@ import org.lwjgl.opengl.GL11;
 public class WireframeLine extends WireframeShape {
     private Vector3 pointA;
     private Vector3 pointB;
+    private long pointsModCount;
+    private long cachedPointsVersion = -1;
 
     public WireframeLine(Vector3 a, Vector3 b) {
         super(a);
@@ -29,6 +32,7 @@ public class WireframeLine extends WireframeShape {
         if (a == null) {
             throw new IllegalArgumentException("point A cannot be null");
         }
+        pointsModCount += 1 + (pointA == null ? 0 : pointA.getVersion());
         pointA = a;
         return this;
     }
@@ -39,10 +43,36 @@ public class WireframeLine extends WireframeShape {
         if (b == null) {
             throw new IllegalArgumentException("point B cannot be null");
         }
+        pointsModCount += 1 + (pointB == null ? 0 : pointB.getVersion());
         pointB = b;
         return this;
     }
 
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        result.include(pointA).include(pointB);
+        return true;
+    }
+
+    private long getPointsVersion() {
+        return pointsModCount + pointA.getVersion() + pointB.getVersion();
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        return getPointsVersion() + getLineStyleVersion();
+    }
+
+    @Override
+    protected boolean isVertexCacheStale() {
+        final long version = getPointsVersion();
+        if (version == cachedPointsVersion) {
+            return false;
+        }
+        cachedPointsVersion = version;
+        return true;
+    }
+
     @Override
     protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
         mc.startDrawing(GL11.GL_LINES);
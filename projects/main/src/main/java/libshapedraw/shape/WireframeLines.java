@@ -1,8 +1,16 @@
 package libshapedraw.shape;
 
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDChunkedDrawing;
+import libshapedraw.internal.LSDController;
+import libshapedraw.internal.LSDGLState;
+import libshapedraw.internal.LSDLineSimplifier;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.PackedVector3List;
 import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.primitive.Vector3;
 
@@ -10,10 +18,38 @@ import org.lwjgl.opengl.GL11;
 
 /**
  * A series of connected line segments.
+ * <p>
+ * When rendered by the controller, the points of an Iterable that isn't a
+ * PackedVector3List are walked once per frame: culling copies them while
+ * computing the bounds, and rendering draws the copy.
  */
 public class WireframeLines extends WireframeShape {
+    private static final int CHUNK_SIZE = 3*256;
+    /** Tolerances below 2^-8 blocks aren't worth simplifying for. */
+    private static final int MIN_SIMPLIFY_BUCKET = -8;
+    private static final int NOT_SIMPLIFIED = Integer.MIN_VALUE;
+
     private Iterable<ReadonlyVector3> points;
     private int renderCap;
+    private long pointsModCount;
+    private Iterable<ReadonlyVector3> cachedPoints;
+    private int cachedRenderCap;
+    private long cachedPointsVersion;
+    private int cachedSimplifyBucket = NOT_SIMPLIFIED;
+    private double simplifyTolerance;
+    private Map<Integer, PackedVector3List> simplifiedPoints;
+    private PackedVector3List simplifySource;
+    private long simplifiedPointsVersion;
+    /** The rendered points, as copied by the controller's culling. */
+    private PackedVector3List framePoints;
+    private long framePointsEpoch;
+    private boolean framePointsValid;
+    private final Vector3 framePointsFirst = new Vector3();
+    /**
+     * Scratch space for renderLines. Owned by this shape rather than shared,
+     * as vertex caches can be built on worker threads.
+     */
+    private double[] chunk;
 
     public WireframeLines(Vector3 origin, Iterable<ReadonlyVector3> relativePoints) {
         super(origin);
@@ -30,6 +66,10 @@ public class WireframeLines extends WireframeShape {
      * Each point (except for the first and last) is the end of one line
      * segment and the start of the next. Thus the number of lines rendered
      * will be at most the number of points yielded minus one.
+     * <p>
+     * For large numbers of points, use a {@link PackedVector3List}: its
+     * coordinates are submitted directly rather than one vector at a time,
+     * and changes to it are detected automatically.
      */
     public Iterable<ReadonlyVector3> getPoints() {
         return points;
@@ -46,7 +86,9 @@ public class WireframeLines extends WireframeShape {
         if (it.hasNext() && !(it.next() instanceof ReadonlyVector3)) {
             throw new IllegalArgumentException("expecting Iterable<" + ReadonlyVector3.class.getName() + ">");
         }
+        pointsModCount += 1 + getPackedVersion(this.points);
         this.points = points;
+        framePointsValid = false;
         return this;
     }
 
@@ -58,42 +100,320 @@ public class WireframeLines extends WireframeShape {
         return renderCap;
     }
     public WireframeLines setRenderCap(int renderCap) {
+        if (this.renderCap != renderCap) {
+            pointsModCount++;
+            framePointsValid = false;
+        }
         this.renderCap = renderCap;
         return this;
     }
 
+    /**
+     * How far the rendered line segments may stray from the points, per block
+     * of distance from the player. Defaults to 0.0, i.e. no simplification.
+     * 
+     * @see #setSimplifyTolerance
+     */
+    public double getSimplifyTolerance() {
+        return simplifyTolerance;
+    }
+
+    /**
+     * How far the rendered line segments may stray from the points, per block
+     * of distance from the player. Defaults to 0.0, i.e. no simplification.
+     * <p>
+     * When this is positive, distant lines are drawn through a subset of the
+     * points, dropping points that wouldn't be visibly out of line anyway.
+     * Large paths seen from far away can often be drawn with a tiny fraction
+     * of their points. 0.001 is roughly one pixel at a typical field of view
+     * and resolution.
+     * <p>
+     * The allowed error is this tolerance multiplied by
+     * {@link #getRenderDistance}, rounded down to a power of two. The
+     * simplified points for each power of two are cached until the points
+     * change, which is detected the same way as for the vertex cache (see
+     * {@link #isVertexCacheStale}).
+     * <p>
+     * Blended segments in WireframeLinesBlend are never simplified.
+     */
+    public WireframeLines setSimplifyTolerance(double simplifyTolerance) {
+        if (!(simplifyTolerance >= 0.0)) {
+            throw new IllegalArgumentException("expecting simplify tolerance >=0.0, got " + simplifyTolerance);
+        }
+        this.simplifyTolerance = simplifyTolerance;
+        return this;
+    }
+
+    /**
+     * @return the exponent of the power-of-two tolerance to simplify the
+     *         points with at the current render distance, or NOT_SIMPLIFIED.
+     */
+    private int getSimplifyBucket() {
+        final double tolerance = simplifyTolerance*getRenderDistance();
+        if (!(tolerance > 0.0) || Double.isInfinite(tolerance)) {
+            return NOT_SIMPLIFIED;
+        }
+        final int bucket = Math.getExponent(tolerance);
+        return bucket < MIN_SIMPLIFY_BUCKET ? NOT_SIMPLIFIED : bucket;
+    }
+
+    /**
+     * @return the simplified points to render at the current render
+     *         distance, or null to render all of the points.
+     */
+    private PackedVector3List getSimplifiedPoints() {
+        final int bucket = getSimplifyBucket();
+        if (bucket == NOT_SIMPLIFIED) {
+            return null;
+        }
+        final long version = getPointsVersion();
+        if (simplifiedPoints == null) {
+            simplifiedPoints = new HashMap<Integer, PackedVector3List>();
+        } else if (simplifiedPointsVersion != version) {
+            simplifiedPoints.clear();
+            simplifySource = null;
+        }
+        simplifiedPointsVersion = version;
+        PackedVector3List result = simplifiedPoints.get(bucket);
+        if (result == null) {
+            final double[] coords;
+            final int count;
+            if (getPoints() instanceof PackedVector3List) {
+                coords = ((PackedVector3List) getPoints()).getCoordinates();
+                count = getPackedPointCount();
+            } else {
+                if (simplifySource == null) {
+                    simplifySource = copyRenderedPoints();
+                }
+                coords = simplifySource.getCoordinates();
+                count = simplifySource.size();
+            }
+            result = new LSDLineSimplifier().simplify(coords, count, Math.scalb(1.0, bucket),
+                    new PackedVector3List(0)).trimToSize();
+            simplifiedPoints.put(bucket, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if framePoints were copied earlier in the current frame
+     *         and shapes haven't had a chance to change since.
+     */
+    private boolean isFramePointsCurrent() {
+        return framePointsValid && LSDGLState.isActive() &&
+                framePointsEpoch == LSDController.getInstance().getShapesEpoch();
+    }
+
+    /**
+     * @return the points to iterate over when rendering: the copy made while
+     *         culling if it's current, otherwise the points themselves.
+     */
+    Iterable<ReadonlyVector3> getFramePoints() {
+        return isFramePointsCurrent() ? framePoints : getPoints();
+    }
+
+    /** @return a copy of the points that would be rendered. */
+    private PackedVector3List copyRenderedPoints() {
+        return copyRenderedPoints(new PackedVector3List());
+    }
+
+    /** @return result, replaced with the points that would be rendered. */
+    private PackedVector3List copyRenderedPoints(PackedVector3List result) {
+        result.clear();
+        if (renderCap == 0) {
+            return result;
+        }
+        final Iterator<ReadonlyVector3> it = getPoints().iterator();
+        int lineNum = -1;
+        while (it.hasNext() && (renderCap < 0 || lineNum < renderCap)) {
+            result.add(it.next());
+            lineNum++;
+        }
+        return result;
+    }
+
+    /**
+     * Also discards any simplified points.
+     */
+    @Override
+    public WireframeLines invalidateVertexCache() {
+        super.invalidateVertexCache();
+        simplifiedPoints = null;
+        simplifySource = null;
+        return this;
+    }
+
     @Override
     public ReadonlyVector3 getOriginReadonly() {
         if (isRelativeToOrigin()) {
             return super.getOriginReadonly();
         }
+        if (isFramePointsCurrent()) {
+            return framePoints.size() == 0 ? null : framePoints.get(0, framePointsFirst);
+        }
         Iterator<ReadonlyVector3> it = getPoints().iterator();
         if (it.hasNext()) {
-            return getPoints().iterator().next();
+            return it.next();
         } else {
             return null; // won't be rendering anything anyway
         }
     }
 
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        final int renderCap = getRenderCap();
+        if (renderCap == 0) {
+            return true;
+        }
+        if (getPoints() instanceof PackedVector3List) {
+            final double[] coords = ((PackedVector3List) getPoints()).getCoordinates();
+            for (int i = 0, end = 3*getPackedPointCount(); i < end; i += 3) {
+                result.include(coords[i], coords[i + 1], coords[i + 2]);
+            }
+            return true;
+        }
+        if (!isFramePointsCurrent() && LSDGLState.isActive()) {
+            // Being culled by the controller: keep the points for rendering.
+            if (framePoints == null) {
+                framePoints = new PackedVector3List();
+            }
+            copyRenderedPoints(framePoints);
+            framePointsEpoch = LSDController.getInstance().getShapesEpoch();
+            framePointsValid = true;
+        }
+        if (isFramePointsCurrent()) {
+            final double[] coords = framePoints.getCoordinates();
+            for (int i = 0, end = 3*framePoints.size(); i < end; i += 3) {
+                result.include(coords[i], coords[i + 1], coords[i + 2]);
+            }
+            return true;
+        }
+        final Iterator<ReadonlyVector3> it = getPoints().iterator();
+        if (renderCap < 0) {
+            while (it.hasNext()) {
+                result.include(it.next());
+            }
+        } else {
+            int lineNum = -1;
+            while (it.hasNext() && lineNum < renderCap) {
+                result.include(it.next());
+                lineNum++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of points to render from a PackedVector3List,
+     *         honoring the render cap.
+     */
+    private int getPackedPointCount() {
+        final int size = ((PackedVector3List) getPoints()).size();
+        if (renderCap < 0) {
+            return size;
+        }
+        return renderCap == 0 ? 0 : Math.min(size, renderCap + 1);
+    }
+
+    private static long getPackedVersion(Iterable<ReadonlyVector3> points) {
+        return points instanceof PackedVector3List ? ((PackedVector3List) points).getVersion() : 0;
+    }
+
+    private long getPointsVersion() {
+        return pointsModCount + getPackedVersion(points);
+    }
+
+    /**
+     * Unknown unless the points are a PackedVector3List.
+     */
+    @Override
+    protected long computeShapeVersion() {
+        if (!(points instanceof PackedVector3List)) {
+            return -1;
+        }
+        return getPointsVersion() + getLineStyleVersion();
+    }
+
+    /**
+     * Detects a different Iterable or render cap, any change to a
+     * PackedVector3List, and moving far enough to change how much the points
+     * are simplified. Changes to the points yielded by the same Iterable of
+     * any other type require calling invalidateVertexCache.
+     */
+    @Override
+    protected boolean isVertexCacheStale() {
+        final long version = getPointsVersion();
+        final int bucket = getSimplifyBucket();
+        if (cachedPoints == points && cachedRenderCap == renderCap && cachedPointsVersion == version &&
+                cachedSimplifyBucket == bucket) {
+            return false;
+        }
+        cachedPoints = points;
+        cachedRenderCap = renderCap;
+        cachedPointsVersion = version;
+        cachedSimplifyBucket = bucket;
+        return true;
+    }
+
     @Override
     protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
         final int renderCap = getRenderCap();
+        final PackedVector3List simplified = getSimplifiedPoints();
+        if (simplified != null) {
+            LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP, simplified.getCoordinates(), 0, simplified.size());
+            return;
+        }
+        if (getPoints() instanceof PackedVector3List) {
+            LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP,
+                    ((PackedVector3List) getPoints()).getCoordinates(), 0, getPackedPointCount());
+            return;
+        }
+        if (isFramePointsCurrent()) {
+            LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP, framePoints.getCoordinates(), 0, framePoints.size());
+            return;
+        }
         final Iterator<ReadonlyVector3> it = getPoints().iterator();
         if (renderCap == 0 || !it.hasNext()) {
             return;
         }
 
+        // Submit the points in chunks rather than one interface call each.
+        if (this.chunk == null) {
+            this.chunk = new double[CHUNK_SIZE];
+        }
+        final double[] chunk = this.chunk;
+        final int maxSessionVertices = LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINE_STRIP);
+        int n = 0;
+        int sessionVertices = 0;
         mc.startDrawing(GL11.GL_LINE_STRIP);
-        if (renderCap < 0) {
-            while (it.hasNext()) {
-                mc.addVertex(it.next());
+        int lineNum = -1; // line #1 doesn't happen until points #1 and #2 have been added
+        while (it.hasNext() && (renderCap < 0 || lineNum < renderCap)) {
+            final ReadonlyVector3 point = it.next();
+            if (sessionVertices == maxSessionVertices) {
+                // The Tessellator is full. Start a new line strip, beginning
+                // with the previous point so there's no gap.
+                final int last = (n == 0 ? chunk.length : n) - 3;
+                if (n > 0) {
+                    mc.addVertices(chunk, 0, n/3);
+                }
+                mc.finishDrawing();
+                mc.startDrawing(GL11.GL_LINE_STRIP);
+                System.arraycopy(chunk, last, chunk, 0, 3);
+                n = 3;
+                sessionVertices = 1;
             }
-        } else {
-            int lineNum = -1; // line #1 doesn't happen until points #1 and #2 have been added
-            while (it.hasNext() && lineNum < renderCap) {
-                mc.addVertex(it.next());
-                lineNum++;
+            sessionVertices++;
+            chunk[n++] = point.getX();
+            chunk[n++] = point.getY();
+            chunk[n++] = point.getZ();
+            if (n == chunk.length) {
+                mc.addVertices(chunk, 0, n/3);
+                n = 0;
             }
+            lineNum++;
+        }
+        if (n > 0) {
+            mc.addVertices(chunk, 0, n/3);
         }
         mc.finishDrawing();
     }
@@ -1,8 +1,11 @@
 package libshapedraw.shape;
 
+import java.util.Collection;
 import java.util.Iterator;
 
 import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDChunkedDrawing;
+import libshapedraw.internal.LSDGLState;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.LineStyle;
 import libshapedraw.primitive.ReadonlyColor;
@@ -23,6 +26,13 @@ import org.lwjgl.opengl.GL11;
  */
 public class WireframeLinesBlendIterable extends WireframeLines {
     private LineStyle blendToLineStyle;
+    // Cached gradients for the main and secondary passes.
+    private final float[][] blendColors = new float[2][];
+    private final ReadonlyLineStyle[] blendColorsFrom = new ReadonlyLineStyle[2];
+    private final long[] blendColorsFromVersion = new long[2];
+    private final ReadonlyLineStyle[] blendColorsTo = new ReadonlyLineStyle[2];
+    private final long[] blendColorsToVersion = new long[2];
+    private final int[] blendColorsEndpoint = new int[2];
 
     public WireframeLinesBlendIterable(Vector3 origin, Iterable<ReadonlyVector3> relativePoints) {
         super(origin, relativePoints);
@@ -59,6 +69,15 @@ public class WireframeLinesBlendIterable extends WireframeLines {
         return getRenderCap() - 1;
     }
 
+    /**
+     * Blended lines set the line width and color for each segment, so they
+     * can't be merged with other shapes.
+     */
+    @Override
+    public boolean isBatchable() {
+        return getBlendToLineStyle() == null;
+    }
+
     @Override
     protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
         final ReadonlyLineStyle fromStyle = getEffectiveLineStyle();
@@ -73,56 +92,147 @@ public class WireframeLinesBlendIterable extends WireframeLines {
         }
 
         final int renderCap = getRenderCap();
-        final Iterator<ReadonlyVector3> it = getPoints().iterator();
+        final Iterable<ReadonlyVector3> points = getFramePoints();
+        final Iterator<ReadonlyVector3> it = points.iterator();
         if (renderCap == 0 || !it.hasNext()) {
             return;
         }
 
-        final ReadonlyColor fromColor;
-        final ReadonlyColor toColor;
         final float fromWidth;
         final float toWidth;
         // we've already checked for all null cases earlier
         if (isSecondary) {
-            fromColor = fromStyle.getSecondaryReadonlyColor();
-            toColor   =   toStyle.getSecondaryReadonlyColor();
             fromWidth = fromStyle.getSecondaryWidth();
             toWidth   =   toStyle.getSecondaryWidth();
         } else {
-            fromColor = fromStyle.getMainReadonlyColor();
-            toColor   =   toStyle.getMainReadonlyColor();
             fromWidth = fromStyle.getMainWidth();
             toWidth   =   toStyle.getMainWidth();
         }
-        final float blendEndpoint = getBlendEndpoint();
+        final int blendEndpoint = getBlendEndpoint();
+        float[] colors = getBlendColors(fromStyle, toStyle, isSecondary, blendEndpoint,
+                points instanceof Collection ? ((Collection<?>) points).size() : 64);
 
-        // We can't use GL_LINE_STRIP in a single drawing session because each
-        // line segment has its own style.
-        ReadonlyVector3 pointA = it.next();
-        ReadonlyVector3 pointB;
+        // Each vertex has its own color, so the whole gradient can be drawn
+        // in a single GL_LINE_STRIP. Line width can't vary within a drawing
+        // session though: start a new one whenever the width, rounded to the
+        // nearest pixel, changes, or when the Tessellator is full.
+        // The iterator may reuse the same vector for every point (e.g.
+        // PackedVector3List), so keep the previous point's coordinates.
+        ReadonlyVector3 point = it.next();
+        double ax = point.getX();
+        double ay = point.getY();
+        double az = point.getZ();
+        final int maxSessionVertices = LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINE_STRIP);
+        float width = getBlendWidth(fromWidth, toWidth, 0, blendEndpoint);
+        LSDGLState.glLineWidth(width);
+        mc.startDrawing(GL11.GL_LINE_STRIP);
+        addVertexWithColor(mc, ax, ay, az, colors, 0);
+        int sessionVertices = 1;
         int lineNum = 0;
         while (it.hasNext() && (renderCap < 0 || lineNum < renderCap)) {
-            pointB = it.next();
-            float percent = lineNum / blendEndpoint;
-
-            mc.startDrawing(GL11.GL_LINES);
-            GL11.glLineWidth(blend(fromWidth, toWidth, percent));
-            // fromColor.copy().blend(toColor, percent) would work, but this is
-            // a rendering method. Creating thousands of temporary objects that
-            // will just get GC'd should be avoided, so we operate on the
-            // individual RGBA components.
-            GL11.glColor4d(
-                    blend(fromColor.getRed(),   toColor.getRed(),   percent),
-                    blend(fromColor.getGreen(), toColor.getGreen(), percent),
-                    blend(fromColor.getBlue(),  toColor.getBlue(),  percent),
-                    blend(fromColor.getAlpha(), toColor.getAlpha(), percent));
-            mc.addVertex(pointA);
-            mc.addVertex(pointB);
-            mc.finishDrawing();
-
-            pointA = pointB;
+            point = it.next();
+            final float segmentWidth = getBlendWidth(fromWidth, toWidth, lineNum, blendEndpoint);
+            if (segmentWidth != width || sessionVertices == maxSessionVertices) {
+                mc.finishDrawing();
+                if (segmentWidth != width) {
+                    width = segmentWidth;
+                    LSDGLState.glLineWidth(width);
+                }
+                mc.startDrawing(GL11.GL_LINE_STRIP);
+                addVertexWithColor(mc, ax, ay, az, colors, 4*lineNum);
+                sessionVertices = 1;
+            }
+            ax = point.getX();
+            ay = point.getY();
+            az = point.getZ();
             lineNum++;
+            if (4*lineNum >= colors.length) {
+                colors = getBlendColors(fromStyle, toStyle, isSecondary, blendEndpoint, 2*(lineNum + 1));
+            }
+            addVertexWithColor(mc, ax, ay, az, colors, Math.min(4*lineNum, colors.length - 4));
+            sessionVertices++;
+        }
+        mc.finishDrawing();
+        // The Tessellator leaves the OpenGL color set to whatever it was
+        // given last.
+        LSDGLState.invalidateColor();
+    }
+
+    private static void addVertexWithColor(MinecraftAccess mc, double x, double y, double z, float[] colors, int i) {
+        mc.addVertexWithColor(x, y, z, colors[i], colors[i + 1], colors[i + 2], colors[i + 3]);
+    }
+
+    /**
+     * @return the width of the specified line segment: blended, then rounded
+     *         to the nearest pixel unless both styles have the same width.
+     */
+    private static float getBlendWidth(float fromWidth, float toWidth, int lineNum, int blendEndpoint) {
+        if (fromWidth == toWidth) {
+            return fromWidth;
         }
+        return Math.max(1.0F, Math.round(blend(fromWidth, toWidth, lineNum / (float) blendEndpoint)));
+    }
+
+    /**
+     * Compute the RGBA of each vertex once, rather than every frame. The
+     * first vertex is 100% the line style and the last vertex (at the end of
+     * the line segment at the blend endpoint) is 100% the blend-to line
+     * style.
+     * 
+     * @return packed RGBA values, one set per vertex, for at least the first
+     *         vertexCount vertices, or every vertex up to the blend endpoint
+     *         if there are fewer.
+     */
+    private float[] getBlendColors(ReadonlyLineStyle fromStyle, ReadonlyLineStyle toStyle, boolean isSecondary, int blendEndpoint, int vertexCount) {
+        final int index = isSecondary ? 1 : 0;
+        final long fromVersion = getVersion(fromStyle);
+        final long toVersion = getVersion(toStyle);
+        // long to avoid overflowing with huge render caps
+        final long maxVertexCount = blendEndpoint + 2L;
+        float[] colors = blendColors[index];
+        int filled = 0;
+        if (colors != null &&
+                blendColorsFrom[index] == fromStyle && blendColorsFromVersion[index] == fromVersion &&
+                blendColorsTo[index] == toStyle && blendColorsToVersion[index] == toVersion &&
+                blendColorsEndpoint[index] == blendEndpoint) {
+            if (colors.length >= 4L*Math.min(vertexCount, maxVertexCount)) {
+                return colors;
+            }
+            filled = colors.length;
+        }
+        final ReadonlyColor fromColor;
+        final ReadonlyColor toColor;
+        if (isSecondary) {
+            fromColor = fromStyle.getSecondaryReadonlyColor();
+            toColor   =   toStyle.getSecondaryReadonlyColor();
+        } else {
+            fromColor = fromStyle.getMainReadonlyColor();
+            toColor   =   toStyle.getMainReadonlyColor();
+        }
+        final int size = (int) Math.min(Math.max(vertexCount, filled/2), maxVertexCount);
+        final float[] grown = new float[4*size];
+        if (filled > 0) {
+            System.arraycopy(colors, 0, grown, 0, filled);
+        }
+        final double last = blendEndpoint + 1.0;
+        for (int n = filled; n < grown.length; ) {
+            final double percent = (n/4) / last;
+            grown[n++] = (float) blend(fromColor.getRed(),   toColor.getRed(),   percent);
+            grown[n++] = (float) blend(fromColor.getGreen(), toColor.getGreen(), percent);
+            grown[n++] = (float) blend(fromColor.getBlue(),  toColor.getBlue(),  percent);
+            grown[n++] = (float) blend(fromColor.getAlpha(), toColor.getAlpha(), percent);
+        }
+        blendColors[index] = grown;
+        blendColorsFrom[index] = fromStyle;
+        blendColorsFromVersion[index] = fromVersion;
+        blendColorsTo[index] = toStyle;
+        blendColorsToVersion[index] = toVersion;
+        blendColorsEndpoint[index] = blendEndpoint;
+        return grown;
+    }
+
+    private static long getVersion(ReadonlyLineStyle lineStyle) {
+        return lineStyle instanceof LineStyle ? ((LineStyle) lineStyle).getVersion() : 0;
     }
 
     private static float blend(float fromValue, float toValue, float percent) {
@@ -1,6 +1,14 @@
 package libshapedraw.shape;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import libshapedraw.LibShapeDraw;
 import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDVertexBuffer;
+import libshapedraw.internal.LSDVertexRecorder;
+import libshapedraw.internal.LSDWorkerPool;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.LineStyle;
 import libshapedraw.primitive.ReadonlyColor;
@@ -9,9 +17,27 @@ import libshapedraw.primitive.Vector3;
 
 /**
  * Intermediate base class for shapes that are rendered using lines.
+ * <p>
+ * If a batchable shape has a secondary color, the vertices drawn by the main
+ * pass are captured as they're drawn and replayed for the secondary pass, so
+ * renderLines is only called once per frame. This matters for shapes whose
+ * points come from an expensive Iterable.
  */
 public abstract class WireframeShape extends Shape implements XrayShape {
     private LineStyle lineStyle;
+    private long lineStyleModCount;
+    private double maxXrayDistance = Double.POSITIVE_INFINITY;
+    private boolean vertexCacheEnabled;
+    private LSDVertexRecorder vertexCache;
+    private boolean vertexCacheValid;
+    /** Non-null while a worker thread may be writing to vertexCache. */
+    private VertexCacheBuild vertexCacheBuild;
+    private boolean retainedMode;
+    private LSDVertexBuffer vertexBuffer;
+    private boolean vertexBufferValid;
+    private int addedCount;
+    private LSDVertexRecorder passCapture;
+    private boolean passCaptureValid;
 
     public WireframeShape(Vector3 origin) {
         super(origin);
@@ -19,12 +45,59 @@ public abstract class WireframeShape extends Shape implements XrayShape {
 
     @Override
     protected void renderShape(MinecraftAccess mc) {
-        ReadonlyLineStyle drawStyle = getEffectiveLineStyle();
-        drawStyle.glApply(false);
-        renderLines(mc, false);
-        if (drawStyle.glApply(true)) {
-            renderLines(mc, true);
+        renderShapeMain(mc);
+        renderShapeSecondary(mc);
+    }
+
+    @Override
+    protected void renderShapeMain(MinecraftAccess mc) {
+        getEffectiveLineStyle().glApply(false);
+        passCaptureValid = false;
+        if (!renderLinesRetained(mc)) {
+            if (isPassCaptureNeeded()) {
+                renderLinesCaptured(mc);
+            } else {
+                renderLinesCached(mc, false);
+            }
+        }
+    }
+
+    @Override
+    protected void renderShapeSecondary(MinecraftAccess mc) {
+        if (isXrayInRange() && getEffectiveLineStyle().glApply(true) && !renderLinesRetained(mc)) {
+            if (passCaptureValid) {
+                passCapture.replay(mc);
+            } else {
+                renderLinesCached(mc, true);
+            }
+        }
+        // Only valid for the secondary pass directly following the main pass.
+        passCaptureValid = false;
+    }
+
+    /**
+     * @return true if the main pass should capture its vertices for the
+     *         secondary pass to replay. The vertex cache and retained mode
+     *         already avoid calling renderLines twice.
+     */
+    private boolean isPassCaptureNeeded() {
+        return !vertexCacheEnabled && isBatchable() && isXrayInRange() &&
+                getEffectiveLineStyle().hasSecondaryColor();
+    }
+
+    /**
+     * Draw the main pass, capturing its vertices at the same time.
+     */
+    private void renderLinesCaptured(MinecraftAccess mc) {
+        if (passCapture == null) {
+            passCapture = new LSDVertexRecorder(mc).setPreserveSessions(true).setPassThrough(true);
         }
+        passCapture.clear().setDelegate(mc);
+        prepareLines();
+        renderLines(passCapture, false);
+        // Per-vertex colors aren't captured; fall back to calling renderLines
+        // again for the secondary pass.
+        passCaptureValid = !passCapture.isFailed();
     }
 
     /**
@@ -36,15 +109,358 @@ public abstract class WireframeShape extends Shape implements XrayShape {
         // method or renderShape.
     }
 
+    /**
+     * Called on the render thread before renderLines, including before
+     * renderLines is run on a worker thread to build the vertex cache. As it
+     * may run on a worker, renderLines should only read the shape's state;
+     * any changes, such as normalizing coordinates, belong here instead.
+     */
+    protected void prepareLines() {
+        // do nothing; derived classes can override as needed.
+    }
+
+    /**
+     * Draw this shape's main line segments using the MinecraftAccess param
+     * without touching the OpenGL state. Used by the internal batch renderer
+     * to merge the vertices of many shapes sharing the same line style.
+     */
+    public final void renderLinesUnstyled(MinecraftAccess mc) {
+        renderLinesCached(mc, false);
+    }
+
+    private void renderLinesCached(MinecraftAccess mc, boolean isSecondary) {
+        prepareLines();
+        if (!vertexCacheEnabled || !isBatchable()) {
+            renderLines(mc, isSecondary);
+            return;
+        }
+        if (vertexCacheBuild != null) {
+            finishVertexCacheBuild();
+        }
+        if (isVertexCacheStale() || !vertexCacheValid) {
+            if (vertexCache == null) {
+                vertexCache = new LSDVertexRecorder(mc).setPreserveSessions(true);
+            }
+            vertexCache.clear().setDelegate(mc);
+            renderLines(vertexCache, false);
+            vertexCacheValid = true;
+        }
+        vertexCache.replay(mc);
+    }
+
+    /**
+     * Start rebuilding this shape's vertex cache on a worker thread, if the
+     * vertex cache is enabled and out of date. The next render uses the
+     * result, waiting for the worker if it's partway through or building the
+     * cache itself if no worker has gotten to it yet.
+     * <p>
+     * Called by the internal controller for API instances with
+     * {@link LibShapeDraw#setParallelGeometry parallel geometry} enabled.
+     * 
+     * @return true if a build was started
+     */
+    public final boolean startVertexCacheBuild(MinecraftAccess mc) {
+        if (!vertexCacheEnabled || !isBatchable() || vertexCacheBuild != null ||
+                (retainedMode && LSDVertexBuffer.isSupported())) {
+            return false;
+        }
+        prepareLines();
+        // isVertexCacheStale only reports each change once.
+        if (isVertexCacheStale()) {
+            vertexCacheValid = false;
+        }
+        if (vertexCacheValid) {
+            return false;
+        }
+        if (vertexCache == null) {
+            vertexCache = new LSDVertexRecorder(mc).setPreserveSessions(true);
+        }
+        vertexCacheBuild = new VertexCacheBuild(vertexCache.clear().setDelegate(mc));
+        return true;
+    }
+
+    /**
+     * A vertex cache build, run by whichever thread claims it first: the
+     * worker, or the render thread finding it still queued.
+     * <p>
+     * Future.cancel(false) can't be used to tell the two apart, as it also
+     * succeeds once the worker has started running the build.
+     */
+    private class VertexCacheBuild implements Runnable {
+        private final LSDVertexRecorder target;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final Future<?> future;
+
+        public VertexCacheBuild(LSDVertexRecorder target) {
+            this.target = target;
+            future = LSDWorkerPool.submit(this);
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true)) {
+                renderLines(target, false);
+            }
+        }
+
+        /** @return true if the worker hadn't started, and now never will. */
+        public boolean cancel() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            future.cancel(false);
+            return true;
+        }
+    }
+
+    private void finishVertexCacheBuild() {
+        final VertexCacheBuild build = vertexCacheBuild;
+        vertexCacheBuild = null;
+        if (build.cancel()) {
+            // Still queued; the caller builds the cache instead.
+            return;
+        }
+        try {
+            build.future.get();
+            vertexCacheValid = true;
+        } catch (ExecutionException e) {
+            // Rebuilt by the caller, which will throw the same exception
+            // where it would have without parallel geometry.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // The worker may still be writing to it.
+            vertexCache = null;
+        }
+    }
+
+    /**
+     * Discard any in-progress build. One that's already running is waited
+     * for, so two calls to renderLines on the same shape never overlap.
+     */
+    private void abandonVertexCacheBuild() {
+        if (vertexCacheBuild != null) {
+            finishVertexCacheBuild();
+            vertexCacheValid = false;
+        }
+    }
+
+    /**
+     * Whether the vertices drawn by renderLines are captured on the first
+     * render and replayed on later renders. Defaults to false.
+     * 
+     * @see #setVertexCacheEnabled
+     */
+    public boolean isVertexCacheEnabled() {
+        return vertexCacheEnabled;
+    }
+
+    /**
+     * Whether the vertices drawn by renderLines are captured on the first
+     * render and replayed on later renders. Defaults to false.
+     * <p>
+     * This saves recomputing the same vertices every frame for shapes that
+     * rarely change. The cache stores the vertices exactly as renderLines
+     * draws them, before the origin and ShapeTransforms are applied, so
+     * changing the line style or ShapeTransforms doesn't require rebuilding
+     * it.
+     * <p>
+     * Changes to the shape's geometry that the shape can't detect on its own
+     * (see {@link #isVertexCacheStale}) require calling
+     * {@link #invalidateVertexCache}.
+     * <p>
+     * Has no effect on shapes that aren't {@link #isBatchable batchable}.
+     */
+    public WireframeShape setVertexCacheEnabled(boolean vertexCacheEnabled) {
+        this.vertexCacheEnabled = vertexCacheEnabled;
+        if (!vertexCacheEnabled) {
+            abandonVertexCacheBuild();
+            vertexCache = null;
+            vertexCacheValid = false;
+        }
+        return this;
+    }
+
+    /**
+     * Force the vertex cache or retained vertex buffer, if enabled, to be
+     * rebuilt on the next render.
+     */
+    public WireframeShape invalidateVertexCache() {
+        abandonVertexCacheBuild();
+        vertexCacheValid = false;
+        vertexBufferValid = false;
+        return this;
+    }
+
+    /**
+     * @return false if retained mode is off or unavailable, in which case
+     *         nothing was drawn.
+     */
+    private boolean renderLinesRetained(MinecraftAccess mc) {
+        if (!retainedMode || !isBatchable() || !LSDVertexBuffer.isSupported()) {
+            return false;
+        }
+        if (vertexBuffer == null) {
+            vertexBuffer = new LSDVertexBuffer();
+        }
+        prepareLines();
+        if (isVertexCacheStale() || !vertexBufferValid) {
+            renderLines(vertexBuffer.beginUpload(mc), false);
+            if (!vertexBuffer.endUpload()) {
+                setRetainedMode(false);
+                return false;
+            }
+            vertexBufferValid = true;
+        }
+        vertexBuffer.draw();
+        return true;
+    }
+
+    /**
+     * Whether this shape's vertices are kept in a vertex buffer object in
+     * video memory and drawn from there. Defaults to false.
+     * 
+     * @see #setRetainedMode
+     */
+    public boolean isRetainedMode() {
+        return retainedMode;
+    }
+
+    /**
+     * Whether this shape's vertices are kept in a vertex buffer object in
+     * video memory and drawn from there. Defaults to false.
+     * <p>
+     * The buffer is uploaded on the first render and drawn with a single
+     * OpenGL call per pass after that, only being uploaded again when the
+     * shape's geometry changes, as with the
+     * {@link #setVertexCacheEnabled vertex cache}. This is the fastest way to
+     * render large shapes that rarely change.
+     * <p>
+     * The buffer is freed when the shape is removed from the last
+     * LibShapeDraw API instance it was added to, or when retained mode is
+     * turned off. Shapes that are rendered manually must turn retained mode
+     * off to free the buffer.
+     * <p>
+     * Retained shapes are never merged into batches. Retained mode has no
+     * effect if OpenGL 1.5 is unavailable or on shapes that aren't
+     * {@link #isBatchable batchable}, and turns itself off if the shape draws
+     * anything other than line segments.
+     */
+    public WireframeShape setRetainedMode(boolean retainedMode) {
+        abandonVertexCacheBuild();
+        this.retainedMode = retainedMode;
+        vertexBufferValid = false;
+        if (!retainedMode) {
+            releaseVertexBuffer();
+            // The vertex cache may have missed geometry changes meanwhile.
+            vertexCacheValid = false;
+        }
+        return this;
+    }
+
+    private void releaseVertexBuffer() {
+        if (vertexBuffer != null) {
+            vertexBuffer.release();
+            vertexBuffer = null;
+        }
+    }
+
+    @Override
+    public void onAdd(LibShapeDraw apiInstance) {
+        super.onAdd(apiInstance);
+        addedCount++;
+    }
+
+    @Override
+    public void onRemove(LibShapeDraw apiInstance) {
+        super.onRemove(apiInstance);
+        if (addedCount > 0) {
+            addedCount--;
+        }
+        if (addedCount == 0) {
+            // Uploaded again on the next render if the shape is re-added.
+            releaseVertexBuffer();
+            vertexBufferValid = false;
+            abandonVertexCacheBuild();
+            passCapture = null;
+            passCaptureValid = false;
+        }
+    }
+
+    /**
+     * Called before every render while the vertex cache or retained mode is
+     * enabled.
+     * <p>
+     * Derived classes that can cheaply tell whether their geometry changed
+     * since the previous call should override this; the default
+     * implementation always returns false, leaving it up to the caller to
+     * use invalidateVertexCache.
+     * 
+     * @return true if renderLines would draw different vertices than it did
+     *         when the cache was built.
+     */
+    protected boolean isVertexCacheStale() {
+        return false;
+    }
+
+    /**
+     * @return true if this shape's vertices can be merged with those of other
+     *         shapes sharing the same line style, if batch rendering is
+     *         enabled for the LibShapeDraw API instance.
+     *         <p>
+     *         Derived classes that set OpenGL state directly in renderLines,
+     *         or that draw different vertices for the secondary pass, should
+     *         override this to return false.
+     * @see libshapedraw.LibShapeDraw#setBatchRendering
+     */
+    public boolean isBatchable() {
+        return true;
+    }
+
+    /**
+     * The maximum render distance at which the secondary (xray) pass is
+     * rendered. Defaults to positive infinity, i.e. no limit.
+     * 
+     * @see #setMaxXrayDistance
+     */
+    public double getMaxXrayDistance() {
+        return maxXrayDistance;
+    }
+
+    /**
+     * The maximum render distance at which the secondary (xray) pass is
+     * rendered. Defaults to positive infinity, i.e. no limit.
+     * <p>
+     * Beyond this distance the shape is only rendered where it's not
+     * occluded by terrain, halving the work for far away shapes.
+     * 
+     * @see Shape#getRenderDistance
+     */
+    public WireframeShape setMaxXrayDistance(double maxXrayDistance) {
+        if (!(maxXrayDistance >= 0.0)) {
+            throw new IllegalArgumentException("expecting max xray distance >=0.0, got " + maxXrayDistance);
+        }
+        this.maxXrayDistance = maxXrayDistance;
+        return this;
+    }
+
+    private boolean isXrayInRange() {
+        return getRenderDistance() <= maxXrayDistance;
+    }
+
     public LineStyle getLineStyle() {
         return lineStyle;
     }
 
-    protected ReadonlyLineStyle getEffectiveLineStyle() {
+    /**
+     * @return the line style used to render this shape: getLineStyle() if
+     *         set, otherwise {@link LineStyle#DEFAULT}.
+     */
+    public ReadonlyLineStyle getEffectiveLineStyle() {
         return lineStyle == null ? LineStyle.DEFAULT : lineStyle;
     }
 
     public WireframeShape setLineStyle(LineStyle lineStyle) {
+        lineStyleModCount += 1 + (this.lineStyle == null ? 0 : this.lineStyle.getVersion());
         this.lineStyle = lineStyle;
         return this;
     }
@@ -55,6 +471,7 @@ public abstract class WireframeShape extends Shape implements XrayShape {
      */
     public WireframeShape setLineStyle(Color color, float width, boolean visibleThroughTerrain) {
         if (lineStyle == null) {
+            lineStyleModCount++;
             lineStyle = new LineStyle(color, width, visibleThroughTerrain);
         } else {
             lineStyle.set(color, width, visibleThroughTerrain);
@@ -62,6 +479,15 @@ public abstract class WireframeShape extends Shape implements XrayShape {
         return this;
     }
 
+    /**
+     * For use in computeShapeVersion.
+     * @return a number that increases every time the line style is replaced
+     *         or modified.
+     */
+    protected long getLineStyleVersion() {
+        return lineStyleModCount + (lineStyle == null ? 0 : lineStyle.getVersion());
+    }
+
     @Override
     public ReadonlyColor getMainColorReadonly() {
         return getEffectiveLineStyle().getMainReadonlyColor();
@@ -74,6 +500,6 @@ public abstract class WireframeShape extends Shape implements XrayShape {
 
     @Override
     public boolean isVisibleThroughTerrain() {
-        return getEffectiveLineStyle().hasSecondaryColor();
+        return getEffectiveLineStyle().hasSecondaryColor() && isXrayInRange();
     }
 }
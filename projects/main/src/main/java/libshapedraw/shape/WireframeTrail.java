@@ -0,0 +1,228 @@
+package libshapedraw.shape;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.internal.LSDChunkedDrawing;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.PackedVector3List;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * A series of connected line segments through the most recently appended
+ * points, e.g. the path a player has taken. Once the capacity is reached,
+ * each new point replaces the oldest one.
+ * <p>
+ * The points are stored in a fixed-size circular buffer, so appending never
+ * allocates. One thread (the producer) may append while the main thread
+ * renders, without locking: rendering always sees a consistent window of
+ * consecutive points. Only the producer should call append and clear.
+ * <p>
+ * The points are absolute world x/y/z coordinates.
+ */
+public class WireframeTrail extends WireframeShape {
+    private final int capacity;
+    /**
+     * One more than the capacity: the spare slot is the one the producer
+     * overwrites next, so it's never part of the rendered window.
+     */
+    private final int slots;
+    /** Packed x/y/z coordinates, stored as raw long bits. */
+    private final AtomicLongArray coords;
+    /** The number of points ever appended. Point n is in slot n%slots. */
+    private final AtomicLong published = new AtomicLong();
+    /** Points appended before the most recent clear are no longer rendered. */
+    private final AtomicLong cleared = new AtomicLong();
+    private volatile double minSpacing;
+    // Owned by the producer.
+    private boolean hasLast;
+    private double lastX, lastY, lastZ;
+    // Owned by the main thread.
+    private double[] scratch;
+    private long cachedWindow = -1;
+
+    /**
+     * @param capacity the maximum number of points, at least 2.
+     */
+    public WireframeTrail(int capacity) {
+        super(Vector3.ZEROS.copy());
+        setRelativeToOrigin(false);
+        if (capacity < 2) {
+            throw new IllegalArgumentException("expecting capacity >=2, got " + capacity);
+        }
+        this.capacity = capacity;
+        slots = capacity + 1;
+        coords = new AtomicLongArray(3*slots);
+    }
+
+    /** The maximum number of points. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** The number of points that would currently be rendered. */
+    public int size() {
+        final long end = published.get();
+        // The producer may have appended and cleared since end was read,
+        // putting the start past it.
+        return (int) Math.max(0, end - getStart(end));
+    }
+
+    private long getStart(long end) {
+        return Math.max(cleared.get(), end - capacity);
+    }
+
+    /**
+     * The minimum distance between consecutive points. Defaults to 0.0.
+     *
+     * @see #setMinSpacing
+     */
+    public double getMinSpacing() {
+        return minSpacing;
+    }
+
+    /**
+     * The minimum distance between consecutive points. Defaults to 0.0.
+     * <p>
+     * Points appended closer than this to the previous point are ignored,
+     * e.g. so that a player standing still doesn't fill the trail with
+     * duplicate points.
+     */
+    public WireframeTrail setMinSpacing(double minSpacing) {
+        if (!(minSpacing >= 0.0)) {
+            throw new IllegalArgumentException("expecting min spacing >=0.0, got " + minSpacing);
+        }
+        this.minSpacing = minSpacing;
+        return this;
+    }
+
+    /**
+     * Add a point to the end of the trail, replacing the oldest point if the
+     * trail is full. Only call this from a single thread.
+     *
+     * @return false if the point was ignored for being too close to the
+     *         previous point.
+     */
+    public boolean append(double x, double y, double z) {
+        if (hasLast && minSpacing > 0.0) {
+            final double dx = x - lastX;
+            final double dy = y - lastY;
+            final double dz = z - lastZ;
+            if (dx*dx + dy*dy + dz*dz < minSpacing*minSpacing) {
+                return false;
+            }
+        }
+        final long n = published.get();
+        final int i = 3*(int) (n % slots);
+        // Ordered writes: the slot is overwritten only after the reader can
+        // tell that its old point has fallen out of the window.
+        coords.lazySet(i, Double.doubleToRawLongBits(x));
+        coords.lazySet(i + 1, Double.doubleToRawLongBits(y));
+        coords.lazySet(i + 2, Double.doubleToRawLongBits(z));
+        published.lazySet(n + 1);
+        hasLast = true;
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        return true;
+    }
+
+    /** @see #append(double, double, double) */
+    public boolean append(ReadonlyVector3 point) {
+        return append(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Remove all points. Only call this from the thread that appends.
+     */
+    public WireframeTrail clear() {
+        cleared.lazySet(published.get());
+        hasLast = false;
+        return this;
+    }
+
+    /**
+     * Copy a consistent window of points to dest, oldest first.
+     * @return the number of points copied.
+     */
+    private int snapshot(double[] dest) {
+        final long end = published.get();
+        final long start = getStart(end);
+        int k = 0;
+        for (long n = start; n < end; n++) {
+            final int i = 3*(int) (n % slots);
+            dest[k++] = Double.longBitsToDouble(coords.get(i));
+            dest[k++] = Double.longBitsToDouble(coords.get(i + 1));
+            dest[k++] = Double.longBitsToDouble(coords.get(i + 2));
+        }
+        // The producer may have lapped the oldest points while we were
+        // copying, and may be in the middle of overwriting one more.
+        final long valid = Math.max(start, published.get() + 1 - slots);
+        if (valid >= end) {
+            return 0;
+        }
+        if (valid > start) {
+            final int skip = 3*(int) (valid - start);
+            System.arraycopy(dest, skip, dest, 0, k - skip);
+        }
+        return (int) (end - valid);
+    }
+
+    private double[] getScratch() {
+        if (scratch == null) {
+            scratch = new double[3*capacity];
+        }
+        return scratch;
+    }
+
+    /**
+     * Append a copy of every point currently in the trail to result, oldest
+     * first. Safe to call from any thread.
+     * @return result, for method chaining
+     */
+    public PackedVector3List getPoints(PackedVector3List result) {
+        final double[] tmp = new double[3*capacity];
+        final int count = snapshot(tmp);
+        result.ensureCapacity(result.size() + count);
+        for (int i = 0; i < 3*count; i += 3) {
+            result.add(tmp[i], tmp[i + 1], tmp[i + 2]);
+        }
+        return result;
+    }
+
+    @Override
+    protected boolean computeShapeBounds(BoundingBox result) {
+        final double[] points = getScratch();
+        final int count = snapshot(points);
+        for (int i = 0; i < 3*count; i += 3) {
+            result.include(points[i], points[i + 1], points[i + 2]);
+        }
+        return true;
+    }
+
+    @Override
+    protected long computeShapeVersion() {
+        return published.get() + cleared.get() + getLineStyleVersion();
+    }
+
+    @Override
+    protected boolean isVertexCacheStale() {
+        // Any append or clear changes the window.
+        final long window = published.get() + cleared.get();
+        if (window == cachedWindow) {
+            return false;
+        }
+        cachedWindow = window;
+        return true;
+    }
+
+    @Override
+    protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
+        final double[] points = getScratch();
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP, points, 0, snapshot(points));
+    }
+}
@@ -11,6 +11,7 @@ import libshapedraw.primitive.Vector3;
 public class ShapeRotate implements ShapeTransform, Animates<Double> {
     private double angle;
     private Vector3 axis;
+    private long version;
     private Timeline timelineAngle;
 
     public ShapeRotate(double angleDegrees, double axisX, double axisY, double axisZ) {
@@ -34,6 +35,7 @@ public class ShapeRotate implements ShapeTransform, Animates<Double> {
     /** @see #getAngle */
     public ShapeRotate setAngle(double angleDegrees) {
         angle = angleDegrees;
+        version++;
         return this;
     }
 
@@ -48,6 +50,7 @@ public class ShapeRotate implements ShapeTransform, Animates<Double> {
         if (axis == null) {
             throw new IllegalArgumentException("axis cannot be null");
         }
+        version += 1 + (this.axis == null ? 0 : this.axis.getVersion());
         this.axis = axis;
         return this;
     }
@@ -62,6 +65,16 @@ public class ShapeRotate implements ShapeTransform, Animates<Double> {
         return setAxis(axis.unitVector.copy());
     }
 
+    /**
+     * A counter that increases every time this transform or its axis is
+     * modified.
+     * 
+     * @see Vector3#getVersion
+     */
+    public long getVersion() {
+        return version + axis.getVersion();
+    }
+
     @Override
     public void preRender() {
         axis.glApplyRotateDegrees(angle);
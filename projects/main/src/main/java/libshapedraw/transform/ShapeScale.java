@@ -9,6 +9,7 @@ import libshapedraw.primitive.Vector3;
  */
 public class ShapeScale implements ShapeTransform, Animates<ReadonlyVector3> {
     private Vector3 scaleXYZ;
+    private long version;
 
     public ShapeScale() {
         this(new Vector3(1.0, 1.0, 1.0));
@@ -30,10 +31,21 @@ public class ShapeScale implements ShapeTransform, Animates<ReadonlyVector3> {
         if (scaleXYZ == null) {
             throw new IllegalArgumentException("scaleXYZ cannot be null");
         }
+        version += 1 + (this.scaleXYZ == null ? 0 : this.scaleXYZ.getVersion());
         this.scaleXYZ = scaleXYZ;
         return this;
     }
 
+    /**
+     * A counter that increases every time this transform or its vector is
+     * modified.
+     * 
+     * @see Vector3#getVersion
+     */
+    public long getVersion() {
+        return version + scaleXYZ.getVersion();
+    }
+
     @Override
     public void preRender() {
         scaleXYZ.glApplyScale();
@@ -9,6 +9,7 @@ import libshapedraw.primitive.Vector3;
  */
 public class ShapeTranslate implements ShapeTransform, Animates<ReadonlyVector3> {
     private Vector3 translateXYZ;
+    private long version;
 
     public ShapeTranslate() {
         this(new Vector3(0.0, 0.0, 0.0));
@@ -27,10 +28,21 @@ public class ShapeTranslate implements ShapeTransform, Animates<ReadonlyVector3>
         if (translateXYZ == null) {
             throw new IllegalArgumentException("translateXYZ cannot be null");
         }
+        version += 1 + (this.translateXYZ == null ? 0 : this.translateXYZ.getVersion());
         this.translateXYZ = translateXYZ;
         return this;
     }
 
+    /**
+     * A counter that increases every time this transform or its vector is
+     * modified.
+     * 
+     * @see Vector3#getVersion
+     */
+    public long getVersion() {
+        return version + translateXYZ.getVersion();
+    }
+
     @Override
     public void preRender() {
         translateXYZ.glApplyTranslate();
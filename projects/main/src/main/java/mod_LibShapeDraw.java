@@ -3,6 +3,8 @@
 // and then run the projects/dev/src/main/python/obfuscate.py script.
 
 import java.lang.reflect.Field;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -129,6 +131,12 @@ public class mod_LibShapeDraw extends BaseMod implements MinecraftAccess {
         }
     }
 
+    /**
+     * Vanilla Tessellator.instance has room for 0x200000 ints, 8 per vertex,
+     * and starts drawing early once fewer than 32 ints remain.
+     */
+    private static final int DEFAULT_TESSELLATOR_CAPACITY = (0x200000 - 32)/8;
+
     private Minecraft minecraft;
     // obf: Timer
     private asr timer;
@@ -140,6 +148,7 @@ public class mod_LibShapeDraw extends BaseMod implements MinecraftAccess {
     // obf: EntityClientPlayerMP
     private ayk curPlayer;
     private Integer curDimension;
+    private int tessellatorCapacity = DEFAULT_TESSELLATOR_CAPACITY;
 
     public mod_LibShapeDraw() {
         controller = LSDController.getInstance();
@@ -181,10 +190,35 @@ public class mod_LibShapeDraw extends BaseMod implements MinecraftAccess {
         timer = (asr) LSDUtil.getFieldValue(LSDUtil.getFieldByType(Minecraft.class, asr.class, 0), minecraft);
 
         installRenderHook();
+        // obf: Tessellator, Tessellator.instance
+        tessellatorCapacity = lookupVertexCapacity(bao.a);
         ModLoader.setInGameHook(this, true, true); // game ticks only, not every render frame.
         LSDController.getLog().info(getClass().getName() + " loaded");
     }
 
+    /**
+     * Use reflection to determine how many vertices the Tessellator can hold,
+     * falling back to the vanilla capacity.
+     */
+    // obf: Tessellator
+    private static int lookupVertexCapacity(bao tessellator) {
+        try {
+            // There's only one int[] field declared by Tessellator, the raw
+            // vertex buffer, so it's safe to look it up by type. Some mods
+            // replace it with one that grows on demand; its current length
+            // is still a safe limit.
+            // obf: Tessellator
+            final int[] rawBuffer = (int[]) LSDUtil.getFieldValue(LSDUtil.getFieldByType(bao.class, int[].class, 0), tessellator);
+            final int capacity = (rawBuffer.length - 32)/8;
+            LSDController.getLog().fine("tessellator capacity is " + capacity + " vertices");
+            return Math.max(2, capacity);
+        } catch (RuntimeException e) {
+            LSDController.getLog().warning("unable to determine tessellator capacity, assuming " +
+                    DEFAULT_TESSELLATOR_CAPACITY + ": " + e);
+            return DEFAULT_TESSELLATOR_CAPACITY;
+        }
+    }
+
     /**
      * Use reflection to install the profiler proxy class, overwriting
      * Minecraft.mcProfiler.
@@ -341,6 +375,57 @@ public class mod_LibShapeDraw extends BaseMod implements MinecraftAccess {
         return this;
     }
 
+    @Override
+    public MinecraftAccess addVertices(double[] xyz, int offset, int count) {
+        // obf: Tessellator, Tessellator.instance
+        final bao tessellator = bao.a;
+        for (int i = offset, end = offset + count*3; i < end; i += 3) {
+            // obf: Tessellator.addVertex
+            tessellator.a(xyz[i], xyz[i + 1], xyz[i + 2]);
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertices(DoubleBuffer xyz) {
+        // obf: Tessellator, Tessellator.instance
+        final bao tessellator = bao.a;
+        for (int i = xyz.position(), end = xyz.limit() - 2; i < end; i += 3) {
+            // obf: Tessellator.addVertex
+            tessellator.a(xyz.get(i), xyz.get(i + 1), xyz.get(i + 2));
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertices(FloatBuffer xyz) {
+        // obf: Tessellator, Tessellator.instance
+        final bao tessellator = bao.a;
+        for (int i = xyz.position(), end = xyz.limit() - 2; i < end; i += 3) {
+            // obf: Tessellator.addVertex
+            tessellator.a(xyz.get(i), xyz.get(i + 1), xyz.get(i + 2));
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess setColor(float red, float green, float blue, float alpha) {
+        // obf: Tessellator, Tessellator.instance, Tessellator.setColorRGBA_F
+        bao.a.a(red, green, blue, alpha);
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertexWithColor(double x, double y, double z, float red, float green, float blue, float alpha) {
+        // obf: Tessellator, Tessellator.instance
+        final bao tessellator = bao.a;
+        // obf: Tessellator.setColorRGBA_F
+        tessellator.a(red, green, blue, alpha);
+        // obf: Tessellator.addVertex
+        tessellator.a(x, y, z);
+        return this;
+    }
+
     @Override
     public MinecraftAccess finishDrawing() {
         // obf: Tessellator, Tessellator.instance, Tessellator.draw
@@ -348,6 +433,11 @@ public class mod_LibShapeDraw extends BaseMod implements MinecraftAccess {
         return this;
     }
 
+    @Override
+    public int getTessellatorCapacity() {
+        return tessellatorCapacity;
+    }
+
     @Override
     public MinecraftAccess enableStandardItemLighting() {
         // obf: RenderHelper, RenderHelper.enableStandardItemLighting
@@ -1,6 +1,10 @@
 package libshapedraw;
 
 import static org.junit.Assert.*;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
 import libshapedraw.MinecraftAccess;
 import libshapedraw.primitive.ReadonlyVector3;
 
@@ -9,8 +13,11 @@ public class MockMinecraftAccess implements MinecraftAccess {
     private int curCountVertices = 0;
     private int countDraw = 0;
     private int countVertices = 0;
+    private int countAddVertices = 0;
+    private int countSetColor = 0;
     private int countEnableStandardLighting = 0;
     private int countSendChatMessage = 0;
+    private int tessellatorCapacity = Integer.MAX_VALUE;
 
     public boolean isDrawingStarted() {
         return drawingStarted;
@@ -24,12 +31,25 @@ public class MockMinecraftAccess implements MinecraftAccess {
     public int getCountVertices() {
         return countVertices;
     }
+    /** @return the number of bulk addVertices calls. */
+    public int getCountAddVertices() {
+        return countAddVertices;
+    }
+    /** @return the number of per-vertex colors set. */
+    public int getCountSetColor() {
+        return countSetColor;
+    }
     public int getCountEnableStandardLighting() {
         return countEnableStandardLighting;
     }
     public int getCountSendChatMessage() {
         return countSendChatMessage;
     }
+    /** Drawing sessions exceeding the capacity fail the test. */
+    public MockMinecraftAccess setTessellatorCapacity(int tessellatorCapacity) {
+        this.tessellatorCapacity = tessellatorCapacity;
+        return this;
+    }
 
     @Override
     public MinecraftAccess startDrawing(int mode) {
@@ -44,6 +64,7 @@ public class MockMinecraftAccess implements MinecraftAccess {
     public MinecraftAccess addVertex(double x, double y, double z) {
         assertTrue(isDrawingStarted());
         curCountVertices++;
+        assertTrue(curCountVertices <= tessellatorCapacity);
         countVertices++;
         return this;
     }
@@ -54,6 +75,47 @@ public class MockMinecraftAccess implements MinecraftAccess {
         return this;
     }
 
+    @Override
+    public MinecraftAccess addVertices(double[] xyz, int offset, int count) {
+        assertTrue(offset >= 0 && count >= 0 && offset + count*3 <= xyz.length);
+        countAddVertices++;
+        for (int i = 0; i < count; i++) {
+            addVertex(0, 0, 0);
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertices(DoubleBuffer xyz) {
+        countAddVertices++;
+        for (int i = 0; i < xyz.remaining()/3; i++) {
+            addVertex(0, 0, 0);
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertices(FloatBuffer xyz) {
+        countAddVertices++;
+        for (int i = 0; i < xyz.remaining()/3; i++) {
+            addVertex(0, 0, 0);
+        }
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess setColor(float red, float green, float blue, float alpha) {
+        assertTrue(isDrawingStarted());
+        countSetColor++;
+        return this;
+    }
+
+    @Override
+    public MinecraftAccess addVertexWithColor(double x, double y, double z, float red, float green, float blue, float alpha) {
+        setColor(red, green, blue, alpha);
+        return addVertex(x, y, z);
+    }
+
     @Override
     public MinecraftAccess finishDrawing() {
         assertTrue(isDrawingStarted());
@@ -64,6 +126,11 @@ public class MockMinecraftAccess implements MinecraftAccess {
         return this;
     }
 
+    @Override
+    public int getTessellatorCapacity() {
+        return tessellatorCapacity;
+    }
+
     @Override
     public MinecraftAccess enableStandardItemLighting() {
         countEnableStandardLighting++;
@@ -109,6 +176,8 @@ public class MockMinecraftAccess implements MinecraftAccess {
         curCountVertices = 0;
         countDraw = 0;
         countVertices = 0;
+        countAddVertices = 0;
+        countSetColor = 0;
         countEnableStandardLighting = 0;
         countSendChatMessage = 0;
     }
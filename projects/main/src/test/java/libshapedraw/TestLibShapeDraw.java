@@ -2,11 +2,18 @@ package libshapedraw;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import libshapedraw.LibShapeDraw;
 import libshapedraw.event.MockLSDEventListener;
 import libshapedraw.internal.LSDController;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.Vector3;
 import libshapedraw.shape.MockShape;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeCuboid;
 
 import org.junit.After;
 import org.junit.Before;
@@ -137,6 +144,85 @@ public class TestLibShapeDraw extends SetupTestEnvironment.TestCase {
         assertEquals(0, lib.getShapes().size());
     }
 
+    @Test
+    public void testHandleShapes() {
+        MockShape shape0 = new MockShape();
+        MockShape shape1 = new MockShape();
+        long handle0 = lib.addHandleShape(shape0);
+        long handle1 = lib.addHandleShape(shape1);
+        assertEquals(2, lib.getHandleShapes().size());
+        assertEquals(0, lib.getShapes().size());
+        assertSame(shape1, lib.getHandleShape(handle1));
+        assertEquals(1, shape0.getCountOnAdd());
+        renderCheck(true, shape0, false);
+        renderCheck(true, shape1, false);
+
+        assertSame(shape0, lib.removeHandleShape(handle0));
+        assertNull(lib.removeHandleShape(handle0));
+        assertNull(lib.getHandleShape(handle0));
+        assertEquals(1, shape0.getCountOnRemove());
+        renderCheck(false, shape0, false);
+        renderCheck(true, shape1, false);
+
+        lib.clearShapes();
+        assertEquals(0, lib.getHandleShapes().size());
+        assertNull(lib.getHandleShape(handle1));
+        assertEquals(1, shape1.getCountOnRemove());
+        renderCheck(false, shape1, false);
+    }
+
+    @Test
+    public void testHandleShapesBulk() {
+        final ArrayList<MockShape> shapes = new ArrayList<MockShape>();
+        for (int i = 0; i < 100; i++) {
+            shapes.add(new MockShape() {
+                @Override
+                public void onAdd(LibShapeDraw apiInstance) {
+                    super.onAdd(apiInstance);
+                    // every shape is registered before the first callback
+                    assertEquals(shapes.size(), apiInstance.getHandleShapes().size());
+                }
+            });
+        }
+        long[] handles = lib.addHandleShapes(shapes);
+        assertEquals(100, handles.length);
+        assertEquals(1, shapes.get(99).getCountOnAdd());
+        assertSame(shapes.get(42), lib.getHandleShape(handles[42]));
+
+        assertEquals(50, lib.removeHandleShapes(Arrays.copyOf(handles, 50)));
+        assertEquals(0, lib.removeHandleShapes(Arrays.copyOf(handles, 50)));
+        assertEquals(50, lib.getHandleShapes().size());
+        assertEquals(1, shapes.get(0).getCountOnRemove());
+        assertEquals(0, shapes.get(50).getCountOnRemove());
+
+        lib.clearHandleShapes();
+        assertEquals(0, lib.getHandleShapes().size());
+        assertEquals(1, shapes.get(99).getCountOnRemove());
+        assertNull(lib.getHandleShape(handles[99]));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testHandleShapesAddNull() {
+        lib.addHandleShape(null);
+    }
+
+    @Test
+    public void testHandleShapesSpatialIndex() {
+        WireframeCuboid near = new WireframeCuboid(0,0,0, 1,1,1);
+        WireframeCuboid far = new WireframeCuboid(100,0,0, 101,1,1);
+        lib.addHandleShape(near);
+        long farHandle = lib.addHandleShape(far);
+        assertEquals(1, lib.getShapesWithin(new BoundingBox(99,0,0, 102,1,1)).size());
+        assertSame(near, lib.raycast(new Vector3(-5,0.5,0.5), new Vector3(1,0,0)));
+        lib.setSpatialIndexing(true);
+        assertEquals(2, LSDController.getInstance().getSpatialIndex(lib).size());
+        assertSame(far, lib.getShapesNear(new Vector3(100,0,0), 1.0).get(0));
+        lib.removeHandleShape(farHandle);
+        assertEquals(1, LSDController.getInstance().getSpatialIndex(lib).size());
+        lib.clearHandleShapes();
+        assertEquals(0, LSDController.getInstance().getSpatialIndex(lib).size());
+    }
+
     @Test
     public void testShapesRemoveInvalid() {
         MockShape shape = new MockShape();
@@ -311,4 +397,61 @@ public class TestLibShapeDraw extends SetupTestEnvironment.TestCase {
         renderCheck(true, counter, false);
         renderCheck(true, counter, true);
     }
+
+    @Test
+    public void testSpatialQueries() {
+        assertFalse(lib.isSpatialIndexing());
+        WireframeCuboid[] cuboids = new WireframeCuboid[100];
+        for (int i = 0; i < cuboids.length; i++) {
+            cuboids[i] = new WireframeCuboid(i*10,0,0, i*10+1,1,1);
+            lib.addShape(cuboids[i]);
+        }
+        lib.addShape(new MockShape()); // unknown bounds
+        assertSpatialQueries(cuboids);
+
+        assertTrue(lib.setSpatialIndexing(true).isSpatialIndexing());
+        assertNotNull(LSDController.getInstance().getSpatialIndex(lib));
+        assertSpatialQueries(cuboids);
+
+        lib.setSpatialIndexing(false);
+        assertNull(LSDController.getInstance().getSpatialIndex(lib));
+    }
+
+    private void assertSpatialQueries(WireframeCuboid[] cuboids) {
+        List<Shape> result = lib.getShapesWithin(new BoundingBox(15,0,0, 31,1,1));
+        assertEquals(2, result.size());
+        assertSame(cuboids[2], result.get(0));
+        assertSame(cuboids[3], result.get(1));
+
+        result = lib.getShapesNear(new Vector3(500,0,0), 10.0);
+        assertEquals(3, result.size());
+        assertSame(cuboids[49], result.get(0));
+        assertSame(cuboids[50], result.get(1));
+        assertSame(cuboids[51], result.get(2));
+        assertTrue(lib.getShapesNear(new Vector3(500,50,0), 10.0).isEmpty());
+
+        assertSame(cuboids[3], lib.raycast(new Vector3(25,0.5,0.5), new Vector3(1,0,0)));
+        assertSame(cuboids[2], lib.raycast(new Vector3(25,0.5,0.5), new Vector3(-1,0,0)));
+        assertSame(cuboids[99], lib.raycast(new Vector3(990.5,100,0.5), new Vector3(0,-1,0)));
+        assertNull(lib.raycast(new Vector3(25,0.5,0.5), new Vector3(0,1,0)));
+
+        // moved shapes are found at their new position after an update
+        cuboids[3].getLowerCorner().addY(100);
+        cuboids[3].getUpperCorner().addY(100);
+        lib.updateSpatialIndex();
+        assertSame(cuboids[4], lib.raycast(new Vector3(25,0.5,0.5), new Vector3(1,0,0)));
+        assertEquals(1, lib.getShapesWithin(new BoundingBox(15,0,0, 31,1,1)).size());
+
+        // removed shapes are no longer found
+        lib.removeShape(cuboids[2]);
+        assertTrue(lib.getShapesWithin(new BoundingBox(15,0,0, 31,1,1)).isEmpty());
+
+        // restore
+        cuboids[3].getLowerCorner().addY(-100);
+        cuboids[3].getUpperCorner().addY(-100);
+        lib.removeShape(cuboids[3]);
+        lib.addShape(cuboids[2]);
+        lib.addShape(cuboids[3]);
+        lib.updateSpatialIndex();
+    }
 }
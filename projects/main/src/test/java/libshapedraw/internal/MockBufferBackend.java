@@ -0,0 +1,87 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+
+/**
+ * Records vertex buffer calls instead of making them, checking that only live
+ * buffers are used.
+ */
+public class MockBufferBackend implements LSDBufferBackend {
+    private final HashMap<Integer, float[]> buffers = new HashMap<Integer, float[]>();
+    private boolean supported = true;
+    private int nextBuffer = 1;
+    private int countCreate;
+    private int countUpload;
+    private int countDraw;
+    private int countDrawVertices;
+    private int countDelete;
+
+    public MockBufferBackend setSupported(boolean supported) {
+        this.supported = supported;
+        return this;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return supported;
+    }
+
+    @Override
+    public int createBuffer() {
+        countCreate++;
+        buffers.put(nextBuffer, new float[0]);
+        return nextBuffer++;
+    }
+
+    @Override
+    public void uploadBuffer(int buffer, FloatBuffer vertices) {
+        assertTrue(buffers.containsKey(buffer));
+        float[] data = new float[vertices.remaining()];
+        vertices.duplicate().get(data);
+        buffers.put(buffer, data);
+        countUpload++;
+    }
+
+    @Override
+    public void drawBuffer(int buffer, int mode, int vertexCount) {
+        assertTrue(buffers.containsKey(buffer));
+        assertTrue(vertexCount*3 <= buffers.get(buffer).length);
+        countDraw++;
+        countDrawVertices += vertexCount;
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        assertTrue(buffers.remove(buffer) != null);
+        countDelete++;
+    }
+
+    public float[] getData(int buffer) {
+        return buffers.get(buffer);
+    }
+
+    public int getCountLive() {
+        return buffers.size();
+    }
+
+    public void assertCountsEqual(int expectedCountCreate, int expectedCountUpload, int expectedCountDraw, int expectedCountDelete) {
+        assertEquals(expectedCountCreate, countCreate);
+        assertEquals(expectedCountUpload, countUpload);
+        assertEquals(expectedCountDraw, countDraw);
+        assertEquals(expectedCountDelete, countDelete);
+    }
+
+    public int getCountDrawVertices() {
+        return countDrawVertices;
+    }
+
+    /** Every buffer created has been deleted. */
+    public void assertBalanced() {
+        assertEquals(countCreate, countDelete);
+        assertEquals(0, buffers.size());
+    }
+}
@@ -0,0 +1,73 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+/**
+ * Records display list calls instead of making them, checking that only live
+ * lists are used.
+ */
+public class MockDisplayListBackend implements LSDDisplayListBackend {
+    private final HashSet<Integer> lists = new HashSet<Integer>();
+    private boolean supported = true;
+    private int nextList = 1;
+    private int compiling;
+    private int countCreate;
+    private int countDraw;
+    private int countDelete;
+    private double lastScaleX;
+
+    public MockDisplayListBackend setSupported(boolean supported) {
+        this.supported = supported;
+        return this;
+    }
+
+    @Override
+    public int beginList() {
+        assertEquals(0, compiling);
+        if (!supported) {
+            return 0;
+        }
+        countCreate++;
+        lists.add(nextList);
+        compiling = nextList;
+        return nextList++;
+    }
+
+    @Override
+    public void endList() {
+        assertFalse(compiling == 0);
+        compiling = 0;
+    }
+
+    @Override
+    public void drawList(int list, double scaleX, double scaleY, double scaleZ) {
+        assertTrue(lists.contains(list));
+        assertEquals(0, compiling);
+        countDraw++;
+        lastScaleX = scaleX;
+    }
+
+    @Override
+    public void deleteList(int list) {
+        assertTrue(lists.remove(list));
+        countDelete++;
+    }
+
+    public int getCountLive() {
+        return lists.size();
+    }
+
+    public double getLastScaleX() {
+        return lastScaleX;
+    }
+
+    public void assertCountsEqual(int expectedCountCreate, int expectedCountDraw, int expectedCountDelete) {
+        assertEquals(expectedCountCreate, countCreate);
+        assertEquals(expectedCountDraw, countDraw);
+        assertEquals(expectedCountDelete, countDelete);
+    }
+}
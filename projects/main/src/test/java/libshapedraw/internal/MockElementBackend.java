@@ -0,0 +1,55 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Records glDrawElements calls instead of making them, checking that every
+ * index refers to a staged vertex.
+ */
+public class MockElementBackend implements LSDElementBackend {
+    private boolean supported = true;
+    private int countDraw;
+    private int lastVertexCount;
+    private int lastIndexCount;
+
+    public MockElementBackend setSupported(boolean supported) {
+        this.supported = supported;
+        return this;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return supported;
+    }
+
+    @Override
+    public void drawElements(int mode, FloatBuffer vertices, IntBuffer indices) {
+        assertEquals(GL11.GL_TRIANGLES, mode);
+        assertEquals(0, vertices.remaining() % 3);
+        assertEquals(0, indices.remaining() % 3);
+        for (int i = indices.position(); i < indices.limit(); i++) {
+            int index = indices.get(i);
+            assertEquals(true, index >= 0 && 3*index < vertices.remaining());
+        }
+        countDraw++;
+        lastVertexCount = vertices.remaining()/3;
+        lastIndexCount = indices.remaining();
+    }
+
+    public int getCountDraw() {
+        return countDraw;
+    }
+
+    public int getLastVertexCount() {
+        return lastVertexCount;
+    }
+
+    public int getLastIndexCount() {
+        return lastIndexCount;
+    }
+}
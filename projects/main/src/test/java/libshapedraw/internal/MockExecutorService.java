@@ -0,0 +1,71 @@
+package libshapedraw.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues submitted tasks until the test runs them on the calling thread.
+ */
+public class MockExecutorService extends AbstractExecutorService {
+    private final ArrayList<Runnable> queue = new ArrayList<Runnable>();
+    private boolean immediate;
+    private int countSubmit;
+
+    /** Run tasks as soon as they're submitted rather than queuing them. */
+    public MockExecutorService setImmediate(boolean immediate) {
+        this.immediate = immediate;
+        return this;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        countSubmit++;
+        if (immediate) {
+            task.run();
+        } else {
+            queue.add(task);
+        }
+    }
+
+    /** Run every queued task. Cancelled tasks do nothing. */
+    public void runAll() {
+        ArrayList<Runnable> tasks = new ArrayList<Runnable>(queue);
+        queue.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    public int getCountSubmit() {
+        return countSubmit;
+    }
+
+    @Override
+    public void shutdown() {
+        queue.clear();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        ArrayList<Runnable> tasks = new ArrayList<Runnable>(queue);
+        queue.clear();
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return true;
+    }
+}
@@ -0,0 +1,183 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import libshapedraw.LibShapeDraw;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
+import libshapedraw.shape.MockShape;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeCuboid;
+import libshapedraw.shape.WireframeLines;
+import libshapedraw.shape.WireframeLinesBlend;
+import libshapedraw.transform.ShapeScale;
+
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+
+public class TestLSDBatchRenderer extends SetupTestEnvironment.TestCase {
+    @Test
+    public void testSingleStyle() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDBatchRenderer renderer = new LSDBatchRenderer();
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        for (int i = 0; i < 100; i++) {
+            shapes.add(new WireframeCuboid(i,0,0, i+1,1,1));
+        }
+        renderer.render(mc, shapes);
+        // 12 edges per cuboid, all in a single draw (per pass: the default
+        // line style is visible through terrain)
+        mc.assertCountsEqual(1, 100*24, true);
+
+        // buffers are reset between frames
+        mc.reset();
+        renderer.render(mc, shapes);
+        mc.assertCountsEqual(1, 100*24, true);
+    }
+
+    @Test
+    public void testSecondaryColor() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDBatchRenderer renderer = new LSDBatchRenderer();
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        for (int i = 0; i < 10; i++) {
+            WireframeCuboid shape = new WireframeCuboid(i,0,0, i+1,1,1);
+            shape.setLineStyle(Color.CRIMSON.copy(), 2.0F, true);
+            shapes.add(shape);
+        }
+        renderer.render(mc, shapes);
+        mc.assertCountsEqual(1, 10*24, true);
+    }
+
+    @Test
+    public void testGroupByStyle() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDBatchRenderer renderer = new LSDBatchRenderer();
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        for (int i = 0; i < 10; i++) {
+            WireframeCuboid shape = new WireframeCuboid(i,0,0, i+1,1,1);
+            // equal but not identical styles are grouped together
+            shape.setLineStyle((i % 2 == 0 ? Color.CRIMSON : Color.DODGER_BLUE).copy(), 2.0F, false);
+            shapes.add(shape);
+        }
+        renderer.render(mc, shapes);
+        mc.assertCountsEqual(2, 10*24, false);
+    }
+
+    @Test
+    public void testLineStrip() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDBatchRenderer renderer = new LSDBatchRenderer();
+        ArrayList<ReadonlyVector3> points = new ArrayList<ReadonlyVector3>();
+        for (int i = 0; i < 5; i++) {
+            points.add(new Vector3(i, i, i));
+        }
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        shapes.add(new WireframeLines(points));
+        shapes.add(new WireframeLines(new Vector3(10, 10, 10), points));
+        renderer.render(mc, shapes);
+        // 4 segments each, converted from GL_LINE_STRIP to GL_LINES
+        mc.assertCountsEqual(1, 2*8, true);
+    }
+
+    @Test
+    public void testFallback() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDBatchRenderer renderer = new LSDBatchRenderer();
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        shapes.add(new WireframeCuboid(0,0,0, 1,1,1));
+        shapes.add(new WireframeCuboid(1,1,1, 2,2,2));
+
+        WireframeCuboid transformed = new WireframeCuboid(2,2,2, 3,3,3);
+        transformed.addTransform(new ShapeScale(2.0, 2.0, 2.0));
+        assertFalse(renderer.isBatchable(transformed));
+        shapes.add(transformed);
+
+        MockShape mockShape = new MockShape();
+        assertFalse(renderer.isBatchable(mockShape));
+        shapes.add(mockShape);
+
+        ArrayList<ReadonlyVector3> points = new ArrayList<ReadonlyVector3>();
+        points.add(new Vector3(0, 0, 0));
+        points.add(new Vector3(1, 0, 0));
+        points.add(new Vector3(1, 1, 0));
+        WireframeLinesBlend blend = new WireframeLinesBlend(points);
+        assertTrue(renderer.isBatchable(blend));
+        blend.setBlendToLineStyle(Color.BISQUE.copy(), 5.0F, false);
+        assertFalse(renderer.isBatchable(blend));
+        shapes.add(blend);
+
+        renderer.render(mc, shapes);
+        // 1 batched draw and 3 for the transformed cuboid, each twice; 1 for
+        // the mock; 2 for the blend plus 1 unblended secondary draw
+        assertEquals(2*(1 + 3) + 1 + (2 + 1), mc.getCountDraw());
+        assertEquals(2*(2*24 + 16) + 2 + (4 + 3), mc.getCountVertices());
+        assertEquals(1, mockShape.getCountRender());
+    }
+
+    @Test
+    public void testInvisible() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDBatchRenderer renderer = new LSDBatchRenderer();
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        WireframeCuboid shape = new WireframeCuboid(0,0,0, 1,1,1);
+        shape.setVisible(false);
+        shapes.add(shape);
+        renderer.render(mc, shapes);
+        mc.assertCountsEqual(0, 0, false);
+    }
+
+    @Test
+    public void testApiInstance() {
+        LibShapeDraw api = new LibShapeDraw();
+        assertFalse(api.isBatchRendering());
+        for (int i = 0; i < 10; i++) {
+            api.addShape(new WireframeCuboid(i,0,0, i+1,1,1));
+        }
+
+        // Other test cases may have left shapes in other API instances, so
+        // compare the difference.
+        mockMinecraftAccess.reset();
+        LSDController.getInstance().render(Vector3.ZEROS, false);
+        int countDraw = mockMinecraftAccess.getCountDraw();
+        int countVertices = mockMinecraftAccess.getCountVertices();
+
+        assertTrue(api.setBatchRendering(true).isBatchRendering());
+        mockMinecraftAccess.reset();
+        LSDController.getInstance().render(Vector3.ZEROS, false);
+        assertEquals(countDraw - 2*(10*3 - 1), mockMinecraftAccess.getCountDraw());
+        assertEquals(countVertices + 2*(10*24 - 10*16), mockMinecraftAccess.getCountVertices());
+
+        api.unregister();
+    }
+
+    @Test
+    public void testRecordBulk() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDVertexRecorder recorder = new LSDVertexRecorder(mc);
+        recorder.startDrawing(GL11.GL_LINE_STRIP);
+        recorder.addVertices(new double[] {9.0, 0.0,0.0,0.0, 1.0,0.0,0.0}, 1, 2);
+        recorder.addVertices(DoubleBuffer.wrap(new double[] {1.0,1.0,0.0}));
+        FloatBuffer buf = FloatBuffer.wrap(new float[] {9.0F, 1.0F,1.0F,1.0F});
+        buf.position(1);
+        recorder.addVertices(buf);
+        assertEquals(1, buf.position());
+        recorder.finishDrawing();
+        // strip of 4 points == 3 line segments
+        assertEquals(6, recorder.getVertexCount());
+        assertEquals(1.0, recorder.getVertices()[3*5 + 2], 0.0);
+
+        recorder.replay(mc);
+        mc.assertCountsEqual(1, 6, false);
+        assertEquals(1, mc.getCountAddVertices());
+    }
+}
@@ -0,0 +1,106 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+
+public class TestLSDChunkedDrawing extends SetupTestEnvironment.TestCase {
+    /** Records each drawing session's x coordinates. */
+    private static class SessionRecorder extends MockMinecraftAccess {
+        private final ArrayList<String> sessions = new ArrayList<String>();
+        private StringBuilder cur;
+
+        @Override
+        public MinecraftAccess startDrawing(int mode) {
+            cur = new StringBuilder();
+            return super.startDrawing(mode);
+        }
+
+        @Override
+        public MinecraftAccess addVertices(double[] xyz, int offset, int count) {
+            for (int i = offset; i < offset + count*3; i += 3) {
+                cur.append((int) xyz[i]);
+            }
+            return super.addVertices(xyz, offset, count);
+        }
+
+        @Override
+        public MinecraftAccess finishDrawing() {
+            sessions.add(cur.toString());
+            return super.finishDrawing();
+        }
+    }
+
+    private static double[] getCoords(int count) {
+        double[] xyz = new double[3*count];
+        for (int i = 0; i < count; i++) {
+            xyz[3*i] = i;
+        }
+        return xyz;
+    }
+
+    @Test
+    public void testMaxSessionVertices() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        assertEquals(Integer.MAX_VALUE, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINE_STRIP));
+        assertEquals(Integer.MAX_VALUE - 1, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINES));
+        mc.setTessellatorCapacity(5);
+        assertEquals(5, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINE_STRIP));
+        assertEquals(4, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINES));
+        assertEquals(3, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_TRIANGLES));
+        mc.setTessellatorCapacity(0);
+        assertEquals(3, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_TRIANGLES));
+        assertEquals(2, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINE_STRIP));
+        assertEquals(2, LSDChunkedDrawing.getMaxSessionVertices(mc, GL11.GL_LINES));
+    }
+
+    @Test
+    public void testLineStrip() {
+        SessionRecorder mc = new SessionRecorder();
+        mc.setTessellatorCapacity(4);
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP, getCoords(10), 0, 0);
+        assertEquals("[]", mc.sessions.toString());
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP, getCoords(10), 0, 4);
+        assertEquals("[0123]", mc.sessions.toString());
+
+        // each session starts with the previous session's last vertex
+        mc.sessions.clear();
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP, getCoords(10), 0, 10);
+        assertEquals("[0123, 3456, 6789]", mc.sessions.toString());
+        mc.sessions.clear();
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINE_STRIP, getCoords(10), 6, 8);
+        assertEquals("[2345, 5678, 89]", mc.sessions.toString());
+    }
+
+    @Test
+    public void testLines() {
+        SessionRecorder mc = new SessionRecorder();
+        mc.setTessellatorCapacity(5);
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINES, getCoords(10), 0, 10);
+        assertEquals("[0123, 4567, 89]", mc.sessions.toString());
+    }
+
+    @Test
+    public void testPoints() {
+        SessionRecorder mc = new SessionRecorder();
+        mc.setTessellatorCapacity(3);
+        LSDChunkedDrawing.draw(mc, GL11.GL_POINTS, getCoords(10), 0, 10);
+        assertEquals("[012, 345, 678, 9]", mc.sessions.toString());
+    }
+
+    @Test
+    public void testOtherModes() {
+        // can't be split
+        SessionRecorder mc = new SessionRecorder();
+        mc.setTessellatorCapacity(Integer.MAX_VALUE);
+        LSDChunkedDrawing.draw(mc, GL11.GL_LINE_LOOP, getCoords(10), 0, 10);
+        assertEquals("[0123456789]", mc.sessions.toString());
+    }
+}
@@ -1,12 +1,29 @@
 package libshapedraw.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
 import libshapedraw.LibShapeDraw;
 import libshapedraw.MockMinecraftAccess;
 import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.primitive.Vector3;
+import libshapedraw.shape.MockShape;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeCuboid;
+import libshapedraw.shape.WireframeLines;
+import libshapedraw.shape.WireframeShape;
+import libshapedraw.transform.ShapeTranslate;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -75,6 +92,402 @@ public class TestLSDController extends SetupTestEnvironment.TestCase {
         ct.registerApiInstance(api, "whatever");
     }
 
+    @Test
+    public void testFrustumCulling() {
+        LibShapeDraw api = new LibShapeDraw();
+        assertFalse(api.isFrustumCulling());
+        MockShape mockShape = new MockShape();
+        api.addShape(mockShape);
+        api.addShape(new TestLSDShapeInfo.OffsetCuboid());
+        assertTrue(api.setFrustumCulling(true).isFrustumCulling());
+
+        // Without a real OpenGL context the frustum is never valid, so
+        // nothing is culled either way; just make sure both paths render.
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(1, mockShape.getCountRender());
+        api.setSpatialIndexing(true);
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(2, mockShape.getCountRender());
+        assertFalse(ct.isFrustumCulling());
+
+        api.unregister();
+    }
+
+    @Test
+    public void testDeferredXrayPass() {
+        LibShapeDraw api = new LibShapeDraw();
+        assertFalse(api.isDeferredXrayPass());
+        MockShape mockShape = new MockShape();
+        api.addShape(mockShape);
+        for (int i = 0; i < 10; i++) {
+            api.addShape(new WireframeCuboid(i,0,0, i+1,1,1));
+        }
+
+        // Other test cases may have left shapes in other API instances, so
+        // compare the difference.
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        int countDraw = mockMinecraftAccess.getCountDraw();
+        int countVertices = mockMinecraftAccess.getCountVertices();
+
+        // Same output, different order.
+        assertTrue(api.setDeferredXrayPass(true).isDeferredXrayPass());
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(countDraw, mockMinecraftAccess.getCountDraw());
+        assertEquals(countVertices, mockMinecraftAccess.getCountVertices());
+        assertEquals(2, mockShape.getCountRender());
+        assertFalse(LSDGLState.isDepthFuncPinned());
+
+        // Combined with batching.
+        api.setBatchRendering(true);
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(countDraw - 2*(10*3 - 1), mockMinecraftAccess.getCountDraw());
+        assertEquals(3, mockShape.getCountRender());
+
+        api.unregister();
+    }
+
+    @Test
+    public void testParallelGeometry() {
+        LibShapeDraw api = new LibShapeDraw();
+        assertFalse(api.isParallelGeometry());
+        for (int i = 0; i < 10; i++) {
+            api.addShape(new WireframeCuboid(i,0,0, i+1,1,1).setVertexCacheEnabled(true));
+        }
+        api.addShape(new WireframeCuboid(0,2,0, 1,3,1));
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        int countDraw = mockMinecraftAccess.getCountDraw();
+        int countVertices = mockMinecraftAccess.getCountVertices();
+
+        ExecutorService prevExecutor = LSDWorkerPool.getExecutor();
+        MockExecutorService executor = new MockExecutorService();
+        LSDWorkerPool.setExecutor(executor);
+        try {
+            assertTrue(api.setParallelGeometry(true).isParallelGeometry());
+            // Nothing is out of date.
+            mockMinecraftAccess.reset();
+            ct.render(Vector3.ZEROS, false);
+            assertEquals(0, executor.getCountSubmit());
+
+            // Still queued when rendered: same output.
+            for (Shape shape : api.getShapes()) {
+                ((WireframeShape) shape).invalidateVertexCache();
+            }
+            mockMinecraftAccess.reset();
+            ct.render(Vector3.ZEROS, false);
+            assertEquals(10, executor.getCountSubmit());
+            assertEquals(countDraw, mockMinecraftAccess.getCountDraw());
+            assertEquals(countVertices, mockMinecraftAccess.getCountVertices());
+            executor.runAll();
+
+            // Finished by the time they're rendered.
+            executor.setImmediate(true);
+            for (Shape shape : api.getShapes()) {
+                ((WireframeShape) shape).invalidateVertexCache();
+            }
+            mockMinecraftAccess.reset();
+            ct.render(Vector3.ZEROS, false);
+            assertEquals(20, executor.getCountSubmit());
+            assertEquals(countDraw, mockMinecraftAccess.getCountDraw());
+            assertEquals(countVertices, mockMinecraftAccess.getCountVertices());
+        } finally {
+            LSDWorkerPool.setExecutor(prevExecutor);
+            api.unregister();
+        }
+    }
+
+    @Test
+    public void testCommandQueueing() throws InterruptedException {
+        final LibShapeDraw api = new LibShapeDraw();
+        assertFalse(api.isCommandQueueing());
+        final MockShape shape = new MockShape();
+        final ShapeTranslate translate = new ShapeTranslate(1.0, 2.0, 3.0);
+        assertTrue(api.setCommandQueueing(true).isCommandQueueing());
+        assertTrue(shape.setCommandQueueing(true).isCommandQueueing());
+
+        // Applied right away on the main thread.
+        api.addShape(shape);
+        assertTrue(api.getShapes().contains(shape));
+        api.removeShape(shape);
+        assertFalse(api.getShapes().contains(shape));
+
+        // Queued by other threads, applied in order by the next render.
+        Thread worker = new Thread() {
+            @Override
+            public void run() {
+                api.addShape(shape);
+                api.removeShape(shape);
+                api.addShape(shape);
+                shape.addTransform(translate);
+            }
+        };
+        worker.start();
+        worker.join();
+        assertFalse(api.getShapes().contains(shape));
+        assertFalse(shape.hasTransforms());
+        assertEquals(1, shape.getCountOnAdd());
+        ct.render(Vector3.ZEROS, false);
+        assertTrue(api.getShapes().contains(shape));
+        assertEquals(2, shape.getCountOnRemove());
+        assertEquals(3, shape.getCountOnAdd());
+        assertTrue(shape.getTransforms().contains(translate));
+
+        // Or by the next game tick.
+        worker = new Thread() {
+            @Override
+            public void run() {
+                shape.clearTransforms();
+                api.clearShapes();
+            }
+        };
+        worker.start();
+        worker.join();
+        assertTrue(api.getShapes().contains(shape));
+        ct.gameTick(Vector3.ZEROS);
+        assertFalse(api.getShapes().contains(shape));
+        assertFalse(shape.hasTransforms());
+
+        // Invalid arguments are still rejected by the calling thread.
+        final boolean[] rejected = new boolean[1];
+        worker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    api.addShape(null);
+                } catch (IllegalArgumentException e) {
+                    rejected[0] = true;
+                }
+            }
+        };
+        worker.start();
+        worker.join();
+        assertTrue(rejected[0]);
+
+        api.unregister();
+    }
+
+    @Test
+    public void testCommandQueueingHandleShapes() throws InterruptedException {
+        final LibShapeDraw api = new LibShapeDraw().setCommandQueueing(true);
+        final MockShape a = new MockShape();
+        final MockShape b = new MockShape();
+        final MockShape c = new MockShape();
+        final long[] handles = new long[4];
+
+        // Applied right away on the main thread.
+        long handle = api.addHandleShape(a);
+        assertSame(a, api.getHandleShape(handle));
+        assertSame(a, api.removeHandleShape(handle));
+        assertEquals(0, api.getHandleShapes().size());
+
+        // Queued by other threads, but the handles are valid right away.
+        Thread worker = new Thread() {
+            @Override
+            public void run() {
+                handles[0] = api.addHandleShape(a);
+                long[] added = api.addHandleShapes(Arrays.asList(b, c));
+                handles[1] = added[0];
+                handles[2] = added[1];
+                handles[3] = api.addHandleShape(c);
+            }
+        };
+        worker.start();
+        worker.join();
+        for (long h : handles) {
+            assertTrue(h != 0 && h != handle);
+        }
+        assertEquals(0, api.getHandleShapes().size());
+        assertNull(api.getHandleShape(handles[0]));
+        assertEquals(1, a.getCountOnAdd());
+        // Removing a handle before its add is applied cancels the add.
+        assertNull(api.removeHandleShape(handles[3]));
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(3, api.getHandleShapes().size());
+        assertSame(a, api.getHandleShape(handles[0]));
+        assertSame(b, api.getHandleShape(handles[1]));
+        assertSame(c, api.getHandleShape(handles[2]));
+        assertNull(api.getHandleShape(handles[3]));
+        assertEquals(2, a.getCountOnAdd());
+        assertEquals(1, c.getCountOnAdd());
+
+        // Removals too.
+        final Object[] results = new Object[2];
+        worker = new Thread() {
+            @Override
+            public void run() {
+                results[0] = api.removeHandleShape(handles[0]);
+                results[1] = api.removeHandleShapes(new long[] {handles[1], handles[3]});
+            }
+        };
+        worker.start();
+        worker.join();
+        assertSame(a, results[0]);
+        assertEquals(1, results[1]);
+        assertEquals(3, api.getHandleShapes().size());
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(1, api.getHandleShapes().size());
+        assertEquals(2, a.getCountOnRemove());
+        assertEquals(1, b.getCountOnRemove());
+
+        worker = new Thread() {
+            @Override
+            public void run() {
+                api.clearHandleShapes();
+            }
+        };
+        worker.start();
+        worker.join();
+        assertEquals(1, api.getHandleShapes().size());
+        ct.gameTick(Vector3.ZEROS);
+        assertEquals(0, api.getHandleShapes().size());
+        assertEquals(1, c.getCountOnRemove());
+
+        // A queued clear only removes the handles that existed at the time,
+        // not those reserved by adds made after it.
+        final MockShape d = new MockShape();
+        final MockShape e = new MockShape();
+        api.addHandleShape(a);
+        worker = new Thread() {
+            @Override
+            public void run() {
+                api.clearHandleShapes();
+                handles[0] = api.addHandleShape(d);
+                api.clearShapes();
+                handles[1] = api.addHandleShape(e);
+            }
+        };
+        worker.start();
+        worker.join();
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(1, api.getHandleShapes().size());
+        assertNull(api.getHandleShape(handles[0]));
+        assertSame(e, api.getHandleShape(handles[1]));
+        assertEquals(3, a.getCountOnRemove());
+        assertEquals(1, d.getCountOnAdd());
+        assertEquals(1, d.getCountOnRemove());
+        assertEquals(1, e.getCountOnAdd());
+        assertEquals(0, e.getCountOnRemove());
+
+        api.unregister();
+    }
+
+    private static class CountingIterable implements Iterable<ReadonlyVector3> {
+        private final ArrayList<ReadonlyVector3> points = new ArrayList<ReadonlyVector3>();
+        private int countIterator;
+
+        public CountingIterable(double x) {
+            for (int i = 0; i < 1000; i++) {
+                points.add(new Vector3(x, i, 0.0));
+            }
+        }
+
+        @Override
+        public Iterator<ReadonlyVector3> iterator() {
+            countIterator++;
+            return points.iterator();
+        }
+    }
+
+    @Test
+    public void testIterateOncePerFrame() {
+        LibShapeDraw api = new LibShapeDraw();
+        CountingIterable absolutePoints = new CountingIterable(1.0);
+        CountingIterable relativePoints = new CountingIterable(2.0);
+        WireframeLines absolute = new WireframeLines(absolutePoints);
+        WireframeLines relative = new WireframeLines(new Vector3(1.0, 2.0, 3.0), relativePoints);
+        // both have a secondary color
+        assertTrue(absolute.getEffectiveLineStyle().hasSecondaryColor());
+        api.addShape(absolute).addShape(relative);
+
+        for (int mode = 0; mode < 5; mode++) {
+            api.setDeferredXrayPass(mode == 1 || mode == 3);
+            api.setBatchRendering(mode == 2 || mode == 3);
+            if (mode == 4) {
+                // the origin of absolute lines is their first point
+                absolute.addTransform(new ShapeTranslate(0.0, 1.0, 0.0));
+            }
+            absolutePoints.countIterator = 0;
+            relativePoints.countIterator = 0;
+            mockMinecraftAccess.reset();
+            ct.render(Vector3.ZEROS, false);
+            assertEquals(1, absolutePoints.countIterator);
+            assertEquals(1, relativePoints.countIterator);
+            // both passes of both shapes were drawn
+            assertTrue(mockMinecraftAccess.getCountVertices() >= 2*2*1000);
+        }
+
+        // rendering outside of the controller walks the points as usual
+        absolutePoints.countIterator = 0;
+        absolute.render(mockMinecraftAccess);
+        assertTrue(absolutePoints.countIterator > 0);
+
+        api.unregister();
+    }
+
+    @Test
+    public void testMaxRenderDistance() {
+        LibShapeDraw api = new LibShapeDraw();
+        assertEquals(Double.POSITIVE_INFINITY, api.getMaxRenderDistance(), 0.0);
+        ArrayList<WireframeCuboid> shapes = new ArrayList<WireframeCuboid>();
+        for (int i = 0; i < 10; i++) {
+            WireframeCuboid shape = new WireframeCuboid(i*10,0,0, i*10+1,1,1);
+            shapes.add(shape);
+            api.addShape(shape);
+        }
+
+        // Other test cases may have left shapes in other API instances, so
+        // compare the difference.
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        int countDraw = mockMinecraftAccess.getCountDraw();
+        assertEquals(40.0, shapes.get(4).getRenderDistance(), 0.0);
+
+        // 0, 10, and 20 blocks away are kept; 3 draws per pass each
+        api.setMaxRenderDistance(25.0);
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(countDraw - 7*2*3, mockMinecraftAccess.getCountDraw());
+
+        // per-shape limit
+        shapes.get(1).setMaxRenderDistance(5.0);
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(countDraw - 8*2*3, mockMinecraftAccess.getCountDraw());
+
+        // skip the xray pass past 15 blocks
+        for (WireframeCuboid shape : shapes) {
+            shape.setMaxXrayDistance(15.0);
+        }
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        assertEquals(countDraw - 8*2*3 - 3, mockMinecraftAccess.getCountDraw());
+        assertFalse(shapes.get(2).isVisibleThroughTerrain());
+        assertTrue(shapes.get(0).isVisibleThroughTerrain());
+
+        // same with batching
+        api.setBatchRendering(true);
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        int countVertices = mockMinecraftAccess.getCountVertices();
+        api.setBatchRendering(false);
+        mockMinecraftAccess.reset();
+        ct.render(Vector3.ZEROS, false);
+        // 3 passes of one cuboid each: 24 vertices as GL_LINES, 16 as strips
+        assertEquals(countVertices - 3*(24 - 16), mockMinecraftAccess.getCountVertices());
+
+        try {
+            api.setMaxRenderDistance(0.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        api.unregister();
+    }
+
     @Test
     public void testMethods() {
         // none of these calls should throw anything
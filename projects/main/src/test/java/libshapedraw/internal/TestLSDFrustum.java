@@ -0,0 +1,70 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.BoundingBox;
+
+import org.junit.Test;
+
+public class TestLSDFrustum extends SetupTestEnvironment.TestCase {
+    private static final float[] IDENTITY = {
+        1, 0, 0, 0,
+        0, 1, 0, 0,
+        0, 0, 1, 0,
+        0, 0, 0, 1};
+
+    /** Same matrix as gluPerspective, column-major. */
+    private static float[] perspective(double fovyDegrees, double aspect, double zNear, double zFar) {
+        double f = 1.0 / Math.tan(Math.toRadians(fovyDegrees) / 2.0);
+        return new float[] {
+            (float) (f / aspect), 0, 0, 0,
+            0, (float) f, 0, 0,
+            0, 0, (float) ((zFar + zNear) / (zNear - zFar)), -1,
+            0, 0, (float) ((2.0 * zFar * zNear) / (zNear - zFar)), 0};
+    }
+
+    @Test
+    public void testInvalid() {
+        LSDFrustum frustum = new LSDFrustum().update(new float[16], new float[16]);
+        assertFalse(frustum.isValid());
+        assertTrue(frustum.isVisible(new BoundingBox(-1000, -1000, -1000, -999, -999, -999)));
+        assertTrue(frustum.isVisible(null));
+    }
+
+    @Test
+    public void testPerspective() {
+        // Camera at the origin looking down -z.
+        LSDFrustum frustum = new LSDFrustum().update(IDENTITY, perspective(70.0, 1.0, 0.05, 256.0));
+        assertTrue(frustum.isValid());
+        assertTrue(frustum.isVisible(null));
+        assertFalse(frustum.isVisible(new BoundingBox()));
+
+        // in front
+        assertTrue(frustum.isVisible(new BoundingBox(-1, -1, -11, 1, 1, -9)));
+        // behind
+        assertFalse(frustum.isVisible(new BoundingBox(-1, -1, 9, 1, 1, 11)));
+        // off to the side
+        assertFalse(frustum.isVisible(new BoundingBox(100, -1, -11, 102, 1, -9)));
+        assertFalse(frustum.isVisible(new BoundingBox(-1, 100, -11, 1, 102, -9)));
+        // beyond the far plane
+        assertFalse(frustum.isVisible(new BoundingBox(-1, -1, -300, 1, 1, -290)));
+        // surrounding the camera
+        assertTrue(frustum.isVisible(new BoundingBox(-5, -5, -5, 5, 5, 5)));
+        // straddling the edge
+        assertTrue(frustum.isVisible(new BoundingBox(5, -1, -11, 100, 1, -9)));
+    }
+
+    @Test
+    public void testTranslated() {
+        // Camera at (100,64,100), i.e. glTranslated(-100,-64,-100).
+        float[] modelview = IDENTITY.clone();
+        modelview[12] = -100;
+        modelview[13] = -64;
+        modelview[14] = -100;
+        LSDFrustum frustum = new LSDFrustum().update(modelview, perspective(70.0, 1.0, 0.05, 256.0));
+        assertTrue(frustum.isVisible(new BoundingBox(99, 63, 89, 101, 65, 91)));
+        assertFalse(frustum.isVisible(new BoundingBox(99, 63, 109, 101, 65, 111)));
+        assertFalse(frustum.isVisible(new BoundingBox(-1, -1, -11, 1, 1, -9)));
+    }
+}
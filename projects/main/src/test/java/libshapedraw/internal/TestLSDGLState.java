@@ -0,0 +1,147 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.shape.MockShape;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeCuboid;
+import libshapedraw.transform.ShapeRotate;
+import libshapedraw.transform.ShapeTransform;
+
+import org.junit.After;
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+
+public class TestLSDGLState extends SetupTestEnvironment.TestCase {
+    @After
+    public void cleanup() {
+        LSDGLState.end();
+    }
+
+    @Test
+    public void testInactive() {
+        assertFalse(LSDGLState.isActive());
+        long skipped = LSDGLState.getCountSkipped();
+        LSDGLState.glLineWidth(2.0F);
+        LSDGLState.glLineWidth(2.0F);
+        LSDGLState.glEnable(GL11.GL_BLEND);
+        LSDGLState.glEnable(GL11.GL_BLEND);
+        assertEquals(skipped, LSDGLState.getCountSkipped());
+    }
+
+    @Test
+    public void testSkipRedundant() {
+        LSDGLState.begin();
+        assertTrue(LSDGLState.isActive());
+        long skipped = LSDGLState.getCountSkipped();
+
+        LSDGLState.glLineWidth(2.0F);
+        LSDGLState.glLineWidth(2.0F);
+        LSDGLState.glLineWidth(3.0F);
+        assertEquals(skipped + 1, LSDGLState.getCountSkipped());
+
+        LSDGLState.glEnable(GL11.GL_BLEND);
+        LSDGLState.glEnable(GL11.GL_BLEND);
+        LSDGLState.glDisable(GL11.GL_BLEND);
+        LSDGLState.glDisable(GL11.GL_LIGHTING);
+        LSDGLState.glDisable(GL11.GL_LIGHTING);
+        assertEquals(skipped + 3, LSDGLState.getCountSkipped());
+
+        LSDGLState.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        LSDGLState.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        LSDGLState.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE);
+        assertEquals(skipped + 4, LSDGLState.getCountSkipped());
+
+        LSDGLState.glColor4d(0.1, 0.2, 0.3, 0.4);
+        LSDGLState.glColor4d(0.1, 0.2, 0.3, 0.4);
+        LSDGLState.glColor4d(0.1, 0.2, 0.3, 0.5);
+        assertEquals(skipped + 5, LSDGLState.getCountSkipped());
+
+        LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
+        LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
+        assertEquals(skipped + 6, LSDGLState.getCountSkipped());
+
+        // Forget everything.
+        LSDGLState.invalidate();
+        LSDGLState.glLineWidth(3.0F);
+        LSDGLState.glDisable(GL11.GL_LIGHTING);
+        LSDGLState.glColor4d(0.1, 0.2, 0.3, 0.5);
+        LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
+        assertEquals(skipped + 6, LSDGLState.getCountSkipped());
+
+        // Untracked capabilities are always passed through.
+        LSDGLState.glEnable(GL11.GL_CULL_FACE);
+        LSDGLState.glEnable(GL11.GL_CULL_FACE);
+        assertEquals(skipped + 6, LSDGLState.getCountSkipped());
+
+        LSDGLState.end();
+        assertFalse(LSDGLState.isActive());
+        LSDGLState.glLineWidth(3.0F);
+        assertEquals(skipped + 6, LSDGLState.getCountSkipped());
+    }
+
+    @Test
+    public void testPinDepthFunc() {
+        LSDGLState.begin();
+        long skipped = LSDGLState.getCountSkipped();
+        LSDGLState.pinDepthFunc(GL11.GL_GREATER);
+        assertTrue(LSDGLState.isDepthFuncPinned());
+        LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
+        LSDGLState.glDepthFunc(GL11.GL_GREATER);
+        assertEquals(skipped + 2, LSDGLState.getCountSkipped());
+        LSDGLState.unpinDepthFunc();
+        assertFalse(LSDGLState.isDepthFuncPinned());
+        LSDGLState.glDepthFunc(GL11.GL_LEQUAL);
+        assertEquals(skipped + 2, LSDGLState.getCountSkipped());
+    }
+
+    @Test
+    public void testPinColor() {
+        LSDGLState.begin();
+        long skipped = LSDGLState.getCountSkipped();
+        LSDGLState.pinColor(0.1, 0.2, 0.3, 0.4);
+        assertTrue(LSDGLState.isColorPinned());
+        LSDGLState.glColor4d(0.5, 0.6, 0.7, 0.8);
+        assertEquals(skipped + 1, LSDGLState.getCountSkipped());
+        LSDGLState.unpinColor();
+        assertFalse(LSDGLState.isColorPinned());
+        LSDGLState.glColor4d(0.5, 0.6, 0.7, 0.8);
+        assertEquals(skipped + 1, LSDGLState.getCountSkipped());
+
+        // end always unpins
+        LSDGLState.pinColor(0.1, 0.2, 0.3, 0.4);
+        LSDGLState.end();
+        assertFalse(LSDGLState.isColorPinned());
+    }
+
+    @Test
+    public void testStandardSetup() {
+        LSDGLState.begin();
+        Shape.glContextStandardSetup();
+        long skipped = LSDGLState.getCountSkipped();
+        Shape.glContextStandardSetup();
+        assertEquals(skipped + 9, LSDGLState.getCountSkipped());
+    }
+
+    @Test
+    public void testTracked() {
+        WireframeCuboid shape = new WireframeCuboid(0,0,0, 1,1,1);
+        assertTrue(LSDShapeInfo.isGLStateTracked(shape));
+        shape.addTransform(new ShapeRotate(45.0, 0.0, 1.0, 0.0));
+        assertTrue(LSDShapeInfo.isGLStateTracked(shape));
+        shape.addTransform(new ShapeTransform() {
+            @Override
+            public void preRender() {
+                GL11.glEnable(GL11.GL_LIGHTING);
+            }
+        });
+        assertFalse(LSDShapeInfo.isGLStateTracked(shape));
+
+        // MockShape lives in a built-in package, but a custom subclass
+        // elsewhere would not.
+        assertTrue(LSDShapeInfo.isGLStateTracked(new MockShape()));
+        assertFalse(LSDShapeInfo.isGLStateTracked(new TestLSDShapeInfo.CustomCuboid()));
+    }
+}
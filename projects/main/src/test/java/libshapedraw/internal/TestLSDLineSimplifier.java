@@ -0,0 +1,71 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.PackedVector3List;
+
+import org.junit.Test;
+
+public class TestLSDLineSimplifier extends SetupTestEnvironment.TestCase {
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidCount() {
+        new LSDLineSimplifier().simplify(new double[6], 3, 1.0, new PackedVector3List());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidTolerance() {
+        new LSDLineSimplifier().simplify(new double[6], 2, -1.0, new PackedVector3List());
+    }
+
+    @Test
+    public void testSimplify() {
+        LSDLineSimplifier simplifier = new LSDLineSimplifier();
+        PackedVector3List result = new PackedVector3List();
+
+        simplifier.simplify(new double[0], 0, 1.0, result);
+        assertEquals(0, result.size());
+        simplifier.simplify(new double[] {1.0, 2.0, 3.0}, 1, 1.0, result);
+        assertEquals(1, result.size());
+
+        // the edges of a square, 10 points per edge
+        PackedVector3List square = new PackedVector3List();
+        for (int i = 0; i < 10; i++) {
+            square.add(i, 0.0, 0.0);
+        }
+        for (int i = 0; i < 10; i++) {
+            square.add(10.0, 0.0, i);
+        }
+        for (int i = 10; i > 0; i--) {
+            square.add(i, 0.0, 10.0);
+        }
+        for (int i = 10; i >= 0; i--) {
+            square.add(0.0, 0.0, i);
+        }
+        result.clear();
+        simplifier.simplify(square.getCoordinates(), square.size(), 0.5, result);
+        assertEquals(5, result.size());
+        assertEquals(0.0, result.getX(0), 0.0);
+        assertEquals(10.0, result.getX(1), 0.0);
+        assertEquals(0.0, result.getZ(1), 0.0);
+        assertEquals(10.0, result.getX(2), 0.0);
+        assertEquals(10.0, result.getZ(2), 0.0);
+        assertEquals(0.0, result.getX(3), 0.0);
+        assertEquals(10.0, result.getZ(3), 0.0);
+        assertEquals(0.0, result.getZ(4), 0.0);
+
+        // deviations within the tolerance are dropped, others are kept
+        square.set(5, 5.0, 0.0, 0.001);
+        result.clear();
+        simplifier.simplify(square.getCoordinates(), square.size(), 0.01, result);
+        assertEquals(5, result.size());
+        result.clear();
+        simplifier.simplify(square.getCoordinates(), square.size(), 0.0009, result);
+        assertEquals(6, result.size());
+        assertEquals(0.001, result.getZ(1), 0.0);
+
+        // a large tolerance leaves just the endpoints
+        result.clear();
+        simplifier.simplify(square.getCoordinates(), square.size(), 100.0, result);
+        assertEquals(2, result.size());
+    }
+}
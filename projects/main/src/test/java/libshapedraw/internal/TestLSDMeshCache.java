@@ -0,0 +1,187 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.Vector3;
+import libshapedraw.shape.GLUCylinder;
+import libshapedraw.shape.GLUPartialDisk;
+import libshapedraw.shape.GLUShape;
+import libshapedraw.shape.GLUSphere;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lwjgl.util.glu.Sphere;
+
+public class TestLSDMeshCache extends SetupTestEnvironment.TestCase {
+    private LSDDisplayListBackend prevBackend;
+    private MockDisplayListBackend backend;
+
+    @Before
+    public void installMockBackend() {
+        prevBackend = LSDMeshCache.getBackend();
+        backend = new MockDisplayListBackend();
+        LSDMeshCache.setBackend(backend);
+    }
+
+    @After
+    public void restoreBackend() {
+        LSDMeshCache.setCapacity(LSDMeshCache.DEFAULT_CAPACITY);
+        LSDMeshCache.setBackend(prevBackend);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetBackendInvalidNull() {
+        LSDMeshCache.setBackend(null);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetCapacityInvalid() {
+        LSDMeshCache.setCapacity(0);
+    }
+
+    @Test
+    public void testKey() {
+        LSDMeshCache.Key a = new LSDMeshCache.Key().setGeometry(GLUSphere.class, 24, 24, 0.5F, 0.0F, 0.0F).setQuadric(1, 2, 3, false);
+        LSDMeshCache.Key b = a.copy();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        b.setQuadric(1, 2, 3, true);
+        assertFalse(a.equals(b));
+        b.setQuadric(1, 2, 3, false).setGeometry(GLUSphere.class, 24, 12, 0.5F, 0.0F, 0.0F);
+        assertFalse(a.equals(b));
+        b.setGeometry(GLUCylinder.class, 24, 24, 0.5F, 0.0F, 0.0F);
+        assertFalse(a.equals(b));
+    }
+
+    @Test
+    public void testSharedSpheres() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        for (int i = 0; i < 200; i++) {
+            new GLUSphere(new Vector3(i, 0.0, 0.0), Color.RED.copy(), Color.BLUE.copy(), 1.0F + i).render(mc);
+        }
+        // one mesh, drawn for both passes of every sphere
+        assertEquals(1, LSDMeshCache.size());
+        backend.assertCountsEqual(1, 400, 0);
+        assertEquals(200.0, backend.getLastScaleX(), 0.0);
+
+        // different levels of detail need different meshes
+        GLUSphere sphere = new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 1.0F);
+        sphere.setSlices(8);
+        sphere.render(mc);
+        assertEquals(2, LSDMeshCache.size());
+        sphere.setWireframe(true);
+        sphere.render(mc);
+        assertEquals(3, LSDMeshCache.size());
+        backend.assertCountsEqual(3, 402, 0);
+
+        // opting out draws the quadric directly
+        sphere.setMeshSharing(false);
+        assertFalse(sphere.isMeshSharing());
+        sphere.render(mc);
+        backend.assertCountsEqual(3, 402, 0);
+
+        LSDMeshCache.clear();
+        assertEquals(0, LSDMeshCache.size());
+        assertEquals(0, backend.getCountLive());
+    }
+
+    @Test
+    public void testProportions() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        // same proportions
+        new GLUCylinder(Vector3.ZEROS.copy(), Color.RED.copy(), null, 1.0F, 2.0F, 5.0F).render(mc);
+        new GLUCylinder(Vector3.ZEROS.copy(), Color.RED.copy(), null, 2.0F, 4.0F, 1.0F).render(mc);
+        assertEquals(1, LSDMeshCache.size());
+        new GLUCylinder(Vector3.ZEROS.copy(), Color.RED.copy(), null, 2.0F, 2.0F, 1.0F).render(mc);
+        assertEquals(2, LSDMeshCache.size());
+
+        // equivalent angles
+        new GLUPartialDisk(Vector3.ZEROS.copy(), Color.RED.copy(), null, 0.0F, 1.0F, 90.0F, 45.0F).render(mc);
+        new GLUPartialDisk(Vector3.ZEROS.copy(), Color.RED.copy(), null, 0.0F, 2.0F, 450.0F, 45.0F).render(mc);
+        new GLUPartialDisk(Vector3.ZEROS.copy(), Color.RED.copy(), null, 0.0F, 3.0F, 135.0F, -45.0F).render(mc);
+        assertEquals(3, LSDMeshCache.size());
+        new GLUPartialDisk(Vector3.ZEROS.copy(), Color.RED.copy(), null, 0.0F, 3.0F, 135.0F, 45.0F).render(mc);
+        assertEquals(4, LSDMeshCache.size());
+    }
+
+    /** Only describes its unit mesh, relying on the default unit rendering. */
+    private static class MockUnitShape extends GLUShape {
+        private final float size;
+        private int countRender;
+
+        public MockUnitShape(float size) {
+            super(Vector3.ZEROS.copy(), Color.RED.copy(), null);
+            this.size = size;
+            setGLUQuadric(new Sphere());
+        }
+
+        @Override
+        protected void renderGLUQuadric() {
+            countRender++;
+        }
+
+        @Override
+        protected boolean getUnitMesh(LSDMeshCache.Key key, Vector3 scale) {
+            key.setGeometry(MockUnitShape.class, 1, 1, 0.0F, 0.0F, 0.0F);
+            scale.set(size, size, size);
+            return true;
+        }
+    }
+
+    @Test
+    public void testDefaultUnitMesh() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        MockUnitShape a = new MockUnitShape(2.0F);
+        MockUnitShape b = new MockUnitShape(3.0F);
+        a.render(mc);
+        b.render(mc);
+        // compiled once from the first shape, scaled down
+        assertEquals(1, LSDMeshCache.size());
+        assertEquals(1, a.countRender);
+        assertEquals(0, b.countRender);
+        backend.assertCountsEqual(1, 2, 0);
+        assertEquals(3.0, backend.getLastScaleX(), 0.0);
+    }
+
+    @Test
+    public void testEviction() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDMeshCache.setCapacity(2);
+        GLUSphere a = new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 1.0F).setSlices(4);
+        GLUSphere b = new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 1.0F).setSlices(5);
+        GLUSphere c = new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 1.0F).setSlices(6);
+        a.render(mc);
+        b.render(mc);
+        a.render(mc);
+        backend.assertCountsEqual(2, 3, 0);
+        // b is the least recently used
+        c.render(mc);
+        backend.assertCountsEqual(3, 4, 1);
+        a.render(mc);
+        backend.assertCountsEqual(3, 5, 1);
+        b.render(mc);
+        backend.assertCountsEqual(4, 6, 2);
+        assertEquals(2, LSDMeshCache.size());
+        assertEquals(2, backend.getCountLive());
+
+        LSDMeshCache.setCapacity(1);
+        assertEquals(1, backend.getCountLive());
+    }
+
+    @Test
+    public void testUnsupported() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        backend.setSupported(false);
+        GLUSphere sphere = new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 1.0F);
+        sphere.render(mc);
+        sphere.render(mc);
+        assertEquals(0, LSDMeshCache.size());
+        backend.assertCountsEqual(0, 0, 0);
+        assertTrue(sphere.isMeshSharing());
+    }
+}
@@ -0,0 +1,115 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import libshapedraw.MinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.Vector3;
+import libshapedraw.shape.GLUSphere;
+import libshapedraw.shape.MockShape;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeCuboid;
+import libshapedraw.shape.WireframeLinesBlend;
+import libshapedraw.shape.WireframeLinesBlendIterable;
+
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+
+public class TestLSDShapeInfo extends SetupTestEnvironment.TestCase {
+    /** Overrides renderShape without overriding the per-pass methods. */
+    public static class CustomCuboid extends WireframeCuboid {
+        public CustomCuboid() {
+            super(0,0,0, 1,1,1);
+        }
+        @Override
+        protected void renderShape(MinecraftAccess mc) {
+            super.renderShape(mc);
+        }
+    }
+
+    private static final float[] IDENTITY = {
+        1, 0, 0, 0,
+        0, 1, 0, 0,
+        0, 0, 1, 0,
+        0, 0, 0, 1};
+
+    /** Draws beyond its corners without saying so. */
+    public static class OffsetCuboid extends WireframeCuboid {
+        public OffsetCuboid() {
+            super(50,50,50, 51,51,51);
+        }
+        @Override
+        protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
+            mc.startDrawing(GL11.GL_LINES);
+            mc.addVertex(0.0, 0.0, 0.0).addVertex(50.0, 50.0, 50.0);
+            mc.finishDrawing();
+        }
+    }
+
+    /** Moves itself in onPreRender, but accounts for it. */
+    public static class OffsetCuboidWithBounds extends WireframeCuboid {
+        public OffsetCuboidWithBounds() {
+            super(0,0,0, 1,1,1);
+        }
+        @Override
+        public void onPreRender(MinecraftAccess mc) {
+            GL11.glTranslated(0.0, 0.0, 100.0);
+        }
+        @Override
+        protected boolean computeShapeBounds(BoundingBox result) {
+            result.set(0.0, 0.0, 100.0, 1.0, 1.0, 101.0);
+            return true;
+        }
+    }
+
+    @Test
+    public void testBoundsTrusted() {
+        assertTrue(LSDShapeInfo.get(WireframeCuboid.class).isBoundsTrusted());
+        assertTrue(LSDShapeInfo.get(WireframeLinesBlendIterable.class).isBoundsTrusted());
+        assertTrue(LSDShapeInfo.get(GLUSphere.class).isBoundsTrusted());
+        assertFalse(LSDShapeInfo.get(CustomCuboid.class).isBoundsTrusted());
+        assertFalse(LSDShapeInfo.get(OffsetCuboid.class).isBoundsTrusted());
+        assertTrue(LSDShapeInfo.get(OffsetCuboidWithBounds.class).isBoundsTrusted());
+        assertFalse(LSDShapeInfo.get(new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 1.0F) {
+            @Override
+            protected void renderGLUQuadric() {
+                super.renderGLUQuadric();
+            }
+        }.getClass()).isBoundsTrusted());
+
+        // never culled, even though the inherited bounds are out of view
+        LSDFrustum frustum = new LSDFrustum().update(IDENTITY, IDENTITY);
+        Shape shape = new OffsetCuboid();
+        assertNull(shape.getBounds());
+        assertTrue(frustum.isVisible(shape.getBounds()));
+        shape = new WireframeCuboid(50,50,50, 51,51,51);
+        assertNotNull(shape.getBounds());
+        assertFalse(frustum.isVisible(shape.getBounds()));
+        shape = new OffsetCuboidWithBounds();
+        assertNotNull(shape.getBounds());
+        assertEquals(100.0, shape.getBounds().getMinZ(), 0.0);
+    }
+
+    @Test
+    public void testSplitRenderPasses() {
+        assertTrue(LSDShapeInfo.get(WireframeCuboid.class).hasSplitRenderPasses());
+        assertTrue(LSDShapeInfo.get(WireframeLinesBlend.class).hasSplitRenderPasses());
+        assertTrue(LSDShapeInfo.get(GLUSphere.class).hasSplitRenderPasses());
+        assertFalse(LSDShapeInfo.get(MockShape.class).hasSplitRenderPasses());
+        assertFalse(LSDShapeInfo.get(CustomCuboid.class).hasSplitRenderPasses());
+    }
+
+    @Test
+    public void testRenderHooks() {
+        assertFalse(LSDShapeInfo.get(WireframeCuboid.class).overridesRenderHooks());
+        assertTrue(LSDShapeInfo.get(MockShape.class).overridesRenderHooks());
+        assertTrue(LSDShapeInfo.get(WireframeCuboid.class).isWireframeRenderShape());
+        assertFalse(LSDShapeInfo.get(CustomCuboid.class).isWireframeRenderShape());
+        assertFalse(LSDShapeInfo.get(GLUSphere.class).isWireframeRenderShape());
+    }
+}
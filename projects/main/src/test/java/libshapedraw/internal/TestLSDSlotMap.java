@@ -0,0 +1,158 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import libshapedraw.SetupTestEnvironment;
+
+import org.junit.Test;
+
+public class TestLSDSlotMap extends SetupTestEnvironment.TestCase {
+    @Test
+    public void testAddGetRemove() {
+        LSDSlotMap<String> map = new LSDSlotMap<String>();
+        assertEquals(0, map.size());
+        long a = map.add("a");
+        long b = map.add("b");
+        long c = map.add("c");
+        assertTrue(a != 0 && b != 0 && c != 0);
+        assertEquals(3, map.size());
+        assertEquals("b", map.get(b));
+        assertEquals("[a, b, c]", map.asList().toString());
+
+        // the last item fills the gap
+        assertEquals("a", map.remove(a));
+        assertEquals("[c, b]", map.asList().toString());
+        assertNull(map.get(a));
+        assertFalse(map.contains(a));
+        assertNull(map.remove(a));
+        assertEquals("c", map.get(c));
+
+        // the slot is reused, but the old handle stays invalid
+        long d = map.add("d");
+        assertTrue(d != a);
+        assertEquals((int) a, (int) d);
+        assertNull(map.get(a));
+        assertEquals("d", map.get(d));
+        assertEquals("[c, b, d]", map.asList().toString());
+
+        // duplicates get separate handles
+        long b2 = map.add("b");
+        assertEquals("b", map.remove(b2));
+        assertEquals("b", map.get(b));
+    }
+
+    @Test
+    public void testReserveAndFill() {
+        LSDSlotMap<String> map = new LSDSlotMap<String>();
+        long a = map.add("a");
+        long b = map.reserve();
+        assertTrue(b != 0 && b != a);
+        assertTrue(map.contains(b));
+        assertNull(map.get(b));
+        assertEquals("[a]", map.asList().toString());
+
+        assertTrue(map.fill(b, "b"));
+        assertEquals("b", map.get(b));
+        assertEquals("[a, b]", map.asList().toString());
+        assertFalse(map.fill(b, "b"));
+        assertFalse(map.fill(a, "a"));
+
+        // removing an unfilled reservation cancels it
+        long c = map.reserve();
+        assertNull(map.remove(c));
+        assertFalse(map.contains(c));
+        assertFalse(map.fill(c, "c"));
+        assertEquals("[a, b]", map.asList().toString());
+
+        // so does clearing
+        long d = map.reserve();
+        assertEquals("[a, b]", map.clear().toString());
+        assertFalse(map.fill(d, "d"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testGetHandles() {
+        LSDSlotMap<String> map = new LSDSlotMap<String>();
+        assertEquals(0, map.getHandles().length);
+        long a = map.add("a");
+        long b = map.add("b");
+        long c = map.reserve();
+        map.remove(a);
+        long[] handles = map.getHandles();
+        assertEquals(2, handles.length);
+        assertEquals(b, handles[0]);
+        assertEquals(c, handles[1]);
+
+        // still valid after being cleared and refilled
+        assertEquals("[b]", map.clear().toString());
+        for (int i = 0; i < 100; i++) {
+            map.add("x" + i);
+        }
+        assertEquals(100, map.getHandles().length);
+        assertEquals(100, map.size());
+    }
+
+    @Test
+    public void testInvalidHandles() {
+        LSDSlotMap<String> map = new LSDSlotMap<String>();
+        long a = map.add("a");
+        map.remove(a);
+        assertNull(map.get(0));
+        assertNull(map.get(-1));
+        assertNull(map.get(a + 1));
+        assertNull(map.get(a + (1L << 32)));
+        assertNull(map.get(a + 1000));
+        assertNull(map.remove(0));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testGrowAndClear() {
+        LSDSlotMap<Integer> map = new LSDSlotMap<Integer>();
+        long[] handles = new long[1000];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = map.add(i);
+        }
+        for (int i = 0; i < handles.length; i += 2) {
+            assertEquals(Integer.valueOf(i), map.remove(handles[i]));
+        }
+        assertEquals(500, map.size());
+        for (int i = 1; i < handles.length; i += 2) {
+            assertEquals(Integer.valueOf(i), map.get(handles[i]));
+        }
+        int sum = 0;
+        for (int i = 0; i < map.size(); i++) {
+            sum += map.getAt(i);
+        }
+        assertEquals(500*500, sum);
+
+        List<Integer> removed = map.clear();
+        assertEquals(500, removed.size());
+        assertEquals(0, map.size());
+        for (long handle : handles) {
+            assertNull(map.get(handle));
+        }
+        // the returned list is detached from the map
+        long handle = map.add(-1);
+        assertEquals(500, removed.size());
+        assertEquals(Integer.valueOf(-1), map.get(handle));
+        for (long old : handles) {
+            assertTrue(old != handle);
+        }
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testListUnmodifiable() {
+        new LSDSlotMap<String>().asList().add("a");
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetAtInvalid() {
+        LSDSlotMap<String> map = new LSDSlotMap<String>();
+        map.add("a");
+        map.getAt(1);
+    }
+}
@@ -0,0 +1,150 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Vector3;
+import libshapedraw.shape.MockShape;
+import libshapedraw.shape.Shape;
+import libshapedraw.shape.WireframeCuboid;
+
+import org.junit.Test;
+
+public class TestLSDSpatialIndex extends SetupTestEnvironment.TestCase {
+    private static final float[] IDENTITY = {
+        1, 0, 0, 0,
+        0, 1, 0, 0,
+        0, 0, 1, 0,
+        0, 0, 0, 1};
+
+    @Test
+    public void testCells() {
+        LSDSpatialIndex index = new LSDSpatialIndex();
+        index.add(new WireframeCuboid(1,1,1, 2,2,2));
+        index.add(new WireframeCuboid(3,3,3, 4,4,4));
+        assertEquals(2, index.size());
+        assertEquals(1, index.getCellCount());
+
+        // straddling the boundary between 8 cells
+        WireframeCuboid straddle = new WireframeCuboid(15,15,15, 17,17,17);
+        index.add(straddle);
+        index.add(straddle); // dupe ignored
+        assertEquals(3, index.size());
+        assertEquals(8, index.getCellCount());
+
+        // huge shapes and shapes with unknown bounds don't occupy any cells
+        WireframeCuboid huge = new WireframeCuboid(-1000,-1000,-1000, 1000,1000,1000);
+        index.add(huge);
+        MockShape mockShape = new MockShape();
+        index.add(mockShape);
+        assertEquals(5, index.size());
+        assertEquals(8, index.getCellCount());
+        List<Shape> result = index.findWithin(new BoundingBox(500,500,500, 501,501,501), new ArrayList<Shape>());
+        assertEquals(1, result.size());
+        assertSame(huge, result.get(0));
+        index.remove(huge);
+
+        index.remove(straddle);
+        assertEquals(3, index.size());
+        assertEquals(1, index.getCellCount());
+
+        // moving a shape only takes effect on update
+        straddle.getLowerCorner().set(100,0,0);
+        straddle.getUpperCorner().set(101,1,1);
+        index.add(straddle);
+        assertEquals(2, index.getCellCount());
+        straddle.getLowerCorner().set(200,0,0);
+        straddle.getUpperCorner().set(201,1,1);
+        assertEquals(1, index.findNear(new Vector3(100,0,0), 2.0, new ArrayList<Shape>()).size());
+        index.update();
+        assertEquals(0, index.findNear(new Vector3(100,0,0), 2.0, new ArrayList<Shape>()).size());
+        assertEquals(1, index.findNear(new Vector3(200,0,0), 2.0, new ArrayList<Shape>()).size());
+        assertEquals(2, index.getCellCount());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(0, index.getCellCount());
+        assertNull(index.raycast(Vector3.ZEROS, new Vector3(1,0,0)));
+    }
+
+    @Test
+    public void testRaycastMatchesBruteForce() {
+        Random random = new Random(42);
+        LSDSpatialIndex index = new LSDSpatialIndex();
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        for (int i = 0; i < 400; i++) {
+            double x = random.nextInt(160) - 80;
+            double y = random.nextInt(160) - 80;
+            double z = random.nextInt(160) - 80;
+            double size = 1 + random.nextInt(20);
+            WireframeCuboid shape = new WireframeCuboid(x,y,z, x+size,y+size,z+size);
+            shapes.add(shape);
+            index.add(shape);
+        }
+        for (int i = 0; i < 2000; i++) {
+            Vector3 origin = new Vector3(
+                    random.nextInt(400) - 200, random.nextInt(400) - 200, random.nextInt(400) - 200);
+            // include axis-aligned rays, and rays with zero components
+            Vector3 direction = new Vector3(
+                    random.nextInt(5) - 2, random.nextInt(5) - 2, random.nextInt(5) - 2);
+            if (i % 2 == 0) {
+                direction.set(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            }
+            Shape expected = null;
+            double bestT = Double.POSITIVE_INFINITY;
+            for (Shape shape : shapes) {
+                double t = shape.getBounds().getRayIntersection(origin, direction);
+                if (t >= 0.0 && t < bestT) {
+                    expected = shape;
+                    bestT = t;
+                }
+            }
+            assertSame("ray " + origin + " " + direction, expected, index.raycast(origin, direction));
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        LSDSpatialIndex index = new LSDSpatialIndex();
+        ArrayList<Shape> shapes = new ArrayList<Shape>();
+        for (int i = 0; i < 50; i++) {
+            // scattered around so the hash order doesn't match
+            WireframeCuboid shape = new WireframeCuboid((i*37)%50*16,0,0, (i*37)%50*16+1,1,1);
+            shapes.add(shape);
+            index.add(shape);
+        }
+        assertEquals(shapes, index.findWithin(new BoundingBox(0,0,0, 1000,1,1), new ArrayList<Shape>()));
+    }
+
+    @Test
+    public void testFindInView() {
+        LSDSpatialIndex index = new LSDSpatialIndex();
+        for (int i = 0; i < 10; i++) {
+            index.add(new WireframeCuboid(i*100,0,0, i*100+1,1,1));
+        }
+        MockShape mockShape = new MockShape();
+        index.add(mockShape);
+
+        // without a valid frustum, only the distance is used
+        LSDFrustum frustum = new LSDFrustum().update(new float[16], new float[16]);
+        List<Shape> result = index.findInView(frustum, Vector3.ZEROS, Double.POSITIVE_INFINITY, new ArrayList<Shape>());
+        assertEquals(11, result.size());
+        result = index.findInView(frustum, Vector3.ZEROS, 150.0, new ArrayList<Shape>());
+        assertEquals(3, result.size());
+        assertSame(mockShape, result.get(2));
+
+        // orthographic unit cube around the origin
+        frustum.update(IDENTITY, IDENTITY);
+        result = index.findInView(frustum, Vector3.ZEROS, Double.POSITIVE_INFINITY, new ArrayList<Shape>());
+        assertEquals(2, result.size());
+        assertTrue(result.contains(mockShape));
+    }
+}
@@ -0,0 +1,162 @@
+package libshapedraw.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import libshapedraw.LibShapeDraw;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.shape.WireframeCuboid;
+import libshapedraw.shape.WireframeLine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+
+public class TestLSDVertexBuffer extends SetupTestEnvironment.TestCase {
+    private LSDBufferBackend prevBackend;
+    private MockBufferBackend backend;
+
+    @Before
+    public void installMockBackend() {
+        prevBackend = LSDVertexBuffer.getBackend();
+        backend = new MockBufferBackend();
+        LSDVertexBuffer.setBackend(backend);
+    }
+
+    @After
+    public void restoreBackend() {
+        LSDVertexBuffer.setBackend(prevBackend);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetBackendInvalidNull() {
+        LSDVertexBuffer.setBackend(null);
+    }
+
+    @Test
+    public void testUpload() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LSDVertexBuffer buf = new LSDVertexBuffer();
+        assertFalse(buf.isAllocated());
+        buf.draw();
+        backend.assertCountsEqual(0, 0, 0, 0);
+
+        LSDVertexRecorder recorder = buf.beginUpload(mc);
+        recorder.startDrawing(GL11.GL_LINE_STRIP);
+        recorder.addVertex(1000000.0, 64.0, -1000000.0);
+        recorder.addVertex(1000000.5, 65.0, -1000000.0);
+        recorder.addVertex(1000000.5, 65.0, -999999.75);
+        recorder.finishDrawing();
+        assertTrue(buf.endUpload());
+        assertTrue(buf.isAllocated());
+        assertEquals(4, buf.getVertexCount());
+        backend.assertCountsEqual(1, 1, 0, 0);
+
+        // stored relative to the first vertex, keeping the fractions intact
+        float[] data = backend.getData(1);
+        assertEquals(12, data.length);
+        assertEquals(0.0F, data[0], 0.0F);
+        assertEquals(0.5F, data[3], 0.0F);
+        assertEquals(1.0F, data[4], 0.0F);
+        assertEquals(0.25F, data[11], 0.0F);
+
+        buf.draw();
+        buf.draw();
+        backend.assertCountsEqual(1, 1, 2, 0);
+        assertEquals(0, mc.getCountDraw());
+
+        // the same buffer is reused
+        buf.beginUpload(mc).startDrawing(GL11.GL_LINES).addVertex(0, 0, 0).addVertex(1, 1, 1).finishDrawing();
+        assertTrue(buf.endUpload());
+        assertEquals(2, buf.getVertexCount());
+        backend.assertCountsEqual(1, 2, 2, 0);
+
+        // anything other than lines is rejected, keeping the old contents
+        buf.beginUpload(mc).startDrawing(GL11.GL_QUADS).addVertex(0, 0, 0).finishDrawing();
+        assertFalse(buf.endUpload());
+        assertEquals(2, buf.getVertexCount());
+
+        buf.release();
+        assertFalse(buf.isAllocated());
+        buf.release();
+        backend.assertBalanced();
+    }
+
+    @Test
+    public void testRetainedShape() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeCuboid shape = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0);
+        assertFalse(shape.isRetainedMode());
+        shape.setRetainedMode(true);
+        shape.render(mc);
+        shape.render(mc);
+        shape.render(mc);
+        // Main and secondary passes draw the same buffer. Nothing goes
+        // through the Tessellator.
+        backend.assertCountsEqual(1, 1, 6, 0);
+        assertEquals(6*24, backend.getCountDrawVertices());
+        mc.assertCountsEqual(0, 0, false);
+
+        // changes are detected and re-uploaded
+        shape.getUpperCorner().setX(10.0);
+        shape.render(mc);
+        backend.assertCountsEqual(1, 2, 8, 0);
+        shape.invalidateVertexCache();
+        shape.render(mc);
+        backend.assertCountsEqual(1, 3, 10, 0);
+
+        // turning retained mode off frees the buffer
+        shape.setRetainedMode(false);
+        backend.assertBalanced();
+        shape.render(mc);
+        mc.assertCountsEqual(3, 16, true);
+        backend.assertCountsEqual(1, 3, 10, 1);
+    }
+
+    @Test
+    public void testUnsupported() {
+        backend.setSupported(false);
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeCuboid shape = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0);
+        shape.setRetainedMode(true);
+        shape.render(mc);
+        mc.assertCountsEqual(3, 16, true);
+        backend.assertCountsEqual(0, 0, 0, 0);
+        assertTrue(shape.isRetainedMode());
+    }
+
+    @Test
+    public void testLifecycle() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        LibShapeDraw api0 = new LibShapeDraw();
+        LibShapeDraw api1 = new LibShapeDraw();
+        WireframeLine shared = new WireframeLine(0.0,0.0,0.0, 1.0,1.0,1.0);
+        WireframeLine other = new WireframeLine(0.0,0.0,0.0, 2.0,2.0,2.0);
+        shared.setRetainedMode(true);
+        other.setRetainedMode(true);
+        api0.addShape(shared).addShape(other);
+        api1.addShape(shared);
+        shared.render(mc);
+        other.render(mc);
+        assertEquals(2, backend.getCountLive());
+
+        // the buffer stays as long as any API instance has the shape
+        api0.removeShape(shared);
+        assertEquals(2, backend.getCountLive());
+        api1.removeShape(shared);
+        assertEquals(1, backend.getCountLive());
+
+        // re-added shapes upload again on the next render
+        api0.addShape(shared);
+        shared.render(mc);
+        assertEquals(2, backend.getCountLive());
+
+        // unregistering an API instance removes its shapes
+        assertTrue(api0.unregister());
+        assertTrue(api0.getShapes().isEmpty());
+        backend.assertBalanced();
+        api1.unregister();
+    }
+}
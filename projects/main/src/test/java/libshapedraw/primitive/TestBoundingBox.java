@@ -0,0 +1,134 @@
+package libshapedraw.primitive;
+
+import static org.junit.Assert.*;
+import libshapedraw.SetupTestEnvironment;
+
+import org.junit.Test;
+
+public class TestBoundingBox extends SetupTestEnvironment.TestCase {
+    private static final double EPSILON = ReadonlyVector3.EPSILON;
+
+    private static void assertBoxEquals(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, ReadonlyBoundingBox box) {
+        assertEquals(minX, box.getMinX(), EPSILON);
+        assertEquals(minY, box.getMinY(), EPSILON);
+        assertEquals(minZ, box.getMinZ(), EPSILON);
+        assertEquals(maxX, box.getMaxX(), EPSILON);
+        assertEquals(maxY, box.getMaxY(), EPSILON);
+        assertEquals(maxZ, box.getMaxZ(), EPSILON);
+    }
+
+    @Test
+    public void testConstructors() {
+        assertTrue(new BoundingBox().isEmpty());
+        assertEquals("[empty]", new BoundingBox().toString());
+
+        // normalized
+        BoundingBox box = new BoundingBox(4.0, 2.0, 6.0, 1.0, 5.0, 3.0);
+        assertFalse(box.isEmpty());
+        assertBoxEquals(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, box);
+        assertEquals("[(1.0,2.0,3.0)(4.0,5.0,6.0)]", box.toString());
+        assertEquals(box, new BoundingBox(new Vector3(1.0, 5.0, 3.0), new Vector3(4.0, 2.0, 6.0)));
+
+        // a single point is not empty
+        assertFalse(new BoundingBox(1.0, 1.0, 1.0, 1.0, 1.0, 1.0).isEmpty());
+    }
+
+    @Test
+    public void testCopy() {
+        BoundingBox box0 = new BoundingBox(1.0, 2.0, 3.0, 4.0, 5.0, 6.0);
+        BoundingBox box1 = box0.copy();
+        assertNotSame(box0, box1);
+        assertEquals(box0, box1);
+        assertEquals(box0.hashCode(), box1.hashCode());
+        box1.translate(1.0, 0.0, 0.0);
+        assertFalse(box0.equals(box1));
+        new TestSerializable<ReadonlyBoundingBox>().assertSerializable(box0);
+    }
+
+    @Test
+    public void testInclude() {
+        BoundingBox box = new BoundingBox();
+        box.include(1.0, 2.0, 3.0);
+        assertBoxEquals(1.0, 2.0, 3.0, 1.0, 2.0, 3.0, box);
+        box.include(new Vector3(-1.0, 5.0, 0.0));
+        assertBoxEquals(-1.0, 2.0, 0.0, 1.0, 5.0, 3.0, box);
+        box.include(new BoundingBox(0.0, 0.0, 0.0, 10.0, 1.0, 1.0));
+        assertBoxEquals(-1.0, 0.0, 0.0, 10.0, 5.0, 3.0, box);
+        // including an empty box is a no-op
+        box.include(new BoundingBox());
+        assertBoxEquals(-1.0, 0.0, 0.0, 10.0, 5.0, 3.0, box);
+        assertTrue(box.setEmpty().isEmpty());
+    }
+
+    @Test
+    public void testContainsIntersects() {
+        BoundingBox box = new BoundingBox(0.0, 0.0, 0.0, 2.0, 2.0, 2.0);
+        assertTrue(box.contains(1.0, 1.0, 1.0));
+        assertTrue(box.contains(2.0, 2.0, 2.0));
+        assertFalse(box.contains(2.0, 2.01, 2.0));
+        assertTrue(box.contains(Vector3.ZEROS));
+        assertVectorEquals(1.0, 1.0, 1.0, box.getCenter());
+
+        assertTrue(box.intersects(new BoundingBox(1.0, 1.0, 1.0, 5.0, 5.0, 5.0)));
+        assertTrue(box.intersects(new BoundingBox(2.0, 2.0, 2.0, 5.0, 5.0, 5.0)));
+        assertFalse(box.intersects(new BoundingBox(2.5, 0.0, 0.0, 5.0, 5.0, 5.0)));
+        assertFalse(box.intersects(new BoundingBox()));
+        assertFalse(box.intersects(null));
+        assertFalse(new BoundingBox().contains(0.0, 0.0, 0.0));
+
+        assertEquals(0.0, box.getDistance(1.0, 1.0, 1.0), EPSILON);
+        assertEquals(3.0, box.getDistance(5.0, 1.0, 1.0), EPSILON);
+        assertEquals(5.0, box.getDistance(new Vector3(-3.0, 6.0, 1.0)), EPSILON);
+        assertEquals(Double.POSITIVE_INFINITY, new BoundingBox().getDistance(0.0, 0.0, 0.0), 0.0);
+    }
+
+    @Test
+    public void testRayIntersection() {
+        BoundingBox box = new BoundingBox(0.0, 0.0, 0.0, 2.0, 2.0, 2.0);
+        assertEquals(3.0, box.getRayIntersection(new Vector3(-3.0, 1.0, 1.0), new Vector3(1.0, 0.0, 0.0)), EPSILON);
+        assertEquals(1.5, box.getRayIntersection(new Vector3(-3.0, 1.0, 1.0), new Vector3(2.0, 0.0, 0.0)), EPSILON);
+        assertEquals(0.0, box.getRayIntersection(new Vector3(1.0, 1.0, 1.0), new Vector3(0.0, 1.0, 0.0)), EPSILON);
+        assertEquals(1.0, box.getRayIntersection(new Vector3(-1.0, -1.0, -1.0), new Vector3(1.0, 1.0, 1.0)), EPSILON);
+        // pointing away
+        assertTrue(box.getRayIntersection(new Vector3(-3.0, 1.0, 1.0), new Vector3(-1.0, 0.0, 0.0)) < 0.0);
+        // parallel, outside
+        assertTrue(box.getRayIntersection(new Vector3(-3.0, 3.0, 1.0), new Vector3(1.0, 0.0, 0.0)) < 0.0);
+        // passing by
+        assertTrue(box.getRayIntersection(new Vector3(-3.0, 0.0, 1.0), new Vector3(1.0, 1.0, 0.0)) < 0.0);
+        assertTrue(new BoundingBox().getRayIntersection(Vector3.ZEROS, new Vector3(1.0, 0.0, 0.0)) < 0.0);
+    }
+
+    @Test
+    public void testTransforms() {
+        BoundingBox box = new BoundingBox(1.0, 2.0, 3.0, 4.0, 5.0, 6.0);
+        box.translate(1.0, -1.0, 0.0);
+        assertBoxEquals(2.0, 1.0, 3.0, 5.0, 4.0, 6.0, box);
+        box.scale(2.0, -1.0, 1.0);
+        assertBoxEquals(4.0, -4.0, 3.0, 10.0, -1.0, 6.0, box);
+        box.expand(1.0);
+        assertBoxEquals(3.0, -5.0, 2.0, 11.0, 0.0, 7.0, box);
+
+        // 90 degrees around the y axis: (x,y,z) -> (z,y,-x)
+        box = new BoundingBox(1.0, 2.0, 3.0, 4.0, 5.0, 6.0);
+        box.rotateDegrees(90.0, 0.0, 1.0, 0.0);
+        assertBoxEquals(3.0, 2.0, -4.0, 6.0, 5.0, -1.0, box);
+
+        // 45 degrees grows the box
+        box = new BoundingBox(-1.0, -1.0, -1.0, 1.0, 1.0, 1.0);
+        box.rotateDegrees(45.0, 0.0, 0.0, 1.0);
+        double r = Math.sqrt(2.0);
+        assertBoxEquals(-r, -r, -1.0, r, r, 1.0, box);
+
+        // zero axis is a no-op, like glRotate
+        box = new BoundingBox(1.0, 2.0, 3.0, 4.0, 5.0, 6.0);
+        box.rotateDegrees(45.0, 0.0, 0.0, 0.0);
+        assertBoxEquals(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, box);
+
+        // empty boxes stay empty
+        assertTrue(new BoundingBox().translate(1.0, 1.0, 1.0).scale(2.0, 2.0, 2.0).expand(1.0).isEmpty());
+    }
+
+    private static void assertVectorEquals(double expectedX, double expectedY, double expectedZ, ReadonlyVector3 v) {
+        assertTrue(v.equals(expectedX, expectedY, expectedZ, EPSILON));
+    }
+}
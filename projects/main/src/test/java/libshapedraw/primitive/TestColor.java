@@ -269,4 +269,22 @@ public class TestColor extends SetupTestEnvironment.TestCase {
         assertEquals(0xdeadbeef, Color.convertARGBtoRGBA(Color.convertRGBAtoARGB(0xdeadbeef)));
         assertEquals(0xdeadbeef, Color.convertRGBAtoARGB(Color.convertARGBtoRGBA(0xdeadbeef)));
     }
+
+    @Test
+    public void testVersion() {
+        Color c = Color.RED.copy();
+        long version = c.getVersion();
+        c.getRGBA();
+        c.copy().setAlpha(0.5);
+        assertEquals(version, c.getVersion());
+
+        c.setAlpha(0.5);
+        assertTrue(c.getVersion() > version);
+        version = c.getVersion();
+        c.scaleRGB(0.5);
+        assertTrue(c.getVersion() > version);
+        version = c.getVersion();
+        c.set(Color.BLUE);
+        assertTrue(c.getVersion() > version);
+    }
 }
@@ -281,4 +281,34 @@ public class TestLineStyle extends SetupTestEnvironment {
         s.set(Color.RED.copy().setAlpha(0.5), 12.0F, true);
         assertEquals("(0xff00007f,12.0|0xff00001f,12.0)", s.toString());
     }
+
+    @Test
+    public void testVersion() {
+        LineStyle s = new LineStyle(Color.WHITE.copy(), 2.5F, true);
+        long version = s.getVersion();
+        s.toString();
+        s.copy().setMainWidth(1.0F);
+        assertEquals(version, s.getVersion());
+
+        // modifying either color counts as modifying the line style
+        s.getMainColor().setAlpha(0.5);
+        assertTrue(s.getVersion() > version);
+        version = s.getVersion();
+        s.getSecondaryColor().setRed(0.0);
+        assertTrue(s.getVersion() > version);
+        version = s.getVersion();
+        s.setSecondaryWidth(4.0F);
+        assertTrue(s.getVersion() > version);
+
+        // replacing a much-modified color with a fresh one still goes up
+        for (int i = 0; i < 10; i++) {
+            s.getMainColor().setRandom();
+        }
+        version = s.getVersion();
+        s.setMainColor(Color.BLACK.copy());
+        assertTrue(s.getVersion() > version);
+        version = s.getVersion();
+        s.setSecondaryColor(null);
+        assertTrue(s.getVersion() > version);
+    }
 }
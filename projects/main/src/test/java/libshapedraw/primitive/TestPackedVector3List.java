@@ -0,0 +1,165 @@
+package libshapedraw.primitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import libshapedraw.SetupTestEnvironment;
+
+import org.junit.Test;
+
+public class TestPackedVector3List extends SetupTestEnvironment.TestCase {
+    @Test
+    public void testAddGet() {
+        PackedVector3List list = new PackedVector3List(1);
+        assertTrue(list.isEmpty());
+        list.add(1.0, 2.0, 3.0).add(4.0, 5.0, 6.0);
+        assertTrue(list.add(new Vector3(7.0, 8.0, 9.0)));
+        assertEquals(3, list.size());
+        assertEquals(4.0, list.getX(1), 0.0);
+        assertEquals(5.0, list.getY(1), 0.0);
+        assertEquals(9.0, list.getZ(2), 0.0);
+        assertEquals("(7.0,8.0,9.0)", list.get(2, new Vector3()).toString());
+        assertEquals(6.0, list.getCoordinates()[5], 0.0);
+
+        list.set(0, -1.0, -2.0, -3.0);
+        assertEquals(-2.0, list.getY(0), 0.0);
+        list.removeAt(1);
+        assertEquals(2, list.size());
+        assertEquals(7.0, list.getX(1), 0.0);
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetInvalidIndex() {
+        new PackedVector3List().add(1.0, 2.0, 3.0).getX(1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddInvalidNull() {
+        new PackedVector3List().add(null);
+    }
+
+    @Test
+    public void testCopyConstructor() {
+        ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        arr.add(new Vector3(1.0, 2.0, 3.0));
+        arr.add(new Vector3(4.0, 5.0, 6.0));
+        PackedVector3List list = new PackedVector3List(arr);
+        assertEquals(2, list.size());
+        assertEquals(4.0, list.getX(1), 0.0);
+        assertEquals(list.size(), new PackedVector3List(list).size());
+    }
+
+    @Test
+    public void testIterator() {
+        PackedVector3List list = new PackedVector3List();
+        for (int i = 0; i < 100; i++) {
+            list.add(i, i*2, i*3);
+        }
+        // the same vector is reused for every point
+        Iterator<ReadonlyVector3> it = list.iterator();
+        ReadonlyVector3 first = it.next();
+        assertEquals(0.0, first.getX(), 0.0);
+        ReadonlyVector3 second = it.next();
+        assertSame(first, second);
+        assertEquals(1.0, second.getX(), 0.0);
+
+        int count = 0;
+        for (ReadonlyVector3 v : list) {
+            assertEquals(count*3, v.getZ(), 0.0);
+            count++;
+        }
+        assertEquals(100, count);
+        assertTrue(list.contains(new Vector3(5.0, 10.0, 15.0)));
+        assertFalse(list.contains(new Vector3(5.0, 10.0, 16.0)));
+
+        // remove through the iterator
+        it = list.iterator();
+        while (it.hasNext()) {
+            if (it.next().getX() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(50, list.size());
+        assertEquals(1.0, list.getX(0), 0.0);
+        assertEquals(99.0, list.getX(49), 0.0);
+
+        it = list.iterator();
+        it.next();
+        list.add(0.0, 0.0, 0.0);
+        try {
+            it.next();
+            fail();
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testToArray() {
+        PackedVector3List list = new PackedVector3List().add(1.0, 2.0, 3.0).add(4.0, 5.0, 6.0);
+        assertEquals("[(1.0,2.0,3.0), (4.0,5.0,6.0)]", Arrays.toString(list.toArray()));
+
+        // bulk copies don't alias the iterator's flyweight
+        ArrayList<ReadonlyVector3> copy = new ArrayList<ReadonlyVector3>(list);
+        assertEquals(new Vector3(1.0, 2.0, 3.0), copy.get(0));
+        assertEquals(new Vector3(4.0, 5.0, 6.0), copy.get(1));
+        copy.addAll(list);
+        assertEquals(4, copy.size());
+        assertEquals(new Vector3(1.0, 2.0, 3.0), copy.get(2));
+
+        // too small: a new array of the same type
+        Vector3[] small = list.toArray(new Vector3[0]);
+        assertEquals(2, small.length);
+        assertEquals(new Vector3(1.0, 2.0, 3.0), small[0]);
+
+        // big enough: filled in place, null-terminated
+        ReadonlyVector3[] big = new ReadonlyVector3[3];
+        big[2] = Vector3.ZEROS;
+        assertSame(big, list.toArray(big));
+        assertEquals(new Vector3(4.0, 5.0, 6.0), big[1]);
+        assertNull(big[2]);
+        assertNotSame(big[0], big[1]);
+    }
+
+    @Test
+    public void testCapacity() {
+        PackedVector3List list = new PackedVector3List(0);
+        assertEquals(0, list.getCoordinates().length);
+        list.ensureCapacity(10);
+        assertEquals(30, list.getCoordinates().length);
+        list.add(1.0, 1.0, 1.0).trimToSize();
+        assertEquals(3, list.getCoordinates().length);
+        list.add(2.0, 2.0, 2.0);
+        assertEquals(2.0, list.getZ(1), 0.0);
+    }
+
+    @Test
+    public void testVersion() {
+        PackedVector3List list = new PackedVector3List();
+        long version = list.getVersion();
+        list.add(1.0, 2.0, 3.0);
+        assertTrue(list.getVersion() > version);
+        version = list.getVersion();
+        list.set(0, 1.0, 2.0, 4.0);
+        assertTrue(list.getVersion() > version);
+        version = list.getVersion();
+        for (ReadonlyVector3 v : list) {
+            v.getX();
+        }
+        assertEquals(version, list.getVersion());
+        list.clear();
+        assertTrue(list.getVersion() > version);
+    }
+}
@@ -705,4 +705,23 @@ public class TestVector3 extends SetupTestEnvironment.TestCase {
         assertTrue(v0.isAnimating());
         v0.animateStop();
     }
+
+    @Test
+    public void testVersion() {
+        Vector3 v = new Vector3(1.0, 2.0, 3.0);
+        long version = v.getVersion();
+        v.getX();
+        v.length();
+        v.copy().setX(5.0);
+        assertEquals(version, v.getVersion());
+
+        v.setX(5.0);
+        assertTrue(v.getVersion() > version);
+        version = v.getVersion();
+        v.add(1.0, 1.0, 1.0).scale(2.0).normalize();
+        assertTrue(v.getVersion() > version);
+        version = v.getVersion();
+        v.set(Vector3.ZEROS);
+        assertTrue(v.getVersion() > version);
+    }
 }
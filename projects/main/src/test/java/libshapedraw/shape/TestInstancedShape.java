@@ -0,0 +1,192 @@
+package libshapedraw.shape;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.internal.LSDController;
+import libshapedraw.internal.LSDFrustum;
+import libshapedraw.internal.LSDGLState;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.Vector3;
+
+import org.junit.Test;
+
+public class TestInstancedShape extends SetupTestEnvironment.TestCase {
+    private static final float[] IDENTITY = {
+        1, 0, 0, 0,
+        0, 1, 0, 0,
+        0, 0, 1, 0,
+        0, 0, 0, 1,
+    };
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidTemplate() {
+        new InstancedShape(null);
+    }
+
+    @Test
+    public void testAddSet() {
+        WireframeCuboid template = new WireframeCuboid(0,0,0, 1,1,1);
+        InstancedShape shape = new InstancedShape(template);
+        assertSame(template, shape.getTemplate());
+        assertTrue(template.isVertexCacheEnabled());
+        assertEquals(0, shape.addInstance(1.0, 2.0, 3.0));
+        assertEquals(1, shape.addInstance(new Vector3(4.0, 5.0, 6.0)));
+        assertEquals(2, shape.addInstance(7.0, 8.0, 9.0, 2.0, 0xff0000ff));
+        shape.addInstances(new double[] {0.0, 10.0, 11.0, 12.0}, 1, 1);
+        assertEquals(4, shape.getInstanceCount());
+        assertEquals("(10.0,11.0,12.0)", shape.getInstance(3, new Vector3()).toString());
+        assertEquals(1.0, shape.getInstanceScale(0), 0.0);
+        assertEquals(2.0, shape.getInstanceScale(2), 0.0);
+        assertEquals(InstancedShape.TEMPLATE_COLOR, shape.getInstanceColor(3));
+        assertEquals(0xff0000ff, shape.getInstanceColor(2));
+
+        // grow well past the initial capacity
+        for (int i = 0; i < 1000; i++) {
+            shape.addInstance(i, i, i);
+        }
+        assertEquals(1004, shape.getInstanceCount());
+        assertEquals(2.0, shape.getInstanceScale(2), 0.0);
+        assertEquals(1.0, shape.getInstanceScale(1003), 0.0);
+
+        // the last instance fills the gap
+        shape.removeInstance(0);
+        assertEquals(1003, shape.getInstanceCount());
+        assertEquals("(999.0,999.0,999.0)", shape.getInstance(0, new Vector3()).toString());
+        shape.setInstance(0, -1.0, -2.0, -3.0);
+        assertEquals("(-1.0,-2.0,-3.0)", shape.getInstance(0, new Vector3()).toString());
+
+        shape.clearInstances();
+        assertEquals(0, shape.getInstanceCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidScale() {
+        InstancedShape shape = new InstancedShape(new WireframeCuboid(0,0,0, 1,1,1));
+        shape.addInstance(0.0, 0.0, 0.0);
+        shape.setInstanceScale(0, 0.0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidIndex() {
+        InstancedShape shape = new InstancedShape(new WireframeCuboid(0,0,0, 1,1,1));
+        shape.addInstance(0.0, 0.0, 0.0);
+        shape.setInstance(1, 0.0, 0.0, 0.0);
+    }
+
+    @Test
+    public void testBoundsAndVersion() {
+        // origin at the box's center
+        WireframeCuboid template = new WireframeCuboid(0,0,0, 2,2,2);
+        InstancedShape shape = new InstancedShape(template);
+        assertNotNull(shape.getBounds());
+        assertTrue(shape.getBounds().isEmpty());
+        long version = shape.getGeometryVersion();
+        shape.addInstance(10.0, 0.0, 0.0);
+        shape.addInstance(-10.0, 0.0, 0.0, 3.0, InstancedShape.TEMPLATE_COLOR);
+        assertTrue(shape.getGeometryVersion() > version);
+        ReadonlyBoundingBox bounds = shape.getBounds();
+        assertEquals(-13.0, bounds.getMinX(), 0.0);
+        assertEquals(11.0, bounds.getMaxX(), 0.0);
+        assertEquals(3.0, bounds.getMaxY(), 0.0);
+
+        // the template's changes apply to every instance
+        version = shape.getGeometryVersion();
+        template.getUpperCorner().setY(4.0);
+        assertTrue(shape.getGeometryVersion() > version);
+        assertEquals(6.0, shape.getBounds().getMaxY(), 0.0);
+    }
+
+    @Test
+    public void testRender() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeCuboid template = new WireframeCuboid(0,0,0, 1,1,1);
+        InstancedShape shape = new InstancedShape(template);
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+
+        for (int i = 0; i < 10; i++) {
+            shape.addInstance(i*10, 0.0, 0.0);
+        }
+        shape.render(mc);
+        mc.assertCountsEqual(3*10, 16*10, true);
+        assertEquals(10, shape.getRenderedInstanceCount());
+
+        // split passes
+        mc.reset();
+        shape.renderMainPass(mc);
+        shape.renderSecondaryPass(mc);
+        mc.assertCountsEqual(3*10, 16*10, true);
+
+        template.setVisible(false);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+    }
+
+    @Test
+    public void testRenderCulled() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        InstancedShape shape = new InstancedShape(new WireframeCuboid(0,0,0, 0.5,0.5,0.5));
+        shape.addInstance(0.0, 0.0, 0.0);
+        shape.addInstance(0.5, 0.0, 0.0);
+        shape.addInstance(5.0, 0.0, 0.0);
+        shape.addInstance(5.0, 0.0, 0.0, 20.0, InstancedShape.TEMPLATE_COLOR);
+
+        // identity matrices: only the unit cube is in view; the scaled-up
+        // instance reaches into it
+        LSDFrustum frustum = LSDController.getInstance().getFrustum();
+        LSDGLState.begin();
+        try {
+            frustum.update(IDENTITY, IDENTITY);
+            // frustum culling is opt-in
+            shape.render(mc);
+            assertEquals(4, shape.getRenderedInstanceCount());
+
+            mc.reset();
+            LSDController.getInstance().setFrustumCulling(true);
+            shape.render(mc);
+            mc.assertCountsEqual(3*3, 16*3, true);
+            assertEquals(3, shape.getRenderedInstanceCount());
+        } finally {
+            LSDGLState.end();
+            LSDController.getInstance().setFrustumCulling(false);
+            frustum.update(new float[16], new float[16]);
+        }
+
+        // not rendered by the controller: no culling
+        mc.reset();
+        shape.render(mc);
+        assertEquals(4, shape.getRenderedInstanceCount());
+    }
+
+    @Test
+    public void testRenderColors() {
+        final ArrayList<String> colors = new ArrayList<String>();
+        LSDGLState.begin();
+        try {
+            MockMinecraftAccess mc = new MockMinecraftAccess();
+            WireframeCuboid template = new WireframeCuboid(0,0,0, 1,1,1);
+            template.setLineStyle(Color.RED.copy(), 1.0F, true);
+            InstancedShape shape = new InstancedShape(template) {
+                @Override
+                protected void renderShape(libshapedraw.MinecraftAccess mc) {
+                    super.renderShape(mc);
+                    colors.add(String.valueOf(LSDGLState.isColorPinned()));
+                }
+            };
+            shape.addInstance(0.0, 0.0, 0.0, 1.0, 0x00ff00ff);
+            shape.addInstance(1.0, 0.0, 0.0);
+            shape.render(mc);
+            mc.assertCountsEqual(3*2, 16*2, true);
+            // never left pinned
+            assertEquals("[false]", colors.toString());
+        } finally {
+            LSDGLState.end();
+        }
+    }
+}
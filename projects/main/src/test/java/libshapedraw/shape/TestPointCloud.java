@@ -0,0 +1,177 @@
+package libshapedraw.shape;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import libshapedraw.MinecraftAccess;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.PointStyle;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.Vector3;
+
+import org.junit.Test;
+
+public class TestPointCloud extends SetupTestEnvironment.TestCase {
+    @Test
+    public void testAddSet() {
+        PointCloud shape = new PointCloud();
+        assertEquals(0, shape.getPointCount());
+        assertEquals(0, shape.addPoint(1.0, 2.0, 3.0));
+        assertEquals(1, shape.addPoint(new Vector3(4.0, 5.0, 6.0)));
+        shape.addPoints(new double[] {0.0, 7.0, 8.0, 9.0, 10.0, 11.0, 12.0}, 1, 2);
+        assertEquals(4, shape.getPointCount());
+        assertEquals("(10.0,11.0,12.0)", shape.getPoint(3, new Vector3()).toString());
+
+        // grow well past the initial capacity
+        for (int i = 0; i < 1000; i++) {
+            shape.addPoint(i, i, i);
+        }
+        assertEquals(1004, shape.getPointCount());
+        assertEquals("(999.0,999.0,999.0)", shape.getPoint(1003, new Vector3()).toString());
+        assertEquals("(1.0,2.0,3.0)", shape.getPoint(0, new Vector3()).toString());
+
+        shape.setPoint(0, -1.0, -2.0, -3.0);
+        shape.setPoints(1, new double[] {20.0, 21.0, 22.0, 23.0, 24.0, 25.0}, 0, 2);
+        assertEquals("(-1.0,-2.0,-3.0)", shape.getPoint(0, new Vector3()).toString());
+        assertEquals("(23.0,24.0,25.0)", shape.getPoint(2, new Vector3()).toString());
+        assertEquals("(10.0,11.0,12.0)", shape.getPoint(3, new Vector3()).toString());
+
+        shape.clearPoints();
+        assertEquals(0, shape.getPointCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetInvalidIndex() {
+        PointCloud shape = new PointCloud();
+        shape.addPoint(0.0, 0.0, 0.0);
+        shape.setPoint(1, 0.0, 0.0, 0.0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetPointsInvalidRange() {
+        PointCloud shape = new PointCloud();
+        shape.addPoint(0.0, 0.0, 0.0);
+        shape.addPoint(0.0, 0.0, 0.0);
+        shape.setPoints(1, new double[6], 0, 2);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddPointsInvalidRange() {
+        new PointCloud().addPoints(new double[6], 1, 2);
+    }
+
+    @Test
+    public void testColors() {
+        PointCloud shape = new PointCloud();
+        shape.addPoint(0.0, 0.0, 0.0);
+        assertFalse(shape.hasPointColors());
+        assertEquals(PointCloud.DEFAULT_POINT_COLOR, shape.getPointColor(0));
+        shape.addPoint(1.0, 0.0, 0.0, 0xff000080);
+        assertTrue(shape.hasPointColors());
+        assertEquals(PointCloud.DEFAULT_POINT_COLOR, shape.getPointColor(0));
+        assertEquals(0xff000080, shape.getPointColor(1));
+        shape.addPoints(new double[6], 0, 2);
+        assertEquals(PointCloud.DEFAULT_POINT_COLOR, shape.getPointColor(3));
+        shape.setPointColors(2, new int[] {0x00ff00ff, 0x0000ffff}, 0, 2);
+        assertEquals(0x0000ffff, shape.getPointColor(3));
+        for (int i = 0; i < 100; i++) {
+            shape.addPoint(i, i, i);
+        }
+        assertEquals(0x00ff00ff, shape.getPointColor(2));
+        assertEquals(PointCloud.DEFAULT_POINT_COLOR, shape.getPointColor(103));
+
+        shape.clearPoints();
+        assertFalse(shape.hasPointColors());
+    }
+
+    @Test
+    public void testBounds() {
+        PointCloud shape = new PointCloud();
+        shape.addPoint(1.0, 2.0, 3.0);
+        shape.addPoints(new double[] {-4.0, 5.0, 6.0}, 0, 1);
+        ReadonlyBoundingBox bounds = shape.getBounds();
+        assertEquals(-4.0, bounds.getMinX(), 0.0);
+        assertEquals(6.0, bounds.getMaxZ(), 0.0);
+
+        // overwriting a point can shrink the bounds
+        shape.setPoint(1, 0.0, 0.0, 0.0);
+        bounds = shape.getBounds();
+        assertEquals(0.0, bounds.getMinX(), 0.0);
+        assertEquals(3.0, bounds.getMaxZ(), 0.0);
+    }
+
+    @Test
+    public void testVersion() {
+        PointCloud shape = new PointCloud();
+        long version = shape.getGeometryVersion();
+        shape.addPoint(0.0, 0.0, 0.0);
+        assertTrue(shape.getGeometryVersion() > version);
+        version = shape.getGeometryVersion();
+        shape.setPointColor(0, 0);
+        assertTrue(shape.getGeometryVersion() > version);
+        version = shape.getGeometryVersion();
+        shape.setPointStyle(Color.RED.copy(), 2.0F, false);
+        assertTrue(shape.getGeometryVersion() > version);
+        version = shape.getGeometryVersion();
+        shape.getPointStyle().setMainSize(4.0F);
+        assertTrue(shape.getGeometryVersion() > version);
+        assertEquals(shape.getGeometryVersion(), shape.getGeometryVersion());
+    }
+
+    @Test
+    public void testRender() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        PointCloud shape = new PointCloud();
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+
+        for (int i = 0; i < 10; i++) {
+            shape.addPoint(i, 0.0, 0.0);
+        }
+        // the default point style is visible through terrain
+        shape.render(mc);
+        mc.assertCountsEqual(1, 10, true);
+        assertEquals(0, mc.getCountSetColor());
+
+        shape.setPointStyle(new PointStyle(Color.RED.copy(), 2.0F, false));
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 10, false);
+
+        // split to fit the Tessellator
+        mc.setTessellatorCapacity(4);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(3, 10, false);
+
+        shape.setPointColor(5, 0xff0000ff);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(3, 10, false);
+        assertEquals(10, mc.getCountSetColor());
+    }
+
+    @Test
+    public void testRenderColors() {
+        final ArrayList<String> colors = new ArrayList<String>();
+        MockMinecraftAccess mc = new MockMinecraftAccess() {
+            @Override
+            public MinecraftAccess setColor(float red, float green, float blue, float alpha) {
+                colors.add(red + "," + green + "," + blue + "," + alpha);
+                return super.setColor(red, green, blue, alpha);
+            }
+        };
+        PointCloud shape = new PointCloud();
+        shape.setPointStyle(Color.RED.copy(), 2.0F, true);
+        shape.addPoint(0.0, 0.0, 0.0, 0xff0000ff);
+        shape.addPoint(1.0, 0.0, 0.0);
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+        // the secondary pass reduces each point's alpha
+        assertEquals("[1.0,0.0,0.0,1.0, 1.0,1.0,1.0,1.0, 1.0,0.0,0.0,0.25, 1.0,1.0,1.0,0.25]",
+                colors.toString());
+    }
+}
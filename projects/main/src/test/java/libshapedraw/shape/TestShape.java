@@ -2,13 +2,23 @@ package libshapedraw.shape;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+
 import libshapedraw.LibShapeDraw;
 import libshapedraw.MockMinecraftAccess;
 import libshapedraw.SetupTestEnvironment;
 import libshapedraw.primitive.Axis;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.ReadonlyVector3;
+import libshapedraw.primitive.Vector3;
 import libshapedraw.transform.ShapeRotate;
 import libshapedraw.transform.ShapeScale;
+import libshapedraw.transform.ShapeTransform;
 import libshapedraw.transform.ShapeTranslate;
 
 import org.junit.Test;
@@ -154,4 +164,189 @@ public class TestShape extends SetupTestEnvironment.TestCase {
         box.setVisible(true);
         assertEquals(prefix+"{VT}(15.0,76.25,-200.5)", box.toString());
     }
+
+    @Test
+    public void testBounds() {
+        // unknown bounds
+        assertNull(new MockShape().getBounds());
+
+        WireframeCuboid cuboid = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0);
+        assertEquals(new BoundingBox(1.0,2.0,3.0, 4.0,5.0,6.0), cuboid.getBounds());
+
+        // scaled and rotated around the origin (2.5,3.5,4.5)
+        cuboid.addTransform(new ShapeScale(2.0, 1.0, 1.0));
+        assertEquals(new BoundingBox(-0.5,2.0,3.0, 5.5,5.0,6.0), cuboid.getBounds());
+        cuboid.addTransform(new ShapeRotate(90.0, Axis.Y));
+        assertTrue(cuboid.getBounds().contains(2.5, 3.5, 4.5));
+        assertEquals(6.0, cuboid.getBounds().getMaxX() - cuboid.getBounds().getMinX(), 0.0001);
+        assertEquals(3.0, cuboid.getBounds().getMaxZ() - cuboid.getBounds().getMinZ(), 0.0001);
+        cuboid.clearTransforms();
+        cuboid.addTransform(new ShapeTranslate(0.0, 10.0, 0.0));
+        assertEquals(new BoundingBox(1.0,12.0,3.0, 4.0,15.0,6.0), cuboid.getBounds());
+
+        // custom transforms make the bounds unknown
+        cuboid.addTransform(new ShapeTransform() {
+            @Override
+            public void preRender() {
+                // do nothing
+            }
+        });
+        assertNull(cuboid.getBounds());
+
+        // relative to origin
+        GLUSphere sphere = new GLUSphere(new Vector3(10.0, 20.0, 30.0), Color.RED.copy(), null, 2.0F);
+        assertEquals(new BoundingBox(8.0,18.0,28.0, 12.0,22.0,32.0), sphere.getBounds());
+        sphere.addTransform(new ShapeScale(3.0));
+        assertEquals(new BoundingBox(4.0,14.0,24.0, 16.0,26.0,36.0), sphere.getBounds());
+
+        // lines honor the render cap
+        ArrayList<ReadonlyVector3> points = new ArrayList<ReadonlyVector3>();
+        points.add(new Vector3(0.0, 0.0, 0.0));
+        points.add(new Vector3(1.0, 1.0, 1.0));
+        points.add(new Vector3(5.0, 5.0, 5.0));
+        WireframeLines lines = new WireframeLines(points);
+        assertEquals(new BoundingBox(0.0,0.0,0.0, 5.0,5.0,5.0), lines.getBounds());
+        lines.setRenderCap(1);
+        assertEquals(new BoundingBox(0.0,0.0,0.0, 1.0,1.0,1.0), lines.getBounds());
+        lines.setRenderCap(0);
+        assertTrue(lines.getBounds().isEmpty());
+    }
+
+    @Test
+    public void testBoundsCached() {
+        final int[] countCompute = new int[1];
+        WireframeCuboid cuboid = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0) {
+            @Override
+            protected boolean computeShapeBounds(BoundingBox result) {
+                countCompute[0]++;
+                return super.computeShapeBounds(result);
+            }
+        };
+        assertEquals(new BoundingBox(1.0,2.0,3.0, 4.0,5.0,6.0), cuboid.getBounds());
+        cuboid.getBounds();
+        assertEquals(1, countCompute[0]);
+
+        // any change to the geometry version recomputes them
+        cuboid.getUpperCorner().setX(7.0);
+        assertEquals(new BoundingBox(1.0,2.0,3.0, 7.0,5.0,6.0), cuboid.getBounds());
+        assertEquals(2, countCompute[0]);
+        ShapeTranslate translate = new ShapeTranslate(0.0, 10.0, 0.0);
+        cuboid.addTransform(translate);
+        assertEquals(new BoundingBox(1.0,12.0,3.0, 7.0,15.0,6.0), cuboid.getBounds());
+        translate.getTranslateXYZ().setY(20.0);
+        assertEquals(new BoundingBox(1.0,22.0,3.0, 7.0,25.0,6.0), cuboid.getBounds());
+        cuboid.getBounds();
+        assertEquals(4, countCompute[0]);
+
+        // unknown versions recompute every time
+        cuboid.addTransform(new ShapeTransform() {
+            @Override
+            public void preRender() {
+                // do nothing
+            }
+        });
+        assertNull(cuboid.getBounds());
+        assertNull(cuboid.getBounds());
+        assertEquals(6, countCompute[0]);
+    }
+
+    @Test
+    public void testRenderDistance() {
+        WireframeCuboid cuboid = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0);
+        assertEquals(Double.POSITIVE_INFINITY, cuboid.getMaxRenderDistance(), 0.0);
+        assertEquals(10.0, cuboid.setMaxRenderDistance(10.0).getMaxRenderDistance(), 0.0);
+        assertEquals(0.0, cuboid.getRenderDistance(), 0.0);
+        try {
+            cuboid.setMaxRenderDistance(-1.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // level of detail
+        GLUSphere sphere = new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 2.0F);
+        assertEquals(0.0, sphere.getDetailDistance(), 0.0);
+        sphere.setRenderDistance(1000.0);
+        assertEquals(24, sphere.getDetail(24));
+        sphere.setDetailDistance(25.0);
+        sphere.setRenderDistance(25.0);
+        assertEquals(24, sphere.getDetail(24));
+        sphere.setRenderDistance(26.0);
+        assertEquals(12, sphere.getDetail(24));
+        sphere.setRenderDistance(51.0);
+        assertEquals(6, sphere.getDetail(24));
+        sphere.setRenderDistance(200.0);
+        assertEquals(4, sphere.getDetail(24));
+        assertEquals(3, sphere.getDetail(3));
+    }
+
+    @Test
+    public void testGeometryVersion() {
+        // unknown: every call returns a new number
+        MockShape mock = new MockShape();
+        long version = mock.getGeometryVersion();
+        assertTrue(mock.getGeometryVersion() > version);
+
+        WireframeCuboid cuboid = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0);
+        version = cuboid.getGeometryVersion();
+        cuboid.getBounds();
+        cuboid.getOriginReadonly();
+        assertEquals(version, cuboid.getGeometryVersion());
+
+        cuboid.getUpperCorner().setY(10.0);
+        assertTrue(cuboid.getGeometryVersion() > version);
+        version = cuboid.getGeometryVersion();
+        cuboid.setLowerCorner(new Vector3(0.0, 0.0, 0.0));
+        assertTrue(cuboid.getGeometryVersion() > version);
+        version = cuboid.getGeometryVersion();
+        cuboid.setLineStyle(Color.BLUE.copy(), 2.0F, false);
+        assertTrue(cuboid.getGeometryVersion() > version);
+        version = cuboid.getGeometryVersion();
+        cuboid.getLineStyle().setMainWidth(4.0F);
+        assertTrue(cuboid.getGeometryVersion() > version);
+
+        // built-in transforms are tracked
+        ShapeRotate rotate = new ShapeRotate(0.0, Axis.Z);
+        version = cuboid.getGeometryVersion();
+        cuboid.addTransform(rotate);
+        assertTrue(cuboid.getGeometryVersion() > version);
+        version = cuboid.getGeometryVersion();
+        assertEquals(version, cuboid.getGeometryVersion());
+        rotate.setAngle(45.0);
+        assertTrue(cuboid.getGeometryVersion() > version);
+        rotate.setAngle(90.0);
+        rotate.setAngle(135.0);
+        version = cuboid.getGeometryVersion();
+        cuboid.removeTransform(rotate);
+        assertTrue(cuboid.getGeometryVersion() > version);
+
+        // custom transforms are not, but the version never goes down
+        ShapeTransform custom = new ShapeTransform() {
+            @Override
+            public void preRender() {
+                // do nothing
+            }
+        };
+        cuboid.addTransform(custom);
+        version = cuboid.getGeometryVersion();
+        assertTrue(cuboid.getGeometryVersion() > version);
+        version = cuboid.getGeometryVersion();
+        cuboid.clearTransforms();
+        assertTrue(cuboid.getGeometryVersion() > version);
+        version = cuboid.getGeometryVersion();
+        assertEquals(version, cuboid.getGeometryVersion());
+
+        // GLU shapes track their dimensions and quadric settings
+        GLUSphere sphere = new GLUSphere(Vector3.ZEROS.copy(), Color.RED.copy(), null, 2.0F);
+        version = sphere.getGeometryVersion();
+        assertEquals(version, sphere.getGeometryVersion());
+        sphere.setRadius(3.0F);
+        assertTrue(sphere.getGeometryVersion() > version);
+        version = sphere.getGeometryVersion();
+        sphere.setWireframe(!sphere.isWireframe());
+        assertTrue(sphere.getGeometryVersion() > version);
+        version = sphere.getGeometryVersion();
+        sphere.getOrigin().setZ(5.0);
+        assertTrue(sphere.getGeometryVersion() > version);
+    }
 }
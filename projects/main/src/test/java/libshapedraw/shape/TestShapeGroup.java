@@ -0,0 +1,202 @@
+package libshapedraw.shape;
+
+import static org.junit.Assert.*;
+import libshapedraw.LibShapeDraw;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.Vector3;
+import libshapedraw.transform.ShapeScale;
+import libshapedraw.transform.ShapeTranslate;
+
+import org.junit.Test;
+
+public class TestShapeGroup extends SetupTestEnvironment.TestCase {
+    @Test
+    public void testAddRemove() {
+        ShapeGroup group = new ShapeGroup();
+        WireframeCuboid a = new WireframeCuboid(0,0,0, 1,1,1);
+        WireframeCuboid b = new WireframeCuboid(2,2,2, 3,3,3);
+        assertSame(group, group.addChild(a));
+        group.addChild(b);
+        assertEquals(2, group.getChildCount());
+        assertSame(a, group.getChildren().get(0));
+        assertTrue(group.isAncestorOf(b));
+
+        group.removeChild(a);
+        group.removeChild(a);
+        assertEquals(1, group.getChildCount());
+        assertSame(b, group.getChildren().get(0));
+
+        group.clearChildren();
+        assertEquals(0, group.getChildCount());
+        assertFalse(group.isAncestorOf(b));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testChildrenReadonly() {
+        new ShapeGroup().getChildren().add(new MockShape());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddNull() {
+        new ShapeGroup().addChild(null);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddSelf() {
+        ShapeGroup group = new ShapeGroup();
+        group.addChild(group);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddCycle() {
+        ShapeGroup outer = new ShapeGroup();
+        ShapeGroup inner = new ShapeGroup();
+        outer.addChild(inner);
+        inner.addChild(new ShapeGroup().addChild(outer));
+    }
+
+    @Test
+    public void testBounds() {
+        ShapeGroup group = new ShapeGroup();
+        assertNotNull(group.getBounds());
+        assertTrue(group.getBounds().isEmpty());
+
+        WireframeCuboid a = new WireframeCuboid(0,0,0, 1,1,1);
+        WireframeCuboid b = new WireframeCuboid(2,2,2, 3,3,3);
+        group.addChild(a).addChild(b);
+        assertBoundsEqual(group.getBounds(), 0, 0, 0, 3, 3, 3);
+
+        // hidden children still count
+        b.setVisible(false);
+        assertBoundsEqual(group.getBounds(), 0, 0, 0, 3, 3, 3);
+
+        // modified children are noticed
+        a.getLowerCorner().setX(-1.0);
+        assertBoundsEqual(group.getBounds(), -1, 0, 0, 3, 3, 3);
+        group.removeChild(b);
+        assertBoundsEqual(group.getBounds(), -1, 0, 0, 1, 1, 1);
+
+        // children are relative to the group's origin
+        group.getOrigin().set(10.0, 0.0, 0.0);
+        assertBoundsEqual(group.getBounds(), 9, 0, 0, 11, 1, 1);
+
+        // the group's transforms apply to all children
+        group.addTransform(new ShapeScale(2.0, 1.0, 1.0));
+        assertBoundsEqual(group.getBounds(), 8, 0, 0, 12, 1, 1);
+        group.addTransform(new ShapeTranslate(0.0, 5.0, 0.0));
+        assertBoundsEqual(group.getBounds(), 8, 5, 0, 12, 6, 1);
+
+        // unknown bounds
+        group.addChild(new MockShape());
+        assertNull(group.getBounds());
+    }
+
+    private static void assertBoundsEqual(ReadonlyBoundingBox bounds,
+            double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        assertEquals(minX, bounds.getMinX(), 0.0);
+        assertEquals(minY, bounds.getMinY(), 0.0);
+        assertEquals(minZ, bounds.getMinZ(), 0.0);
+        assertEquals(maxX, bounds.getMaxX(), 0.0);
+        assertEquals(maxY, bounds.getMaxY(), 0.0);
+        assertEquals(maxZ, bounds.getMaxZ(), 0.0);
+    }
+
+    @Test
+    public void testVersion() {
+        ShapeGroup group = new ShapeGroup();
+        WireframeCuboid a = new WireframeCuboid(0,0,0, 1,1,1);
+        long version = group.getGeometryVersion();
+        group.addChild(a);
+        assertTrue(group.getGeometryVersion() > version);
+        version = group.getGeometryVersion();
+        assertEquals(version, group.getGeometryVersion());
+        a.getUpperCorner().setZ(5.0);
+        assertTrue(group.getGeometryVersion() > version);
+        version = group.getGeometryVersion();
+        group.getOrigin().setY(1.0);
+        assertTrue(group.getGeometryVersion() > version);
+        version = group.getGeometryVersion();
+        group.removeChild(a);
+        assertTrue(group.getGeometryVersion() > version);
+    }
+
+    @Test
+    public void testRender() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        ShapeGroup group = new ShapeGroup(new Vector3(5.0, 5.0, 5.0));
+        group.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+
+        MockShape mock = new MockShape();
+        group.addChild(new WireframeCuboid(0,0,0, 1,1,1));
+        group.addChild(new WireframeCuboid(2,2,2, 3,3,3));
+        group.addChild(mock);
+        group.setRenderDistance(42.0);
+        // each cuboid draws both passes; the mock draws one line
+        group.render(mc);
+        mc.assertCountsEqual(2*3*2 + 1, 2*16*2 + 2, false);
+        assertEquals(1, mock.getCountRender());
+        assertEquals(42.0, mock.getRenderDistance(), 0.0);
+
+        // split passes, as the controller does
+        mc.reset();
+        group.renderMainPass(mc);
+        group.renderSecondaryPass(mc);
+        mc.assertCountsEqual(2*3*2 + 1, 2*16*2 + 2, false);
+        assertEquals(2, mock.getCountRender());
+
+        // hidden as a unit
+        group.setVisible(false);
+        mc.reset();
+        group.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+        group.setVisible(true);
+
+        // hidden individually
+        mock.setVisible(false);
+        mc.reset();
+        group.render(mc);
+        mc.assertCountsEqual(3*2, 16*2, true);
+    }
+
+    @Test
+    public void testNested() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        ShapeGroup inner = new ShapeGroup(new Vector3(1.0, 0.0, 0.0));
+        inner.addChild(new WireframeCuboid(0,0,0, 1,1,1));
+        ShapeGroup outer = new ShapeGroup(new Vector3(10.0, 0.0, 0.0));
+        outer.addChild(inner);
+        assertTrue(outer.isAncestorOf(inner.getChildren().get(0)));
+        assertBoundsEqual(outer.getBounds(), 11, 0, 0, 12, 1, 1);
+        outer.render(mc);
+        mc.assertCountsEqual(3, 16, true);
+    }
+
+    @Test
+    public void testOnAddAndOnRemove() {
+        LibShapeDraw api = new LibShapeDraw();
+        ShapeGroup group = new ShapeGroup();
+        MockShape a = new MockShape();
+        MockShape b = new MockShape();
+        group.addChild(a);
+        a.assertAddRemoveCounts(0, 0);
+
+        api.addShape(group);
+        a.assertAddRemoveCounts(1, 0);
+
+        // children added and removed later are told about the API instance
+        group.addChild(b);
+        b.assertAddRemoveCounts(1, 0);
+        group.removeChild(a);
+        a.assertAddRemoveCounts(1, 1);
+
+        api.removeShape(group);
+        a.assertAddRemoveCounts(1, 1);
+        b.assertAddRemoveCounts(1, 1);
+
+        group.clearChildren();
+        b.assertAddRemoveCounts(1, 1);
+    }
+}
@@ -0,0 +1,183 @@
+package libshapedraw.shape;
+
+import static org.junit.Assert.*;
+
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.internal.LSDElementBackend;
+import libshapedraw.internal.LSDIndexedMesh;
+import libshapedraw.internal.MockElementBackend;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.ReadonlyBoundingBox;
+import libshapedraw.primitive.Vector3;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTriangleMesh extends SetupTestEnvironment.TestCase {
+    private static final double[] QUAD = {
+        0.0, 0.0, 0.0,  1.0, 0.0, 0.0,  1.0, 0.0, 1.0,
+        0.0, 0.0, 0.0,  1.0, 0.0, 1.0,  0.0, 0.0, 1.0,
+    };
+
+    private LSDElementBackend prevBackend;
+    private MockElementBackend backend;
+
+    @Before
+    public void installMockBackend() {
+        prevBackend = LSDIndexedMesh.getBackend();
+        backend = new MockElementBackend();
+        LSDIndexedMesh.setBackend(backend);
+    }
+
+    @After
+    public void restoreBackend() {
+        LSDIndexedMesh.setBackend(prevBackend);
+    }
+
+    private static TriangleMesh newMesh() {
+        return new TriangleMesh(Color.RED.copy(), Color.BLUE.copy());
+    }
+
+    @Test
+    public void testWelding() {
+        TriangleMesh shape = newMesh();
+        shape.addTriangles(QUAD, 0, 2);
+        assertEquals(4, shape.getVertexCount());
+        assertEquals(2, shape.getTriangleCount());
+        assertEquals(shape.getTriangleVertex(0, 0), shape.getTriangleVertex(1, 0));
+        assertEquals(shape.getTriangleVertex(0, 2), shape.getTriangleVertex(1, 1));
+        assertEquals("(0.0,0.0,1.0)", shape.getVertex(3, new Vector3()).toString());
+
+        // -0.0 is the same position as 0.0
+        assertEquals(0, shape.addVertex(-0.0, 0.0, -0.0));
+        assertEquals(1, shape.addVertex(new Vector3(1.0, 0.0, 0.0)));
+        assertEquals(4, shape.addVertex(1.0, 0.0, 0.001));
+        assertEquals(5, shape.getVertexCount());
+
+        // moving a vertex re-keys it
+        shape.setVertex(4, 2.0, 2.0, 2.0);
+        assertEquals(4, shape.addVertex(2.0, 2.0, 2.0));
+        assertEquals(5, shape.addVertex(1.0, 0.0, 0.001));
+
+        shape.clear();
+        assertEquals(0, shape.getVertexCount());
+        assertEquals(0, shape.getTriangleCount());
+        assertEquals(0, shape.addVertex(1.0, 0.0, 0.001));
+    }
+
+    @Test
+    public void testWeldTolerance() {
+        TriangleMesh shape = newMesh();
+        assertEquals(0.0, shape.getWeldTolerance(), 0.0);
+        shape.setWeldTolerance(0.01);
+        assertEquals(0, shape.addVertex(1.0, 2.0, 3.0));
+        assertEquals(0, shape.addVertex(1.001, 2.002, 2.999));
+        assertEquals(1, shape.addVertex(1.1, 2.0, 3.0));
+        shape.setWeldTolerance(0.0);
+        assertEquals(2, shape.addVertex(1.001, 2.002, 2.999));
+        assertEquals(0, shape.addVertex(1.0, 2.0, 3.0));
+
+        // grow well past the initial capacity
+        for (int i = 0; i < 1000; i++) {
+            shape.addTriangle(shape.addVertex(i, 0.0, 0.0), shape.addVertex(i, 1.0, 0.0), shape.addVertex(i + 1, 0.0, 0.0));
+        }
+        assertEquals(1000, shape.getTriangleCount());
+        assertEquals(3 + 2*1000 + 1, shape.getVertexCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidWeldTolerance() {
+        newMesh().setWeldTolerance(-0.1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidTriangle() {
+        TriangleMesh shape = newMesh();
+        shape.addVertex(0.0, 0.0, 0.0);
+        shape.addVertex(1.0, 0.0, 0.0);
+        shape.addTriangle(0, 1, 2);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidVertex() {
+        newMesh().setVertex(0, 0.0, 0.0, 0.0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddTrianglesInvalidRange() {
+        newMesh().addTriangles(QUAD, 1, 2);
+    }
+
+    @Test
+    public void testBoundsAndVersion() {
+        TriangleMesh shape = newMesh();
+        long version = shape.getGeometryVersion();
+        shape.addTriangles(QUAD, 0, 2);
+        assertTrue(shape.getGeometryVersion() > version);
+        ReadonlyBoundingBox bounds = shape.getBounds();
+        assertEquals(1.0, bounds.getMaxX(), 0.0);
+        assertEquals(1.0, bounds.getMaxZ(), 0.0);
+
+        version = shape.getGeometryVersion();
+        shape.setVertex(2, 5.0, 0.0, 1.0);
+        assertTrue(shape.getGeometryVersion() > version);
+        assertEquals(5.0, shape.getBounds().getMaxX(), 0.0);
+
+        version = shape.getGeometryVersion();
+        shape.getLineStyle().getMainColor().setAlpha(0.5);
+        assertTrue(shape.getGeometryVersion() > version);
+        assertEquals(shape.getGeometryVersion(), shape.getGeometryVersion());
+    }
+
+    @Test
+    public void testRenderIndexed() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        TriangleMesh shape = newMesh();
+        shape.render(mc);
+        assertEquals(0, backend.getCountDraw());
+
+        shape.addTriangles(QUAD, 0, 2);
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+        // main and secondary pass
+        assertEquals(2, backend.getCountDraw());
+        assertEquals(4, backend.getLastVertexCount());
+        assertEquals(6, backend.getLastIndexCount());
+
+        shape.getLineStyle().setSecondaryColor(null);
+        shape.addTriangle(0, 2, 3);
+        shape.render(mc);
+        assertEquals(3, backend.getCountDraw());
+        assertEquals(9, backend.getLastIndexCount());
+    }
+
+    @Test
+    public void testRenderTessellated() {
+        backend.setSupported(false);
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        TriangleMesh shape = newMesh();
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+
+        shape.addTriangles(QUAD, 0, 2);
+        shape.render(mc);
+        mc.assertCountsEqual(1, 6, true);
+
+        shape.getLineStyle().setSecondaryColor(null);
+        for (int i = 0; i < 300; i++) {
+            shape.addTriangle(0, 1, 2);
+        }
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 906, false);
+
+        // split to fit the Tessellator, never mid-triangle
+        mc.setTessellatorCapacity(100);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(10, 906, false);
+        assertEquals(0, backend.getCountDraw());
+    }
+}
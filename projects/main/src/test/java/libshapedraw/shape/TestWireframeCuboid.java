@@ -1,12 +1,24 @@
 package libshapedraw.shape;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import libshapedraw.MinecraftAccess;
 import libshapedraw.MockMinecraftAccess;
 import libshapedraw.SetupTestEnvironment;
+import libshapedraw.internal.LSDWorkerPool;
+import libshapedraw.internal.MockExecutorService;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.LineStyle;
 import libshapedraw.primitive.Vector3;
@@ -140,4 +152,154 @@ public class TestWireframeCuboid extends SetupTestEnvironment.TestCase {
             mc.assertCountsEqual(12, 64, twice);
         }
     }
+
+    @Test
+    public void testVertexCache() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeCuboid shape = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0);
+        shape.setVertexCacheEnabled(true);
+        shape.render(mc);
+        mc.assertCountsEqual(3, 16, true);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(3, 16, true);
+
+        // moving a corner is detected automatically
+        assertFalse(shape.isVertexCacheStale());
+        shape.getUpperCorner().setX(10.0);
+        assertTrue(shape.isVertexCacheStale());
+        assertFalse(shape.isVertexCacheStale());
+        shape.getLowerCorner().setX(20.0); // swapped by normalize
+        assertTrue(shape.isVertexCacheStale());
+        assertEquals(10.0, shape.getLowerCorner().getX(), 0.0);
+    }
+
+    @Test
+    public void testVertexCacheBuild() {
+        final int[] countRenderLines = new int[1];
+        WireframeCuboid shape = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0) {
+            @Override
+            protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
+                countRenderLines[0]++;
+                super.renderLines(mc, isSecondary);
+            }
+        };
+        ExecutorService prevExecutor = LSDWorkerPool.getExecutor();
+        MockExecutorService executor = new MockExecutorService();
+        LSDWorkerPool.setExecutor(executor);
+        try {
+            MockMinecraftAccess mc = new MockMinecraftAccess();
+            assertFalse(shape.startVertexCacheBuild(mc));
+            shape.setVertexCacheEnabled(true);
+
+            // built by a worker, replayed by the render
+            assertTrue(shape.startVertexCacheBuild(mc));
+            assertFalse(shape.startVertexCacheBuild(mc));
+            executor.runAll();
+            assertEquals(1, countRenderLines[0]);
+            shape.render(mc);
+            mc.assertCountsEqual(3, 16, true);
+            assertEquals(1, countRenderLines[0]);
+            assertFalse(shape.startVertexCacheBuild(mc));
+
+            // still queued at render time: built by the render instead
+            shape.getUpperCorner().setX(10.0);
+            assertTrue(shape.startVertexCacheBuild(mc));
+            mc.reset();
+            shape.render(mc);
+            mc.assertCountsEqual(3, 16, true);
+            assertEquals(2, countRenderLines[0]);
+            executor.runAll();
+            assertEquals(2, countRenderLines[0]);
+
+            // changed after the build started
+            shape.getUpperCorner().setX(20.0);
+            assertTrue(shape.startVertexCacheBuild(mc));
+            executor.runAll();
+            shape.getUpperCorner().setX(30.0);
+            shape.render(mc);
+            assertEquals(4, countRenderLines[0]);
+
+            // invalidated while queued
+            shape.invalidateVertexCache();
+            assertTrue(shape.startVertexCacheBuild(mc));
+            shape.invalidateVertexCache();
+            executor.runAll();
+            assertEquals(4, countRenderLines[0]);
+            shape.render(mc);
+            assertEquals(5, countRenderLines[0]);
+        } finally {
+            LSDWorkerPool.setExecutor(prevExecutor);
+        }
+    }
+
+    @Test
+    public void testVertexCacheBuildRunning() throws InterruptedException {
+        final CountDownLatch[] started = {new CountDownLatch(1), new CountDownLatch(1)};
+        final CountDownLatch[] release = {new CountDownLatch(1), new CountDownLatch(1)};
+        final AtomicInteger countRenderLines = new AtomicInteger();
+        final Thread renderThread = Thread.currentThread();
+        WireframeCuboid shape = new WireframeCuboid(1.0,2.0,3.0, 4.0,5.0,6.0) {
+            @Override
+            protected void renderLines(MinecraftAccess mc, boolean isSecondary) {
+                countRenderLines.incrementAndGet();
+                if (Thread.currentThread() != renderThread) {
+                    final int round = started[0].getCount() == 0 ? 1 : 0;
+                    started[round].countDown();
+                    try {
+                        release[round].await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                super.renderLines(mc, isSecondary);
+            }
+        };
+        shape.setVertexCacheEnabled(true);
+        ExecutorService prevExecutor = LSDWorkerPool.getExecutor();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LSDWorkerPool.setExecutor(executor);
+        try {
+            MockMinecraftAccess mc = new MockMinecraftAccess();
+            for (int i = 0; i < 2; i++) {
+                final CountDownLatch roundRelease = release[i];
+                shape.invalidateVertexCache();
+                assertTrue(shape.startVertexCacheBuild(mc));
+                assertTrue(started[i].await(10, TimeUnit.SECONDS));
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            // release right away
+                        }
+                        roundRelease.countDown();
+                    }
+                }.start();
+                if (i == 0) {
+                    // already running at render time: waited for, not rebuilt
+                    shape.render(mc);
+                    mc.assertCountsEqual(3, 16, true);
+                    assertEquals(1, countRenderLines.get());
+                } else {
+                    // invalidated while running: waited for, then rebuilt
+                    shape.invalidateVertexCache();
+                    assertEquals(2, countRenderLines.get());
+                    mc.reset();
+                    shape.render(mc);
+                    mc.assertCountsEqual(3, 16, true);
+                    assertEquals(3, countRenderLines.get());
+                }
+            }
+        } finally {
+            LSDWorkerPool.setExecutor(prevExecutor);
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testWorkerPoolInvalidExecutor() {
+        LSDWorkerPool.setExecutor(null);
+    }
 }
@@ -0,0 +1,164 @@
+package libshapedraw.shape;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.LineStyle;
+import libshapedraw.primitive.Vector3;
+
+import org.junit.Test;
+
+public class TestWireframeCuboidBatch extends SetupTestEnvironment.TestCase {
+    @Test
+    public void testAddRemove() {
+        WireframeCuboidBatch shape = new WireframeCuboidBatch();
+        assertEquals(0, shape.getBoxCount());
+        assertFalse(shape.containsBox(0));
+
+        int a = shape.addBox(1.0,2.0,3.0, 4.0,5.0,6.0);
+        int b = shape.addBox(new Vector3(0.0,0.0,0.0), new Vector3(-1.0,-1.0,-1.0));
+        assertEquals(0, a);
+        assertEquals(1, b);
+        assertEquals(2, shape.getBoxCount());
+        assertTrue(shape.containsBox(a));
+        assertTrue(shape.containsBox(b));
+        assertEquals(new BoundingBox(1.0,2.0,3.0, 4.0,5.0,6.0), shape.getBox(a, new BoundingBox()));
+        // auto-normalized
+        assertEquals(new BoundingBox(-1.0,-1.0,-1.0, 0.0,0.0,0.0), shape.getBox(b, new BoundingBox()));
+        assertEquals(new BoundingBox(-1.0,-1.0,-1.0, 4.0,5.0,6.0), shape.getBounds());
+
+        shape.setBox(b, 10.0,10.0,10.0, 11.0,11.0,11.0);
+        assertEquals(new BoundingBox(1.0,2.0,3.0, 11.0,11.0,11.0), shape.getBounds());
+
+        shape.removeBox(a);
+        assertFalse(shape.containsBox(a));
+        assertEquals(1, shape.getBoxCount());
+        assertEquals(new BoundingBox(10.0,10.0,10.0, 11.0,11.0,11.0), shape.getBounds());
+
+        // removed indexes are reused
+        assertEquals(a, shape.addBox(0.0,0.0,0.0, 1.0,1.0,1.0));
+        assertEquals(2, shape.addBox(0.0,0.0,0.0, 1.0,1.0,1.0));
+
+        // grows as needed
+        for (int i = 0; i < 100; i++) {
+            assertEquals(3 + i, shape.addBox(i,i,i, i+1,i+1,i+1));
+        }
+        assertEquals(103, shape.getBoxCount());
+        assertEquals(new BoundingBox(50.0,50.0,50.0, 51.0,51.0,51.0), shape.getBox(53, new BoundingBox()));
+
+        shape.clearBoxes();
+        assertEquals(0, shape.getBoxCount());
+        assertFalse(shape.containsBox(a));
+        assertTrue(shape.getBounds().isEmpty());
+        assertEquals(0, shape.addBox(0.0,0.0,0.0, 1.0,1.0,1.0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetInvalidIndex() {
+        new WireframeCuboidBatch().setBox(0, 0.0,0.0,0.0, 1.0,1.0,1.0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testRemoveInvalidRemoved() {
+        WireframeCuboidBatch shape = new WireframeCuboidBatch();
+        int index = shape.addBox(0.0,0.0,0.0, 1.0,1.0,1.0);
+        shape.removeBox(index);
+        shape.removeBox(index);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetInvalidLineStyle() {
+        WireframeCuboidBatch shape = new WireframeCuboidBatch();
+        shape.setBoxLineStyle(shape.addBox(0.0,0.0,0.0, 1.0,1.0,1.0), 1);
+    }
+
+    @Test
+    public void testRender() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeCuboidBatch shape = new WireframeCuboidBatch();
+        shape.setLineStyle(Color.WHITE.copy(), 1.0F, true);
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, true);
+
+        for (int i = 0; i < 1000; i++) {
+            shape.addBox(i,0.0,0.0, i+1,1.0,1.0);
+        }
+        // a single draw per pass for every box
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 24*1000, true);
+
+        // vertex cache detects changes
+        shape.setVertexCacheEnabled(true);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 24*1000, true);
+        shape.removeBox(0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 24*999, true);
+    }
+
+    @Test
+    public void testLineStyles() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeCuboidBatch shape = new WireframeCuboidBatch();
+        shape.setLineStyle(Color.WHITE.copy(), 1.0F, false);
+        int a = shape.addBox(0.0,0.0,0.0, 1.0,1.0,1.0);
+        int b = shape.addBox(1.0,0.0,0.0, 2.0,1.0,1.0);
+        shape.addBox(2.0,0.0,0.0, 3.0,1.0,1.0);
+        assertTrue(shape.isBatchable());
+        assertFalse(shape.isVisibleThroughTerrain());
+
+        LineStyle red = new LineStyle(Color.RED.copy(), 2.0F, true);
+        assertEquals(1, shape.addLineStyle(red));
+        assertEquals(1, shape.getLineStyleCount());
+        assertSame(red, shape.getLineStyle(1));
+        assertSame(shape.getLineStyle(), shape.getLineStyle(0));
+        assertFalse(shape.isBatchable());
+        assertEquals(0, shape.getBoxLineStyle(a));
+
+        long version = shape.getGeometryVersion();
+        shape.setBoxLineStyle(a, 1);
+        shape.setBoxLineStyle(b, 1);
+        assertTrue(shape.getGeometryVersion() > version);
+        assertEquals(1, shape.getBoxLineStyle(a));
+        assertTrue(shape.isVisibleThroughTerrain());
+
+        // one draw for the default style, main pass only; one draw per pass
+        // for the red style
+        shape.render(mc);
+        assertEquals(3, mc.getCountDraw());
+        assertEquals(24 + 2*2*24, mc.getCountVertices());
+
+        // empty styles aren't drawn
+        shape.setBoxLineStyle(a, 0);
+        shape.setBoxLineStyle(b, 0);
+        mc.reset();
+        shape.render(mc);
+        assertEquals(1, mc.getCountDraw());
+        assertEquals(3*24, mc.getCountVertices());
+    }
+
+    @Test
+    public void testTessellatorCapacity() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeCuboidBatch shape = new WireframeCuboidBatch();
+        for (int i = 0; i < 5; i++) {
+            shape.addBox(i, 0.0, 0.0, i + 1.0, 1.0, 1.0);
+        }
+        shape.render(mc);
+        mc.assertCountsEqual(1, 5*24, true);
+
+        // two boxes per session
+        mc.setTessellatorCapacity(50);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(3, 5*24, true);
+    }
+}
@@ -3,11 +3,18 @@ package libshapedraw.shape;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import libshapedraw.MinecraftAccess;
 import libshapedraw.MockMinecraftAccess;
 import libshapedraw.SetupTestEnvironment;
+import libshapedraw.internal.LSDWorkerPool;
+import libshapedraw.primitive.BoundingBox;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.LineStyle;
+import libshapedraw.primitive.PackedVector3List;
 import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.primitive.Vector3;
 
@@ -277,4 +284,346 @@ public class TestWireframeLines extends SetupTestEnvironment.TestCase {
         shape.setLineStyle(Color.WHITE.copy(), 1.0F, true);
         shape.render(new MockMinecraftAccess());
     }
+
+    @Test
+    public void testVertexCache() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        arr.add(new Vector3(1.0, 2.0, 3.0));
+        arr.add(new Vector3(4.0, 5.0, 6.0));
+        WireframeLines shape = new WireframeLines(arr);
+        assertFalse(shape.isVertexCacheEnabled());
+        assertTrue(shape.setVertexCacheEnabled(true).isVertexCacheEnabled());
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+
+        // same draws and vertices as without the cache
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+
+        // modifying the list isn't detected...
+        arr.add(new Vector3(7.0, 8.0, 9.0));
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+
+        // ...until invalidated
+        shape.invalidateVertexCache();
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 3, true);
+
+        // the render cap and iterable are checked automatically
+        shape.setRenderCap(1);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+        shape.setRenderCap(0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+        shape.setRenderCap(-1);
+        shape.setPoints(new ArrayList<ReadonlyVector3>(arr.subList(1, 3)));
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+
+        shape.setVertexCacheEnabled(false);
+        shape.setPoints(arr);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 3, true);
+    }
+
+    @Test
+    public void testRenderBulk() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        for (int i = 0; i < 1000; i++) {
+            arr.add(new Vector3(i, 0.0, 0.0));
+        }
+        WireframeLines shape = new WireframeLines(arr);
+        shape.setLineStyle(Color.WHITE.copy(), 1.0F, false);
+        shape.render(mc);
+        mc.assertCountsEqual(1, 1000, false);
+        // submitted in chunks of 256 points
+        assertEquals(4, mc.getCountAddVertices());
+
+        mc.reset();
+        shape.setRenderCap(256);
+        shape.render(mc);
+        mc.assertCountsEqual(1, 257, false);
+        assertEquals(2, mc.getCountAddVertices());
+    }
+
+    @Test
+    public void testPackedPoints() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        PackedVector3List points = new PackedVector3List();
+        WireframeLines shape = new WireframeLines(points);
+        shape.setLineStyle(Color.WHITE.copy(), 1.0F, false);
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+
+        for (int i = 0; i < 1000; i++) {
+            points.add(i, 0.0, -i);
+        }
+        shape.render(mc);
+        mc.assertCountsEqual(1, 1000, false);
+        // submitted directly, all at once
+        assertEquals(1, mc.getCountAddVertices());
+        assertEquals(new BoundingBox(0.0,0.0,-999.0, 999.0,0.0,0.0), shape.getBounds());
+
+        mc.reset();
+        shape.setRenderCap(10);
+        shape.render(mc);
+        mc.assertCountsEqual(1, 11, false);
+        assertEquals(new BoundingBox(0.0,0.0,-10.0, 10.0,0.0,0.0), shape.getBounds());
+        mc.reset();
+        shape.setRenderCap(0);
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+
+        // changes are tracked
+        shape.setRenderCap(-1);
+        long version = shape.getGeometryVersion();
+        assertEquals(version, shape.getGeometryVersion());
+        points.set(5, 1.0, 1.0, 1.0);
+        assertTrue(shape.getGeometryVersion() > version);
+        shape.setVertexCacheEnabled(true);
+        shape.render(mc);
+        assertFalse(shape.isVertexCacheStale());
+        points.add(0.0, 0.0, 0.0);
+        assertTrue(shape.isVertexCacheStale());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetSimplifyToleranceInvalid() {
+        new WireframeLines(new PackedVector3List()).setSimplifyTolerance(-0.001);
+    }
+
+    @Test
+    public void testSimplify() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        // a straight path with a 0.1 block wiggle
+        PackedVector3List points = new PackedVector3List();
+        for (int i = 0; i < 10000; i++) {
+            points.add(i, 64.0 + (i % 2)*0.1, 0.0);
+        }
+        WireframeLines shape = new WireframeLines(points);
+        shape.setLineStyle(Color.WHITE.copy(), 1.0F, false);
+        assertEquals(0.0, shape.getSimplifyTolerance(), 0.0);
+        shape.setRenderDistance(1000.0);
+        shape.render(mc);
+        mc.assertCountsEqual(1, 10000, false);
+
+        // nearby, the wiggle is still visible
+        shape.setSimplifyTolerance(0.001);
+        shape.setRenderDistance(0.0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 10000, false);
+        shape.setRenderDistance(50.0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 10000, false);
+
+        // far away, it isn't
+        shape.setRenderDistance(200.0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, false);
+
+        // changes to the points are detected: the new point and the corner
+        // before it are kept
+        points.add(10000.0, 100.0, 0.0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 4, false);
+
+        // as are moves between tolerance buckets, for the vertex cache
+        shape.setVertexCacheEnabled(true);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 4, false);
+        shape.setRenderDistance(210.0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 4, false);
+        shape.setRenderDistance(50.0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 10001, false);
+    }
+
+    @Test
+    public void testSimplifyIterable() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        for (int i = 0; i < 100; i++) {
+            arr.add(new Vector3(i, 0.0, 0.0));
+        }
+        WireframeLines shape = new WireframeLines(arr);
+        shape.setSimplifyTolerance(0.001).setRenderDistance(100.0);
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+
+        // modifying the list isn't detected until invalidated
+        arr.add(new Vector3(100.0, 50.0, 0.0));
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 2, true);
+        shape.invalidateVertexCache();
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 3, true);
+
+        // the render cap still applies
+        shape.setRenderCap(0);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(0, 0, false);
+    }
+
+    @Test
+    public void testSecondaryPassReplay() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        final ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        arr.add(new Vector3(1.0, 2.0, 3.0));
+        arr.add(new Vector3(4.0, 5.0, 6.0));
+        arr.add(new Vector3(7.0, 8.0, 9.0));
+        final int[] iterations = new int[1];
+        Iterable<ReadonlyVector3> counted = new Iterable<ReadonlyVector3>() {
+            @Override
+            public Iterator<ReadonlyVector3> iterator() {
+                iterations[0]++;
+                return arr.iterator();
+            }
+        };
+        WireframeLines shape = new WireframeLines(counted);
+        shape.setLineStyle(Color.WHITE.copy(), 1.0F, true);
+        iterations[0] = 0;
+
+        // the secondary pass replays the main pass's vertices
+        shape.render(mc);
+        mc.assertCountsEqual(1, 3, true);
+        assertEquals(1, iterations[0]);
+
+        // ditto when the passes are rendered separately
+        mc.reset();
+        shape.renderMainPass(mc);
+        shape.renderSecondaryPass(mc);
+        mc.assertCountsEqual(1, 3, true);
+        assertEquals(2, iterations[0]);
+
+        // but a secondary pass on its own renders the points again
+        mc.reset();
+        shape.renderSecondaryPass(mc);
+        mc.assertCountsEqual(1, 3, false);
+        assertEquals(3, iterations[0]);
+
+        // no secondary pass, no capture needed
+        shape.getLineStyle().setSecondaryColor(null);
+        mc.reset();
+        shape.render(mc);
+        mc.assertCountsEqual(1, 3, false);
+        assertEquals(4, iterations[0]);
+    }
+
+    @Test
+    public void testTessellatorCapacity() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        mc.setTessellatorCapacity(4);
+        ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        PackedVector3List packed = new PackedVector3List();
+        for (int i = 0; i < 10; i++) {
+            arr.add(new Vector3(i, 0.0, 0.0));
+            packed.add(i, 0.0, 0.0);
+        }
+
+        // split into line strips of 4 vertices, each repeating the previous
+        // strip's last vertex
+        new WireframeLines(arr).render(mc);
+        mc.assertCountsEqual(3, 12, true);
+        mc.reset();
+        new WireframeLines(packed).render(mc);
+        mc.assertCountsEqual(3, 12, true);
+
+        // more points than fit in the chunk buffer
+        arr.clear();
+        for (int i = 0; i < 1000; i++) {
+            arr.add(new Vector3(i, 0.0, 0.0));
+        }
+        mc.setTessellatorCapacity(300);
+        mc.reset();
+        new WireframeLines(arr).render(mc);
+        // 1000 + 3 repeated vertices
+        mc.assertCountsEqual(4, 1003, true);
+    }
+
+    /** Fails if any vertex has an x coordinate other than the expected one. */
+    private static class MockMinecraftAccessCheckX extends MockMinecraftAccess {
+        private final double expectedX;
+        private boolean checked;
+
+        public MockMinecraftAccessCheckX(double expectedX) {
+            this.expectedX = expectedX;
+        }
+
+        @Override
+        public MinecraftAccess addVertex(double x, double y, double z) {
+            if (!checked) {
+                assertEquals(expectedX, x, 0.0);
+            }
+            return super.addVertex(x, y, z);
+        }
+
+        @Override
+        public MinecraftAccess addVertices(double[] xyz, int offset, int count) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(expectedX, xyz[offset + 3*i], 0.0);
+            }
+            // the mock counts each vertex as (0,0,0)
+            checked = true;
+            super.addVertices(xyz, offset, count);
+            checked = false;
+            return this;
+        }
+    }
+
+    @Test
+    public void testVertexCacheBuildConcurrent() {
+        final int shapeCount = 16;
+        final int pointCount = 5000;
+        WireframeLines[] shapes = new WireframeLines[shapeCount];
+        for (int i = 0; i < shapeCount; i++) {
+            ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+            for (int j = 0; j < pointCount; j++) {
+                arr.add(new Vector3(i, j, 0.0));
+            }
+            shapes[i] = new WireframeLines(arr);
+            shapes[i].setVertexCacheEnabled(true);
+        }
+        ExecutorService prevExecutor = LSDWorkerPool.getExecutor();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        LSDWorkerPool.setExecutor(executor);
+        try {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < shapeCount; i++) {
+                    shapes[i].invalidateVertexCache();
+                    assertTrue(shapes[i].startVertexCacheBuild(new MockMinecraftAccessCheckX(i)));
+                }
+                // each cache holds only its own shape's vertices
+                for (int i = 0; i < shapeCount; i++) {
+                    MockMinecraftAccess mc = new MockMinecraftAccessCheckX(i);
+                    shapes[i].render(mc);
+                    assertEquals(2*pointCount, mc.getCountVertices());
+                }
+            }
+        } finally {
+            LSDWorkerPool.setExecutor(prevExecutor);
+            executor.shutdown();
+        }
+    }
 }
@@ -4,10 +4,12 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 
+import libshapedraw.MinecraftAccess;
 import libshapedraw.MockMinecraftAccess;
 import libshapedraw.SetupTestEnvironment;
 import libshapedraw.primitive.Color;
 import libshapedraw.primitive.LineStyle;
+import libshapedraw.primitive.PackedVector3List;
 import libshapedraw.primitive.ReadonlyVector3;
 import libshapedraw.primitive.Vector3;
 
@@ -249,7 +251,8 @@ public class TestWireframeLinesBlend extends SetupTestEnvironment.TestCase {
             shape.render(mc);
             mc.assertCountsEqual(8, 16, seeThru);
     
-            // Eleven points make ten lines
+            // Eleven points make ten lines, drawn as one line strip for each
+            // of the five widths from 1.0 to 5.0
             arr.add(new Vector3(7.0, 15.5, -6.5));
             arr.add(new Vector3(7.0, 12.5, -3.5));
             arr.add(new Vector3(17.0, 12.5, -3.5));
@@ -261,11 +264,12 @@ public class TestWireframeLinesBlend extends SetupTestEnvironment.TestCase {
             assertEquals(11, arr.size());
             mc.reset();
             shape.render(mc);
-            mc.assertCountsEqual(10, 20, seeThru);
+            mc.assertCountsEqual(5, 15, seeThru);
+            assertEquals(mc.getCountVertices(), mc.getCountSetColor());
             shape.render(mc);
             shape.render(mc);
             shape.render(mc);
-            mc.assertCountsEqual(40, 80, seeThru);
+            mc.assertCountsEqual(20, 60, seeThru);
 
             // Add a render cap, we only render that many lines
             shape.setRenderCap(5);
@@ -281,38 +285,43 @@ public class TestWireframeLinesBlend extends SetupTestEnvironment.TestCase {
             shape.setRenderCap(-1);
             mc.reset();
             shape.render(mc);
-            mc.assertCountsEqual(10, 20, seeThru);
+            mc.assertCountsEqual(5, 15, seeThru);
             shape.render(mc);
             shape.render(mc);
             shape.render(mc);
-            mc.assertCountsEqual(40, 80, seeThru);
+            mc.assertCountsEqual(20, 60, seeThru);
 
-            // A render cap that's larger than the number of line segments defined is fine too
+            // A render cap that's larger than the number of line segments
+            // defined is fine too. Every segment rounds to the same width.
             shape.setRenderCap(9001);
             mc.reset();
             shape.render(mc);
-            mc.assertCountsEqual(10, 20, seeThru);
+            mc.assertCountsEqual(1, 11, seeThru);
             shape.render(mc);
             shape.render(mc);
             shape.render(mc);
-            mc.assertCountsEqual(40, 80, seeThru);
+            mc.assertCountsEqual(4, 44, seeThru);
+            shape.setRenderCap(Integer.MAX_VALUE);
+            mc.reset();
+            shape.render(mc);
+            mc.assertCountsEqual(1, 11, seeThru);
 
             shape.setBlendToLineStyle(Color.YELLOW.copy().setAlpha(0.5), 5.0F, false);
             shape.setRenderCap(-1);
             mc.reset();
             shape.render(mc); // secondary deferred to WireframeLines
             if (seeThru) {
-                mc.assertCountsEqual(11, 31, false);
+                mc.assertCountsEqual(6, 26, false);
             } else {
-                mc.assertCountsEqual(10, 20, false);
+                mc.assertCountsEqual(5, 15, false);
             }
             shape.render(mc);
             shape.render(mc);
             shape.render(mc);
             if (seeThru) {
-                mc.assertCountsEqual(44, 124, false);
+                mc.assertCountsEqual(24, 104, false);
             } else {
-                mc.assertCountsEqual(40, 80, false);
+                mc.assertCountsEqual(20, 60, false);
             }
         }
     }
@@ -341,4 +350,78 @@ public class TestWireframeLinesBlend extends SetupTestEnvironment.TestCase {
         shape.setLineStyle(Color.WHITE.copy(), 1.0F, true);
         shape.render(new MockMinecraftAccess());
     }
+
+    @Test
+    public void testPackedPoints() {
+        PackedVector3List points = new PackedVector3List();
+        points.add(0.0, 0.0, 0.0).add(1.0, 0.0, 0.0).add(2.0, 0.0, 0.0);
+        WireframeLinesBlend shape = new WireframeLinesBlend(points);
+        shape.setLineStyle(Color.WHITE.copy(), 1.0F, false);
+        shape.setBlendToLineStyle(Color.BLACK.copy(), 1.0F, false);
+
+        // each segment must connect consecutive points even though the
+        // iterator reuses the same vector
+        final ArrayList<Double> xs = new ArrayList<Double>();
+        MockMinecraftAccess mc = new MockMinecraftAccess() {
+            @Override
+            public MinecraftAccess addVertex(double x, double y, double z) {
+                xs.add(x);
+                return super.addVertex(x, y, z);
+            }
+        };
+        shape.renderLines(mc, false);
+        assertEquals("[0.0, 1.0, 2.0]", xs.toString());
+    }
+
+    @Test
+    public void testBlendColors() {
+        final ArrayList<String> colors = new ArrayList<String>();
+        MockMinecraftAccess mc = new MockMinecraftAccess() {
+            @Override
+            public MinecraftAccess setColor(float red, float green, float blue, float alpha) {
+                colors.add(red + "," + green + "," + blue + "," + alpha);
+                return super.setColor(red, green, blue, alpha);
+            }
+        };
+        ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        for (int i = 0; i < 5; i++) {
+            arr.add(new Vector3(i, 0.0, 0.0));
+        }
+        WireframeLinesBlend shape = new WireframeLinesBlend(arr);
+        shape.setLineStyle(Color.BLACK.copy(), 2.0F, false);
+        LineStyle toStyle = new LineStyle(Color.WHITE.copy(), 2.0F, false);
+        shape.setBlendToLineStyle(toStyle);
+
+        // a single line strip, blending from the first vertex to the last
+        shape.render(mc);
+        mc.assertCountsEqual(1, 5, false);
+        assertEquals("[0.0,0.0,0.0,1.0, 0.25,0.25,0.25,1.0, 0.5,0.5,0.5,1.0, 0.75,0.75,0.75,1.0, 1.0,1.0,1.0,1.0]",
+                colors.toString());
+
+        // changes to the styles are picked up
+        colors.clear();
+        toStyle.getMainColor().setAlpha(0.0);
+        shape.render(mc);
+        assertEquals("1.0,1.0,1.0,0.0", colors.get(4));
+        colors.clear();
+        arr.add(new Vector3(5.0, 0.0, 0.0));
+        shape.render(mc);
+        assertEquals("0.2,0.2,0.2,0.8", colors.get(1));
+    }
+
+    @Test
+    public void testTessellatorCapacity() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        mc.setTessellatorCapacity(4);
+        ArrayList<ReadonlyVector3> arr = new ArrayList<ReadonlyVector3>();
+        for (int i = 0; i < 10; i++) {
+            arr.add(new Vector3(i, 0.0, 0.0));
+        }
+        WireframeLinesBlend shape = new WireframeLinesBlend(arr);
+        shape.setLineStyle(Color.BLACK.copy(), 2.0F, false);
+        shape.setBlendToLineStyle(Color.WHITE.copy(), 2.0F, false);
+        shape.render(mc);
+        mc.assertCountsEqual(3, 12, false);
+        assertEquals(12, mc.getCountSetColor());
+    }
 }
@@ -0,0 +1,154 @@
+package libshapedraw.shape;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import libshapedraw.MockMinecraftAccess;
+import libshapedraw.SetupTestEnvironment;
+import libshapedraw.internal.LSDVertexRecorder;
+import libshapedraw.primitive.BoundingBox;
+import libshapedraw.primitive.Color;
+import libshapedraw.primitive.PackedVector3List;
+import libshapedraw.primitive.Vector3;
+
+import org.junit.Test;
+
+public class TestWireframeTrail extends SetupTestEnvironment.TestCase {
+    @Test(expected=IllegalArgumentException.class)
+    public void testConstructorInvalidCapacity() {
+        new WireframeTrail(1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetInvalidMinSpacing() {
+        new WireframeTrail(10).setMinSpacing(-1.0);
+    }
+
+    @Test
+    public void testAppend() {
+        WireframeTrail trail = new WireframeTrail(4);
+        assertEquals(4, trail.getCapacity());
+        assertEquals(0, trail.size());
+        assertTrue(trail.append(0.0, 0.0, 0.0));
+        assertTrue(trail.append(new Vector3(1.0, 0.0, 0.0)));
+        assertEquals(2, trail.size());
+
+        // wraps around, dropping the oldest points
+        for (int i = 2; i < 10; i++) {
+            trail.append(i, 0.0, 0.0);
+        }
+        assertEquals(4, trail.size());
+        PackedVector3List points = trail.getPoints(new PackedVector3List());
+        assertEquals(4, points.size());
+        assertEquals(6.0, points.getX(0), 0.0);
+        assertEquals(9.0, points.getX(3), 0.0);
+        assertEquals(new BoundingBox(6.0,0.0,0.0, 9.0,0.0,0.0), trail.getBounds());
+
+        trail.clear();
+        assertEquals(0, trail.size());
+        assertTrue(trail.getBounds().isEmpty());
+        trail.append(20.0, 0.0, 0.0);
+        assertEquals(1, trail.size());
+        assertEquals(20.0, trail.getPoints(new PackedVector3List()).getX(0), 0.0);
+    }
+
+    @Test
+    public void testMinSpacing() {
+        WireframeTrail trail = new WireframeTrail(10).setMinSpacing(1.0);
+        assertEquals(1.0, trail.getMinSpacing(), 0.0);
+        assertTrue(trail.append(0.0, 0.0, 0.0));
+        assertFalse(trail.append(0.5, 0.5, 0.0));
+        assertTrue(trail.append(1.0, 0.0, 0.0));
+        assertFalse(trail.append(1.0, 0.0, 0.999));
+        assertEquals(2, trail.size());
+        // the first point after a clear is always kept
+        trail.clear();
+        assertTrue(trail.append(1.0, 0.0, 0.0));
+    }
+
+    @Test
+    public void testRender() {
+        MockMinecraftAccess mc = new MockMinecraftAccess();
+        WireframeTrail trail = new WireframeTrail(100);
+        trail.setLineStyle(Color.WHITE.copy(), 1.0F, true);
+        trail.render(mc);
+        mc.assertCountsEqual(0, 0, true);
+
+        for (int i = 0; i < 250; i++) {
+            trail.append(i, 64.0, 0.0);
+        }
+        mc.reset();
+        trail.render(mc);
+        mc.assertCountsEqual(1, 100, true);
+
+        LSDVertexRecorder recorder = new LSDVertexRecorder(mc).setPreserveSessions(true);
+        trail.renderLines(recorder, false);
+        assertEquals(100, recorder.getVertexCount());
+        assertEquals(150.0, recorder.getVertices()[0], 0.0);
+        assertEquals(249.0, recorder.getVertices()[3*99], 0.0);
+
+        long version = trail.getGeometryVersion();
+        assertEquals(version, trail.getGeometryVersion());
+        trail.append(0.0, 0.0, 0.0);
+        assertTrue(trail.getGeometryVersion() > version);
+    }
+
+    @Test
+    public void testConcurrentAppend() throws InterruptedException {
+        final WireframeTrail trail = new WireframeTrail(64);
+        final int total = 200000;
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= total; i++) {
+                    trail.append(i, 2*i, 3*i);
+                }
+            }
+        };
+        producer.start();
+        PackedVector3List points = new PackedVector3List();
+        do {
+            // every window must be a run of consecutive, intact points
+            points.clear();
+            trail.getPoints(points);
+            for (int i = 0; i < points.size(); i++) {
+                double x = points.getX(i);
+                assertEquals(2*x, points.getY(i), 0.0);
+                assertEquals(3*x, points.getZ(i), 0.0);
+                if (i > 0) {
+                    assertEquals(points.getX(i - 1) + 1.0, x, 0.0);
+                }
+            }
+        } while (producer.isAlive());
+        producer.join();
+        assertEquals(64, trail.size());
+        assertEquals(total, trail.getPoints(new PackedVector3List()).getX(63), 0.0);
+    }
+
+    @Test
+    public void testConcurrentClear() throws InterruptedException {
+        final WireframeTrail trail = new WireframeTrail(8);
+        final int total = 200000;
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= total; i++) {
+                    trail.append(i, 0, 0);
+                    if (i % 3 == 0) {
+                        trail.clear();
+                    }
+                }
+            }
+        };
+        producer.start();
+        do {
+            int size = trail.size();
+            assertTrue("size " + size, size >= 0 && size <= 8);
+        } while (producer.isAlive());
+        producer.join();
+        trail.clear();
+        assertTrue(trail.append(0, 0, 0));
+        assertTrue(trail.append(1, 0, 0));
+        assertEquals(2, trail.size());
+    }
+}